@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of the hosts that are active at the current simulation time. Instead
+ * of asking every host if it is active on every update, the set keeps the
+ * time of each host's next activeness change (see
+ * {@link DTNHost#nextActivenessChange()}) in a priority queue and only
+ * re-checks the hosts whose change is due. Hosts whose changes are not known
+ * beforehand are kept in the set all the time (and check their activeness
+ * themselves like before).
+ */
+public class ActiveHostSet {
+	private DTNHost[] hosts;
+	/** is the host of the index in the set */
+	private boolean[] member;
+	/** active hosts in index order (rebuilt when the set has changed) */
+	private ArrayList<DTNHost> active;
+	private boolean changed;
+	/** number of times a host has joined or left the set */
+	private int nrofChanges;
+
+	/** binary heap of the next change times and the host indexes */
+	private double[] changeTimes;
+	private int[] changeHosts;
+	private int heapSize;
+
+	/**
+	 * Creates a set of the given hosts. The activeness of the hosts is
+	 * checked at the current simulation time.
+	 * @param hosts The hosts (the host with address N must be in index N)
+	 */
+	public ActiveHostSet(List<DTNHost> hosts) {
+		int n = hosts.size();
+		this.hosts = hosts.toArray(new DTNHost[n]);
+		this.member = new boolean[n];
+		this.active = new ArrayList<DTNHost>(n);
+		this.changeTimes = new double[n];
+		this.changeHosts = new int[n];
+		this.heapSize = 0;
+
+		double now = SimClock.getTime();
+		for (int i=0; i<n; i++) {
+			check(i, now);
+		}
+		this.changed = true;
+	}
+
+	/**
+	 * Checks the activeness of the hosts whose change is due at the current
+	 * simulation time
+	 */
+	public void update() {
+		double now = SimClock.getTime();
+		while (heapSize > 0 && changeTimes[0] <= now) {
+			int index = changeHosts[0];
+			removeFirst();
+			check(index, now);
+		}
+	}
+
+	/**
+	 * Checks the activeness of a host and schedules its next check
+	 * @param index Index of the host
+	 * @param now The current simulation time
+	 */
+	private void check(int index, double now) {
+		DTNHost host = hosts[index];
+		boolean isActive = host.isActive();
+		double next = host.nextActivenessChange();
+		if (Double.isNaN(next)) {
+			isActive = true; // changes are not known; always in the set
+		}
+
+		if (member[index] != isActive) {
+			member[index] = isActive;
+			changed = true;
+			nrofChanges++;
+		}
+		if (!Double.isNaN(next) && next < Double.MAX_VALUE) {
+			add(index, next > now ? next : Math.nextUp(now));
+		}
+	}
+
+	/**
+	 * Returns the active hosts in the order of their indexes. The list must
+	 * not be modified and is valid until the next {@link #update()}.
+	 * @return The active hosts
+	 */
+	public List<DTNHost> getActiveHosts() {
+		if (changed) {
+			active.clear();
+			for (int i=0; i<hosts.length; i++) {
+				if (member[i]) {
+					active.add(hosts[i]);
+				}
+			}
+			changed = false;
+		}
+		return active;
+	}
+
+	/**
+	 * Returns true if the host of the given index is in the set
+	 * @param index Index of the host
+	 * @return true if the host is active
+	 */
+	public boolean isActive(int index) {
+		return member[index];
+	}
+
+	/**
+	 * Returns the activeness of all the hosts. The array must not be
+	 * modified.
+	 * @return Array whose index N is true if the host of index N is active
+	 */
+	public boolean[] getMembers() {
+		return member;
+	}
+
+	/**
+	 * Returns the number of times a host has joined or left the set. Can be
+	 * used for checking if the set has changed.
+	 * @return The number of changes
+	 */
+	public int getNrofChanges() {
+		return nrofChanges;
+	}
+
+	/**
+	 * Returns the time of the next scheduled activeness change
+	 * @return The time of the next change or Double.MAX_VALUE if none
+	 */
+	public double nextChangeTime() {
+		return heapSize > 0 ? changeTimes[0] : Double.MAX_VALUE;
+	}
+
+	private void add(int index, double time) {
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (changeTimes[parent] <= time) {
+				break;
+			}
+			changeTimes[i] = changeTimes[parent];
+			changeHosts[i] = changeHosts[parent];
+			i = parent;
+		}
+		changeTimes[i] = time;
+		changeHosts[i] = index;
+	}
+
+	private void removeFirst() {
+		heapSize--;
+		double time = changeTimes[heapSize];
+		int index = changeHosts[heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize &&
+					changeTimes[child + 1] < changeTimes[child]) {
+				child++;
+			}
+			if (time <= changeTimes[child]) {
+				break;
+			}
+			changeTimes[i] = changeTimes[child];
+			changeHosts[i] = changeHosts[child];
+			i = child;
+		}
+		changeTimes[i] = time;
+		changeHosts[i] = index;
+	}
+}
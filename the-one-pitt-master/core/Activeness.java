@@ -25,6 +25,16 @@ public interface Activeness
 	 */
 	public boolean isActive();
 	
+	/**
+	 * Returns the next moment in simulation time when the value of 
+	 * {@link #isActive()} may change. Used for checking the activeness only
+	 * when it can change.
+	 * 
+	 * @return Time of the next change or Double.MAX_VALUE if the value 
+	 * doesn't change anymore.
+	 */
+	public double nextTransitionTime();
+	
 	/**
 	 * Creates a duplicate copy of the current Activeness object.
 	 * 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Random;
+
+/**
+ * Samples indexes from a discrete probability distribution in constant time
+ * using Vose's alias method. The tables are built once, in linear time, from
+ * the (not necessarily normalized) weights of the indexes.
+ */
+public class AliasSampler {
+	/** probability of choosing the index itself instead of its alias */
+	private double[] prob;
+	private int[] alias;
+
+	/**
+	 * Creates a new sampler
+	 * @param weights Non-negative weights of the indexes. At least one
+	 * weight must be positive.
+	 * @throws SimError if the weights are not valid
+	 */
+	public AliasSampler(double[] weights) {
+		int n = weights.length;
+		double sum = 0;
+		for (double w : weights) {
+			if (w < 0 || Double.isNaN(w)) {
+				throw new SimError("Invalid sampling weight " + w);
+			}
+			sum += w;
+		}
+		if (n == 0 || sum <= 0) {
+			throw new SimError("No positive sampling weights");
+		}
+
+		this.prob = new double[n];
+		this.alias = new int[n];
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int nrofSmall = 0, nrofLarge = 0;
+
+		for (int i=0; i<n; i++) {
+			scaled[i] = weights[i] * n / sum;
+			if (scaled[i] < 1) {
+				small[nrofSmall++] = i;
+			}
+			else {
+				large[nrofLarge++] = i;
+			}
+		}
+
+		while (nrofSmall > 0 && nrofLarge > 0) {
+			int s = small[--nrofSmall];
+			int l = large[--nrofLarge];
+			prob[s] = scaled[s];
+			alias[s] = l;
+			scaled[l] = (scaled[l] + scaled[s]) - 1;
+			if (scaled[l] < 1) {
+				small[nrofSmall++] = l;
+			}
+			else {
+				large[nrofLarge++] = l;
+			}
+		}
+
+		/* the rest have (up to rounding errors) probability one */
+		while (nrofLarge > 0) {
+			int l = large[--nrofLarge];
+			prob[l] = 1;
+			alias[l] = l;
+		}
+		while (nrofSmall > 0) {
+			int s = small[--nrofSmall];
+			prob[s] = 1;
+			alias[s] = s;
+		}
+	}
+
+	/**
+	 * Samples an index. Uses one random double of the generator.
+	 * @param rng The random number generator to use
+	 * @return The sampled index
+	 */
+	public int sample(Random rng) {
+		double u = rng.nextDouble() * prob.length;
+		int i = Math.min((int)u, prob.length - 1); // u may round up to n
+		return (u - i) < prob[i] ? i : alias[i];
+	}
+
+	/**
+	 * Returns the number of indexes of the sampler
+	 * @return the number of indexes
+	 */
+	public int size() {
+		return prob.length;
+	}
+}
@@ -36,7 +36,8 @@ public class CBRConnection extends Connection {
 	 * passing is controlled by external events, this method is not needed
 	 * (but then e.g. {@link #finalizeTransfer()} and 
 	 * {@link #isMessageTransferred()} will not work either). Only a one message
-	 * at a time can be transferred using one connection.
+	 * at a time can be transferred using one connection. The message is not
+	 * replicated here; the receiving router replicates it if it accepts it.
 	 * @param from The host sending the message
 	 * @param m The message
 	 * @return The value returned by 
@@ -49,11 +50,10 @@ public class CBRConnection extends Connection {
 		"start transfer of " + m + " from " + from;
 
 		this.msgFromNode = from;
-		Message newMessage = m.replicate();
-		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
+		int retVal = getOtherNode(from).receiveMessage(m, from);
 
 		if (retVal == MessageRouter.RCV_OK) {
-			this.msgOnFly = newMessage;
+			this.msgOnFly = m;
 			this.transferDoneTime = SimClock.getTime() + 
 			(1.0*m.getSize()) / this.speed;
 		}
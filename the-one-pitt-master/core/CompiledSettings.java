@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Immutable, pre-resolved view of the settings for one run. All the
+ * settings (including the defaults) are read from the properties once and
+ * the run-array values (see {@link Settings#setRunIndex(int)}) are resolved
+ * for the run index of this view, so setting requests don't have to parse
+ * the values again. Values that contain value fill requests (see
+ * {@link Settings#FILL_DELIMITER}) are not resolved here since they depend
+ * on other settings; those are resolved when they are requested.
+ */
+public class CompiledSettings {
+	/** run array start marker ({@value}) */
+	public static final String RUN_ARRAY_START = "[";
+	/** run array end marker ({@value}) */
+	public static final String RUN_ARRAY_END = "]";
+	/** run array value delimiter ({@value}) */
+	public static final String RUN_ARRAY_DELIM = ";";
+	/** minimum length of a run array; one value, e.g. "[v]" */
+	private static final int MIN_LENGTH = 3;
+
+	/** the properties this view was compiled from */
+	private final Properties source;
+	private final int runIndex;
+	/** setting values as they were in the settings files */
+	private final Map<String, String> raw;
+	/** trimmed values with run arrays resolved (no fill requests) */
+	private final Map<String, String> resolved;
+
+	/**
+	 * Compiles the settings of the given properties for a run
+	 * @param source The properties (and their defaults) to compile
+	 * @param runIndex Index of the run whose values are resolved or -1 if
+	 * run arrays should be kept as they are
+	 */
+	public CompiledSettings(Properties source, int runIndex) {
+		Set<String> keys = source.stringPropertyNames();
+		Map<String, String> raw = new HashMap<String, String>(keys.size()*2);
+		Map<String, String> resolved =
+			new HashMap<String, String>(keys.size() * 2);
+
+		for (String key : keys) {
+			String value = source.getProperty(key);
+			raw.put(key, value);
+			if (!value.contains(Settings.FILL_DELIMITER)) {
+				resolved.put(key, parseRunSetting(value.trim(), runIndex));
+			}
+		}
+
+		this.source = source;
+		this.runIndex = runIndex;
+		this.raw = Collections.unmodifiableMap(raw);
+		this.resolved = resolved;
+	}
+
+	/**
+	 * Returns true if this view was compiled from the given properties
+	 * @param props The properties to check
+	 * @return True if the properties are the source of this view
+	 */
+	public boolean isCompiledFrom(Properties props) {
+		return this.source == props;
+	}
+
+	/**
+	 * Returns the run index whose values this view contains
+	 * @return the run index (or -1 if run arrays aren't resolved)
+	 */
+	public int getRunIndex() {
+		return this.runIndex;
+	}
+
+	/**
+	 * Returns the value of a setting as it was in the settings file
+	 * @param key Full name of the setting
+	 * @return The unparsed value or null if there is no such setting
+	 */
+	public String getRaw(String key) {
+		return this.raw.get(key);
+	}
+
+	/**
+	 * Returns the trimmed and run-resolved value of a setting
+	 * @param key Full name of the setting
+	 * @return The resolved value or null if there is no such setting or
+	 * the value contains value fill requests
+	 */
+	public String getResolved(String key) {
+		return this.resolved.get(key);
+	}
+
+	/**
+	 * Returns the full names of all the settings in this view
+	 * @return the names of the settings
+	 */
+	public Set<String> getKeys() {
+		return this.raw.keySet();
+	}
+
+	/**
+	 * Returns true if the value is a run array
+	 * @param value The (trimmed) value to check
+	 * @return True if the value is a run array
+	 */
+	public static boolean isRunArray(String value) {
+		return value.startsWith(RUN_ARRAY_START) &&
+			value.endsWith(RUN_ARRAY_END) && value.length() >= MIN_LENGTH;
+	}
+
+	/**
+	 * Returns the values of a run array
+	 * @param value The (trimmed) run array value
+	 * @return The values of the run array (not trimmed)
+	 */
+	public static String[] getRunArray(String value) {
+		return value.substring(1, value.length() - 1).split(RUN_ARRAY_DELIM);
+	}
+
+	/**
+	 * Parses run-specific settings from a String value
+	 * @param value The String to parse
+	 * @param runIndex The run index or a negative value if run arrays should
+	 * be returned as they are
+	 * @return The runIndex % arrayLength'th value of the run array
+	 */
+	public static String parseRunSetting(String value, int runIndex) {
+		if (runIndex < 0 || !isRunArray(value)) {
+			return value; // standard format setting -> return
+		}
+
+		String[] valueArr = getRunArray(value);
+		return valueArr[runIndex % valueArr.length].trim();
+	}
+}
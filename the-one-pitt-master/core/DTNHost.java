@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import movement.MovementModel;
 import movement.Path;
@@ -18,7 +19,11 @@ import routing.RoutingInfo;
  * A DTN capable host.
  */
 public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
+	/** name of the random number streams of the social profiles */
+	private static final String SOCIAL_PROFILE_RNG = "DTNHost.socialProfile";
 	private static int nextAddress = 0;
+	/** upper bound for the speed of all hosts (or 0 if there is no bound) */
+	private static double maxSpeed = 0;
 	private int address;
 
 	private Coord location; // where is the host
@@ -29,6 +34,9 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	private Path path;
 	private double speed;
 	private double nextTimeToMove;
+	/** kinematics store the host is attached to (or null) and its index */
+	private HostKinematics kinematics;
+	private int kinematicsIndex;
 	private String name;
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
@@ -77,6 +85,8 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 		// TODO - think about the names of the interfaces and the nodes
 		// this.name = groupId + ((NetworkInterface)net.get(1)).getAddress();
 
+		Random profileRng = RandomStreams.getStream(SOCIAL_PROFILE_RNG,
+				this.address);
 		int index = 0;
 		while (index < 5) {
 			if (this.name.equals("p1")) {
@@ -121,7 +131,7 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 				socialProfileOI.add(false);
 				break;
 			}
-			else if (Math.random() < 0.5) {
+			else if (profileRng.nextDouble() < 0.5) {
 				socialProfile.add(0.5);
 				socialProfileOI.add(true);
 				// System.out.println("Own Interest " + gid + j);
@@ -174,6 +184,27 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	 */
 	public static void reset() {
 		nextAddress = 0;
+		maxSpeed = 0;
+	}
+
+	/**
+	 * Sets an upper bound for the speed of all hosts. If a host gets a path
+	 * with a higher speed, a {@link SimError} is thrown. The network
+	 * interfaces use the bound for deferring connectivity checks (see
+	 * {@link NetworkInterface#deferContactCheck(java.util.Collection, double)}).
+	 * @param speed The maximum speed or 0 for no bound
+	 */
+	public static void setMaxSpeed(double speed) {
+		maxSpeed = speed;
+	}
+
+	/**
+	 * Returns the upper bound for the speed of all hosts
+	 * @return The maximum speed or 0 if there is no bound
+	 * @see #setMaxSpeed(double)
+	 */
+	public static double getMaxSpeed() {
+		return maxSpeed;
 	}
 
 	/**
@@ -275,6 +306,65 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	 */
 	public void setLocation(Coord location) {
 		this.location = location.clone();
+		if (this.kinematics != null) {
+			this.kinematics.sync(this.kinematicsIndex);
+		}
+		/* the node may have jumped closer to others than its speed allows */
+		NetworkInterface.invalidateContactChecks();
+	}
+
+	/**
+	 * Returns the destination the node is currently moving towards or null
+	 * if the node has not had a destination yet
+	 * @return The current destination
+	 */
+	Coord getDestination() {
+		return this.destination;
+	}
+
+	/**
+	 * Returns the speed the node moves towards its destination
+	 * @return The current speed
+	 */
+	double getSpeed() {
+		return this.speed;
+	}
+
+	/**
+	 * Returns the simulation time when the node starts moving again
+	 * @return The next time to move
+	 */
+	double getNextTimeToMove() {
+		return this.nextTimeToMove;
+	}
+
+	/**
+	 * Returns true if the node is active all the time
+	 * @return true if the node is always active
+	 * @see MovementModel#isAlwaysActive()
+	 */
+	boolean isAlwaysActive() {
+		return this.movement.isAlwaysActive();
+	}
+
+	/**
+	 * Returns the next time when the value of {@link #isActive()} may change
+	 * @return The time of the next change, Double.MAX_VALUE if the value
+	 * doesn't change anymore, or NaN if it isn't known beforehand
+	 * @see MovementModel#nextActivenessChange()
+	 */
+	double nextActivenessChange() {
+		return this.movement.nextActivenessChange();
+	}
+
+	/**
+	 * Attaches this node to a kinematics store
+	 * @param kinematics The store
+	 * @param index Index of this node in the store
+	 */
+	void setKinematics(HostKinematics kinematics, int index) {
+		this.kinematics = kinematics;
+		this.kinematicsIndex = index;
 	}
 
 	/**
@@ -457,6 +547,73 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 		this.location.translate(dx, dy);
 	}
 
+	/**
+	 * Returns true if this node can be moved with {@link #fastForward(double)}
+	 * @return true if the movement model of the node supports fast-forwarding
+	 * @see MovementModel#canFastForward()
+	 */
+	public boolean canFastForward() {
+		return this.movement.canFastForward();
+	}
+
+	/**
+	 * Moves the node along its paths for the given time in one go. Instead
+	 * of advancing in update interval steps like {@link #move(double)}, the
+	 * node jumps from waypoint to waypoint and over the waiting times between
+	 * the paths, so the cost depends on the number of waypoints and not on
+	 * the length of the period. The simulation clock is set to the time of
+	 * each waypoint and path request while moving (so that the movement model
+	 * sees the times it would see when stepping) and restored when done.
+	 * Should be used only if {@link #canFastForward()} returns true.
+	 * 
+	 * @param timeIncrement How long time the node moves
+	 */
+	public void fastForward(double timeIncrement) {
+		SimClock clock = SimClock.getInstance();
+		double startTime = SimClock.getTime();
+		double endTime = startTime + timeIncrement;
+		double time = startTime;
+
+		double lastFailure = Double.NaN; // when no waypoint was last available
+
+		while (time < endTime) {
+			if (time < this.nextTimeToMove) { // waiting for the next path
+				time = this.nextTimeToMove;
+				continue;
+			}
+			clock.setTime(time);
+
+			if (this.destination == null || 
+					this.location.equals(this.destination)) {
+				if (!setNextWaypoint()) {
+					if (time == lastFailure && this.nextTimeToMove <= time) {
+						break; // no path available without waiting
+					}
+					lastFailure = time;
+					continue;
+				}
+			}
+
+			double distance = this.location.distance(this.destination);
+			double legTime = distance == 0 ? 0 : distance / this.speed;
+
+			if (time + legTime > endTime) { // stops on the way
+				double possibleMovement = (endTime - time) * this.speed;
+				double dx = (possibleMovement / distance) *
+						(this.destination.getX() - this.location.getX());
+				double dy = (possibleMovement / distance) *
+						(this.destination.getY() - this.location.getY());
+				this.location.translate(dx, dy);
+				break;
+			}
+
+			this.location.setLocation(this.destination); // snap to destination
+			time += legTime;
+		}
+
+		clock.setTime(startTime);
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
@@ -477,6 +634,10 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 
 		this.destination = path.getNextWaypoint();
 		this.speed = path.getSpeed();
+		if (maxSpeed > 0 && this.speed > maxSpeed) {
+			throw new SimError("Speed " + this.speed + " of " + this + 
+					" exceeds the maximum host speed " + maxSpeed);
+		}
 
 		if (this.movListeners != null) {
 			for (MovementListener l : this.movListeners) {
@@ -506,13 +667,7 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	 *         {@link MessageRouter#receiveMessage(Message, DTNHost)}
 	 */
 	public int receiveMessage(Message m, DTNHost from) {
-		int retVal = this.router.receiveMessage(m, from);
-
-		if (retVal == MessageRouter.RCV_OK) {
-			m.addNodeOnPath(this); // add this node on the messages path
-		}
-
-		return retVal;
+		return this.router.receiveMessage(m, from);
 	}
 
 	/**
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Structure-of-arrays store for the kinematic state (location, destination,
+ * speed and next move time) of a set of hosts. The common case of a move,
+ * where a host continues towards its current destination without reaching
+ * it, is done for all hosts in one loop over the primitive arrays. Only the
+ * hosts that reach a waypoint, have no destination yet, or may be inactive
+ * are moved with {@link DTNHost#move(double)}, after which their state is
+ * read back to the arrays. The results are identical to moving every host
+ * with {@link DTNHost#move(double)}.
+ * <P>The location objects returned by {@link DTNHost#getLocation()} are kept
+ * up to date, so they are views to the current state of the store.</P>
+ */
+public class HostKinematics {
+	private DTNHost[] hosts;
+	/** location objects of the hosts (updated after every move) */
+	private Coord[] locations;
+
+	private double[] x;
+	private double[] y;
+	private double[] destX;
+	private double[] destY;
+	private double[] speed;
+	private double[] nextTimeToMove;
+	/** does the host have a destination */
+	private boolean[] hasDestination;
+	/** is the host's movement model always active */
+	private boolean[] alwaysActive;
+
+	/** indexes of the hosts that need to be moved the slow way */
+	private int[] slowPath;
+
+	/**
+	 * Creates a store for the given hosts and attaches the hosts to it
+	 * @param hosts The hosts whose kinematics are stored
+	 */
+	public HostKinematics(List<DTNHost> hosts) {
+		int n = hosts.size();
+		this.hosts = hosts.toArray(new DTNHost[n]);
+		this.locations = new Coord[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.destX = new double[n];
+		this.destY = new double[n];
+		this.speed = new double[n];
+		this.nextTimeToMove = new double[n];
+		this.hasDestination = new boolean[n];
+		this.alwaysActive = new boolean[n];
+		this.slowPath = new int[n];
+
+		for (int i=0; i<n; i++) {
+			this.hosts[i].setKinematics(this, i);
+			sync(i);
+		}
+	}
+
+	/**
+	 * Moves all the hosts for the given time. Has the same effect as
+	 * calling {@link DTNHost#move(double)} for every host in index order.
+	 * @param timeIncrement How long time the hosts move
+	 */
+	public void move(double timeIncrement) {
+		move(timeIncrement, null);
+	}
+
+	/**
+	 * Moves the active hosts for the given time. Has the same effect as
+	 * {@link #move(double)} when the inactive hosts are the ones whose
+	 * {@link DTNHost#isActive()} returns false.
+	 * @param timeIncrement How long time the hosts move
+	 * @param active Array whose index N is true if the host of index N is
+	 * active, or null if all the hosts should be moved
+	 * @see ActiveHostSet#getMembers()
+	 */
+	public void move(double timeIncrement, boolean[] active) {
+		double now = SimClock.getTime();
+		int nrofSlow = 0;
+
+		for (int i=0, n = x.length; i<n; i++) {
+			if (now < nextTimeToMove[i] || (active != null && !active[i])) {
+				continue; // waiting or inactive
+			}
+			if (!alwaysActive[i] || !hasDestination[i]) {
+				slowPath[nrofSlow++] = i;
+				continue;
+			}
+
+			double dx = destX[i] - x[i];
+			double dy = destY[i] - y[i];
+			double distance = Math.sqrt(dx*dx + dy*dy);
+			double possibleMovement = timeIncrement * speed[i];
+
+			if (possibleMovement >= distance) {
+				slowPath[nrofSlow++] = i; // reaches the destination
+				continue;
+			}
+
+			double ratio = possibleMovement / distance;
+			x[i] += ratio * dx;
+			y[i] += ratio * dy;
+			locations[i].setLocation(x[i], y[i]);
+		}
+
+		for (int j=0; j<nrofSlow; j++) {
+			int i = slowPath[j];
+			hosts[i].move(timeIncrement);
+			sync(i);
+		}
+	}
+
+	/**
+	 * Reads the state of all hosts to the store. Must be called if the hosts
+	 * have been moved by other means than {@link #move(double)}.
+	 */
+	public void syncAll() {
+		for (int i=0; i<hosts.length; i++) {
+			sync(i);
+		}
+	}
+
+	/**
+	 * Reads the state of a host to the store
+	 * @param index Index of the host in the store
+	 */
+	void sync(int index) {
+		DTNHost host = hosts[index];
+		Coord loc = host.getLocation();
+		Coord dest = host.getDestination();
+
+		locations[index] = loc;
+		x[index] = loc.getX();
+		y[index] = loc.getY();
+		hasDestination[index] = dest != null;
+		if (dest != null) {
+			destX[index] = dest.getX();
+			destY[index] = dest.getY();
+		}
+		speed[index] = host.getSpeed();
+		nextTimeToMove[index] = host.getNextTimeToMove();
+		alwaysActive[index] = host.isAlwaysActive();
+	}
+
+	/**
+	 * Returns the x coordinate of a host
+	 * @param index Index of the host in the store
+	 * @return The x coordinate of the host
+	 */
+	public double getX(int index) {
+		return x[index];
+	}
+
+	/**
+	 * Returns the y coordinate of a host
+	 * @param index Index of the host in the store
+	 * @return The y coordinate of the host
+	 */
+	public double getY(int index) {
+		return y[index];
+	}
+
+	/**
+	 * Returns the number of hosts in the store
+	 * @return the number of hosts in the store
+	 */
+	public int size() {
+		return x.length;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * A connection between two members of a {@link SharedMedium}. The objects
+ * are created on demand and cached by the members, and they only refer to
+ * the pair; the transfer state is kept by the medium, so all the connection
+ * objects of the same pair (and membership) work as the same connection and
+ * are equal. The member that joined the medium later is the initiator of
+ * the connection.
+ */
+public class MediumConnection extends Connection {
+	private SharedMedium medium;
+	private SharedMedium.Member from;
+	private SharedMedium.Member to;
+	/** the pair's state once it has been created (it doesn't change) */
+	private CBRConnection state;
+
+	/**
+	 * Creates a connection between two members
+	 * @param medium The medium of the members
+	 * @param m1 A member
+	 * @param m2 The other member
+	 */
+	MediumConnection(SharedMedium medium, SharedMedium.Member m1,
+			SharedMedium.Member m2) {
+		super(m1.seqNo > m2.seqNo ? m1.ni.getHost() : m2.ni.getHost(),
+				m1.seqNo > m2.seqNo ? m1.ni : m2.ni,
+				m1.seqNo > m2.seqNo ? m2.ni.getHost() : m1.ni.getHost(),
+				m1.seqNo > m2.seqNo ? m2.ni : m1.ni);
+		this.medium = medium;
+		this.from = m1.seqNo > m2.seqNo ? m1 : m2;
+		this.to = m1.seqNo > m2.seqNo ? m2 : m1;
+	}
+
+	/**
+	 * Returns true if this is a connection between the two members
+	 */
+	boolean connects(SharedMedium.Member m1, SharedMedium.Member m2) {
+		return (from == m1 && to == m2) || (from == m2 && to == m1);
+	}
+
+	private CBRConnection state() {
+		if (this.state == null) {
+			this.state = medium.getState(from, to, false);
+		}
+		return this.state;
+	}
+
+	/**
+	 * Returns true while both members are in the medium
+	 */
+	@Override
+	public boolean isUp() {
+		return from.joined && to.joined;
+	}
+
+	@Override
+	public int startTransfer(DTNHost from, Message m) {
+		CBRConnection state = medium.getState(this.from, this.to, true);
+		if (state == null) {
+			throw new SimError("Can't start transfer of " + m + " over " +
+					this);
+		}
+		this.state = state;
+		int retVal = state.startTransfer(from, m);
+		if (state.getMessage() != null) {
+			this.from.nrofTransfers++;
+			this.to.nrofTransfers++;
+		}
+		return retVal;
+	}
+
+	@Override
+	public void abortTransfer() {
+		state().abortTransfer();
+		transferEnded();
+	}
+
+	@Override
+	public void finalizeTransfer() {
+		state().finalizeTransfer();
+		transferEnded();
+	}
+
+	private void transferEnded() {
+		this.from.nrofTransfers--;
+		this.to.nrofTransfers--;
+	}
+
+	@Override
+	public boolean isMessageTransferred() {
+		CBRConnection state = state();
+		return state == null || state.isMessageTransferred();
+	}
+
+	@Override
+	public boolean isReadyForTransfer() {
+		return isUp() && getMessage() == null;
+	}
+
+	@Override
+	public Message getMessage() {
+		if (from.nrofTransfers == 0 || to.nrofTransfers == 0) {
+			return null; // no transfer between the pair
+		}
+		CBRConnection state = state();
+		return state != null ? state.getMessage() : null;
+	}
+
+	@Override
+	public int getRemainingByteCount() {
+		CBRConnection state = state();
+		return state != null ? state.getRemainingByteCount() : 0;
+	}
+
+	@Override
+	public int getTotalBytesTransferred() {
+		CBRConnection state = state();
+		return state != null ? state.getTotalBytesTransferred() : 0;
+	}
+
+	@Override
+	public double getSpeed() {
+		return medium.speed(from, to);
+	}
+
+	/**
+	 * The connections of a shared medium go down only when a member leaves
+	 * the medium.
+	 * @throws SimError always
+	 */
+	@Override
+	public void disconnect(NetworkInterface initiator) {
+		throw new SimError("Can't disconnect " + this + " of a shared " +
+				"medium; the interface must leave the medium");
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof MediumConnection)) {
+			return false;
+		}
+		MediumConnection other = (MediumConnection)o;
+		return other.from == this.from && other.to == this.to;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(from) +
+			System.identityHashCode(to);
+	}
+
+	/**
+	 * Returns a String presentation of the connection.
+	 */
+	@Override
+	public String toString() {
+		CBRConnection state = state();
+		return fromNode + "<->" + toNode + " (" + getSpeed() + "Bps) is " +
+			(isUp() ? "up":"down") + " in a shared medium" +
+			(state != null && state.getMessage() != null ? " transferring " +
+					state.getMessage() + " until " +
+					state.getTransferDoneTime() : "");
+	}
+}
@@ -4,11 +4,10 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -22,8 +21,11 @@ public class Message implements Comparable<Message> {
 	private String id;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path; 
+	/** Last node of the list of nodes this message has passed. The earlier
+	 * nodes of the list are shared with the replicates of the message. */
+	private Hop lastHop;
+	/** Cached list view of the path (null if not created yet) */
+	private List<DTNHost> hops;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
@@ -45,6 +47,9 @@ public class Message implements Comparable<Message> {
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
 	private Map<String, Object> properties;
+	/** Is the properties map shared with other replicates (and thus must be
+	 * copied before modifying it) */
+	private boolean propertiesShared;
 	
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -67,7 +72,7 @@ public class Message implements Comparable<Message> {
 		this.to = to;
 		this.id = id;
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.lastHop = null;
 		this.uniqueId = nextUniqueId;
 		
 		this.timeCreated = SimClock.getTime();
@@ -128,15 +133,20 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.lastHop = new Hop(node, this.lastHop);
+		this.hops = null;
 	}
 	
 	/**
-	 * Returns a list of nodes this message has passed so far
+	 * Returns a list of nodes this message has passed so far. The list 
+	 * can not be modified.
 	 * @return The list as vector
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		if (this.hops == null) {
+			this.hops = new HopList(this.lastHop);
+		}
+		return this.hops;
 	}
 	
 	/**
@@ -144,7 +154,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return this.lastHop.index; // the first node is the sender
 	}
 	
 	/** 
@@ -164,6 +174,14 @@ public class Message implements Comparable<Message> {
 	}
 	
 	
+	/**
+	 * Returns the initial TTL (minutes) of the message
+	 * @return The initial TTL or {@link #INFINITE_TTL} if the TTL is infinite
+	 */
+	public int getInitTtl() {
+		return this.initTtl;
+	}
+
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -256,7 +274,8 @@ public class Message implements Comparable<Message> {
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.lastHop = m.lastHop; // the hops are never modified
+		this.hops = m.hops;
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -264,10 +283,10 @@ public class Message implements Comparable<Message> {
 		this.appID = m.appID;
 		
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+			/* share the properties until either one modifies them */
+			this.properties = m.properties;
+			this.propertiesShared = true;
+			m.propertiesShared = true;
 		}
 	}
 	
@@ -316,7 +335,11 @@ public class Message implements Comparable<Message> {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
 			this.properties = new HashMap<String, Object>();
-		}		
+		}
+		else if (this.propertiesShared) {
+			this.properties = new HashMap<String, Object>(this.properties);
+			this.propertiesShared = false;
+		}
 
 		this.properties.put(key, value);
 	}
@@ -360,4 +383,45 @@ public class Message implements Comparable<Message> {
 		this.appID = appID;
 	}
 	
+	/**
+	 * Node of the persistent list of hops. Each node refers to the previous
+	 * hop so replicates of a message share the common prefix of their paths.
+	 */
+	private static class Hop {
+		private final DTNHost host;
+		private final Hop previous;
+		/** index of this hop on the path (0 for the first node) */
+		private final int index;
+		
+		public Hop(DTNHost host, Hop previous) {
+			this.host = host;
+			this.previous = previous;
+			this.index = previous == null ? 0 : previous.index + 1;
+		}
+	}
+	
+	/**
+	 * Unmodifiable list view of the hops ending at the given hop
+	 */
+	private static class HopList extends AbstractList<DTNHost> {
+		private DTNHost[] nodes;
+		
+		public HopList(Hop last) {
+			this.nodes = new DTNHost[last == null ? 0 : last.index + 1];
+			for (Hop h = last; h != null; h = h.previous) {
+				this.nodes[h.index] = h.host;
+			}
+		}
+		
+		@Override
+		public DTNHost get(int index) {
+			return this.nodes[index];
+		}
+		
+		@Override
+		public int size() {
+			return this.nodes.length;
+		}
+	}
+	
 }
@@ -5,22 +5,49 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Intermodule communication bus. Works as a blackboard where modules can
  * post data, subscribe to data changes and also poll for data values.
  * This is fairly similar to Message class' property interface, but these
  * values are shared for a node instead of message.
+ * <P>Frequently updated numeric values should use typed keys registered
+ * with {@link #registerDouble(String)} or {@link #registerInt(String)}.
+ * Values of registered keys are stored to primitive slots (indexed by the
+ * key) and their listeners are notified with primitive values, so updating
+ * them doesn't allocate objects or hash the key. The values of registered
+ * keys can also be accessed with the string-keyed methods (and the values
+ * are then boxed). A value stored with the name of a key before the key
+ * was registered is moved to the key's slot when the bus is next used.</P>
  */
 public class ModuleCommunicationBus {
 	/** Initial capacity for the listener lists (instead of 10) */
 	private static int INIT_CAPACITY = 3;
+	/** All registered keys by their names */
+	private static Map<String, Key> registeredKeys = 
+		new HashMap<String, Key>();
+	/** The registered keys by their slots */
+	private static List<Key> slotKeys = new ArrayList<Key>();
+	/** Number of registered keys */
+	private static volatile int nrofKeys = 0;
+	
 	/** The values in the blackboard (or null if none)*/
 	private HashMap<String, Object> values;
 	/** Subscribed listeners (or null if none)*/
 	private HashMap<String, List<ModuleCommunicationListener>> listeners;
+	/** Values of the registered keys by slot (or null if none) */
+	private double[] slotValues;
+	/** Which slots have a value */
+	private boolean[] slotSet;
+	/** Subscribed listeners of the registered keys by slot (or null) */
+	private ModuleCommunicationSlotListener[][] slotListeners;
+	/** Number of registered keys whose values have been moved from the
+	 * values map to the slots */
+	private int nrofCheckedKeys;
 	
 	/**
 	 * Constructor.
@@ -28,6 +55,288 @@ public class ModuleCommunicationBus {
 	public ModuleCommunicationBus() {
 		this.values = null; /* use lazy creation  */
 		this.listeners = null;
+		this.slotValues = null;
+		this.slotListeners = null;
+	}
+	
+	/**
+	 * Registers a key for a double value. Registering the same key again
+	 * returns the same key object.
+	 * @param name Name of the key (the key of the string-keyed methods)
+	 * @return The key
+	 * @throws SimError if the name is already registered for another type
+	 */
+	public static Key registerDouble(String name) {
+		return register(name, false);
+	}
+	
+	/**
+	 * Registers a key for an integer value. Registering the same key again
+	 * returns the same key object.
+	 * @param name Name of the key (the key of the string-keyed methods)
+	 * @return The key
+	 * @throws SimError if the name is already registered for another type
+	 */
+	public static Key registerInt(String name) {
+		return register(name, true);
+	}
+	
+	private static synchronized Key register(String name, boolean isInt) {
+		Key key = registeredKeys.get(name);
+		if (key == null) {
+			key = new Key(name, slotKeys.size(), isInt);
+			registeredKeys.put(name, key);
+			slotKeys.add(key);
+			nrofKeys = slotKeys.size();
+		}
+		else if (key.isInt != isInt) {
+			throw new SimError("Key " + name + " is already registered for " +
+					(key.isInt ? "an integer" : "a double") + " value");
+		}
+		return key;
+	}
+	
+	/**
+	 * Returns the registered key with the given name
+	 * @param name The name of the key
+	 * @return The key or null if no key with the name is registered
+	 */
+	private static synchronized Key getRegisteredKey(String name) {
+		return registeredKeys.get(name);
+	}
+	
+	/**
+	 * Returns the registered key of the given slot
+	 * @param slot The slot
+	 * @return The key
+	 */
+	private static synchronized Key getSlotKey(int slot) {
+		return slotKeys.get(slot);
+	}
+	
+	/**
+	 * Moves the values stored with the names of the keys registered since
+	 * the previous check from the values map to the slots of the keys
+	 * @throws SimError if a value is not of its key's type
+	 */
+	private void checkKeys() {
+		if (nrofCheckedKeys == nrofKeys) {
+			return;
+		}
+		int n = nrofKeys;
+		for (int i = nrofCheckedKeys; i < n; i++) {
+			Key key = getSlotKey(i);
+			if (this.values == null || !this.values.containsKey(key.name)) {
+				continue;
+			}
+			Object value = this.values.remove(key.name);
+			if (value == null) {
+				continue;
+			}
+			checkValueType(key, value);
+			ensureSlot(key);
+			slotValues[key.slot] = ((Number)value).doubleValue();
+			slotSet[key.slot] = true;
+		}
+		nrofCheckedKeys = n;
+	}
+	
+	/**
+	 * Makes sure the slot arrays can store the value of the given key
+	 * @param key The key
+	 */
+	private void ensureSlot(Key key) {
+		checkKeys();
+		if (slotValues == null) {
+			int size = Math.max(key.slot + 1, slotKeys.size());
+			slotValues = new double[size];
+			slotSet = new boolean[size];
+		}
+		else if (key.slot >= slotValues.length) {
+			int size = Math.max(key.slot + 1, slotKeys.size());
+			slotValues = Arrays.copyOf(slotValues, size);
+			slotSet = Arrays.copyOf(slotSet, size);
+		}
+	}
+	
+	/**
+	 * Returns true if there is a value for the given key
+	 * @param key The key
+	 * @return true if a value has been set for the key
+	 */
+	public boolean hasValue(Key key) {
+		checkKeys();
+		return slotSet != null && key.slot < slotSet.length && 
+			slotSet[key.slot];
+	}
+	
+	/**
+	 * Returns a double value from the communication bus
+	 * @param key The key of the variable
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if there was no value
+	 */
+	public double getDouble(Key key, double naValue) {
+		return hasValue(key) ? slotValues[key.slot] : naValue;
+	}
+	
+	/**
+	 * Returns an integer value from the communication bus
+	 * @param key The key of the variable
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if there was no value
+	 * @throws SimError if the key is not an integer key
+	 */
+	public int getInt(Key key, int naValue) {
+		checkType(key, true);
+		return hasValue(key) ? (int)slotValues[key.slot] : naValue;
+	}
+	
+	/**
+	 * Sets a double value and notifies the listeners of the key
+	 * @param key The key of the variable
+	 * @param value The new value
+	 * @throws SimError if the key is not a double key
+	 */
+	public void setDouble(Key key, double value) {
+		checkType(key, false);
+		setSlot(key, value);
+		notifyStringListeners(key, null);
+	}
+	
+	/**
+	 * Sets an integer value and notifies the listeners of the key
+	 * @param key The key of the variable
+	 * @param value The new value
+	 * @throws SimError if the key is not an integer key
+	 */
+	public void setInt(Key key, int value) {
+		checkType(key, true);
+		setSlot(key, value);
+		notifyStringListeners(key, null);
+	}
+	
+	/**
+	 * Changes the double value with given key with the value delta
+	 * @param key The key of variable to update
+	 * @param delta Value added to the old value
+	 * @return The new value
+	 * @throws SimError if there was no value for the key or the key is not
+	 * a double key
+	 */
+	public double updateDouble(Key key, double delta) {
+		checkType(key, false);
+		if (!hasValue(key)) {
+			throw new SimError("No value for key " + key);
+		}
+		double value = slotValues[key.slot] + delta;
+		setSlot(key, value);
+		notifyStringListeners(key, null);
+		return value;
+	}
+	
+	private void checkType(Key key, boolean isInt) {
+		if (key.isInt != isInt) {
+			throw new SimError("No " + (isInt ? "Integer" : "Double") + 
+					" value for key " + key);
+		}
+	}
+	
+	/**
+	 * Stores a value to the slot of a key and notifies the slot listeners
+	 * @param key The key
+	 * @param value The value
+	 */
+	private void setSlot(Key key, double value) {
+		ensureSlot(key);
+		slotValues[key.slot] = value;
+		slotSet[key.slot] = true;
+		
+		if (slotListeners == null || key.slot >= slotListeners.length || 
+				slotListeners[key.slot] == null) {
+			return;
+		}
+		for (ModuleCommunicationSlotListener l : slotListeners[key.slot]) {
+			l.moduleSlotChanged(key, value);
+		}
+	}
+	
+	/**
+	 * Notifies the listeners subscribed with the name of a registered key
+	 * @param key The key
+	 * @param value The new value or null if it should be boxed from the slot
+	 */
+	private void notifyStringListeners(Key key, Object value) {
+		if (this.listeners == null || !this.listeners.containsKey(key.name)) {
+			return;
+		}
+		notifyListeners(key.name, value != null ? value : getProperty(key));
+	}
+	
+	/**
+	 * Returns the (boxed) value of a registered key
+	 * @param key The key
+	 * @return The value as Integer or Double, or null if there was no value
+	 */
+	private Object getProperty(Key key) {
+		if (!hasValue(key)) {
+			return null;
+		}
+		double value = slotValues[key.slot];
+		if (key.isInt) {
+			return Integer.valueOf((int)value);
+		}
+		return Double.valueOf(value);
+	}
+	
+	/**
+	 * Subscribes a module to changes of a registered value.
+	 * @param key The key of the value whose changes the module is interested of
+	 * @param module The module to subscribe.
+	 */
+	public void subscribe(Key key, ModuleCommunicationSlotListener module) {
+		if (slotListeners == null) {
+			slotListeners = new ModuleCommunicationSlotListener
+				[Math.max(key.slot + 1, slotKeys.size())][];
+		}
+		else if (key.slot >= slotListeners.length) {
+			slotListeners = Arrays.copyOf(slotListeners, 
+					Math.max(key.slot + 1, slotKeys.size()));
+		}
+		
+		ModuleCommunicationSlotListener[] list = slotListeners[key.slot];
+		if (list == null) {
+			list = new ModuleCommunicationSlotListener[1];
+		}
+		else {
+			list = Arrays.copyOf(list, list.length + 1);
+		}
+		list[list.length - 1] = module;
+		slotListeners[key.slot] = list;
+	}
+	
+	/**
+	 * Removes a notification subscription of a registered value
+	 * @param key The key for which the subscription should be removed
+	 * @param module The module to whose subscription is removed
+	 */
+	public void unsubscribe(Key key, ModuleCommunicationSlotListener module) {
+		if (slotListeners == null || key.slot >= slotListeners.length || 
+				slotListeners[key.slot] == null) {
+			return; /* no subscriptions for the key */
+		}
+		
+		ModuleCommunicationSlotListener[] list = slotListeners[key.slot];
+		for (int i=0; i<list.length; i++) {
+			if (list[i] == module) {
+				ModuleCommunicationSlotListener[] newList = 
+					new ModuleCommunicationSlotListener[list.length - 1];
+				System.arraycopy(list, 0, newList, 0, i);
+				System.arraycopy(list, i + 1, newList, i, list.length - i - 1);
+				slotListeners[key.slot] = newList.length > 0 ? newList : null;
+				return;
+			}
+		}
 	}
 	
 	/**
@@ -40,7 +349,9 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if there is already a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.values != null && this.values.containsKey(key)) {
+		Key registered = getRegisteredKey(key);
+		if ((registered != null && hasValue(registered)) || 
+				(this.values != null && this.values.containsKey(key))) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("A value for the key " + key + 
 					" already exists");
@@ -56,6 +367,10 @@ public class ModuleCommunicationBus {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
+		Key registered = getRegisteredKey(key);
+		if (registered != null) {
+			return getProperty(registered);
+		}
 		if (this.values == null) {
 			return null;
 		}
@@ -70,6 +385,12 @@ public class ModuleCommunicationBus {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
+		Key registered = getRegisteredKey(key);
+		if (registered != null) {
+			updateRegistered(registered, value);
+			return;
+		}
+		
 		if (this.values == null) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
@@ -80,6 +401,40 @@ public class ModuleCommunicationBus {
 		notifyListeners(key, value);
 	}
 
+	/**
+	 * Updates the value of a registered key from an object
+	 * @param key The key
+	 * @param value The new value (Integer or Double, or null to remove the
+	 * value)
+	 * @throws SimError if the value is not of the key's type
+	 */
+	private void updateRegistered(Key key, Object value) {
+		if (value == null) {
+			if (hasValue(key)) {
+				slotSet[key.slot] = false;
+			}
+		}
+		else {
+			checkValueType(key, value);
+			setSlot(key, ((Number)value).doubleValue());
+		}
+		notifyStringListeners(key, value);
+	}
+	
+	/**
+	 * Checks that an object is a value of the key's type
+	 * @param key The key
+	 * @param value The value
+	 * @throws SimError if the value is not of the key's type
+	 */
+	private static void checkValueType(Key key, Object value) {
+		if (key.isInt ? !(value instanceof Integer) : 
+				!(value instanceof Double)) {
+			throw new SimError("No " + (key.isInt ? "Integer" : "Double") + 
+					" value for key " + key);
+		}
+	}
+
 	/**
 	 * Changes the Double value with given key with the value delta  
 	 * @param key The key of variable to update
@@ -211,7 +566,47 @@ public class ModuleCommunicationBus {
 	
 	@Override
 	public String toString() {
-		return "ComBus with mapping: " + (this.values != null ? 
-				this.values.toString() : "n/a");
+		checkKeys();
+		Map<String, Object> all = new HashMap<String, Object>();
+		if (this.values != null) {
+			all.putAll(this.values);
+		}
+		for (int i=0; slotSet != null && i<slotSet.length; i++) {
+			if (slotSet[i]) {
+				Key key = slotKeys.get(i);
+				all.put(key.name, getProperty(key));
+			}
+		}
+		return "ComBus with mapping: " + (all.size() > 0 ? 
+				all.toString() : "n/a");
+	}
+	
+	/**
+	 * A registered key of the communication bus. The value of the key is
+	 * stored to a primitive slot of the bus.
+	 */
+	public static final class Key {
+		private final String name;
+		private final int slot;
+		private final boolean isInt;
+		
+		private Key(String name, int slot, boolean isInt) {
+			this.name = name;
+			this.slot = slot;
+			this.isInt = isInt;
+		}
+		
+		/**
+		 * Returns the name of the key
+		 * @return the name of the key
+		 */
+		public String getName() {
+			return this.name;
+		}
+		
+		@Override
+		public String toString() {
+			return this.name;
+		}
 	}
 }
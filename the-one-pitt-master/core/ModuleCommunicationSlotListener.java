@@ -0,0 +1,25 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * This interface should be implemented by classes that want to be notified
+ * of value changes of registered keys (see
+ * {@link ModuleCommunicationBus#registerDouble(String)}) in
+ * ModuleCommunicationBuses.
+ */
+public interface ModuleCommunicationSlotListener {
+
+	/**
+	 * This method is called whenever a variable, whose changes the module has
+	 * registered to, changes.
+	 * @param key The key of the variable
+	 * @param newValue New value for the variable (integer values are
+	 * given as doubles)
+	 */
+	public void moduleSlotChanged(ModuleCommunicationBus.Key key,
+			double newValue);
+
+}
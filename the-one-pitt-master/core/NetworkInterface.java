@@ -8,13 +8,15 @@ import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface 
+	implements ModuleCommunicationSlotListener {
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -31,6 +33,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "transmission speed" 
     variable. Value type: integer */
 	public static final String SPEED_ID = "Network.speed";
+	/** Registered {@link ModuleCommunicationBus} key of
+	 * {@link #SCAN_INTERVAL_ID} */
+	public static final ModuleCommunicationBus.Key SCAN_INTERVAL_KEY = 
+		ModuleCommunicationBus.registerDouble(SCAN_INTERVAL_ID);
+	/** Registered {@link ModuleCommunicationBus} key of {@link #RANGE_ID} */
+	public static final ModuleCommunicationBus.Key RANGE_KEY = 
+		ModuleCommunicationBus.registerDouble(RANGE_ID);
+	/** Registered {@link ModuleCommunicationBus} key of {@link #SPEED_ID} */
+	public static final ModuleCommunicationBus.Key SPEED_KEY = 
+		ModuleCommunicationBus.registerInt(SPEED_ID);
 	
 	protected static final int CON_UP = 1;
 	protected static final int CON_DOWN = 2;
@@ -45,11 +57,26 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double transmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** membership of this interface in a shared medium (or null) */
+	SharedMedium.Member membership;
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
 	
 	protected Activeness activeModel;
+	/** should the activeness be checked only when it may change */
+	private static boolean cacheActiveness;
+	/** activeness at the latest check (if it is cached) */
+	private boolean active = true;
+	/** when the activeness should be checked next (if it is cached) */
+	private double nextActivenessCheck = Double.NEGATIVE_INFINITY;
+	/** time before which the connections of this interface can't change
+	 * (if the contact checks are deferred) */
+	private double nextContactCheck = Double.NEGATIVE_INFINITY;
+	/** value of {@link #contactEpoch} when the contact check was deferred */
+	private int nextContactCheckEpoch;
+	/** incremented when all deferred contact checks become invalid */
+	private static int contactEpoch;
 
 
 	static {
@@ -63,6 +90,19 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public static void reset() {
 		nextAddress = 0;
 		rng = new Random(0);
+		cacheActiveness = false;
+		contactEpoch = 0;
+	}
+
+	/**
+	 * Sets whether the interfaces check their activeness model only when
+	 * its value may change (see {@link Activeness#nextTransitionTime()}). If
+	 * so, an interface is also removed from the connectivity grid while it
+	 * is inactive, so the other interfaces don't see it at all.
+	 * @param cache True if the activeness should be cached
+	 */
+	public static void setActivenessCaching(boolean cache) {
+		cacheActiveness = cache;
 	}
 	
 	/**
@@ -124,9 +164,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public void setHost(DTNHost host) {
 		this.host = host;
 		ModuleCommunicationBus comBus = host.getComBus();
-		comBus.subscribe(SCAN_INTERVAL_ID, this);
-		comBus.subscribe(RANGE_ID, this);
-		comBus.subscribe(SPEED_ID, this);
+		comBus.subscribe(SCAN_INTERVAL_KEY, this);
+		comBus.subscribe(RANGE_KEY, this);
+		comBus.subscribe(SPEED_KEY, this);
 		
 		optimizer = ConnectivityGrid.ConnectivityGridFactory(
 				this.interfacetype.hashCode(), transmitRange);
@@ -188,10 +228,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	}
 
 	/**
-	 * Returns a list of currently connected connections
+	 * Returns a list of currently connected connections. If the interface
+	 * is a member of a {@link SharedMedium}, the list also has the
+	 * connections to the other members (and can't be modified).
 	 * @return a list of currently connected connections
 	 */
 	public List<Connection> getConnections() {
+		if (this.membership != null) {
+			return this.membership.medium().getConnections(this);
+		}
 		return this.connections;
 	}
 	
@@ -239,9 +284,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 		this.connections.add(con);
 		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
+		this.resetContactCheck();
+		anotherInterface.resetContactCheck();
 
 		// set up bidirectional connection
-		anotherInterface.getConnections().add(con);
+		anotherInterface.connections.add(con);
 
 		// inform routers about the connection
 		this.host.connectionUp(con);
@@ -289,6 +336,110 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 				anotherInterface.getLocation()) <= smallerRange;
 	}
 	
+	/**
+	 * Returns true if the connections of this interface can't change before
+	 * the time the contact check was deferred to (see 
+	 * {@link #deferContactCheck(Collection, double)}), i.e., checking the
+	 * ranges of the connections and the near interfaces can be skipped.
+	 * @return True if the contact check can be skipped
+	 */
+	protected boolean isContactCheckDeferred() {
+		return SimClock.getTime() < nextContactCheck && 
+			nextContactCheckEpoch == contactEpoch;
+	}
+
+	/**
+	 * Cancels a deferred contact check, so the connections are checked at
+	 * the next update
+	 */
+	protected void resetContactCheck() {
+		this.nextContactCheck = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Cancels the deferred contact checks of all interfaces. Must be called
+	 * if a host moves some other way than along its paths.
+	 */
+	public static void invalidateContactChecks() {
+		contactEpoch++;
+	}
+
+	/**
+	 * Defers the next contact check of this interface to the first moment 
+	 * when a connection may come up or go down. The time is derived from 
+	 * the distances to the near interfaces, the ranges, the times the hosts
+	 * are waiting before moving again, and the maximum host speed (see 
+	 * {@link DTNHost#getMaxSpeed()}). Nothing is deferred if there is no 
+	 * maximum speed, or if an interface is within range but not connected 
+	 * (the connection may come up whenever e.g. scanning or activeness 
+	 * allows it). Should be called after the connections have been checked.
+	 * @param nearInterfaces All the interfaces that may be within range
+	 * @param minDistance Distance that all the other interfaces were at
+	 * least away from this interface when their location was last updated 
+	 * (i.e., at most one update interval ago)
+	 */
+	protected void deferContactCheck(Collection<NetworkInterface> 
+			nearInterfaces, double minDistance) {
+		double maxSpeed = DTNHost.getMaxSpeed();
+		if (maxSpeed <= 0) {
+			return;
+		}
+		double interval = SimScenario.getInstance().getUpdateInterval();
+		/* the locations can be from up to one update interval ago (e.g. 
+		 * when the hosts are updated after external events) */
+		double locTime = SimClock.getTime() - interval;
+		double myWait = host.getNextTimeToMove() - locTime;
+		Coord myLoc = getLocation();
+		double range = getTransmitRange();
+
+		/* the other interfaces may have moved since their location update
+		 * and may be moving */
+		double time = timeToClose(minDistance - maxSpeed * interval - range,
+				myWait, 0, maxSpeed);
+
+		for (NetworkInterface ni : nearInterfaces) {
+			if (ni == this) {
+				continue;
+			}
+			double pairRange = Math.min(range, ni.getTransmitRange());
+			double gap = myLoc.distance(ni.getLocation()) - pairRange;
+			if (isConnected(ni)) {
+				gap = -gap; // how far the interface is from going out of range
+			}
+			if (gap <= 0) {
+				return; // the connection may change at any moment
+			}
+			time = Math.min(time, timeToClose(gap, myWait, 
+					ni.host.getNextTimeToMove() - locTime, maxSpeed));
+		}
+
+		this.nextContactCheck = locTime + time;
+		this.nextContactCheckEpoch = contactEpoch;
+	}
+
+	/**
+	 * Returns the shortest time in which two hosts can change their distance
+	 * by the given amount
+	 * @param gap The distance change
+	 * @param wait1 How long the first host waits before moving
+	 * @param wait2 How long the second host waits before moving
+	 * @param maxSpeed Maximum speed of both hosts
+	 * @return The time
+	 */
+	private static double timeToClose(double gap, double wait1, double wait2,
+			double maxSpeed) {
+		if (gap <= 0) {
+			return 0;
+		}
+		double first = Math.max(0, Math.min(wait1, wait2));
+		double second = Math.max(0, Math.max(wait1, wait2));
+		double alone = maxSpeed * (second - first); // only one host moving
+		if (gap <= alone) {
+			return first + gap / maxSpeed;
+		}
+		return second + (gap - alone) / (2 * maxSpeed);
+	}
+
 	/**
 	 * Returns true if the given NetworkInterface is connected to this host. 
 	 * @param netinterface The other NetworkInterface to check 
@@ -304,6 +455,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return false;
 	}
 	
+	/**
+	 * Returns true if any of the connections of this interface has a 
+	 * transfer going on (or not finalized)
+	 * @return true if this interface is transferring something
+	 */
+	public boolean isTransferring() {
+		for (int i = 0; i < this.connections.size(); i++) {
+			if (!this.connections.get(i).isReadyForTransfer()) {
+				return true;
+			}
+		}
+		return this.membership != null && 
+			this.membership.medium().isTransferring(this);
+	}
+
 	/**
 	 * Makes sure that a value is positive
 	 * @param value Value to check
@@ -349,18 +515,20 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/**
 	 * This method is called by the {@link ModuleCommunicationBus} when/if
 	 * someone changes the scanning interval, transmit speed, or range
-	 * @param key Identifier of the changed value
+	 * @param key Key of the changed value
 	 * @param newValue New value for the variable
 	 */
-	public void moduleValueChanged(String key, Object newValue) {
-		if (key.equals(SCAN_INTERVAL_ID)) {
-			this.scanInterval = (Double)newValue;	
+	public void moduleSlotChanged(ModuleCommunicationBus.Key key, 
+			double newValue) {
+		if (key == SCAN_INTERVAL_KEY) {
+			this.scanInterval = newValue;	
 		}
-		else if (key.equals(SPEED_ID)) {
-			this.transmitSpeed = (Integer)newValue;	
+		else if (key == SPEED_KEY) {
+			this.transmitSpeed = (int)newValue;	
 		}
-		else if (key.equals(RANGE_ID)) {
-			this.transmitRange = (Double)newValue;	
+		else if (key == RANGE_KEY) {
+			this.transmitRange = newValue;	
+			resetContactCheck();
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -396,6 +564,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		DTNHost anotherNode = con.getOtherNode(this.host);
 		con.setUpState(false);
 		notifyConnectionListeners(CON_DOWN, anotherNode);
+		resetContactCheck();
 
 		// tear down bidirectional connection
 		/*if (!anotherNode.getConnections().remove(con)) {
@@ -435,7 +604,23 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	
 	public boolean isActive() {
 		if(activeModel == null) return true;
-		return this.activeModel.isActive();
+		if(!cacheActiveness) return this.activeModel.isActive();
+		
+		if(SimClock.getTime() >= nextActivenessCheck)
+		{
+			boolean isActive = this.activeModel.isActive();
+			nextActivenessCheck = this.activeModel.nextTransitionTime();
+			if(isActive != active && optimizer != null)
+			{
+				/* inactive interfaces are not in the grid */
+				if(isActive) 
+					optimizer.addInterface(this);
+				else 
+					optimizer.removeInterface(this);
+			}
+			active = isActive;
+		}
+		return active;
 	}
 	
 	public boolean acceptingConnections() {
@@ -444,6 +629,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	public boolean removeConnection(Connection con, NetworkInterface initiator)
 	{
+		resetContactCheck();
 		return this.connections.remove(con);
 	}
 	
@@ -459,6 +645,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	
 	public int connectionCount()
 	{
+		if (this.membership != null) {
+			return this.connections.size() + 
+				this.membership.medium().getNrofPeers(this);
+		}
 		return this.connections.size();
 	}
 }
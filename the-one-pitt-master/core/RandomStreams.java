@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Random;
+
+/**
+ * Source of the random number streams of the simulation. All the streams
+ * are derived from one root seed (the {@link #RNG_SEED_S} setting of the
+ * {@value SimScenario#SCENARIO_NS} namespace) and a stream is identified by
+ * the name of the module that uses it and, optionally, an index (e.g. the
+ * address of the host whose stream it is). The same name, index and root
+ * seed always give the same stream, independent of what other streams are
+ * used and in which order, so modules and hosts don't affect each others'
+ * random values.
+ */
+public class RandomStreams {
+	/** Root seed of the random number streams -setting id ({@value}).
+	 * Default is 0. */
+	public static final String RNG_SEED_S = "rngSeed";
+
+	private static long rootSeed;
+
+	static {
+		DTNSim.registerForReset(RandomStreams.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Returns a new random number stream of a module
+	 * @param module Name of the module
+	 * @return The module's stream
+	 */
+	public static Random getStream(String module) {
+		return getStream(module, 0);
+	}
+
+	/**
+	 * Returns a new random number stream of a module and an index (e.g.
+	 * the address of a host)
+	 * @param module Name of the module
+	 * @param index The index of the stream
+	 * @return The stream of the module and index
+	 */
+	public static Random getStream(String module, int index) {
+		long seed = SplitMixRandom.mix(rootSeed + module.hashCode());
+		return new SplitMixRandom(SplitMixRandom.mix(seed + index));
+	}
+
+	/**
+	 * Sets the root seed of the streams
+	 * @param seed The new root seed
+	 */
+	public static void setRootSeed(long seed) {
+		rootSeed = SplitMixRandom.mix(seed);
+	}
+
+	/**
+	 * Resets the root seed to the value of the settings
+	 */
+	public static void reset() {
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		setRootSeed(s.contains(RNG_SEED_S) ? s.getInt(RNG_SEED_S) : 0);
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Paces the simulation against the wall clock for real-time emulation.
+ * After every world update, {@link #pace(double)} waits until the wall clock
+ * reaches the time that corresponds to the new simulation time. The
+ * deadlines are computed from the start of the emulation (not from the
+ * previous update), so the inaccuracies of the waits don't accumulate and
+ * the simulation catches up after it has fallen behind. An update that
+ * finishes later than its deadline plus the tolerance is counted as a
+ * missed deadline.
+ */
+public class RealTimePacer {
+	/** Real-time emulation settings namespace ({@value}) */
+	public static final String REAL_TIME_NS = "RealTime";
+	/** Is the real-time emulation enabled -setting id ({@value}).
+	 * Boolean. Default = false */
+	public static final String ENABLED_S = "enabled";
+	/** Simulated seconds per wall-clock second -setting id ({@value}).
+	 * Default = 1 */
+	public static final String SPEED_S = "speed";
+	/** How many (wall-clock) seconds an update may be late without it being
+	 * counted as a missed deadline -setting id ({@value}). Default = 0.1 */
+	public static final String TOLERANCE_S = "tolerance";
+
+	/** default value for the speed setting */
+	public static final double DEF_SPEED = 1.0;
+	/** default value for the tolerance setting */
+	public static final double DEF_TOLERANCE = 0.1;
+
+	private static final double NANOS_PER_SECOND = 1000000000.0;
+
+	private double speed;
+	private long toleranceNanos;
+
+	private long startNanos;
+	private double startSimTime;
+	private boolean started;
+
+	private int nrofUpdates;
+	private int nrofMissed;
+	private double lag;
+	private double maxLag;
+
+	/**
+	 * Creates a pacer based on the settings in the {@link #REAL_TIME_NS}
+	 * namespace
+	 * @param s The settings
+	 */
+	public RealTimePacer(Settings s) {
+		this(s.contains(SPEED_S) ? s.getDouble(SPEED_S) : DEF_SPEED,
+			s.contains(TOLERANCE_S) ? s.getDouble(TOLERANCE_S) : DEF_TOLERANCE);
+		if (speed <= 0) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(SPEED_S) + ": " + speed);
+		}
+	}
+
+	/**
+	 * Creates a pacer
+	 * @param speed Simulated seconds per wall-clock second
+	 * @param tolerance How many seconds an update may be late without it
+	 * being counted as a missed deadline
+	 */
+	public RealTimePacer(double speed, double tolerance) {
+		this.speed = speed;
+		this.toleranceNanos = (long)(tolerance * NANOS_PER_SECOND);
+		this.started = false;
+	}
+
+	/**
+	 * Returns true if real-time emulation is enabled in the settings
+	 * @return true if real-time emulation is enabled
+	 */
+	public static boolean isEnabled() {
+		Settings s = new Settings(REAL_TIME_NS);
+		return s.contains(ENABLED_S) && s.getBoolean(ENABLED_S);
+	}
+
+	/**
+	 * Starts the pacing. The given simulation time corresponds to the
+	 * current wall-clock time.
+	 * @param simTime The current simulation time
+	 */
+	public void start(double simTime) {
+		this.startSimTime = simTime;
+		this.startNanos = nanoTime();
+		this.started = true;
+		this.nrofUpdates = 0;
+		this.nrofMissed = 0;
+		this.lag = 0;
+		this.maxLag = 0;
+	}
+
+	/**
+	 * Waits until the wall clock has reached the given simulation time. If
+	 * the pacing hasn't been started, it is started at the given time.
+	 * @param simTime The simulation time after an update
+	 */
+	public void pace(double simTime) {
+		if (!started) {
+			start(simTime);
+			return;
+		}
+
+		long deadline = startNanos +
+			(long)((simTime - startSimTime) / speed * NANOS_PER_SECOND);
+		long now = nanoTime();
+		nrofUpdates++;
+
+		if (now < deadline) {
+			lag = 0;
+			sleep(deadline - now);
+			return;
+		}
+
+		lag = (now - deadline) / NANOS_PER_SECOND;
+		if (lag > maxLag) {
+			maxLag = lag;
+		}
+		if (now - deadline > toleranceNanos) {
+			nrofMissed++;
+		}
+	}
+
+	/**
+	 * Returns the number of updates paced
+	 * @return the number of updates paced
+	 */
+	public int getNrofUpdates() {
+		return this.nrofUpdates;
+	}
+
+	/**
+	 * Returns the number of updates that missed their deadline
+	 * @return the number of missed deadlines
+	 */
+	public int getNrofMissedDeadlines() {
+		return this.nrofMissed;
+	}
+
+	/**
+	 * Returns how many seconds the latest update was behind the wall clock
+	 * @return the current lag (seconds)
+	 */
+	public double getLag() {
+		return this.lag;
+	}
+
+	/**
+	 * Returns the largest lag of an update so far
+	 * @return the largest lag (seconds)
+	 */
+	public double getMaxLag() {
+		return this.maxLag;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d/%d updates missed the deadline " +
+				"(max lag %.3fs)", nrofMissed, nrofUpdates, maxLag);
+	}
+
+	/**
+	 * Returns the current wall-clock time in nanoseconds
+	 * @return the current wall-clock time
+	 */
+	protected long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Sleeps for the given time
+	 * @param nanos The time to sleep in nanoseconds
+	 */
+	protected void sleep(long nanos) {
+		try {
+			Thread.sleep(nanos / 1000000, (int)(nanos % 1000000));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
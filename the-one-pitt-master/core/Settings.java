@@ -52,6 +52,17 @@ public class Settings {
 	
 	/** run index for run-specific settings */
 	private static int runIndex = 0;
+	/** pre-resolved settings of the runs, by run index */
+	private static Map<Integer, CompiledSettings> compiledRuns =
+		new HashMap<Integer, CompiledSettings>();
+	/** pre-resolved settings of the current run (or null if not compiled) */
+	private static CompiledSettings compiled = null;
+	/** dynamically loaded classes by their names */
+	private static Map<String, Class<?>> classes =
+		new HashMap<String, Class<?>>();
+	/** last used constructors of the dynamically loaded classes */
+	private static Map<Class<?>, Constructor<?>> settingsConstructors =
+		new HashMap<Class<?>, Constructor<?>>();
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -93,9 +104,50 @@ public class Settings {
 	 */
 	public static void setRunIndex(int index) {
 		runIndex = index;
+		compiled = null;
 		writtenSettings.clear();
 	}
 	
+	/**
+	 * Returns the pre-resolved settings for a run. The settings are 
+	 * compiled once per run index and the same object is returned until
+	 * the settings change.
+	 * @param index Index of the run (or -1 for the settings without run
+	 * indexing)
+	 * @return The pre-resolved settings of the run
+	 */
+	public static CompiledSettings getCompiled(int index) {
+		if (props == null) {
+			init(null);
+		}
+		CompiledSettings c = compiledRuns.get(index);
+		if (c == null || !c.isCompiledFrom(props)) {
+			c = new CompiledSettings(props, index);
+			compiledRuns.put(index, c);
+		}
+		return c;
+	}
+	
+	/**
+	 * Returns the pre-resolved settings for the current run
+	 * @return The pre-resolved settings of the current run
+	 */
+	private static CompiledSettings getCompiled() {
+		if (compiled == null || !compiled.isCompiledFrom(props)) {
+			compiled = getCompiled(runIndex);
+		}
+		return compiled;
+	}
+	
+	/**
+	 * Discards all the pre-resolved settings. Must be called after the
+	 * properties have been modified.
+	 */
+	protected static void settingsChanged() {
+		compiledRuns.clear();
+		compiled = null;
+	}
+	
 	/**
 	 * Checks that the given integer array contains a valid range. I.e., 
 	 * the length of the array must be two and 
@@ -140,7 +192,8 @@ public class Settings {
 			return null;
 		}
 		
-		if (props.getProperty(getFullPropertyName(setting, false)) != null) {
+		if (getCompiled().getRaw(getFullPropertyName(setting, false)) 
+				!= null) {
 			return getFullPropertyName(setting, false);
 		}
 		
@@ -213,6 +266,7 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		settingsChanged();
 
 		outFile = props.getProperty(SETTING_OUTPUT_S);
 		if (outFile != null) {
@@ -229,9 +283,16 @@ public class Settings {
 		}
 	}
 	
+	/**
+	 * Adds a setting overriding any value that already existed with the
+	 * same name.
+	 * @param name Full name of the setting
+	 * @param value Value of the setting
+	 */
 	public static void addSetting(String name, String value)
 	{
 		props.put(name, value);
+		settingsChanged();
 	}
 	
 	/**
@@ -247,6 +308,7 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		settingsChanged();
 	}
 	
 	/**
@@ -316,8 +378,10 @@ public class Settings {
 		if (props == null) {
 			init(null);
 		}
+		CompiledSettings c = getCompiled();
 		fullPropName = getFullPropertyName(name, false);
-		String value = props.getProperty(fullPropName);
+		String valueName = fullPropName;
+		String value = c.getRaw(valueName);
 		
 		/*if ((value == null || value.length() == 0) && 
 				this.secondaryNamespace != null) {
@@ -331,7 +395,8 @@ public class Settings {
 		}*/
 		if((value == null || value.length() == 0) && this.secondaryNamespace != null)
 		{
-			value = props.getProperty(this.secondaryNamespace + '.' + name);
+			valueName = this.secondaryNamespace + '.' + name;
+			value = c.getRaw(valueName);
 		}
 		
 		if(value == null || value.length() == 0)
@@ -339,7 +404,8 @@ public class Settings {
 			Iterator<String> i = this.secondaryNamespaces.iterator();
 			while(value == null && i.hasNext())
 			{
-				value = props.getProperty(i.next() + '.' + name);
+				valueName = i.next() + '.' + name;
+				value = c.getRaw(valueName);
 			}
 			
 		}
@@ -349,37 +415,16 @@ public class Settings {
 					getPropertyNamesString(name));
 		}
 		
-		//if (value != null) { // found value, check if run setting can be parsed
-			value = parseRunSetting(valueFillString(value.trim()));
-		//}
-		
-		outputSetting(fullPropName + " = " + value);
-		return value;
-	}
-	
-	/**
-	 * Parses run-specific settings from a String value
-	 * @param value The String to parse
-	 * @return The runIndex % arrayLength'th value of the run array
-	 */
-	private static String parseRunSetting(String value) {
-		final String RUN_ARRAY_START = "[";
-		final String RUN_ARRAY_END = "]";
-		final String RUN_ARRAY_DELIM = ";";
-		final int MIN_LENGTH = 3; // minimum run is one value. e.g. "[v]"
-		
-		if (!value.startsWith(RUN_ARRAY_START) || 
-			!value.endsWith(RUN_ARRAY_END) || 
-			runIndex < 0 ||
-			value.length() < MIN_LENGTH) {
-			return value; // standard format setting -> return
+		String resolved = c.getResolved(valueName);
+		if (resolved != null) {
+			value = resolved;
+		}
+		else { // value fill requests are resolved only when requested
+			value = CompiledSettings.parseRunSetting(
+					valueFillString(value.trim()), runIndex);
 		}
 		
-		value = value.substring(1,value.length()-1); // remove brackets
-		String[] valueArr = value.split(RUN_ARRAY_DELIM);
-		int arrIndex = runIndex % valueArr.length;
-		value = valueArr[arrIndex].trim();
-
+		outputSetting(fullPropName + " = " + value);
 		return value;
 	}
 	
@@ -666,7 +711,12 @@ public class Settings {
 		
 		try {
 			if (argsClass != null) { // use a specific constructor
-				constructor = objClass.getConstructor((Class[])argsClass);
+				constructor = settingsConstructors.get(objClass);
+				if (constructor == null || !Arrays.equals(argsClass, 
+						constructor.getParameterTypes())) {
+					constructor = objClass.getConstructor((Class[])argsClass);
+					settingsConstructors.put(objClass, constructor);
+				}
 				o = constructor.newInstance(args);
 			}
 			else { // call empty constructor
@@ -711,14 +761,18 @@ public class Settings {
 	 */
 	private Class<?> getClass(String name) {
 		String className = name;
-		Class<?> c;
+		Class<?> c = classes.get(className);
 		
+		if (c != null) {
+			return c;
+		}
 		try {
 			c = Class.forName(className);
 		} catch (ClassNotFoundException e) {
 			throw new SettingsError("Couldn't find class '" + className + "'"+ 
 					"\n" + e.getMessage(),e);
 		}
+		classes.put(className, c);
 		
 		return c;
 	}
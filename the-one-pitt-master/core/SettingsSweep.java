@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sweep matrix of the run-array settings (see
+ * {@link Settings#setRunIndex(int)}). Every setting with a run array is a
+ * column of the matrix and every run is a row. Since the run arrays wrap
+ * around, the sweep repeats itself after the least common multiple of the
+ * run array lengths, which is the number of distinct runs of the sweep.
+ * <P>Usage: <CODE>java core.SettingsSweep settingsFile(s)</CODE> prints the
+ * sweep matrix of the given settings files.</P>
+ */
+public class SettingsSweep {
+	/** values of the run-array settings, by full setting name */
+	private Map<String, String[]> sweep;
+	private int nrofRuns;
+
+	/**
+	 * Creates the sweep matrix of the current settings
+	 */
+	public SettingsSweep() {
+		CompiledSettings settings = Settings.getCompiled(-1);
+		this.sweep = new TreeMap<String, String[]>();
+		this.nrofRuns = 1;
+
+		for (String key : settings.getKeys()) {
+			String value = settings.getRaw(key).trim();
+			if (!CompiledSettings.isRunArray(value)) {
+				continue;
+			}
+			String[] values = CompiledSettings.getRunArray(value);
+			for (int i = 0; i < values.length; i++) {
+				values[i] = values[i].trim();
+			}
+			this.sweep.put(key, values);
+			this.nrofRuns = lcm(this.nrofRuns, values.length);
+		}
+	}
+
+	private static int lcm(int a, int b) {
+		int x = a, y = b;
+		while (y != 0) {
+			int t = x % y;
+			x = y;
+			y = t;
+		}
+		return a / x * b;
+	}
+
+	/**
+	 * Returns the number of distinct runs in the sweep. Runs with bigger
+	 * indexes repeat the settings of the earlier runs.
+	 * @return the number of distinct runs
+	 */
+	public int getNrofRuns() {
+		return this.nrofRuns;
+	}
+
+	/**
+	 * Returns the full names of the run-array settings
+	 * @return the names of the settings that vary between runs
+	 */
+	public List<String> getSettingNames() {
+		return new ArrayList<String>(this.sweep.keySet());
+	}
+
+	/**
+	 * Returns the value of a run-array setting in a run
+	 * @param run Index of the run
+	 * @param setting Full name of the setting
+	 * @return The value of the setting in the run or null if the setting
+	 * doesn't have a run array
+	 */
+	public String getValue(int run, String setting) {
+		String[] values = this.sweep.get(setting);
+		if (values == null) {
+			return null;
+		}
+		return values[run % values.length];
+	}
+
+	/**
+	 * Returns the values of the run-array settings in a run
+	 * @param run Index of the run
+	 * @return Setting values of the run by the full setting names
+	 */
+	public Map<String, String> getRun(int run) {
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		for (String setting : this.sweep.keySet()) {
+			values.put(setting, getValue(run, setting));
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the pre-resolved settings of a run
+	 * @param run Index of the run
+	 * @return The pre-resolved settings
+	 * @see Settings#getCompiled(int)
+	 */
+	public CompiledSettings getSettings(int run) {
+		return Settings.getCompiled(run);
+	}
+
+	/**
+	 * Returns the sweep matrix as a tab separated table where the first
+	 * column is the run number and the other columns are the values of
+	 * the run-array settings
+	 * @return the sweep matrix as a string
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("run");
+		for (String setting : this.sweep.keySet()) {
+			sb.append('\t').append(setting);
+		}
+		for (int i = 0; i < this.nrofRuns; i++) {
+			sb.append('\n').append(i + 1);
+			for (String setting : this.sweep.keySet()) {
+				sb.append('\t').append(getValue(i, setting));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Prints the sweep matrix of the given settings files
+	 * @param args The settings files
+	 */
+	public static void main(String[] args) {
+		Settings.init(args.length > 0 ? args[0] : null);
+		for (int i = 1; i < args.length; i++) {
+			Settings.addSettings(args[i]);
+		}
+		System.out.println(new SettingsSweep());
+	}
+}
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shared medium (e.g. a wired backbone) that connects its member
+ * interfaces to each other. Instead of a connection object per member pair,
+ * each member has one membership in the medium and the connections to the
+ * other members (peers) are resolved on demand: the connection lists of the
+ * members (see {@link NetworkInterface#getConnections()}) are views that
+ * create a {@link MediumConnection} for a pair the first time it is asked
+ * for. The members cache the connections of their pairs, so both members of
+ * a pair get the same connection object for as long as the pair is up and
+ * going through the connection lists doesn't create new objects. The state
+ * of a pair (the ongoing transfer and transferred bytes) is created when the
+ * pair first transfers something and dropped when the pair goes down, so
+ * the memory use depends on the number of members and the pairs that have
+ * been asked for, not on the square of the members.
+ * <P>The members can join through a gateway interface (e.g. an access
+ * point). Members of the same gateway are not connected through the medium
+ * (they can reach each other directly); members without a gateway are
+ * connected to all the other members. The connection listeners and routers
+ * are told about the pairs that come up or go down like with normal
+ * connections when a member joins or leaves.</P>
+ */
+public class SharedMedium {
+	/** members by the gateways they joined through (null key for members
+	 * without a gateway) */
+	private Map<NetworkInterface, Group> groups;
+	/** the groups in the order they were created */
+	private List<Group> groupList;
+	private int nrofMembers;
+	private long nextSeqNo;
+	/** number of joins and leaves, for checking the members' peer cursors */
+	private int version;
+
+	/**
+	 * Creates a new medium without members
+	 */
+	public SharedMedium() {
+		this.groups = new HashMap<NetworkInterface, Group>();
+		this.groupList = new ArrayList<Group>();
+		this.nrofMembers = 0;
+		this.nextSeqNo = 0;
+	}
+
+	/**
+	 * Adds an interface to the medium and brings up its connections to the
+	 * other members
+	 * @param ni The interface
+	 * @param gateway The gateway the interface joins through or null if the
+	 * interface is connected to the medium directly
+	 * @throws SimError if the interface is already in a medium
+	 */
+	public void join(NetworkInterface ni, NetworkInterface gateway) {
+		if (ni.membership != null) {
+			throw new SimError(ni + " is already in a shared medium");
+		}
+		Group g = groups.get(gateway);
+		if (g == null) {
+			g = new Group(gateway, groupList.size());
+			groups.put(gateway, g);
+			groupList.add(g);
+		}
+
+		Member m = new Member(ni, g, nextSeqNo++);
+		m.index = g.members.size();
+		g.members.add(m);
+		nrofMembers++;
+		version++;
+		ni.membership = m;
+
+		DTNHost host = ni.getHost();
+		for (Member peer : getPeers(m)) {
+			Connection con = connection(m, peer);
+			ni.notifyConnectionListeners(NetworkInterface.CON_UP,
+					peer.ni.getHost());
+			host.connectionUp(con);
+			peer.ni.getHost().connectionUp(con);
+		}
+	}
+
+	/**
+	 * Removes an interface from the medium and takes down its connections
+	 * to the other members. Transfers that were going on over the
+	 * connections are left for the routers to abort (like with normal
+	 * connections that go down).
+	 * @param ni The interface
+	 */
+	public void leave(NetworkInterface ni) {
+		Member m = member(ni);
+		if (m == null) {
+			return;
+		}
+		List<Member> peers = getPeers(m);
+		List<Connection> cons = new ArrayList<Connection>(peers.size());
+		for (Member peer : peers) {
+			cons.add(connection(m, peer));
+		}
+
+		m.joined = false;
+		List<Member> groupMembers = m.group.members;
+		Member last = groupMembers.remove(groupMembers.size() - 1);
+		if (last != m) {
+			groupMembers.set(m.index, last);
+			last.index = m.index;
+		}
+		nrofMembers--;
+		version++;
+		ni.membership = null;
+		m.cons = null; // the peers' caches are updated when they are used
+
+		/* the pair states stay reachable (through the left member) for the
+		 * connections the routers still have */
+		for (Member other : m.states.keySet()) {
+			other.states.remove(m);
+		}
+
+		DTNHost host = ni.getHost();
+		for (int i = 0, n = peers.size(); i < n; i++) {
+			Member peer = peers.get(i);
+			Connection con = cons.get(i);
+			ni.notifyConnectionListeners(NetworkInterface.CON_DOWN,
+					peer.ni.getHost());
+			host.connectionDown(con);
+			peer.ni.getHost().connectionDown(con);
+		}
+	}
+
+	/**
+	 * Returns true if the interface is a member of this medium
+	 * @param ni The interface
+	 * @return true if the interface is a member
+	 */
+	public boolean isMember(NetworkInterface ni) {
+		return member(ni) != null;
+	}
+
+	/**
+	 * Returns true if two interfaces are connected through this medium
+	 * @param ni An interface
+	 * @param other The other interface
+	 * @return true if both are members and they are peers
+	 */
+	public boolean isConnected(NetworkInterface ni, NetworkInterface other) {
+		Member m1 = member(ni);
+		Member m2 = member(other);
+		return m1 != null && m2 != null && m1 != m2 &&
+			(m1.group != m2.group || m1.group.gateway == null);
+	}
+
+	/**
+	 * Returns the number of members that joined through a gateway
+	 * @param gateway The gateway (null for the members without one)
+	 * @return The number of members of the gateway
+	 */
+	public int getNrofMembers(NetworkInterface gateway) {
+		Group g = groups.get(gateway);
+		return g != null ? g.members.size() : 0;
+	}
+
+	/**
+	 * Returns a member that joined through a gateway. The indexes of the
+	 * members of a gateway are from 0 to
+	 * {@link #getNrofMembers(NetworkInterface)} - 1 and leaving only moves
+	 * the member of the last index, so the members can be removed while
+	 * iterating them from the last index to the first.
+	 * @param gateway The gateway (null for the members without one)
+	 * @param index Index of the member
+	 * @return The member interface
+	 */
+	public NetworkInterface getMember(NetworkInterface gateway, int index) {
+		return groups.get(gateway).members.get(index).ni;
+	}
+
+	/**
+	 * Returns the number of peers (members connected to) a member has
+	 * @param ni The member interface
+	 * @return The number of peers or 0 if the interface is not a member
+	 */
+	public int getNrofPeers(NetworkInterface ni) {
+		Member m = member(ni);
+		return m != null ? nrofPeers(m) : 0;
+	}
+
+	/**
+	 * Returns a peer of a member without creating any objects
+	 * @param ni The member interface
+	 * @param index Index of the peer (from 0 to
+	 * {@link #getNrofPeers(NetworkInterface)} - 1)
+	 * @return The peer interface
+	 */
+	public NetworkInterface getPeer(NetworkInterface ni, int index) {
+		return peer(member(ni), index).ni;
+	}
+
+	/**
+	 * Returns the connection of a member to a peer. Both members of a pair
+	 * get the same connection object for as long as the pair is up.
+	 * @param ni The member interface
+	 * @param index Index of the peer (from 0 to
+	 * {@link #getNrofPeers(NetworkInterface)} - 1)
+	 * @return The connection
+	 */
+	public Connection getConnection(NetworkInterface ni, int index) {
+		Member m = member(ni);
+		return connection(m, peer(m, index));
+	}
+
+	/**
+	 * Returns true if a member has a transfer going on (or not finalized)
+	 * with any of its peers. Unlike asking it from all the connections of
+	 * the member, this doesn't depend on the number of peers.
+	 * @param ni The member interface
+	 * @return true if the member is transferring something
+	 */
+	public boolean isTransferring(NetworkInterface ni) {
+		Member m = member(ni);
+		return m != null && m.nrofTransfers > 0;
+	}
+
+	/**
+	 * Returns the connections of a member: its own connections followed by
+	 * the connections to its peers in the medium
+	 * @param ni The member interface
+	 * @return A view of the connections
+	 */
+	List<Connection> getConnections(NetworkInterface ni) {
+		return member(ni).connections;
+	}
+
+	/**
+	 * Returns the membership of an interface in this medium
+	 * @param ni The interface
+	 * @return The membership or null if the interface is not a member
+	 */
+	private Member member(NetworkInterface ni) {
+		Member m = ni.membership;
+		return m != null && m.medium() == this ? m : null;
+	}
+
+	private int nrofPeers(Member m) {
+		if (m.group.gateway == null) {
+			return nrofMembers - 1;
+		}
+		return nrofMembers - m.group.members.size();
+	}
+
+	/**
+	 * Returns a peer of a member. The search continues from the group of
+	 * the previously asked peer if the members haven't changed since, so
+	 * going through the peers in order takes constant time per peer.
+	 */
+	private Member peer(Member m, int index) {
+		int gi = 0;
+		int start = 0;
+		if (m.cursorVersion == version && index >= m.cursorStart) {
+			gi = m.cursorGroup;
+			start = m.cursorStart;
+		}
+
+		for (int n = groupList.size(); gi < n; gi++) {
+			Group g = groupList.get(gi);
+			int count = g.members.size();
+			if (g == m.group) {
+				count = g.gateway != null ? 0 : count - 1;
+			}
+			if (index < start + count) {
+				m.cursorVersion = version;
+				m.cursorGroup = gi;
+				m.cursorStart = start;
+				int i = index - start;
+				if (g == m.group && i >= m.index) {
+					i++; // skip the member itself
+				}
+				return g.members.get(i);
+			}
+			start += count;
+		}
+		throw new IndexOutOfBoundsException("No peer " + index + " for " +
+				m.ni);
+	}
+
+	/**
+	 * Returns the connection of a pair from the cache of the member or
+	 * creates (and caches for both members) a new one if the cached one is
+	 * of some other pair
+	 */
+	private MediumConnection connection(Member m, Member peer) {
+		MediumConnection con = m.cached(peer.group.index, peer.index);
+		if (con == null || !con.connects(m, peer)) {
+			con = new MediumConnection(this, m, peer);
+			m.cache(peer.group.index, peer.index, con);
+			peer.cache(m.group.index, m.index, con);
+		}
+		return con;
+	}
+
+	private List<Member> getPeers(Member m) {
+		int count = nrofPeers(m);
+		List<Member> peers = new ArrayList<Member>(count);
+		for (Group g : groupList) {
+			if (g == m.group && g.gateway != null) {
+				continue;
+			}
+			for (Member peer : g.members) {
+				if (peer != m) {
+					peers.add(peer);
+				}
+			}
+		}
+		return peers;
+	}
+
+	/**
+	 * Returns the state (the connection that does the transfers) of a pair
+	 * @param m1 A member of the pair
+	 * @param m2 The other member
+	 * @param create If true, the state is created if the pair doesn't have
+	 * one yet
+	 * @return The state or null if the pair doesn't have one (and create
+	 * was false)
+	 */
+	CBRConnection getState(Member m1, Member m2, boolean create) {
+		/* after a member has left, only it has the state of the pair */
+		Member m = m1.joined ? m2 : m1;
+		CBRConnection state = m.states.get(m == m1 ? m2 : m1);
+		if (state == null && create && m1.joined && m2.joined) {
+			state = new CBRConnection(m1.ni.getHost(), m1.ni, m2.ni.getHost(),
+					m2.ni, speed(m1, m2));
+			m1.states.put(m2, state);
+			m2.states.put(m1, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the speed of a pair's connection: the smallest transmit speed
+	 * of the members and their gateways
+	 */
+	int speed(Member m1, Member m2) {
+		int speed = Math.min(m1.ni.getTransmitSpeed(),
+				m2.ni.getTransmitSpeed());
+		if (m1.group.gateway != null) {
+			speed = Math.min(speed, m1.group.gateway.getTransmitSpeed());
+		}
+		if (m2.group.gateway != null) {
+			speed = Math.min(speed, m2.group.gateway.getTransmitSpeed());
+		}
+		return speed;
+	}
+
+	/**
+	 * Members that joined through the same gateway
+	 */
+	private static class Group {
+		private NetworkInterface gateway;
+		/** index in the medium's group list */
+		private final int index;
+		private List<Member> members;
+
+		private Group(NetworkInterface gateway, int index) {
+			this.gateway = gateway;
+			this.index = index;
+			this.members = new ArrayList<Member>();
+		}
+	}
+
+	/**
+	 * Membership of an interface. A new membership is created every time
+	 * an interface joins, so connections of different memberships are
+	 * different connections.
+	 */
+	class Member {
+		final NetworkInterface ni;
+		private final Group group;
+		/** order of joining; the later member initiates the connections */
+		final long seqNo;
+		/** index in the group's member list */
+		private int index;
+		boolean joined;
+		/** number of pairs of this member that have a transfer going on */
+		int nrofTransfers;
+		/** states of the pairs that have transferred something */
+		private Map<Member, CBRConnection> states;
+		private List<Connection> connections;
+		/** cached connections to the peers by the index of the peer's group
+		 * and the index of the peer in the group */
+		private MediumConnection[][] cons;
+		/** medium version, group index and index of the group's first peer
+		 * of the previously asked peer */
+		private int cursorVersion;
+		private int cursorGroup;
+		private int cursorStart;
+
+		private Member(NetworkInterface ni, Group group, long seqNo) {
+			this.ni = ni;
+			this.group = group;
+			this.seqNo = seqNo;
+			this.joined = true;
+			this.states = new HashMap<Member, CBRConnection>(4);
+			this.connections = new ConnectionList(this);
+			this.cons = new MediumConnection[0][];
+			this.cursorVersion = -1;
+		}
+
+		/**
+		 * Returns the cached connection of a slot or null if there's none
+		 */
+		private MediumConnection cached(int group, int index) {
+			if (cons == null || group >= cons.length || cons[group] == null ||
+					index >= cons[group].length) {
+				return null;
+			}
+			return cons[group][index];
+		}
+
+		/**
+		 * Caches a connection to a slot (unless the member has left)
+		 */
+		private void cache(int group, int index, MediumConnection con) {
+			if (cons == null) {
+				return;
+			}
+			if (group >= cons.length) {
+				cons = Arrays.copyOf(cons, groupList.size());
+			}
+			MediumConnection[] row = cons[group];
+			if (row == null || index >= row.length) {
+				row = row == null ? new MediumConnection[Math.max(4, index + 1)]
+					: Arrays.copyOf(row, Math.max(row.length * 2, index + 1));
+				cons[group] = row;
+			}
+			row[index] = con;
+		}
+
+		/**
+		 * Returns the medium of the membership
+		 */
+		SharedMedium medium() {
+			return SharedMedium.this;
+		}
+	}
+
+	/**
+	 * View of a member's own connections followed by its connections to
+	 * the peers
+	 */
+	private class ConnectionList extends AbstractList<Connection> {
+		private Member m;
+
+		private ConnectionList(Member m) {
+			this.m = m;
+		}
+
+		@Override
+		public Connection get(int index) {
+			List<Connection> own = m.ni.connections;
+			if (index < own.size()) {
+				return own.get(index);
+			}
+			return connection(m, peer(m, index - own.size()));
+		}
+
+		@Override
+		public int size() {
+			return m.ni.connections.size() + (m.joined ? nrofPeers(m) : 0);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Random;
+
+/**
+ * Random number generator using the SplitMix64 algorithm. Unlike
+ * {@link Random}, the generator is not synchronized (it must be used by a
+ * single thread), its state is one long and new statistically independent
+ * generators can be split from it (see {@link #split()}). Being a subclass
+ * of Random, it can be used everywhere a Random is used.
+ */
+public class SplitMixRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	/** increment of the state (the golden ratio) */
+	private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+	/* no initializer: Random's constructor sets the state with setSeed() */
+	private long state;
+
+	/**
+	 * Creates a new generator
+	 * @param seed The initial seed
+	 */
+	public SplitMixRandom(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * Mixes the bits of a value so that values that differ in any bits
+	 * result in unrelated values
+	 * @param z The value to mix
+	 * @return The mixed value
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		this.state = seed;
+		super.setSeed(seed); // clears the cached gaussian
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int)(nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public long nextLong() {
+		state += GAMMA;
+		return mix(state);
+	}
+
+	@Override
+	public int nextInt() {
+		return (int)(nextLong() >>> 32);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	/**
+	 * Creates a new generator whose values are independent of the values of
+	 * this generator. Advances the state of this generator.
+	 * @return The new generator
+	 */
+	public SplitMixRandom split() {
+		return new SplitMixRandom(mix(nextLong()));
+	}
+}
@@ -12,7 +12,7 @@ import routing.MessageRouter;
  */
 public class VBRConnection extends Connection {
 	private int msgsize;
-	private int msgsent;
+	private double msgsent;
 	private int currentspeed = 0;
 	
 	/**
@@ -34,7 +34,8 @@ public class VBRConnection extends Connection {
 	 * passing is controlled by external events, this method is not needed
 	 * (but then e.g. {@link #finalizeTransfer()} and 
 	 * {@link #isMessageTransferred()} will not work either). Only a one message
-	 * at a time can be transferred using one connection.
+	 * at a time can be transferred using one connection. The message is not
+	 * replicated here; the receiving router replicates it if it accepts it.
 	 * @param from The host sending the message
 	 * @param m The message
 	 * @return The value returned by 
@@ -47,11 +48,10 @@ public class VBRConnection extends Connection {
 			"start transfer of " + m + " from " + from;
 		
 		this.msgFromNode = from;
-		Message newMessage = m.replicate();
-		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
+		int retVal = getOtherNode(from).receiveMessage(m, from);
 		
 		if (retVal == MessageRouter.RCV_OK) {
-			this.msgOnFly = newMessage;
+			this.msgOnFly = m;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
 		}
@@ -75,6 +75,23 @@ public class VBRConnection extends Connection {
 		msgsent = msgsent + currentspeed;
 	}
 	
+	/**
+	 * Updates the transmission speed like {@link #update()} but advances the
+	 * ongoing transfer by the amount of data the current speed carries in the
+	 * given time.
+	 * @param timeIncrement Time (seconds) since the previous update
+	 */
+	public void update(double timeIncrement) {
+		currentspeed =  this.fromInterface.getTransmitSpeed();
+		int othspeed =  this.toInterface.getTransmitSpeed();
+		
+		if (othspeed < currentspeed) {
+			currentspeed = othspeed;
+		}
+		
+		msgsent = msgsent + currentspeed * timeIncrement;
+	}
+	
 	/**
 	 * returns the current speed of the connection
 	 */
@@ -89,7 +106,7 @@ public class VBRConnection extends Connection {
      * @return the amount of bytes to be transferred
      */
     public int getRemainingByteCount() {
-    	int bytesLeft = msgsize - msgsent; 
+    	int bytesLeft = (int)Math.ceil(msgsize - msgsent); 
     	return (bytesLeft > 0 ? bytesLeft : 0);
     }
     
@@ -37,11 +37,62 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should the kinematic state of the hosts be kept in a structure-of-arrays
+	 * store -setting id ({@value}). Boolean (true/false) variable. Default is
+	 * {@link #DEF_KINEMATICS_STORE}.
+	 * @see HostKinematics
+	 */
+	public static final String KINEMATICS_STORE_S = "kinematicsStore";
+	/**
+	 * Should only the active hosts be moved and updated -setting id
+	 * ({@value}). Boolean (true/false) variable. If true, the hosts join and
+	 * leave a set of active hosts at the times their activeness changes
+	 * (see {@link ActiveHostSet}) and the network interfaces with an
+	 * activeness model leave the connectivity grid while they are inactive.
+	 * Default is {@link #DEF_ACTIVE_HOST_SET}.
+	 */
+	public static final String ACTIVE_HOST_SET_S = "activeHostSet";
+	/**
+	 * Upper bound for the speed of all hosts (m/s) -setting id ({@value}).
+	 * If set, the network interfaces skip checking their connections until
+	 * a connection may change (see
+	 * {@link NetworkInterface#deferContactCheck(java.util.Collection, double)}).
+	 * A host getting a path with a higher speed is an error. Default is
+	 * no bound (every connection is checked on every update).
+	 */
+	public static final String MAX_HOST_SPEED_S = "maxHostSpeed";
+	/**
+	 * How hosts are updated after external events -setting id ({@value}).
+	 * One of {@link #BATCHING_NONE} (all hosts are updated after every
+	 * event), {@link #BATCHING_ALL} (all events of the same time stamp are
+	 * processed first and then all hosts are updated once) or
+	 * {@link #BATCHING_TOUCHED} (like the previous, but only the hosts the
+	 * events of the time stamp referred to are updated). Default is
+	 * {@link #DEF_EVENT_BATCHING}.
+	 */
+	public static final String EVENT_BATCHING_S = "eventBatching";
+	/** {@link #EVENT_BATCHING_S} value for no batching ({@value}) */
+	public static final String BATCHING_NONE = "none";
+	/** {@link #EVENT_BATCHING_S} value for updating all hosts after a batch
+	 * ({@value}) */
+	public static final String BATCHING_ALL = "all";
+	/** {@link #EVENT_BATCHING_S} value for updating only the hosts touched by
+	 * the events of a batch ({@value}) */
+	public static final String BATCHING_TOUCHED = "touched";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should the kinematics store be used -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_KINEMATICS_STORE = false;
+	/** should the active host set be used -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_ACTIVE_HOST_SET = false;
+	/** default value for event batching ({@value}) */
+	public static final String DEF_EVENT_BATCHING = BATCHING_NONE;
 
 	private int sizeX;
 	private int sizeY;
@@ -61,6 +112,29 @@ public class World {
 	private List<UpdateListener> updateListeners;
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
+	/** kinematic state of the hosts (null if the store is not used) */
+	private HostKinematics kinematics;
+	/** should the active host set be used */
+	private boolean useActiveSet;
+	/** the active hosts (null if the set is not used or not created yet) */
+	private ActiveHostSet activeHosts;
+	/** number of changes of the active host set when the update order was
+	 * last built from it */
+	private int activeSetChanges;
+
+	/** should events of the same time stamp be processed as a batch */
+	private boolean batchEvents;
+	/** hosts the events of the current batch have referred to (null if all
+	 * hosts are updated after events) */
+	private ArrayList<DTNHost> touchedHosts;
+	/** is the host of the address in {@link #touchedHosts} */
+	private boolean[] isTouched;
+	/** addresses of the touched hosts (in the order they were touched) */
+	private int[] touchedAddresses;
+	/** number of node lookups while touched hosts are tracked */
+	private int nrofLookups;
+	/** are external events being processed (and lookups tracked) */
+	private boolean processingEvents;
 
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
@@ -105,6 +179,46 @@ public class World {
 			this.updateOrder = null;
 		}
 
+		if (s.contains(KINEMATICS_STORE_S) && s.getBoolean(KINEMATICS_STORE_S)) {
+			this.kinematics = new HostKinematics(this.hosts);
+		}
+		else {
+			this.kinematics = null;
+		}
+
+		this.useActiveSet = DEF_ACTIVE_HOST_SET;
+		if (s.contains(ACTIVE_HOST_SET_S)) {
+			this.useActiveSet = s.getBoolean(ACTIVE_HOST_SET_S);
+		}
+		this.activeHosts = null;
+		NetworkInterface.setActivenessCaching(this.useActiveSet);
+
+		if (s.contains(MAX_HOST_SPEED_S)) {
+			double maxSpeed = s.getDouble(MAX_HOST_SPEED_S);
+			if (maxSpeed <= 0) {
+				throw new SettingsError("Non-positive value (" + maxSpeed +
+						") for " + SETTINGS_NS + "." + MAX_HOST_SPEED_S);
+			}
+			DTNHost.setMaxSpeed(maxSpeed);
+		}
+
+		String batching = DEF_EVENT_BATCHING;
+		if (s.contains(EVENT_BATCHING_S)) {
+			batching = s.getSetting(EVENT_BATCHING_S);
+		}
+		this.batchEvents = !batching.equals(BATCHING_NONE);
+		this.touchedHosts = null;
+		if (batching.equals(BATCHING_TOUCHED)) {
+			this.touchedHosts = new ArrayList<DTNHost>();
+			this.isTouched = new boolean[this.hosts.size()];
+			this.touchedAddresses = new int[this.hosts.size()];
+		}
+		else if (!batching.equals(BATCHING_NONE) &&
+				!batching.equals(BATCHING_ALL)) {
+			throw new SettingsError("Unknown value '" + batching + "' for " +
+					SETTINGS_NS + "." + EVENT_BATCHING_S);
+		}
+
 		if (s.contains(CELL_SIZE_MULT_S)) {
 			conCellSizeMult = s.getInt(CELL_SIZE_MULT_S);
 		}
@@ -122,7 +236,10 @@ public class World {
 	/**
 	 * Moves hosts in the world for the time given time initialize host 
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
-	 * calling this method.
+	 * calling this method. Hosts whose movement model supports it are
+	 * fast-forwarded over the whole period at once (see
+	 * {@link DTNHost#fastForward(double)}); the rest are moved one update
+	 * interval at a time.
 	 * @param time The total time (seconds) to move
 	 */
 	public void warmupMovementModel(double time) {
@@ -130,14 +247,29 @@ public class World {
 			return;
 		}
 
-		while(SimClock.getTime() < -updateInterval) {
-			moveHosts(updateInterval);
-			simClock.advance(updateInterval);
+		List<DTNHost> steppedHosts = new ArrayList<DTNHost>();
+		for (DTNHost host : this.hosts) {
+			if (host.canFastForward()) {
+				host.fastForward(-SimClock.getTime());
+			}
+			else {
+				steppedHosts.add(host);
+			}
 		}
 
-		double finalStep = -SimClock.getTime();
+		if (steppedHosts.size() > 0) {
+			while(SimClock.getTime() < -updateInterval) {
+				moveHosts(steppedHosts, updateInterval);
+				simClock.advance(updateInterval);
+			}
+
+			double finalStep = -SimClock.getTime();
 
-		moveHosts(finalStep);
+			moveHosts(steppedHosts, finalStep);
+		}
+		if (this.kinematics != null) {
+			this.kinematics.syncAll();
+		}
 		simClock.setTime(0);	
 	}
 
@@ -164,20 +296,46 @@ public class World {
 	/** 
 	 * Update (move, connect, disconnect etc.) all hosts in the world.
 	 * Runs all external events that are due between the time when
-	 * this method is called and after one update interval.
+	 * this method is called and after one update interval. Hosts are
+	 * updated after every event or, if event batching is enabled, after
+	 * all the events of the same time stamp.
 	 */
 	public void update () {
 		double runUntil = SimClock.getTime() + this.updateInterval;
 
+		if (this.useActiveSet && this.activeHosts == null) {
+			/* created after the warm up period so that the activeness is
+			 * checked from the start of the simulation */
+			this.activeHosts = new ActiveHostSet(this.hosts);
+			this.activeSetChanges = this.activeHosts.getNrofChanges();
+		}
+
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
-			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
-			setNextEventQueue();
+			double batchTime = this.nextQueueEventTime;
+			boolean updateAll = false;
+			simClock.setTime(batchTime);
+			this.processingEvents = true;
+			do {
+				int lookupsBefore = this.nrofLookups;
+				ExternalEvent ee = this.nextEventQueue.nextEvent();
+				ee.processEvent(this);
+				if (touchedHosts != null && this.nrofLookups == lookupsBefore) {
+					updateAll = true; // e.g. an update request for all hosts
+				}
+				setNextEventQueue();
+			} while (batchEvents && this.nextQueueEventTime == batchTime);
+			this.processingEvents = false;
+
+			if (touchedHosts == null || updateAll) {
+				updateHosts();
+				clearTouchedHosts();
+			}
+			else {
+				updateTouchedHosts();
+			}
 		}
 
 		moveHosts(this.updateInterval);
@@ -194,9 +352,16 @@ public class World {
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
-	 * are made in random order.
+	 * are made in random order. If the active host set is used, only the
+	 * active hosts are updated.
 	 */
 	private void updateHosts() {
+		List<DTNHost> hosts = this.hosts;
+		if (this.activeHosts != null) {
+			this.activeHosts.update();
+			hosts = this.activeHosts.getActiveHosts();
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -206,7 +371,13 @@ public class World {
 			}
 		}
 		else { // update order randomizing is on
-			assert this.updateOrder.size() == this.hosts.size() : 
+			if (this.activeHosts != null &&
+					this.activeHosts.getNrofChanges() != activeSetChanges) {
+				this.updateOrder.clear();
+				this.updateOrder.addAll(hosts);
+				this.activeSetChanges = this.activeHosts.getNrofChanges();
+			}
+			assert this.updateOrder.size() == hosts.size() : 
 				"Nrof hosts has changed unexpectedly";
 			Random rng = new Random(SimClock.getIntTime());
 			Collections.shuffle(this.updateOrder, rng); 
@@ -220,10 +391,63 @@ public class World {
 	}
 
 	/**
-	 * Moves all hosts in the world for a given amount of time
+	 * Updates the hosts the events of the latest batch referred to. If update
+	 * order randomizing is on, the hosts are updated in random order.
+	 */
+	private void updateTouchedHosts() {
+		if (this.updateOrder != null) {
+			Random rng = new Random(SimClock.getIntTime());
+			Collections.shuffle(this.touchedHosts, rng);
+		}
+		for (int i=0, n = touchedHosts.size(); i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			touchedHosts.get(i).update(simulateConnections);
+		}
+		clearTouchedHosts();
+	}
+
+	/**
+	 * Empties the list of touched hosts (if it is in use)
+	 */
+	private void clearTouchedHosts() {
+		if (this.touchedHosts == null) {
+			return;
+		}
+		for (int i=0, n = touchedHosts.size(); i < n; i++) {
+			isTouched[touchedAddresses[i]] = false;
+		}
+		touchedHosts.clear();
+	}
+
+	/**
+	 * Moves all hosts in the world for a given amount of time. If the
+	 * kinematics store is in use, the hosts are moved using it. If the
+	 * active host set is used, only the active hosts are moved.
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.activeHosts != null) {
+			this.activeHosts.update();
+		}
+		if (this.kinematics != null) {
+			this.kinematics.move(timeIncrement, this.activeHosts != null ?
+					this.activeHosts.getMembers() : null);
+		}
+		else {
+			moveHosts(this.activeHosts != null ?
+					this.activeHosts.getActiveHosts() : this.hosts,
+					timeIncrement);
+		}
+	}
+
+	/**
+	 * Moves the given hosts for a given amount of time
+	 * @param hosts The hosts to move
+	 * @param timeIncrement The time how long the hosts should move
+	 */
+	private void moveHosts(List<DTNHost> hosts, double timeIncrement) {
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);			
@@ -245,6 +469,23 @@ public class World {
 		return this.hosts;
 	}
 
+	/**
+	 * Returns the kinematics store of the hosts. Hosts are in the store in
+	 * the same order as in {@link #getHosts()}.
+	 * @return the kinematics store or null if the store is not in use
+	 */
+	public HostKinematics getKinematics() {
+		return this.kinematics;
+	}
+
+	/**
+	 * Returns the set of the active hosts
+	 * @return the active host set or null if the set is not in use
+	 */
+	public ActiveHostSet getActiveHosts() {
+		return this.activeHosts;
+	}
+
 	/**
 	 * Returns the x-size (width) of the world 
 	 * @return the x-size (width) of the world 
@@ -262,7 +503,9 @@ public class World {
 	}
 
 	/**
-	 * Returns a node from the world by its address
+	 * Returns a node from the world by its address. If only the hosts
+	 * touched by events are updated and an event is being processed, the
+	 * node is marked as touched by the event.
 	 * @param address The address of the node
 	 * @return The requested node or null if it wasn't found
 	 */
@@ -276,6 +519,15 @@ public class World {
 		assert node.getAddress() == address : "Node indexing failed. " + 
 			"Node " + node + " in index " + address;
 
+		if (this.touchedHosts != null && this.processingEvents) {
+			this.nrofLookups++;
+			if (!this.isTouched[address]) {
+				this.isTouched[address] = true;
+				this.touchedAddresses[touchedHosts.size()] = address;
+				this.touchedHosts.add(node);
+			}
+		}
+
 		return node; 
 	}
 
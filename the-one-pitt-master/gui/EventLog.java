@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui;
+
+import java.lang.invoke.VarHandle;
+
+import core.Message;
+
+/**
+ * Bounded ring buffer of event log records. Every record is stored to
+ * primitive arrays (time, type, addresses of the hosts and highlighting)
+ * and a reference to the message of the event, so adding a record doesn't
+ * create any objects. When the buffer is full, the oldest records are
+ * overwritten.
+ * <P>The buffer is lock-free for a single writer (the simulation thread)
+ * and any number of readers (e.g. Swing's EDT): records are identified by
+ * their sequence number. Before the writer overwrites a slot it claims the
+ * slot's new sequence number, and after the record is written it publishes
+ * the record by incrementing the (volatile) record count. A reader checks
+ * after reading a record that no write to its slot had been claimed, i.e.,
+ * that the record wasn't overwritten while it was read.</P>
+ */
+public class EventLog {
+	/** Address value for records without a host */
+	public static final int NO_HOST = -1;
+
+	private final int capacity;
+	private final int mask;
+	private final double[] times;
+	private final int[] types;
+	private final int[] hosts1;
+	private final int[] hosts2;
+	private final boolean[] highlights;
+	private final Message[] messages;
+
+	/** number of records ever added; the next record's sequence number */
+	private volatile long count;
+	/** number of records whose writing has been started; one more than
+	 * count while a record is being written */
+	private volatile long claimed;
+
+	/**
+	 * Creates a new event log
+	 * @param minCapacity Minimum number of records the log retains. The
+	 * actual capacity is one less than a power of two (one slot is left for
+	 * the record that is being written).
+	 */
+	public EventLog(int minCapacity) {
+		int slots = 2;
+		while (slots <= minCapacity) {
+			slots <<= 1;
+		}
+		this.capacity = slots - 1;
+		this.mask = slots - 1;
+		this.times = new double[slots];
+		this.types = new int[slots];
+		this.hosts1 = new int[slots];
+		this.hosts2 = new int[slots];
+		this.highlights = new boolean[slots];
+		this.messages = new Message[slots];
+		this.count = 0;
+		this.claimed = 0;
+	}
+
+	/**
+	 * Adds a record to the log. Must be called only by a single thread.
+	 * @param time Time of the event
+	 * @param type Type of the event
+	 * @param host1 Address of the first host involved in the event or
+	 * {@link #NO_HOST}
+	 * @param host2 Address of the second host involved in the event or
+	 * {@link #NO_HOST}
+	 * @param message The message involved in the event (or null)
+	 * @param highlight If true, the record is highlighted
+	 */
+	public void add(double time, int type, int host1, int host2,
+			Message message, boolean highlight) {
+		long seq = this.count;
+		int i = (int)(seq & mask);
+		this.claimed = seq + 1;
+		VarHandle.storeStoreFence(); // the claim is seen before the writes
+		times[i] = time;
+		types[i] = type;
+		hosts1[i] = host1;
+		hosts2[i] = host2;
+		messages[i] = message;
+		highlights[i] = highlight;
+		this.count = seq + 1; // publishes the record
+	}
+
+	/**
+	 * Returns the number of records ever added to the log. This is also the
+	 * sequence number of the next record.
+	 * @return the number of records added
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the sequence number of the oldest record retained in the log
+	 * @return the sequence number of the oldest retained record
+	 */
+	public long getFirst() {
+		return Math.max(0, this.count - capacity);
+	}
+
+	/**
+	 * Returns the maximum number of records the log retains
+	 * @return the capacity of the log
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Reads a record from the log
+	 * @param seq Sequence number of the record
+	 * @param rec The record where the values are read to
+	 * @return true if the record was read, false if it isn't (or is no more)
+	 * in the log
+	 */
+	public boolean get(long seq, Record rec) {
+		if (seq < 0 || seq >= this.count) {
+			return false;
+		}
+		int i = (int)(seq & mask);
+		rec.time = times[i];
+		rec.type = types[i];
+		rec.host1 = hosts1[i];
+		rec.host2 = hosts2[i];
+		rec.message = messages[i];
+		rec.highlight = highlights[i];
+		rec.seq = seq;
+
+		/* the writer overwrites the slot of a record that has dropped out
+		 * of the log, possibly while it was read; the record was intact if
+		 * the writes claimed after the reads don't reach its slot */
+		VarHandle.loadLoadFence();
+		return this.claimed - seq <= capacity;
+	}
+
+	/**
+	 * A record read from the log. Reusable for reading many records.
+	 */
+	public static class Record {
+		/** sequence number of the record */
+		public long seq;
+		/** time of the event */
+		public double time;
+		/** type of the event */
+		public int type;
+		/** address of the first host or {@link EventLog#NO_HOST} */
+		public int host1;
+		/** address of the second host or {@link EventLog#NO_HOST} */
+		public int host2;
+		/** the message of the event or null */
+		public Message message;
+		/** is the record highlighted */
+		public boolean highlight;
+	}
+}
@@ -1,23 +1,29 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
 package gui;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Font;
-import java.awt.GridLayout;
-import java.awt.Insets;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Vector;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import javax.swing.BorderFactory;
-import javax.swing.BoxLayout;
-import javax.swing.JButton;
-import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
 import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
 
 import core.ConnectionListener;
 import core.DTNHost;
@@ -25,79 +31,104 @@ import core.Message;
 import core.MessageListener;
 import core.Settings;
 import core.SimClock;
+import core.SimScenario;
 
 /**
- * Event log panel where log entries are displayed.
+ * Event log panel where log entries are displayed. The events are stored
+ * to a bounded {@link EventLog} ring buffer by the simulation thread and
+ * shown in a table that formats only the rows that are visible, so the log
+ * can retain a large number of events. The events are filtered (by their
+ * type and the regular expression filter) in Swing's EDT when new events
+ * are added to the view or the filter selections change.
+ * Clicking a host or a message of an entry shows information about it.
  */
-public class EventLogPanel extends JPanel 
-	implements ConnectionListener, MessageListener, ActionListener {
+public class EventLogPanel extends JPanel
+	implements ConnectionListener, MessageListener {
 
 	private static final String PANEL_TITLE = "Event log";
-	/** format of a single log entry */
-	private static final String ENTRY_FORMAT = "% 9.1f: %s "; 
+	/** format of the time of a log entry */
+	private static final String TIME_FORMAT = "% 9.1f";
 	private static final int FONT_SIZE = 12;
 	private static final String FONT_TYPE = "monospaced";
-	private static final Color LOG_BUTTON_BG = Color.WHITE;
 	private static final String HOST_DELIM = "<->";
 	private static final Color HIGHLIGHT_BG_COLOR = Color.GREEN;
 
-	// constants used for button property  
-	private static final String HOST_PROP = "host";
-	private static final String MSG_PROP = "message";
-
 	/** How often the log is updated (milliseconds) */
 	public static final int LOG_UP_INTERVAL = 500;
-	
-	/** Regular expression to filter log entries (changed trough Settings) */ 
+
+	// event types (indexes of the names and the controls)
+	private static final int CONN_UP = 0;
+	private static final int CONN_DOWN = 1;
+	private static final int MSG_CREATED = 2;
+	private static final int MSG_RELAY_STARTED = 3;
+	private static final int MSG_RELAYED = 4;
+	private static final int MSG_DELIVERED = 5;
+	private static final int MSG_DELIVERED_AGAIN = 6;
+	private static final int MSG_REMOVED = 7;
+	private static final int MSG_DROPPED = 8;
+	private static final int MSG_ABORTED = 9;
+	private static final String[] EVENT_NAMES = {"Connection UP",
+		"Connection DOWN", "Message created", "Message relay started",
+		"Message relayed", "Message delivered", "Message delivered again",
+		"Message removed", "Message dropped", "Message relay aborted"};
+
+	// table columns
+	private static final int TIME_COL = 0;
+	private static final int EVENT_COL = 1;
+	private static final int HOST1_COL = 2;
+	private static final int HOST2_COL = 3;
+	private static final int MSG_COL = 4;
+	private static final String[] COLUMN_NAMES = {"time", "event", "host",
+		"host", "message"};
+	private static final int[] COLUMN_WIDTHS = {80, 170, 50, 50, 70};
+
+	/** Regular expression to filter log entries (changed trough Settings) */
 	private String regExp = null;
-	/** how many events to show in log (changed trough Settings) */
-	private int maxNrofEvents = 30;
-	
-	private Font font;	// font used in log entries
+	private Pattern regExpPattern = null;
+	/** how many events to keep in the log (changed trough Settings) */
+	private int maxNrofEvents = 10000;
+
 	private DTNSimGUI gui;
-	private Vector<JPanel> eventPanes;
-	private GridLayout layout;
-	
+	private EventLog log;
+	private LogTableModel model;
+	private JTable table;
+	/** hosts by their address (for the hosts of the log records) */
+	private DTNHost[] hosts;
+
 	private EventLogControlPanel controls;
-	private EventLogControl conUpCheck;
-	private EventLogControl conDownCheck;
-	private EventLogControl msgCreateCheck;
-	private EventLogControl msgTransferStartCheck;
-	private EventLogControl msgRelayCheck;
-	private EventLogControl msgRemoveCheck;
-	private EventLogControl msgDeliveredCheck;
-	private EventLogControl msgDropCheck;
-	private EventLogControl msgAbortCheck;
-	
+	/** controls of each event type */
+	private EventLogControl[] checks;
+
 	/**
 	 * Creates a new log panel
-	 * @param gui The where this log belongs to (for callbacks) 
+	 * @param gui The where this log belongs to (for callbacks)
 	 */
 	public EventLogPanel(DTNSimGUI gui) {
 		this.gui = gui;
 		String title = PANEL_TITLE;
 		Settings s = new Settings("GUI.EventLogPanel");
-		
+
 		if (s.contains("nrofEvents")) {
 			this.maxNrofEvents = s.getInt("nrofEvents");
 		}
 		if (s.contains("REfilter")) {
 			this.regExp = s.getSetting("REfilter");
+			this.regExpPattern = Pattern.compile(regExp);
 		}
-		
-		layout = new GridLayout(maxNrofEvents,1);
 
-		this.setLayout(layout);
+		this.setLayout(new BorderLayout());
 		if (this.regExp != null) {
 			title += " - RE-filter: " + regExp;
 		}
 		this.setBorder(BorderFactory.createTitledBorder(
 				getBorder(), title));
-		
-		this.eventPanes = new Vector<JPanel>(maxNrofEvents);
-		this.font = new Font(FONT_TYPE,Font.PLAIN, FONT_SIZE);
+
+		this.log = new EventLog(maxNrofEvents);
 		this.controls = createControls();
-		
+		this.model = new LogTableModel();
+		this.table = createTable();
+		this.add(new JScrollPane(table), BorderLayout.CENTER);
+
 		// set log view to update every LOG_UP_INTERVAL milliseconds
 		// also ensures that the update is done in Swing's EDT
 		ActionListener taskPerformer = new ActionListener() {
@@ -115,20 +146,52 @@ public class EventLogPanel extends JPanel
 	 */
 	private EventLogControlPanel createControls() {
 		EventLogControlPanel c = new EventLogControlPanel();
+		checks = new EventLogControl[EVENT_NAMES.length];
 		c.addHeading("connections");
-		conUpCheck = c.addControl("up");
-		conDownCheck = c.addControl("down");
+		checks[CONN_UP] = c.addControl("up");
+		checks[CONN_DOWN] = c.addControl("down");
 		c.addHeading("messages");
-		msgCreateCheck = c.addControl("created");
-		msgTransferStartCheck = c.addControl("started relay");
-		msgRelayCheck = c.addControl("relayed");
-		msgDeliveredCheck = c.addControl("delivered");
-		msgRemoveCheck = c.addControl("removed");
-		msgDropCheck = c.addControl("dropped");
-		msgAbortCheck = c.addControl("aborted");
+		checks[MSG_CREATED] = c.addControl("created");
+		checks[MSG_RELAY_STARTED] = c.addControl("started relay");
+		checks[MSG_RELAYED] = c.addControl("relayed");
+		checks[MSG_DELIVERED] = c.addControl("delivered");
+		checks[MSG_DELIVERED_AGAIN] = checks[MSG_DELIVERED];
+		checks[MSG_REMOVED] = c.addControl("removed");
+		checks[MSG_DROPPED] = c.addControl("dropped");
+		checks[MSG_ABORTED] = c.addControl("aborted");
 		return c;
 	}
-	
+
+	/**
+	 * Creates the table that shows the log entries
+	 * @return The table
+	 */
+	private JTable createTable() {
+		final JTable t = new JTable(model);
+		Font font = new Font(FONT_TYPE,Font.PLAIN, FONT_SIZE);
+		t.setFont(font);
+		t.setRowHeight(t.getFontMetrics(font).getHeight() + 2);
+		t.setShowGrid(false);
+		t.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+		t.setDefaultRenderer(Object.class, new HighlightRenderer());
+		for (int i=0; i<COLUMN_WIDTHS.length; i++) {
+			t.getColumnModel().getColumn(i).setPreferredWidth(
+					COLUMN_WIDTHS[i]);
+		}
+
+		t.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int row = t.rowAtPoint(e.getPoint());
+				int col = t.columnAtPoint(e.getPoint());
+				if (row >= 0 && col >= 0) {
+					entryClicked(row, col);
+				}
+			}
+		});
+		return t;
+	}
+
 	/**
 	 * Returns the control panel that this log uses
 	 * @return The control panel
@@ -136,187 +199,353 @@ public class EventLogPanel extends JPanel
 	public EventLogControlPanel getControls() {
 		return this.controls;
 	}
-	
+
 	/**
-	 * Adds a new event to the event log panel
-	 * @param description Textual description of the event
-	 * @param host1 Host that caused the event or null if there was not any
-	 * @param host2 Another host that was involved in the event (or null)
-	 * @param message Message that was involved in the event (or null)
-	 * @param highlight If true, the log entry is highlighted
+	 * Updates the log view with the new events (if there are any)
 	 */
-	private void addEvent(String description, DTNHost host1,
-			DTNHost host2, Message message, boolean highlight) {
-		JPanel eventPane = new JPanel();
-		eventPane.setLayout(new BoxLayout(eventPane,BoxLayout.LINE_AXIS));
-		
-		String text = String.format(ENTRY_FORMAT, 
-				SimClock.getTime(),description);
-		JLabel label = new JLabel(text);
-		label.setFont(font);
-		eventPane.add(label);
-		
-		if (host1 != null) {
-			addInfoButton(eventPane,host1,HOST_PROP);
-		}
-		if (host2 != null) {
-			JLabel betweenLabel = new JLabel(HOST_DELIM);
-			betweenLabel.setFont(font);
-			eventPane.add(betweenLabel);
-			addInfoButton(eventPane,host2,HOST_PROP);
+	private void updateLogView() {
+		Rectangle visible = table.getVisibleRect();
+		boolean atBottom = visible.y + visible.height >=
+			table.getHeight() - table.getRowHeight();
+
+		if (model.update() && atBottom && model.getRowCount() > 0) {
+			// keep following the newest entries
+			table.scrollRectToVisible(table.getCellRect(
+					model.getRowCount() - 1, 0, true));
 		}
-		if (message != null) {
-			addInfoButton(eventPane, message, MSG_PROP);
+	}
+
+	/**
+	 * Shows information about the host or the message of a clicked entry
+	 * @param row Row of the entry
+	 * @param col Column that was clicked
+	 */
+	private void entryClicked(int row, int col) {
+		EventLog.Record rec = model.getRecord(row);
+		if (rec == null) {
+			return;
 		}
 
-		if (highlight) {
-			eventPane.setBackground(HIGHLIGHT_BG_COLOR);
+		if (col == HOST1_COL || col == HOST2_COL) {
+			DTNHost host = getHost(col == HOST1_COL ? rec.host1 : rec.host2);
+			if (host != null) {
+				gui.setFocus(host);
+			}
 		}
-		
-		eventPanes.add(eventPane);
-		
-		// if the log is full, remove oldest entries first
-		if (this.eventPanes.size() > maxNrofEvents) {
-			eventPanes.remove(0);
+		else if (col == MSG_COL && rec.message != null) {
+			gui.getInfoPanel().showInfo(rec.message);
 		}
 	}
-	
+
 	/**
-	 * Updates the log view
+	 * Returns a host by its address
+	 * @param address Address of the host or {@link EventLog#NO_HOST}
+	 * @return The host or null if there's no host with the address
 	 */
-	private void updateLogView() {
-		//TODO Optimization: Check if update is really necessary
-		this.removeAll();
-		for (int i=0; i< this.eventPanes.size(); i++) {
-			this.add(eventPanes.get(i));
+	private DTNHost getHost(int address) {
+		if (hosts == null) {
+			List<DTNHost> all = SimScenario.getInstance().getHosts();
+			int max = -1;
+			for (DTNHost h : all) {
+				max = Math.max(max, h.getAddress());
+			}
+			hosts = new DTNHost[max + 1];
+			for (DTNHost h : all) {
+				hosts[h.getAddress()] = h;
+			}
+		}
+		if (address < 0 || address >= hosts.length) {
+			return null;
 		}
-		revalidate();
+		return hosts[address];
 	}
-	
-	
+
 	/**
-	 * Adds a new button to a log entry panel and attaches a client 
-	 * property into it
-	 * @param panel Panel where to add the button
-	 * @param o Client property object to add
-	 * @param clientProp Client property key to use for the object
+	 * Returns the address of a host
+	 * @param host The host (or null)
+	 * @return The address of the host or {@link EventLog#NO_HOST} for null
 	 */
-	private void addInfoButton(JPanel panel, Object o, String clientProp) {
-		JButton hButton;
-		hButton = new JButton(o.toString());
-		hButton.putClientProperty(clientProp, o);
-		hButton.addActionListener(this);
-		hButton.setFont(font);
-		hButton.setMargin(new Insets(0,0,0,0));
-		hButton.setBackground(LOG_BUTTON_BG);
-		panel.add(hButton);
+	private static int getAddress(DTNHost host) {
+		return host != null ? host.getAddress() : EventLog.NO_HOST;
 	}
-	
+
+	/**
+	 * Returns the textual description of an event; the text the regular
+	 * expression filter is matched against
+	 * @param type Type of the event
+	 * @param host1 First host involved in the event (or null)
+	 * @param host2 Second host involved in the event (or null)
+	 * @param message The message involved in the event (or null)
+	 * @return The description
+	 */
+	private static String describe(int type, DTNHost host1, DTNHost host2,
+			Message message) {
+		return EVENT_NAMES[type] + " " +
+			(host1!=null ? host1 : "") +
+			(host2!= null ? (HOST_DELIM + host2) : "") +
+			(message!=null ? " " + message : "");
+	}
+
+	/**
+	 * Returns true if the description of an event matches the regular
+	 * expression filter (or there's no filter)
+	 * @param type Type of the event
+	 * @param host1 First host involved in the event (or null)
+	 * @param host2 Second host involved in the event (or null)
+	 * @param message The message involved in the event (or null)
+	 * @return true if the event passes the filter
+	 */
+	private boolean matchesFilter(int type, DTNHost host1, DTNHost host2,
+			Message message) {
+		return regExpPattern == null || regExpPattern.matcher(
+				describe(type, host1, host2, message)).matches();
+	}
+
 	/**
 	 * Processes a log event
-	 * @param check EventLogControls used to check if this entry type should
-	 * be shown and/or paused upon
-	 * @param name Text description of the event
+	 * @param type Type of the event
 	 * @param host1 First host involved in the event (if any, can be null)
 	 * @param host2 Second host involved in the event (if any, can be null)
-	 * @param message The message involved in the event (if any, can be null) 
+	 * @param message The message involved in the event (if any, can be null)
 	 */
-	private void processEvent(EventLogControl check, final String name,
-			final DTNHost host1, final DTNHost host2, final Message message) {
-		String descString;	// String format description of the event
-		
-		if (!check.showEvent()) {
-			return; // if event's "show" is not checked, won't pause either 
-		}
-		
-		descString = name + " " + 
-			(host1!=null ? host1 : "") + 
-			(host2!= null ? (HOST_DELIM + host2) : "") + 
-			(message!=null ? " " + message : "");
-		
-		if (regExp != null && !descString.matches(regExp)){
-			return;	// description doesn't match defined regular expression
-		}
-		
-		if (check.pauseOnEvent()) {
+	private void processEvent(int type, DTNHost host1, DTNHost host2,
+			Message message) {
+		EventLogControl check = checks[type];
+		boolean pause = check.showEvent() && check.pauseOnEvent() &&
+			matchesFilter(type, host1, host2, message);
+
+		if (pause) {
 			gui.setPaused(true);
 			if (host1 != null) {
 				gui.setFocus(host1);
 			}
 		}
-		
-      	addEvent(name, host1, host2, message, check.pauseOnEvent());	
+
+		log.add(SimClock.getTime(), type, getAddress(host1),
+				getAddress(host2), message, pause);
 	}
-	
+
 	// Implementations of ConnectionListener and MessageListener interfaces
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		processEvent(conUpCheck, "Connection UP", host1, host2, null);
+		processEvent(CONN_UP, host1, host2, null);
 	}
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
-		processEvent(conDownCheck, "Connection DOWN", host1, host2, null);
+		processEvent(CONN_DOWN, host1, host2, null);
 	}
 
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
 		if (!dropped) {
-			processEvent(msgRemoveCheck, "Message removed", where, null, m);
+			processEvent(MSG_REMOVED, where, null, m);
 		}
 		else {
-			processEvent(msgDropCheck, "Message dropped", where, null, m);
+			processEvent(MSG_DROPPED, where, null, m);
 		}
 	}
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery) {
 		if (firstDelivery) {
-			processEvent(msgDeliveredCheck, "Message delivered", from, to, m); 
+			processEvent(MSG_DELIVERED, from, to, m);
 		}
 		else if (to == m.getTo()) {
-			processEvent(msgDeliveredCheck, "Message delivered again", 
-					from, to, m);
+			processEvent(MSG_DELIVERED_AGAIN, from, to, m);
 		}
 		else {
-			processEvent(msgRelayCheck, "Message relayed", from, to, m);
+			processEvent(MSG_RELAYED, from, to, m);
 		}
 	}
 
 	public void newMessage(Message m) {
-		processEvent(msgCreateCheck, "Message created", m.getFrom(), null, m);
+		processEvent(MSG_CREATED, m.getFrom(), null, m);
 	}
-	
+
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		processEvent(msgAbortCheck, "Message relay aborted", from, to, m);
+		processEvent(MSG_ABORTED, from, to, m);
 	}
-	
+
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		processEvent(msgTransferStartCheck,"Message relay started", from,
-				to,m);
-		
+		processEvent(MSG_RELAY_STARTED, from, to, m);
 	}
-	
+
 	// end of message interface implementations
-	
-	
+
+	public String toString() {
+		return this.getClass().getSimpleName() + " with " +
+			this.model.getRowCount() + " events";
+	}
+
 	/**
-	 * Action listener for log entry (host & message) buttons
+	 * Table model of the log view. The model keeps the sequence numbers of
+	 * the log records that pass the filters; the records are read from the
+	 * log (and formatted) only when their rows are rendered.
 	 */
-	public void actionPerformed(ActionEvent e) {
-		JButton source = (JButton)e.getSource();
-		
-		if (source.getClientProperty(HOST_PROP) != null) {
-			// button was a host button -> focus it on GUI
-			gui.setFocus((DTNHost)source.getClientProperty(HOST_PROP));
+	private class LogTableModel extends AbstractTableModel {
+		private static final long serialVersionUID = 1L;
+		/** sequence numbers of the shown records are rows[start...end-1] */
+		private long[] rows = new long[64];
+		private int start = 0;
+		private int end = 0;
+		/** sequence number of the next record to filter */
+		private long next = 0;
+		/** event types that were shown when the rows were filtered */
+		private boolean[] shown = new boolean[EVENT_NAMES.length];
+		private EventLog.Record rec = new EventLog.Record();
+
+		/**
+		 * Updates the rows with the records added to the log since the last
+		 * update and removes the rows whose records are no more in the log.
+		 * If the event type selections have changed, all the records are
+		 * filtered again.
+		 * @return true if the rows changed
+		 */
+		public boolean update() {
+			if (showSelectionsChanged()) {
+				start = end = 0;
+				next = 0;
+				filterNew();
+				fireTableDataChanged();
+				return true;
+			}
+
+			long first = log.getFirst();
+			int removed = 0;
+			while (start < end && rows[start] < first) {
+				start++;
+				removed++;
+			}
+			if (removed > 0) {
+				fireTableRowsDeleted(0, removed - 1);
+			}
+
+			int oldSize = end - start;
+			filterNew();
+			if (end - start > oldSize) {
+				fireTableRowsInserted(oldSize, end - start - 1);
+			}
+			return removed > 0 || end - start > oldSize;
+		}
+
+		/**
+		 * Checks if the event types to show have changed since the last
+		 * update and stores the current selections
+		 * @return true if the selections had changed
+		 */
+		private boolean showSelectionsChanged() {
+			boolean changed = false;
+			for (int i=0; i<shown.length; i++) {
+				boolean show = checks[i].showEvent();
+				if (show != shown[i]) {
+					shown[i] = show;
+					changed = true;
+				}
+			}
+			return changed;
+		}
+
+		/**
+		 * Adds the records that pass the filters from the records not yet
+		 * filtered
+		 */
+		private void filterNew() {
+			next = Math.max(next, log.getFirst());
+			for (long count = log.getCount(); next < count; next++) {
+				if (!log.get(next, rec) || !shown[rec.type]) {
+					continue;
+				}
+				if (regExpPattern != null && !matchesFilter(rec.type,
+						getHost(rec.host1), getHost(rec.host2), rec.message)) {
+					continue;
+				}
+				addRow(next);
+			}
+		}
+
+		private void addRow(long seq) {
+			if (end == rows.length) {
+				if (start > 0) {
+					System.arraycopy(rows, start, rows, 0, end - start);
+					end -= start;
+					start = 0;
+				}
+				else {
+					rows = Arrays.copyOf(rows, rows.length * 2);
+				}
+			}
+			rows[end++] = seq;
+		}
+
+		/**
+		 * Returns the log record of a row
+		 * @param row The row
+		 * @return The record or null if it is no more in the log
+		 */
+		public EventLog.Record getRecord(int row) {
+			if (row < 0 || row >= end - start) {
+				return null;
+			}
+			return log.get(rows[start + row], rec) ? rec : null;
+		}
+
+		public int getRowCount() {
+			return end - start;
+		}
+
+		public int getColumnCount() {
+			return COLUMN_NAMES.length;
 		}
-		else if (source.getClientProperty(MSG_PROP) != null) {
-			// was a message button -> show information about the message
-			Message m = (Message)source.getClientProperty(MSG_PROP);
-			gui.getInfoPanel().showInfo(m);
+
+		@Override
+		public String getColumnName(int column) {
+			return COLUMN_NAMES[column];
+		}
+
+		public Object getValueAt(int row, int column) {
+			EventLog.Record r = getRecord(row);
+			if (r == null) {
+				return "";
+			}
+			switch (column) {
+			case TIME_COL:
+				return String.format(TIME_FORMAT, r.time);
+			case EVENT_COL:
+				return EVENT_NAMES[r.type];
+			case HOST1_COL:
+				return hostName(r.host1);
+			case HOST2_COL:
+				return hostName(r.host2);
+			case MSG_COL:
+				return r.message != null ? r.message.toString() : "";
+			default:
+				return "";
+			}
+		}
+
+		private String hostName(int address) {
+			DTNHost host = getHost(address);
+			return host != null ? host.toString() : "";
 		}
 	}
-	
-	public String toString() {
-		return this.getClass().getSimpleName() + " with " + 
-			this.eventPanes.size() + " events";
+
+	/**
+	 * Cell renderer that highlights the entries of events that caused
+	 * a pause
+	 */
+	private class HighlightRenderer extends DefaultTableCellRenderer {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Component getTableCellRendererComponent(JTable table,
+				Object value, boolean isSelected, boolean hasFocus, int row,
+				int column) {
+			super.getTableCellRendererComponent(table, value, isSelected,
+					hasFocus, row, column);
+			if (!isSelected) {
+				EventLog.Record r = model.getRecord(row);
+				setBackground(r != null && r.highlight ?
+						HIGHLIGHT_BG_COLOR : table.getBackground());
+			}
+			return this;
+		}
 	}
-	
 }
@@ -56,7 +56,7 @@ public class MainWindow extends JFrame {
         		JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
 
         logControlSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
-        		new JScrollPane(elp.getControls()),new JScrollPane(elp));
+        		new JScrollPane(elp.getControls()), elp);
         logControlSplit.setResizeWeight(0.1);
         logControlSplit.setOneTouchExpandable(true);
         
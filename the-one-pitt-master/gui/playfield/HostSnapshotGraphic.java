@@ -0,0 +1,268 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui.playfield;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Visualization of all the hosts based on a snapshot of their state. The
+ * snapshot is taken when the graphic is created (while the simulation isn't
+ * running), so it can be drawn later in any thread.
+ * <P>Only the hosts inside the clip area of the graphics context are drawn.
+ * If there are too many hosts in the area, or the zoom level is too small
+ * for the host graphics to be distinguishable, the hosts are drawn as a
+ * density map instead.</P>
+ */
+public class HostSnapshotGraphic extends PlayFieldGraphic {
+	/** maximum number of visible hosts drawn one by one */
+	public static final int MAX_DETAILED_HOSTS = 1000;
+	/** smallest scale at which hosts are drawn one by one */
+	public static final double MIN_DETAILED_SCALE = 0.1;
+	/** size of the density map cells (pixels) */
+	public static final int DENSITY_CELL_SIZE = 8;
+	/** margin for the names and message bars outside a host (pixels) */
+	private static final int MARGIN = 50;
+
+	private int nrofHosts;
+	private double[] x;
+	private double[] y;
+	private boolean[] active;
+	private int[] nrofMessages;
+	private String[] names;
+	/** transmit ranges of host i's interfaces are
+	 * ranges[rangeStart[i]...rangeStart[i+1]-1] */
+	private double[] ranges;
+	private int[] rangeStart;
+	private double maxRange;
+	/** connections as pairs of host indexes */
+	private int[] conFrom;
+	private int[] conTo;
+	private int nrofConnections;
+
+	/**
+	 * Takes a snapshot of the hosts' state
+	 * @param hosts The hosts
+	 */
+	public HostSnapshotGraphic(List<DTNHost> hosts) {
+		int n = hosts.size();
+		this.nrofHosts = n;
+		this.x = new double[n];
+		this.y = new double[n];
+		this.active = new boolean[n];
+		this.nrofMessages = new int[n];
+		this.names = new String[n];
+		this.rangeStart = new int[n + 1];
+		this.maxRange = 0;
+
+		int maxAddress = 0;
+		int nrofRanges = 0;
+		for (DTNHost h : hosts) {
+			maxAddress = Math.max(maxAddress, h.getAddress());
+			nrofRanges += h.getInterfaces().size();
+		}
+		int[] indexOf = new int[maxAddress + 1];
+		this.ranges = new double[nrofRanges];
+		this.conFrom = new int[n];
+		this.conTo = new int[n];
+
+		for (int i=0, r=0; i<n; i++) {
+			DTNHost h = hosts.get(i);
+			Coord loc = h.getLocation();
+			x[i] = loc.getX();
+			y[i] = loc.getY();
+			active[i] = h.isActive();
+			nrofMessages[i] = h.getNrofMessages();
+			names[i] = h.toString();
+			indexOf[h.getAddress()] = i;
+
+			rangeStart[i] = r;
+			for (NetworkInterface ni : h.getInterfaces()) {
+				ranges[r++] = ni.getTransmitRange();
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+			rangeStart[i + 1] = r;
+		}
+
+		for (int i=0; i<n; i++) {
+			DTNHost h = hosts.get(i);
+			for (Connection c : h.getConnections()) {
+				DTNHost other = c.getOtherNode(h);
+				if (other.getAddress() < h.getAddress()) {
+					continue; // added from the other end
+				}
+				addConnection(i, indexOf[other.getAddress()]);
+			}
+		}
+	}
+
+	private void addConnection(int from, int to) {
+		if (nrofConnections == conFrom.length) {
+			conFrom = Arrays.copyOf(conFrom, nrofConnections * 2 + 1);
+			conTo = Arrays.copyOf(conTo, nrofConnections * 2 + 1);
+		}
+		conFrom[nrofConnections] = from;
+		conTo[nrofConnections] = to;
+		nrofConnections++;
+	}
+
+	/**
+	 * Returns the number of hosts in the snapshot
+	 * @return the number of hosts
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * Returns the indexes of the hosts that are inside the given area (in
+	 * graphics coordinates), with the given margin (in world units)
+	 * @param area The area
+	 * @param margin The margin
+	 * @param s The scale of the graphics coordinates
+	 * @param result Array for the result (at least the size of the snapshot)
+	 * @return Number of the hosts in the area
+	 */
+	public int getHostsIn(Rectangle area, double margin, double s,
+			int[] result) {
+		double minX = area.getMinX() / s - margin;
+		double maxX = area.getMaxX() / s + margin;
+		double minY = area.getMinY() / s - margin;
+		double maxY = area.getMaxY() / s + margin;
+		int count = 0;
+
+		for (int i=0; i<nrofHosts; i++) {
+			if (x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY) {
+				result[count++] = i;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void draw(Graphics2D g2) {
+		draw(g2, scale);
+	}
+
+	/**
+	 * Draws the hosts with the given scale
+	 * @param g2 The graphics context to draw to
+	 * @param s The scaling factor
+	 */
+	public void draw(Graphics2D g2, double s) {
+		Rectangle clip = g2.getClipBounds();
+		int[] visible = new int[nrofHosts];
+		int nrofVisible;
+
+		if (clip == null) {
+			for (int i=0; i<nrofHosts; i++) {
+				visible[i] = i;
+			}
+			nrofVisible = nrofHosts;
+		}
+		else {
+			double margin = MARGIN / s;
+			if (NodeGraphic.isDrawCoverage()) {
+				margin += maxRange;
+			}
+			nrofVisible = getHostsIn(clip, margin, s, visible);
+		}
+
+		if (nrofVisible > MAX_DETAILED_HOSTS || s < MIN_DETAILED_SCALE) {
+			drawDensity(g2, s, visible, nrofVisible);
+			return;
+		}
+
+		if (NodeGraphic.isDrawCoverage()) {
+			for (int j=0; j<nrofVisible; j++) {
+				int i = visible[j];
+				if (!active[i]) {
+					continue;
+				}
+				for (int r=rangeStart[i]; r<rangeStart[i+1]; r++) {
+					NodeGraphic.drawRange(g2, s, x[i], y[i], ranges[r]);
+				}
+			}
+		}
+
+		if (NodeGraphic.isDrawConnections()) {
+			for (int c=0; c<nrofConnections; c++) {
+				int a = conFrom[c];
+				int b = conTo[c];
+				/* a link can cross the clip area with both ends outside it */
+				if (clip == null || clip.intersectsLine(scale(x[a], s),
+						scale(y[a], s), scale(x[b], s), scale(y[b], s))) {
+					NodeGraphic.drawConnection(g2, s, x[a], y[a], x[b], y[b]);
+				}
+			}
+		}
+
+		for (int j=0; j<nrofVisible; j++) {
+			int i = visible[j];
+			NodeGraphic.drawMarker(g2, s, x[i], y[i]);
+			if (NodeGraphic.isDrawNodeName()) {
+				NodeGraphic.drawName(g2, s, names[i], x[i], y[i]);
+			}
+			NodeGraphic.drawMessages(g2, s, x[i], y[i], nrofMessages[i]);
+		}
+	}
+
+	/**
+	 * Draws the hosts as a density map: the darker the color of a cell,
+	 * the more hosts there are in it
+	 * @param g2 The graphic context to draw to
+	 * @param s The scaling factor
+	 * @param visible Indexes of the hosts to draw
+	 * @param nrofVisible Number of the hosts to draw
+	 */
+	private void drawDensity(Graphics2D g2, double s, int[] visible,
+			int nrofVisible) {
+		if (nrofVisible == 0) {
+			return;
+		}
+
+		int minCol = Integer.MAX_VALUE, minRow = Integer.MAX_VALUE;
+		int maxCol = Integer.MIN_VALUE, maxRow = Integer.MIN_VALUE;
+		for (int j=0; j<nrofVisible; j++) {
+			int i = visible[j];
+			int col = scale(x[i], s) / DENSITY_CELL_SIZE;
+			int row = scale(y[i], s) / DENSITY_CELL_SIZE;
+			minCol = Math.min(minCol, col);
+			maxCol = Math.max(maxCol, col);
+			minRow = Math.min(minRow, row);
+			maxRow = Math.max(maxRow, row);
+		}
+
+		int cols = maxCol - minCol + 1;
+		int[] counts = new int[cols * (maxRow - minRow + 1)];
+		int max = 0;
+		for (int j=0; j<nrofVisible; j++) {
+			int i = visible[j];
+			int cell = (scale(y[i], s) / DENSITY_CELL_SIZE - minRow) * cols +
+				scale(x[i], s) / DENSITY_CELL_SIZE - minCol;
+			max = Math.max(max, ++counts[cell]);
+		}
+
+		for (int cell=0; cell<counts.length; cell++) {
+			if (counts[cell] == 0) {
+				continue;
+			}
+			/* alpha from 1/4 (one host) to opaque (the densest cell) */
+			int alpha = 64 + (191 * counts[cell]) / max;
+			g2.setColor(new Color(0, 0, 255, alpha));
+			g2.fillRect((minCol + cell % cols) * DENSITY_CELL_SIZE,
+					(minRow + cell / cols) * DENSITY_CELL_SIZE,
+					DENSITY_CELL_SIZE, DENSITY_CELL_SIZE);
+		}
+	}
+}
@@ -1,53 +1,260 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
 package gui.playfield;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 
 /**
- * PlayfieldGraphic for SimMap visualization
- *
+ * PlayfieldGraphic for SimMap visualization. The map is drawn to tiles of
+ * off-screen images when a tile is first needed at a zoom level, and only
+ * the tiles that intersect the clip area of the graphics context are
+ * drawn. The most recently used tiles (of any zoom level) are cached.
  */
 public class MapGraphic extends PlayFieldGraphic {
+	/** width and height of a tile (pixels) */
+	public static final int TILE_SIZE = 256;
+	/** maximum number of cached tiles */
+	public static final int MAX_CACHED_TILES = 256;
+	/** size of the cells the map segments are indexed with (map units) */
+	private static final double CELL_SIZE = 200;
+
 	private SimMap simMap;
 	private final Color PATH_COLOR = Color.LIGHT_GRAY;
 	private final Color BG_COLOR = Color.WHITE;
-		
+
+	/** end points of the map segments */
+	private double[] x1, y1, x2, y2;
+	/** segments in each index cell (cells in row major order) */
+	private int[][] cells;
+	private int cols, rows;
+	private double minX, minY;
+	/** stamp of the last tile each segment was drawn to */
+	private int[] drawnStamp;
+	private int stamp;
+
+	private Map<TileKey, BufferedImage> tiles;
+
 	public MapGraphic(SimMap simMap) {
 		this.simMap = simMap;
+		this.tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f,
+				true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<TileKey, BufferedImage> eldest) {
+				return size() > MAX_CACHED_TILES;
+			}
+		};
+		if (simMap != null) {
+			indexSegments();
+		}
+	}
+
+	/**
+	 * Collects the map segments (each bidirectional edge once) to arrays
+	 * and indexes them with a grid of cells
+	 */
+	private void indexSegments() {
+		int n = 0;
+		for (MapNode node : simMap.getNodes()) {
+			n += node.getNeighbors().size();
+		}
+		x1 = new double[n];
+		y1 = new double[n];
+		x2 = new double[n];
+		y2 = new double[n];
+
+		int count = 0;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = maxX;
+		minX = Double.POSITIVE_INFINITY;
+		minY = minX;
+		for (MapNode node : simMap.getNodes()) {
+			Coord c = node.getLocation();
+			for (MapNode n2 : node.getNeighbors()) {
+				Coord c2 = n2.getLocation();
+				if (n2.getNeighbors().contains(node) && c2.compareTo(c) < 0) {
+					continue; // drawn from the other end
+				}
+				x1[count] = c.getX();
+				y1[count] = c.getY();
+				x2[count] = c2.getX();
+				y2[count] = c2.getY();
+				minX = Math.min(minX, Math.min(c.getX(), c2.getX()));
+				minY = Math.min(minY, Math.min(c.getY(), c2.getY()));
+				maxX = Math.max(maxX, Math.max(c.getX(), c2.getX()));
+				maxY = Math.max(maxY, Math.max(c.getY(), c2.getY()));
+				count++;
+			}
+		}
+		drawnStamp = new int[count];
+
+		if (count == 0) {
+			cols = rows = 0;
+			cells = new int[0][];
+			return;
+		}
+
+		cols = (int)((maxX - minX) / CELL_SIZE) + 1;
+		rows = (int)((maxY - minY) / CELL_SIZE) + 1;
+		int[] sizes = new int[cols * rows];
+		for (int pass = 0; pass < 2; pass++) {
+			if (pass == 1) {
+				cells = new int[sizes.length][];
+				for (int i=0; i<sizes.length; i++) {
+					cells[i] = new int[sizes[i]];
+				}
+				Arrays.fill(sizes, 0);
+			}
+			for (int s=0; s<count; s++) {
+				int c1 = col(Math.min(x1[s], x2[s]));
+				int c2 = col(Math.max(x1[s], x2[s]));
+				int r1 = row(Math.min(y1[s], y2[s]));
+				int r2 = row(Math.max(y1[s], y2[s]));
+				for (int r=r1; r<=r2; r++) {
+					for (int c=c1; c<=c2; c++) {
+						int cell = r * cols + c;
+						if (pass == 1) {
+							cells[cell][sizes[cell]] = s;
+						}
+						sizes[cell]++;
+					}
+				}
+			}
+		}
+	}
+
+	private int col(double x) {
+		return Math.max(0, Math.min(cols - 1, (int)((x - minX) / CELL_SIZE)));
+	}
+
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int)((y - minY) / CELL_SIZE)));
+	}
 
-	}	
-	
-	// TODO: draw only once and store to buffer
 	@Override
 	public void draw(Graphics2D g2) {
-		Coord c,c2;
-		
-		if (simMap == null) {
+		draw(g2, scale);
+	}
+
+	/**
+	 * Draws the map with the given scale
+	 * @param g2 The graphics context to draw to
+	 * @param zoom The scaling factor
+	 */
+	public synchronized void draw(Graphics2D g2, double zoom) {
+		if (simMap == null || cells.length == 0) {
+			return;
+		}
+
+		/* area covered by the map (pixels) */
+		int mapX1 = scale(minX, zoom) - 1;
+		int mapY1 = scale(minY, zoom) - 1;
+		int mapX2 = scale(minX + cols * CELL_SIZE, zoom) + 1;
+		int mapY2 = scale(minY + rows * CELL_SIZE, zoom) + 1;
+		Rectangle area = new Rectangle(mapX1, mapY1, mapX2 - mapX1,
+				mapY2 - mapY1);
+		Rectangle clip = g2.getClipBounds();
+		if (clip != null) {
+			area = area.intersection(clip);
+		}
+		if (area.isEmpty()) {
 			return;
 		}
-		
+
+		int tx1 = Math.floorDiv(area.x, TILE_SIZE);
+		int ty1 = Math.floorDiv(area.y, TILE_SIZE);
+		int tx2 = Math.floorDiv(area.x + area.width - 1, TILE_SIZE);
+		int ty2 = Math.floorDiv(area.y + area.height - 1, TILE_SIZE);
+
+		for (int ty = ty1; ty <= ty2; ty++) {
+			for (int tx = tx1; tx <= tx2; tx++) {
+				TileKey key = new TileKey(zoom, tx, ty);
+				BufferedImage tile = tiles.get(key);
+				if (tile == null) {
+					tile = drawTile(tx, ty, zoom);
+					tiles.put(key, tile);
+				}
+				g2.drawImage(tile, tx * TILE_SIZE, ty * TILE_SIZE, null);
+			}
+		}
+	}
+
+	/**
+	 * Draws the map segments crossing a tile to a new image
+	 * @param tx Column of the tile
+	 * @param ty Row of the tile
+	 * @param zoom The scaling factor
+	 * @return The image of the tile
+	 */
+	private BufferedImage drawTile(int tx, int ty, double zoom) {
+		BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = img.createGraphics();
+		g2.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
 		g2.setColor(PATH_COLOR);
 		g2.setBackground(BG_COLOR);
-		
-		// draws all edges between map nodes (bidirectional edges twice)
-		for (MapNode n : simMap.getNodes()) {
-			c = n.getLocation();
-			
-			// draw a line to adjacent nodes
-			for (MapNode n2 : n.getNeighbors()) {
-				c2 = n2.getLocation();
-				g2.drawLine(scale(c2.getX()), scale(c2.getY()),
-						scale(c.getX()), scale(c.getY()));
+
+		/* map area of the tile, with a pixel of margin */
+		double wx1 = (tx * TILE_SIZE - 1) / zoom;
+		double wy1 = (ty * TILE_SIZE - 1) / zoom;
+		double wx2 = ((tx + 1) * TILE_SIZE + 1) / zoom;
+		double wy2 = ((ty + 1) * TILE_SIZE + 1) / zoom;
+		stamp++;
+
+		for (int r = row(wy1), r2 = row(wy2); r <= r2; r++) {
+			for (int c = col(wx1), c2 = col(wx2); c <= c2; c++) {
+				for (int s : cells[r * cols + c]) {
+					if (drawnStamp[s] == stamp) {
+						continue; // in many cells
+					}
+					drawnStamp[s] = stamp;
+					g2.drawLine(scale(x2[s], zoom), scale(y2[s], zoom),
+							scale(x1[s], zoom), scale(y1[s], zoom));
+				}
+			}
+		}
+
+		g2.dispose();
+		return img;
+	}
+
+	/**
+	 * Key of a tile: the zoom level and the position of the tile
+	 */
+	private static class TileKey {
+		private final double scale;
+		private final int tx, ty;
+
+		public TileKey(double scale, int tx, int ty) {
+			this.scale = scale;
+			this.tx = tx;
+			this.ty = ty;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TileKey)) {
+				return false;
 			}
+			TileKey k = (TileKey)o;
+			return k.scale == scale && k.tx == tx && k.ty == ty;
 		}
-	}	
 
+		@Override
+		public int hashCode() {
+			return (Double.valueOf(scale).hashCode() * 31 + tx) * 31 + ty;
+		}
+	}
 }
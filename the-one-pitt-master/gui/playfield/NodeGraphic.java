@@ -54,43 +54,90 @@ public class NodeGraphic extends PlayFieldGraphic {
 			ArrayList<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
 			interfaces.addAll(node.getInterfaces());
 			for (NetworkInterface ni : interfaces) {
-				double range = ni.getTransmitRange();
-				Ellipse2D.Double coverage;
-
-				coverage = new Ellipse2D.Double(scale(loc.getX()-range),
-						scale(loc.getY()-range), scale(range * 2), scale(range * 2)); 
-
-				// draw the "range" circle
-				g2.setColor(rangeColor);
-				g2.draw(coverage);
+				drawRange(g2, scale, loc.getX(), loc.getY(),
+						ni.getTransmitRange());
 			}
 		}
 
 		if (drawConnections) {
-			g2.setColor(conColor);
 			Coord c1 = node.getLocation();
 //			ArrayList<Connection> conList = new ArrayList<Connection>();
 			// create a copy to prevent concurrent modification exceptions
 			//conList.addAll(node);
 			for (Connection c : node.getConnections()) {
 				Coord c2 = c.getOtherNode(node).getLocation();
-
-				g2.drawLine(scale(c1.getX()), scale(c1.getY()),
-						scale(c2.getX()), scale(c2.getY()));
+				drawConnection(g2, scale, c1.getX(), c1.getY(), c2.getX(),
+						c2.getY());
 			}
 		}
 
-		g2.setColor(hostColor);	// draw rectangle to host's location
-		g2.drawRect(scale(loc.getX()-1),scale(loc.getY()-1),scale(2),scale(2));
+		drawMarker(g2, scale, loc.getX(), loc.getY());
 
 		if (drawNodeName) {
-			g2.setColor(hostNameColor);
-			// Draw node's address next to it
-			g2.drawString(node.toString(), scale(loc.getX()),
-					scale(loc.getY()));
+			drawName(g2, scale, node.toString(), loc.getX(), loc.getY());
 		}
 	}
 
+	/**
+	 * Draws the "range" circle of an interface
+	 * @param g2 The graphic context to draw to
+	 * @param s The scaling factor
+	 * @param x X coordinate of the node
+	 * @param y Y coordinate of the node
+	 * @param range Transmit range of the interface
+	 */
+	static void drawRange(Graphics2D g2, double s, double x, double y,
+			double range) {
+		Ellipse2D.Double coverage;
+
+		coverage = new Ellipse2D.Double(scale(x-range, s),
+				scale(y-range, s), scale(range * 2, s), scale(range * 2, s)); 
+
+		g2.setColor(rangeColor);
+		g2.draw(coverage);
+	}
+
+	/**
+	 * Draws a line for a connection between two nodes
+	 * @param g2 The graphic context to draw to
+	 * @param s The scaling factor
+	 * @param x1 X coordinate of a node
+	 * @param y1 Y coordinate of a node
+	 * @param x2 X coordinate of the other node
+	 * @param y2 Y coordinate of the other node
+	 */
+	static void drawConnection(Graphics2D g2, double s, double x1, double y1,
+			double x2, double y2) {
+		g2.setColor(conColor);
+		g2.drawLine(scale(x1, s), scale(y1, s), scale(x2, s), scale(y2, s));
+	}
+
+	/**
+	 * Draws a rectangle to a node's location
+	 * @param g2 The graphic context to draw to
+	 * @param s The scaling factor
+	 * @param x X coordinate of the node
+	 * @param y Y coordinate of the node
+	 */
+	static void drawMarker(Graphics2D g2, double s, double x, double y) {
+		g2.setColor(hostColor);
+		g2.drawRect(scale(x-1, s), scale(y-1, s), scale(2, s), scale(2, s));
+	}
+
+	/**
+	 * Draws a node's name next to it
+	 * @param g2 The graphic context to draw to
+	 * @param s The scaling factor
+	 * @param name Name of the node
+	 * @param x X coordinate of the node
+	 * @param y Y coordinate of the node
+	 */
+	static void drawName(Graphics2D g2, double s, String name, double x,
+			double y) {
+		g2.setColor(hostNameColor);
+		g2.drawString(name, scale(x, s), scale(y, s));
+	}
+
 	/**
 	 * Sets whether radio coverage of nodes should be drawn
 	 * @param draw If true, radio coverage is drawn
@@ -116,26 +163,65 @@ public class NodeGraphic extends PlayFieldGraphic {
 	}
 
 
+	/**
+	 * Returns true if radio coverage of nodes should be drawn
+	 * @return true if radio coverage of nodes should be drawn
+	 */
+	static boolean isDrawCoverage() {
+		return drawCoverage;
+	}
+
+	/**
+	 * Returns true if node's name should be displayed
+	 * @return true if node's name should be displayed
+	 */
+	static boolean isDrawNodeName() {
+		return drawNodeName;
+	}
+
+	/**
+	 * Returns true if node's connections to other nodes should be drawn
+	 * @return true if node's connections to other nodes should be drawn
+	 */
+	static boolean isDrawConnections() {
+		return drawConnections;
+	}
+
 	/**
 	 * Visualize the messages this node is carrying
 	 * @param g2 The graphic context to draw to
 	 */
 	private void drawMessages(Graphics2D g2) {
-		int nrofMessages = node.getNrofMessages();
 		Coord loc = node.getLocation();
+		drawMessages(g2, scale, loc.getX(), loc.getY(),
+				node.getNrofMessages());
+	}
 
-		drawBar(g2,loc, nrofMessages % 10, 1);
-		drawBar(g2,loc, nrofMessages / 10, 2);
+	/**
+	 * Visualize the messages a node is carrying
+	 * @param g2 The graphic context to draw to
+	 * @param s The scaling factor
+	 * @param x X coordinate of the node
+	 * @param y Y coordinate of the node
+	 * @param nrofMessages Number of messages the node is carrying
+	 */
+	static void drawMessages(Graphics2D g2, double s, double x, double y,
+			int nrofMessages) {
+		drawBar(g2, s, x, y, nrofMessages % 10, 1);
+		drawBar(g2, s, x, y, nrofMessages / 10, 2);
 	}
 
 	/**
 	 * Draws a bar (stack of squares) next to a location
 	 * @param g2 The graphic context to draw to
-	 * @param loc The location where to draw
+	 * @param s The scaling factor
+	 * @param x X coordinate of the location where to draw
+	 * @param y Y coordinate of the location where to draw
 	 * @param nrof How many squares in the stack
 	 * @param col Which column
 	 */
-	private void drawBar(Graphics2D g2, Coord loc, int nrof, int col) {
+	private static void drawBar(Graphics2D g2, double s, double x, double y,
+			int nrof, int col) {
 		final int BAR_HEIGHT = 5;
 		final int BAR_WIDTH = 5;
 		final int BAR_DISPLACEMENT = 2;
@@ -154,9 +240,9 @@ public class NodeGraphic extends PlayFieldGraphic {
 				}
 			}
 
-			g2.fillRect(scale(loc.getX()-BAR_DISPLACEMENT-(BAR_WIDTH*col)),
-					scale(loc.getY()- BAR_DISPLACEMENT- i* BAR_HEIGHT),
-					scale(BAR_WIDTH), scale(BAR_HEIGHT));
+			g2.fillRect(scale(x-BAR_DISPLACEMENT-(BAR_WIDTH*col), s),
+					scale(y- BAR_DISPLACEMENT- i* BAR_HEIGHT, s),
+					scale(BAR_WIDTH, s), scale(BAR_HEIGHT, s));
 		}
 
 	}
@@ -8,6 +8,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
@@ -24,7 +25,13 @@ import core.World;
 
 /**
  * The canvas where node graphics and message visualizations are drawn.
- *
+ * <P>When the field is updated, a snapshot of the hosts is taken and the
+ * visible part of the field (background, map and hosts) is drawn from it
+ * in a separate rendering thread, so the simulation can continue while the
+ * field is drawn. The latest rendered frame is then shown on the screen.
+ * Overlay graphics are drawn on top of the frame when the field is
+ * painted. If no frame covers the area to paint (e.g., after scrolling or
+ * zooming), the area is drawn directly.</P>
  */
 public class PlayField extends JPanel {
 	private World w;
@@ -32,15 +39,20 @@ public class PlayField extends JPanel {
 	
 	private List<PlayFieldGraphic> overlayGraphics;
 	private boolean autoClearOverlay;	// automatically clear overlay graphics
-	private MapGraphic mapGraphic;
-	private boolean showMapGraphic;
+	private volatile MapGraphic mapGraphic;
+	private volatile boolean showMapGraphic;
 	private ScaleReferenceGraphic refGraphic;
 	
-	private BufferedImage underlayImage;
-	private AffineTransform imageTransform;
-	private AffineTransform curTransform;
-	private double underlayImgDx;
-	private double underlayImgDy;
+	/** the image under the host graphics (or null) */
+	private volatile Underlay underlay;
+	
+	/** the latest snapshot of the hosts */
+	private volatile HostSnapshotGraphic hostGraphic;
+	/** the latest rendered frame (or null) */
+	private volatile Frame frame;
+	/** the next area to render (or null if nothing to render) */
+	private Frame renderRequest;
+	private Thread renderer;
 	
 	/**
 	 * Creates a playfield
@@ -54,16 +66,34 @@ public class PlayField extends JPanel {
         this.overlayGraphics = Collections.synchronizedList(
         		new ArrayList<PlayFieldGraphic>());
         this.mapGraphic = null;
-        this.underlayImage = null;
-        this.imageTransform = null;
+        this.underlay = null;
         this.autoClearOverlay = true;
 	}
 	
 	/**
-	 * Schedule the play field to be drawn
+	 * Takes a snapshot of the hosts and schedules the play field to be
+	 * drawn. Must be called when the simulation isn't running (e.g., from
+	 * the event dispatch thread while the simulation waits for it).
 	 */
 	public void updateField() {
-		this.repaint();
+		this.hostGraphic = new HostSnapshotGraphic(w.getHosts());
+		
+		Rectangle visible = this.getVisibleRect();
+		if (!this.isShowing() || visible.isEmpty()) {
+			this.repaint();
+			return;
+		}
+		
+		synchronized (this) {
+			this.renderRequest = new Frame(null, visible,
+					PlayFieldGraphic.getScale(), hostGraphic);
+			if (this.renderer == null) {
+				this.renderer = new Thread(new Renderer(), "PlayFieldRenderer");
+				this.renderer.setDaemon(true);
+				this.renderer.start();
+			}
+			this.notifyAll();
+		}
 	}
 	
 	/**
@@ -77,22 +107,12 @@ public class PlayField extends JPanel {
 	public void setUnderlayImage(BufferedImage image, 
 			double dx, double dy, double scale, double rotation) {
 		if (image == null) { 
-			this.underlayImage = null;
-			this.imageTransform = null;
-			this.curTransform = null;
+			this.underlay = null;
 			return;
 		}
-		this.underlayImage = image;
-        this.imageTransform = AffineTransform.getRotateInstance(rotation);
-        this.imageTransform.scale(scale, scale);
-        this.curTransform = new AffineTransform(imageTransform);
-        this.underlayImgDx = dx;
-        this.underlayImgDy = dy;
-        
-		curTransform.scale(PlayFieldGraphic.getScale(),
-				PlayFieldGraphic.getScale());
-		curTransform.translate(this.underlayImgDx, this.underlayImgDy);
-        
+		AffineTransform transform = AffineTransform.getRotateInstance(rotation);
+		transform.scale(scale, scale);
+		this.underlay = new Underlay(image, transform, dx, dy);
 	}
 	
 	/**
@@ -102,11 +122,6 @@ public class PlayField extends JPanel {
 	public void setScale(double scale) {
 		PlayFieldGraphic.setScale(scale);
 		this.updateFieldSize();
-		if (this.imageTransform != null) {
-			this.curTransform = new AffineTransform(imageTransform);
-			curTransform.scale(scale, scale);
-			curTransform.translate(this.underlayImgDx, this.underlayImgDy);
-		}
 	}
 	
 	/**
@@ -143,22 +158,21 @@ public class PlayField extends JPanel {
 	 */
 	public void paint(Graphics g) {
 		Graphics2D g2 = (Graphics2D)g;
-		g2.setBackground(bgColor);
+		Rectangle clip = g2.getClipBounds();
+		Frame f = this.frame;
 		
-		// clear old playfield graphics
-		g2.clearRect(0, 0, this.getWidth(), this.getHeight());
-		if (underlayImage != null) {
-			g2.drawImage(underlayImage,curTransform, null);
+		if (f != null && clip != null && f.hosts == this.hostGraphic &&
+				f.scale == PlayFieldGraphic.getScale() && 
+				f.area.contains(clip)) {
+			g2.drawImage(f.image, f.area.x, f.area.y, null);
 		}
-
-		// draw map (is exists and drawing requested)
-		if (mapGraphic != null && showMapGraphic) {
-			mapGraphic.draw(g2);
-		}
-		
-		// draw hosts
-		for (DTNHost h : w.getHosts()) {
-			new NodeGraphic(h).draw(g2); // TODO: Optimization..?
+		else {
+			HostSnapshotGraphic hosts = this.hostGraphic;
+			if (hosts == null) {
+				hosts = new HostSnapshotGraphic(w.getHosts());
+				this.hostGraphic = hosts;
+			}
+			drawField(g2, hosts, PlayFieldGraphic.getScale());
 		}
 		
 		// draw overlay graphics
@@ -169,8 +183,39 @@ public class PlayField extends JPanel {
 		// draw reference scale
 		this.refGraphic.draw(g2);
 	}
-
 	
+	/**
+	 * Draws the background, map and hosts of the play field (to the clip
+	 * area of the graphics context)
+	 * @param g2 The graphics context to draw the field to
+	 * @param hosts Snapshot of the hosts to draw
+	 * @param scale The scale to draw the field with
+	 */
+	private void drawField(Graphics2D g2, HostSnapshotGraphic hosts,
+			double scale) {
+		Underlay u = this.underlay;
+		MapGraphic map = this.mapGraphic;
+		
+		g2.setBackground(bgColor);
+		
+		// clear old playfield graphics
+		g2.clearRect(0, 0, this.getWidth(), this.getHeight());
+		if (u != null) {
+			AffineTransform transform = new AffineTransform(u.transform);
+			transform.scale(scale, scale);
+			transform.translate(u.dx, u.dy);
+			g2.drawImage(u.image, transform, null);
+		}
+
+		// draw map (is exists and drawing requested)
+		if (map != null && showMapGraphic) {
+			map.draw(g2, scale);
+		}
+		
+		// draw hosts (the ones in the clip area)
+		hosts.draw(g2, scale);
+	}
+
 	/**
 	 * Removes all overlay graphics stored to be drawn
 	 */
@@ -249,4 +294,78 @@ public class PlayField extends JPanel {
         this.setSize(minSize);
 	}
 	
+	/**
+	 * An image under the host graphics with its placement
+	 */
+	private static class Underlay {
+		private final BufferedImage image;
+		/** rotation and scaling of the image */
+		private final AffineTransform transform;
+		private final double dx;
+		private final double dy;
+		
+		public Underlay(BufferedImage image, AffineTransform transform,
+				double dx, double dy) {
+			this.image = image;
+			this.transform = transform;
+			this.dx = dx;
+			this.dy = dy;
+		}
+	}
+	
+	/**
+	 * A rendered image of an area of the field
+	 */
+	private static class Frame {
+		private final BufferedImage image;
+		private final Rectangle area;
+		private final double scale;
+		private final HostSnapshotGraphic hosts;
+		
+		public Frame(BufferedImage image, Rectangle area, double scale,
+				HostSnapshotGraphic hosts) {
+			this.image = image;
+			this.area = area;
+			this.scale = scale;
+			this.hosts = hosts;
+		}
+	}
+	
+	/**
+	 * Renders the requested areas of the field. If new requests come while
+	 * an area is being rendered, only the latest one is rendered next.
+	 */
+	private class Renderer implements Runnable {
+		public void run() {
+			while (true) {
+				Frame request;
+				synchronized (PlayField.this) {
+					while (renderRequest == null) {
+						try {
+							PlayField.this.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					request = renderRequest;
+					renderRequest = null;
+				}
+				
+				Rectangle area = request.area;
+				BufferedImage image = new BufferedImage(area.width,
+						area.height, BufferedImage.TYPE_INT_RGB);
+				Graphics2D g2 = image.createGraphics();
+				g2.translate(-area.x, -area.y);
+				g2.setClip(area);
+				drawField(g2, request.hosts, request.scale);
+				g2.dispose();
+				
+				if (request.hosts == hostGraphic) { // still the latest
+					frame = new Frame(image, area, request.scale,
+							request.hosts);
+					repaint(area);
+				}
+			}
+		}
+	}
 }
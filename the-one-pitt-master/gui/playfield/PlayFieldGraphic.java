@@ -56,6 +56,16 @@ public abstract class PlayFieldGraphic {
 		return (int)Math.round(scale * value);
 	}
 	
+	/**
+	 * Scales the value according to the given zoom level
+	 * @param value Value to scale
+	 * @param s The scaling factor
+	 * @return Scaled value bit-truncated (casted) to an integer
+	 */
+	public static int scale(double value, double s) {
+		return (int)Math.round(s * value);
+	}
+
 	/**
 	 * Performs an inverse of the scaling procedure with current scale.
 	 * NOTE: invScale(scale(value)) != value because of rounding to integer
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.Tuple;
+
+/**
+ * Converts {@link ExternalMovementReader} text traces to the binary format
+ * of {@link BinaryMovementReader}. The node IDs are numbered in the order
+ * they first appear in the trace.
+ * <P>Usage: <CODE>java input.BinaryMovementConverter textTrace
+ * binaryTrace</CODE></P>
+ */
+public class BinaryMovementConverter {
+	/** Position of the index offset in the header */
+	private static final int INDEX_OFFSET_POS = BinaryMovementReader.HEADER_SIZE
+		- 8;
+
+	/**
+	 * Converts a text trace to a binary trace
+	 * @param inFilePath Path to the text trace
+	 * @param outFilePath Path to the binary trace to create
+	 * @return The number of time instances in the trace
+	 * @throws IOException if writing the binary trace failed
+	 */
+	public static int convert(String inFilePath, String outFilePath)
+			throws IOException {
+		ExternalMovementReader reader = new ExternalMovementReader(inFilePath);
+		Map<String, Integer> idNumbers = new HashMap<String, Integer>();
+		List<String> ids = new ArrayList<String>();
+		List<Double> frameTimes = new ArrayList<Double>();
+		List<Integer> frameSizes = new ArrayList<Integer>();
+
+		long offset = BinaryMovementReader.HEADER_SIZE;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(outFilePath)));
+		try {
+			out.writeInt(BinaryMovementReader.MAGIC);
+			out.writeInt(BinaryMovementReader.VERSION);
+			out.writeDouble(reader.getMinTime());
+			out.writeDouble(reader.getMaxTime());
+			out.writeDouble(reader.getMinX());
+			out.writeDouble(reader.getMaxX());
+			out.writeDouble(reader.getMinY());
+			out.writeDouble(reader.getMaxY());
+			out.writeLong(0); // index offset, written when it is known
+
+			List<Tuple<String, Coord>> moves = reader.readNextMovements();
+			while (moves.size() > 0) {
+				for (Tuple<String, Coord> t : moves) {
+					Integer nr = idNumbers.get(t.getKey());
+					if (nr == null) {
+						nr = ids.size();
+						idNumbers.put(t.getKey(), nr);
+						ids.add(t.getKey());
+					}
+					out.writeInt(nr);
+					out.writeFloat((float)t.getValue().getX());
+					out.writeFloat((float)t.getValue().getY());
+				}
+				frameTimes.add(reader.getLastTimeStamp());
+				frameSizes.add(moves.size());
+				moves = reader.readNextMovements();
+			}
+
+			out.writeInt(ids.size());
+			for (String id : ids) {
+				out.writeUTF(id);
+			}
+			out.writeInt(frameTimes.size());
+			for (int i=0; i<frameTimes.size(); i++) {
+				out.writeDouble(frameTimes.get(i));
+				out.writeLong(offset);
+				out.writeInt(frameSizes.get(i));
+				offset += (long)frameSizes.get(i) *
+					BinaryMovementReader.SAMPLE_SIZE;
+			}
+		} finally {
+			out.close();
+		}
+
+		/* after the loop the offset is the end of the samples */
+		RandomAccessFile raf = new RandomAccessFile(outFilePath, "rw");
+		try {
+			raf.seek(INDEX_OFFSET_POS);
+			raf.writeLong(offset);
+		} finally {
+			raf.close();
+		}
+
+		return frameTimes.size();
+	}
+
+	/**
+	 * Converts the text trace given as the first argument to a binary trace
+	 * given as the second argument
+	 * @param args The input and output file paths
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: java input.BinaryMovementConverter " +
+					"<text trace> <binary trace>");
+			System.exit(1);
+		}
+		try {
+			int frames = convert(args[0], args[1]);
+			System.out.println("Converted " + frames + " time instances to " +
+					args[1]);
+		} catch (IOException e) {
+			System.err.println("Couldn't write " + args[1] + ": " +
+					e.getMessage());
+			System.exit(1);
+		}
+	}
+}
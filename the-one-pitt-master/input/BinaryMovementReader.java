@@ -0,0 +1,352 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Memory-mapped reader for binary movement traces created with
+ * {@link BinaryMovementConverter}. The samples of a time instance
+ * (a frame) are decoded straight to primitive arrays and, since the trace
+ * has an index of the frames, reading can start from any time of the trace.
+ * <P>
+ * Format of the trace (all values big-endian):<BR>
+ * <CODE>header: magic(int) version(int) minTime maxTime minX maxX minY maxY
+ * (doubles) indexOffset(long)</CODE><BR>
+ * <CODE>frames: id(int) x(float) y(float) for each sample</CODE><BR>
+ * <CODE>index: nrofIds(int) id strings (UTF) nrofFrames(int) and
+ * time(double) offset(long) nrofSamples(int) for each frame</CODE><BR>
+ * The times and coordinates of the samples are stored normalized (minimum
+ * values of the header subtracted) and the node IDs are indexes to the ID
+ * strings of the original trace.
+ * </P>
+ */
+public class BinaryMovementReader {
+	/** Magic number in the beginning of binary traces ("ONEM") */
+	public static final int MAGIC = 0x4F4E454D;
+	/** Version of the trace format */
+	public static final int VERSION = 1;
+	/** Size of the header (bytes) */
+	public static final int HEADER_SIZE = 4 + 4 + 6 * 8 + 8;
+	/** Size of a sample (bytes) */
+	public static final int SAMPLE_SIZE = 4 + 4 + 4;
+	/** Maximum size of a mapped part of the trace (bytes) */
+	private static final long MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private String path;
+
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+
+	private String[] ids;
+	private double[] frameTimes;
+	private long[] frameOffsets;
+	private int[] frameSizes;
+	private int maxFrameSize;
+	/** end of the sample data (start of the index) */
+	private long dataEnd;
+
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long windowEnd;
+
+	private int nextFrame;
+	private double lastTimeStamp = -1;
+	private boolean normalize;
+
+	/**
+	 * Constructor. Creates a new reader for a binary trace file.
+	 * @param inFilePath Path to the trace file
+	 * @throws SettingsError if the file wasn't found or is not a valid trace
+	 */
+	public BinaryMovementReader(String inFilePath) {
+		this.path = inFilePath;
+		this.normalize = true;
+		try {
+			file = new RandomAccessFile(inFilePath, "r");
+			channel = file.getChannel();
+			readHeader();
+			readIndex();
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read binary movement trace " +
+					inFilePath + ": " + e.getMessage());
+		}
+		this.nextFrame = 0;
+	}
+
+	/**
+	 * Returns true if the given file is a binary movement trace
+	 * @param filePath Path to the file
+	 * @return true if the file starts with the binary trace magic number
+	 */
+	public static boolean isBinaryTrace(String filePath) {
+		File f = new File(filePath);
+		if (!f.isFile() || f.length() < HEADER_SIZE) {
+			return false;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(f));
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	private void readHeader() throws IOException {
+		if (file.length() < HEADER_SIZE || file.readInt() != MAGIC) {
+			throw new IOException("not a binary movement trace");
+		}
+		int version = file.readInt();
+		if (version != VERSION) {
+			throw new IOException("unsupported version " + version);
+		}
+		minTime = file.readDouble();
+		maxTime = file.readDouble();
+		minX = file.readDouble();
+		maxX = file.readDouble();
+		minY = file.readDouble();
+		maxY = file.readDouble();
+		dataEnd = file.readLong();
+	}
+
+	private void readIndex() throws IOException {
+		channel.position(dataEnd);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(channel)));
+
+		ids = new String[in.readInt()];
+		for (int i=0; i<ids.length; i++) {
+			ids[i] = in.readUTF();
+		}
+
+		int nrofFrames = in.readInt();
+		frameTimes = new double[nrofFrames];
+		frameOffsets = new long[nrofFrames];
+		frameSizes = new int[nrofFrames];
+		maxFrameSize = 0;
+		for (int i=0; i<nrofFrames; i++) {
+			frameTimes[i] = in.readDouble();
+			frameOffsets[i] = in.readLong();
+			frameSizes[i] = in.readInt();
+			maxFrameSize = Math.max(maxFrameSize, frameSizes[i]);
+		}
+	}
+
+	/**
+	 * Sets normalizing of read values on/off. If on, values returned by
+	 * {@link #readNextFrame(int[], double[], double[])} are decremented by
+	 * minimum values of the offsets. Default is on (normalize).
+	 * @param normalize If true, normalizing is on (false -> off).
+	 */
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	/**
+	 * Moves the reading position to the first time instance at or after the
+	 * given time
+	 * @param time The time (normalized, if normalizing is on)
+	 * @return Index of the next frame to read
+	 */
+	public int seek(double time) {
+		if (!normalize) {
+			time -= minTime;
+		}
+		int lo = 0;
+		int hi = frameTimes.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (frameTimes[mid] < time) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		this.nextFrame = lo;
+		return lo;
+	}
+
+	/**
+	 * Reads all the samples that belong to the next time instance
+	 * @param nodeIds Array where the IDs of the nodes are read to
+	 * @param x Array where the x coordinates are read to
+	 * @param y Array where the y coordinates are read to
+	 * @return The number of samples read or 0 if there were no more samples.
+	 * The arrays must fit {@link #getMaxFrameSize()} samples.
+	 */
+	public int readNextFrame(int[] nodeIds, double[] x, double[] y) {
+		if (nextFrame >= frameTimes.length) {
+			return 0;
+		}
+
+		int f = nextFrame++;
+		int n = frameSizes[f];
+		long start = frameOffsets[f];
+		mapWindow(start, (long)n * SAMPLE_SIZE);
+		window.position((int)(start - windowStart));
+
+		double dx = normalize ? 0 : minX;
+		double dy = normalize ? 0 : minY;
+		for (int i=0; i<n; i++) {
+			nodeIds[i] = window.getInt();
+			x[i] = window.getFloat() + dx;
+			y[i] = window.getFloat() + dy;
+		}
+
+		lastTimeStamp = frameTimes[f] + (normalize ? 0 : minTime);
+		return n;
+	}
+
+	/**
+	 * Makes sure that the given area of the trace is mapped to memory
+	 * @param start Start of the area
+	 * @param length Length of the area
+	 */
+	private void mapWindow(long start, long length) {
+		if (window != null && start >= windowStart &&
+				start + length <= windowEnd) {
+			return;
+		}
+		long size = Math.min(dataEnd - start,
+				Math.max(MAP_WINDOW_SIZE, length));
+		try {
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		} catch (IOException e) {
+			throw new SimError("Couldn't read binary movement trace " +
+					path + ": " + e.getMessage());
+		}
+		windowStart = start;
+		windowEnd = start + size;
+	}
+
+	/**
+	 * Closes the trace file
+	 */
+	public void close() {
+		window = null;
+		try {
+			file.close();
+		} catch (IOException e) {
+			// nothing to do
+		}
+	}
+
+	/**
+	 * Returns the time stamp where the last samples read with
+	 * {@link #readNextFrame(int[], double[], double[])} belong to.
+	 * @return The time stamp
+	 */
+	public double getLastTimeStamp() {
+		return lastTimeStamp;
+	}
+
+	/**
+	 * Returns the number of time instances in the trace
+	 * @return the number of frames
+	 */
+	public int getNrofFrames() {
+		return frameTimes.length;
+	}
+
+	/**
+	 * Returns the largest number of samples of a time instance
+	 * @return the maximum frame size
+	 */
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	/**
+	 * Returns the number of different node IDs in the trace
+	 * @return the number of IDs
+	 */
+	public int getNrofIds() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the original (textual) ID of a node
+	 * @param nodeId The ID of the node in the binary trace
+	 * @return the original ID
+	 */
+	public String getId(int nodeId) {
+		return ids[nodeId];
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Local bundle gateway for real-time emulation. External processes can
+ * inject messages to the simulation and receive the messages delivered to
+ * hosts over TCP or UDP on the loopback interface. The gateway works as an
+ * external event queue (for the injected messages) and as a message
+ * listener (for the deliveries).
+ * <P>The protocol is line based. A client sends the commands</P>
+ * <PRE>
+ * REGISTER &lt;host address&gt;
+ * SEND &lt;from address&gt; &lt;to address&gt; &lt;message id&gt; &lt;size&gt;
+ * </PRE>
+ * <P>which are answered with <CODE>OK ...</CODE> or
+ * <CODE>ERROR &lt;reason&gt;</CODE>. A client that has registered for a
+ * host gets the line
+ * <CODE>DELIVERED &lt;message id&gt; &lt;from&gt; &lt;to&gt; &lt;time&gt;</CODE>
+ * when a message is delivered to the host. Over UDP, every datagram is one
+ * command and the answers and deliveries are sent to the address the
+ * datagram came from.</P>
+ * <P>All the clients are served by a single selector thread (instead of a
+ * thread per host or connection), so the gateway can serve any number of
+ * emulated hosts.</P>
+ */
+public class LoopbackGateway implements EventQueue, MessageListener,
+		Runnable {
+	/** Port of the gateway -setting id ({@value}). Integer. Used in the
+	 * {@link core.RealTimePacer#REAL_TIME_NS} namespace. The gateway
+	 * listens to both TCP and UDP on the port. If not defined, no gateway
+	 * is started. */
+	public static final String GATEWAY_PORT_S = "gatewayPort";
+
+	/** command for registering for the deliveries of a host */
+	public static final String REGISTER = "REGISTER";
+	/** command for sending a message */
+	public static final String SEND = "SEND";
+	/** line sent for a delivered message */
+	public static final String DELIVERED = "DELIVERED";
+	/** answer for a successful command */
+	public static final String OK = "OK";
+	/** answer for a failed command */
+	public static final String ERROR = "ERROR";
+
+	private static final Charset CHARSET = Charset.forName("US-ASCII");
+	private static final int BUFFER_SIZE = 4096;
+
+	private int nrofHosts;
+	private Selector selector;
+	private ServerSocketChannel server;
+	private DatagramChannel udp;
+	private Thread thread;
+	private volatile boolean running;
+
+	/** messages received from the clients and not yet created */
+	private Queue<PendingMessage> pending;
+	/** TCP clients with output waiting to be written */
+	private Queue<TcpClient> toFlush;
+	/** clients registered for the deliveries of a host by host address */
+	private Map<Integer, List<Client>> subscribers;
+	/** IDs of the messages received (only used by the gateway thread) */
+	private Set<String> ids;
+
+	/**
+	 * Creates a gateway that listens to the given port on the loopback
+	 * interface. The gateway doesn't serve clients until it is started.
+	 * @param port The port (0 for any free port)
+	 * @param nrofHosts Number of hosts in the simulation (valid host
+	 * addresses are 0...nrofHosts-1)
+	 */
+	public LoopbackGateway(int port, int nrofHosts) {
+		this.nrofHosts = nrofHosts;
+		this.pending = new ConcurrentLinkedQueue<PendingMessage>();
+		this.toFlush = new ConcurrentLinkedQueue<TcpClient>();
+		this.subscribers = new HashMap<Integer, List<Client>>();
+		this.ids = new HashSet<String>();
+
+		try {
+			InetAddress lo = InetAddress.getLoopbackAddress();
+			this.selector = Selector.open();
+			this.server = ServerSocketChannel.open();
+			this.server.socket().bind(new InetSocketAddress(lo, port));
+			this.server.configureBlocking(false);
+			this.server.register(selector, SelectionKey.OP_ACCEPT);
+
+			this.udp = DatagramChannel.open();
+			this.udp.socket().bind(new InetSocketAddress(lo,
+					server.socket().getLocalPort()));
+			this.udp.configureBlocking(false);
+			this.udp.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+			close();
+			throw new SimError("Can't start the gateway at port " + port +
+					": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the port the gateway listens to
+	 * @return the port
+	 */
+	public int getPort() {
+		return this.server.socket().getLocalPort();
+	}
+
+	/**
+	 * Starts serving the clients in a new (daemon) thread
+	 */
+	public void start() {
+		this.running = true;
+		this.thread = new Thread(this, "LoopbackGateway");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Stops serving the clients and closes all connections
+	 */
+	public void close() {
+		this.running = false;
+		try {
+			if (selector != null) {
+				selector.wakeup();
+				if (thread != null && thread != Thread.currentThread()) {
+					thread.join();
+				}
+				for (SelectionKey key : selector.keys()) {
+					key.channel().close();
+				}
+				selector.close();
+			}
+			if (server != null) {
+				server.close();
+			}
+			if (udp != null) {
+				udp.close();
+			}
+		} catch (IOException e) {
+			// closing anyway
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Serves the clients until the gateway is closed
+	 */
+	public void run() {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		while (running) {
+			try {
+				selector.select();
+				TcpClient c;
+				while ((c = toFlush.poll()) != null) {
+					c.flush();
+				}
+
+				Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+				while (i.hasNext()) {
+					SelectionKey key = i.next();
+					i.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					}
+					else if (key.channel() == udp) {
+						receiveDatagram(buffer);
+					}
+					else {
+						TcpClient client = (TcpClient)key.attachment();
+						if (key.isReadable()) {
+							client.read(buffer);
+						}
+						if (key.isValid() && key.isWritable()) {
+							client.flush();
+						}
+					}
+				}
+			} catch (IOException e) {
+				if (running) {
+					throw new SimError("Gateway failed: " + e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel ch = server.accept();
+		if (ch == null) {
+			return;
+		}
+		ch.configureBlocking(false);
+		SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+		key.attach(new TcpClient(ch, key));
+	}
+
+	private void receiveDatagram(ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		SocketAddress from = udp.receive(buffer);
+		if (from == null) {
+			return;
+		}
+		buffer.flip();
+		String line = CHARSET.decode(buffer).toString().trim();
+		handle(line, new UdpClient(from));
+	}
+
+	/**
+	 * Handles a command from a client
+	 * @param line The command line
+	 * @param c The client
+	 */
+	private void handle(String line, Client c) {
+		String[] parts = line.trim().split("\\s+");
+		try {
+			if (parts[0].equals(REGISTER) && parts.length == 2) {
+				int host = parseAddress(parts[1]);
+				synchronized (subscribers) {
+					List<Client> list = subscribers.get(host);
+					if (list == null) {
+						list = new ArrayList<Client>(1);
+						subscribers.put(host, list);
+					}
+					if (!list.contains(c)) {
+						list.add(c);
+					}
+				}
+				c.send(OK + " " + REGISTER + " " + host);
+			}
+			else if (parts[0].equals(SEND) && parts.length == 5) {
+				int from = parseAddress(parts[1]);
+				int to = parseAddress(parts[2]);
+				String id = parts[3];
+				int size = Integer.parseInt(parts[4]);
+				if (from == to || size <= 0) {
+					c.send(ERROR + " invalid message " + id);
+				}
+				else if (!ids.add(id)) {
+					c.send(ERROR + " duplicate message id " + id);
+				}
+				else {
+					pending.add(new PendingMessage(from, to, id, size));
+					c.send(OK + " " + SEND + " " + id);
+				}
+			}
+			else if (parts[0].length() > 0) {
+				c.send(ERROR + " unknown command " + parts[0]);
+			}
+		} catch (NumberFormatException e) {
+			c.send(ERROR + " invalid number in '" + line + "'");
+		}
+	}
+
+	private int parseAddress(String value) {
+		int address = Integer.parseInt(value);
+		if (address < 0 || address >= nrofHosts) {
+			throw new NumberFormatException("No host " + address);
+		}
+		return address;
+	}
+
+	/**
+	 * Removes all the subscriptions of a client
+	 * @param c The client
+	 */
+	private void unsubscribe(Client c) {
+		synchronized (subscribers) {
+			for (List<Client> list : subscribers.values()) {
+				list.remove(c);
+			}
+		}
+	}
+
+	public ExternalEvent nextEvent() {
+		PendingMessage p = pending.poll();
+		if (p == null) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		/* the message is created at the current simulation time */
+		return new MessageCreateEvent(p.from, p.to, p.id, p.size, 0,
+				SimClock.getTime());
+	}
+
+	public double nextEventsTime() {
+		return pending.isEmpty() ? Double.MAX_VALUE : SimClock.getTime();
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		if (!firstDelivery) {
+			return;
+		}
+
+		List<Client> list;
+		synchronized (subscribers) {
+			list = subscribers.get(to.getAddress());
+			if (list == null || list.isEmpty()) {
+				return;
+			}
+			list = new ArrayList<Client>(list);
+		}
+
+		String line = DELIVERED + " " + m.getId() + " " +
+			m.getFrom().getAddress() + " " + to.getAddress() + " " +
+			SimClock.getTime();
+		for (Client c : list) {
+			c.send(line);
+		}
+	}
+
+	public void newMessage(Message m) {}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
+
+	/**
+	 * A message received from a client
+	 */
+	private static class PendingMessage {
+		private final int from;
+		private final int to;
+		private final String id;
+		private final int size;
+
+		public PendingMessage(int from, int to, String id, int size) {
+			this.from = from;
+			this.to = to;
+			this.id = id;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * A client of the gateway
+	 */
+	private abstract class Client {
+		/**
+		 * Sends a line to the client. May be called from any thread.
+		 * @param line The line to send (without the line break)
+		 */
+		public abstract void send(String line);
+	}
+
+	/**
+	 * A client connected over TCP. The output is queued and written by the
+	 * gateway thread.
+	 */
+	private class TcpClient extends Client {
+		private SocketChannel channel;
+		private SelectionKey key;
+		private Queue<ByteBuffer> output;
+		private StringBuilder input;
+
+		public TcpClient(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+			this.output = new ConcurrentLinkedQueue<ByteBuffer>();
+			this.input = new StringBuilder();
+		}
+
+		@Override
+		public void send(String line) {
+			output.add(CHARSET.encode(line + "\n"));
+			if (Thread.currentThread() == thread) {
+				flush();
+			}
+			else {
+				toFlush.add(this);
+				selector.wakeup();
+			}
+		}
+
+		/**
+		 * Reads the available input and handles the complete lines
+		 */
+		public void read(ByteBuffer buffer) {
+			int n;
+			try {
+				buffer.clear();
+				n = channel.read(buffer);
+			} catch (IOException e) {
+				n = -1;
+			}
+			if (n < 0) {
+				disconnect();
+				return;
+			}
+
+			buffer.flip();
+			input.append(CHARSET.decode(buffer));
+			int eol;
+			while ((eol = input.indexOf("\n")) >= 0) {
+				String line = input.substring(0, eol);
+				input.delete(0, eol + 1);
+				handle(line, this);
+			}
+		}
+
+		/**
+		 * Writes as much of the queued output as possible
+		 */
+		public void flush() {
+			if (!key.isValid()) {
+				return;
+			}
+			try {
+				ByteBuffer b;
+				while ((b = output.peek()) != null) {
+					channel.write(b);
+					if (b.hasRemaining()) {
+						break; // socket buffer full
+					}
+					output.poll();
+				}
+				key.interestOps(output.isEmpty() ? SelectionKey.OP_READ :
+					SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			} catch (IOException e) {
+				disconnect();
+			}
+		}
+
+		private void disconnect() {
+			unsubscribe(this);
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+
+	/**
+	 * A client using UDP. Clients are identified by their address.
+	 */
+	private class UdpClient extends Client {
+		private SocketAddress address;
+
+		public UdpClient(SocketAddress address) {
+			this.address = address;
+		}
+
+		@Override
+		public void send(String line) {
+			try {
+				udp.send(CHARSET.encode(line), address);
+			} catch (IOException e) {
+				unsubscribe(this); // client has gone away
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof UdpClient &&
+				((UdpClient)o).address.equals(this.address);
+		}
+
+		@Override
+		public int hashCode() {
+			return address.hashCode();
+		}
+	}
+}
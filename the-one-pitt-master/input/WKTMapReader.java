@@ -8,10 +8,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import movement.map.MapNode;
 import movement.map.SimMap;
@@ -78,9 +84,53 @@ public class WKTMapReader extends WKTReader {
 	 * @throws IOException If something went wrong while reading the file
 	 */
 	public void addPaths(File file, int type) throws IOException {
-		addPaths(new FileReader(file), type);
+		Reader r = new FileReader(file);
+		try {
+			addPaths(r, type);
+		} finally {
+			r.close();
+		}
 	}
 	
+	/**
+	 * Adds paths from multiple files to the map. The files are read in 
+	 * parallel but the paths are added in the order of the files, so the 
+	 * result is the same as adding the files one by one with
+	 * {@link #addPaths(File, int)}.
+	 * @param files The files where the WKT data is read from
+	 * @param firstType The type of the nodes of the first file; the next 
+	 * files' types are the following integers
+	 * @throws IOException If something went wrong while reading a file
+	 */
+	public void addPaths(List<File> files, int firstType) throws IOException {
+		int nrofThreads = Math.min(files.size(), 
+				Runtime.getRuntime().availableProcessors());
+		if (nrofThreads <= 1) {
+			for (int i = 0; i < files.size(); i++) {
+				addPaths(files.get(i), firstType + i);
+			}
+			return;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nrofThreads);
+		try {
+			List<Future<Lines>> results = new ArrayList<Future<Lines>>();
+			for (final File file : files) {
+				results.add(executor.submit(new Callable<Lines>() {
+					public Lines call() throws IOException {
+						return readPaths(file);
+					}
+				}));
+			}
+			
+			for (int i = 0; i < results.size(); i++) {
+				this.nodeType = firstType + i;
+				updateMap(getResult(results.get(i)));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 	
 	/**
 	 * Add paths to current path set. Adding paths multiple times
@@ -91,44 +141,75 @@ public class WKTMapReader extends WKTReader {
 	 * @throws IOException if something went wrong with reading from the input
 	 */
 	public void addPaths(Reader input, int nodeType) throws IOException {
+		Lines lines = new Lines();
 		this.nodeType = nodeType;
-		String type;
-		String contents;
 		
 		init(input);
+		readLines(lines, true);
+		updateMap(lines);
+	}
 		
-		while((type = nextType()) != null) {
-			if (type.equals(LINESTRING)) {
-				contents = readNestedContents();
-				updateMap(parseLineString(contents));
-			}
-			else if (type.equals(MULTILINESTRING)) {
-				for (List<Coord> list : parseMultilinestring()) {
-					updateMap(list);
-				}
-			}
-			else {
-				// known type but not interesting -> skip
-				readNestedContents();
+	/**
+	 * Reads the paths of a file with a new reader (so multiple files can
+	 * be read at the same time)
+	 * @param file The file to read
+	 * @return The paths of the file
+	 * @throws IOException If something went wrong while reading the file
+	 */
+	private static Lines readPaths(File file) throws IOException {
+		WKTReader reader = new WKTReader();
+		Lines lines = new Lines();
+		Reader r = new FileReader(file);
+		try {
+			reader.init(r);
+			reader.readLines(lines, true);
+		} finally {
+			r.close();
+		}
+		return lines;
+	}
+	
+	/**
+	 * Waits for the paths of a file that is being read
+	 * @param result The result of the read
+	 * @return The paths
+	 * @throws IOException If reading the file failed
+	 */
+	private static Lines getResult(Future<Lines> result) throws IOException {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading map files");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
 			}
+			throw new IOException(e.getCause().toString());
 		}
 	}
 	
 	/**
-	 * Updates simulation map with coordinates in the list
-	 * @param coords The list of coordinates
+	 * Updates simulation map with the read paths
+	 * @param lines The paths
 	 */
-	private void updateMap(List<Coord> coords) {
-		MapNode previousNode = null;
-		for (Coord c : coords) {
-			previousNode = createOrUpdateNode(c, previousNode);
+	private void updateMap(Lines lines) {
+		Coord location = new Coord(0, 0);
+		for (int i = 0, n = lines.getNrofLines(); i < n; i++) {
+			MapNode previousNode = null;
+			for (int j = lines.getStart(i), end = lines.getEnd(i); 
+					j < end; j++) {
+				location.setLocation(lines.getX(j), lines.getY(j));
+				previousNode = createOrUpdateNode(location, previousNode);
+			}
 		}
 	}
 		
 	/**
 	 * Creates or updates a node that is in location c and next to 
 	 * node previous
-	 * @param c The location coordinates of the node
+	 * @param c The location coordinates of the node (a copy of it is used
+	 * for a new node)
 	 * @param previous Previous node whose neighbor node at c is
 	 * @return The created/updated node
 	 */
@@ -138,8 +219,9 @@ public class WKTMapReader extends WKTReader {
 		n = nodes.get(c);	// try to get the node at that location
 		
 		if (n == null) { 	// no node in that location -> create new
-			n = new MapNode(c);
-			nodes.put(c, n);
+			Coord location = c.clone();
+			n = new MapNode(location);
+			nodes.put(location, n);
 		}
 
 		if (previous != null) {
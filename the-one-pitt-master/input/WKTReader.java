@@ -4,15 +4,13 @@
  */
 package input;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
 
 import core.Coord;
 
@@ -21,6 +19,8 @@ import core.Coord;
  * <A HREF="http://en.wikipedia.org/wiki/Well-known_text">Wikipedia</A> for
  * WKT syntax details. For example, <A HREF="http://openjump.org/">Open JUMP</A> 
  * GIS program can save compatible data from many other formats.<BR>
+ * The input is read in blocks to a buffer and the coordinate values are
+ * parsed directly from the buffer without creating strings for them.
  */
 public class WKTReader {
 	/** known WKT type LINESTRING */
@@ -30,10 +30,29 @@ public class WKTReader {
 	/** known WKT type POINT */
 	public static final String POINT = "POINT";
 	
+	/** size of the read buffer (characters) */
+	private static final int BUFFER_SIZE = 16 * 1024;
+	/** powers of ten that are exact double values */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	/** largest integer whose all smaller integers are exact double values */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
 	/** are all lines of the file read */
 	private boolean done;
 	/** reader for the data */
-	private BufferedReader reader;
+	private Reader reader;
+	/** buffer for the data */
+	private char[] buffer;
+	/** position of the next character in the buffer */
+	private int pos;
+	/** number of characters in the buffer */
+	private int limit;
+	/** characters of the number being parsed */
+	private char[] number = new char[32];
+	/** characters of the type being read */
+	private StringBuilder word = new StringBuilder();
 	
 	/**
 	 * Read point data from a file
@@ -42,7 +61,12 @@ public class WKTReader {
 	 * @throws IOException if something went wrong while reading
 	 */
 	public List<Coord> readPoints(File file) throws IOException {
-		return readPoints(new FileReader(file));
+		Reader r = new FileReader(file);
+		try {
+			return readPoints(r);
+		} finally {
+			r.close();
+		}
 	}
 
 	/**
@@ -58,12 +82,12 @@ public class WKTReader {
 		init(r);
 		
 		while((type = nextType()) != null) {
-			if (type.equals(POINT)) {
+			if (type == POINT) {
 				points.add(parsePoint());
 			}
 			else {
 				// known type but not interesting -> skip
-				readNestedContents();
+				skipNestedContents();
 			}
 		}
 		
@@ -78,52 +102,95 @@ public class WKTReader {
 	 */
 	public List<List<Coord>> readLines(File file) throws IOException {
 		List<List<Coord>> lines = new ArrayList<List<Coord>>();
+		Lines data = new Lines();
 
-		String type;
-		init(new FileReader(file));
+		Reader r = new FileReader(file);
+		try {
+			init(r);
+			readLines(data, false);
+		} finally {
+			r.close();
+		}
 		
+		for (int i = 0, n = data.getNrofLines(); i < n; i++) {
+			List<Coord> line = new ArrayList<Coord>();
+			for (int j = data.getStart(i), end = data.getEnd(i); j < end; j++){
+				line.add(new Coord(data.getX(j), data.getY(j)));
+			}
+			lines.add(line);
+		}
+		
+		return lines;
+	}
+	
+	/**
+	 * Reads all the line data from the reader given at init to a
+	 * line store. Data of other types is skipped.
+	 * @param lines The store where the lines are added
+	 * @param multi If true, also the lines of MULTILINESTRINGs are read
+	 * @throws IOException if something went wrong while reading
+	 */
+	protected void readLines(Lines lines, boolean multi) throws IOException {
+		String type;
+
 		while((type = nextType()) != null) {
-			if (type.equals(LINESTRING)) {
-				lines.add(parseLineString(readNestedContents()));
+			if (type == LINESTRING) {
+				expect('(');
+				parseLineString(lines);
+			}
+			else if (multi && type == MULTILINESTRING) {
+				parseMultilinestring(lines);
 			}
 			else {
 				// known type but not interesting -> skip
-				readNestedContents();
+				skipNestedContents();
 			}
 		}
-		
-		return lines;
 	}
 	
-	
 	/**
 	 * Initialize the reader to use a certain input reader
 	 * @param input The input to use
 	 */
 	protected void init(Reader input) {
 		setDone(false);
-		reader = new BufferedReader(input);
+		reader = input;
+		if (buffer == null) {
+			buffer = new char[BUFFER_SIZE];
+		}
+		pos = limit = 0;
 	}
 	
 	/**
 	 * Returns the next type read from the reader given at init or null
-	 * if no more types can be read
+	 * if no more types can be read. The known types are returned as the
+	 * type constants of this class.
 	 * @return the next type read from the reader given at init
 	 * @throws IOException
 	 */
 	protected String nextType() throws IOException {
-		String type = null;
+		int c = skipWhitespace();
+		if (c == -1) {
+			return null;
+		}
 		
-		while (!done && type == null) {
-			type = readWord(reader);
+		word.setLength(0);
+		while (c != -1 && c != '(' && !Character.isWhitespace(c)) {
+			word.append((char)c);
+			pos++;
+			c = peek();
+		}
 
-			if (type.length() < 1) { // discard empty lines
-				type = null;
-				continue;
-			}
+		if (LINESTRING.contentEquals(word)) {
+			return LINESTRING;
 		}
-		
-		return type;
+		else if (MULTILINESTRING.contentEquals(word)) {
+			return MULTILINESTRING;
+		}
+		else if (POINT.contentEquals(word)) {
+			return POINT;
+		}
+		return word.toString();
 	}
 	
 	/**
@@ -146,48 +213,22 @@ public class WKTReader {
 		}
 	}
 	
-	/**
-	 * Reads a "word", ie whitespace delimited string of characters, from
-	 * the reader
-	 * @param r Reader to read the characters from
-	 * @return The word that was read (or empty string if nothing was read)
-	 * @throws IOException
-	 */
-	protected String readWord(Reader r) throws IOException {
-		StringBuffer buf = new StringBuffer();
-		char c = skipAllWhitespace(r);
-		
-		// read non-whitespace part
-		while(c != (char)-1 && !Character.isWhitespace(c)) {
-			buf.append(c);
-			c = (char)r.read();
-		}		
-		
-		if (c == (char)-1) {
-			setDone(true);
-		}
-		return buf.toString();
-	}
-	
 	/**
 	 * Parses a MULTILINESTRING statement that has nested linestrings from
 	 * the current reader
-	 * @return List of parsed Coord lists
-	 * @throws IOException
+	 * @param lines The store where the linestrings are added
+	 * @throws IOException if the statement couldn't be parsed
 	 */
-	protected List<List<Coord>> parseMultilinestring() 
-			throws IOException {
-		List<List<Coord>> list = new ArrayList<List<Coord>>();
-		String multiContents = readNestedContents(reader);
-		StringReader r2 = new StringReader(multiContents);
-		String lineString = readNestedContents(r2);
-		
-		while (lineString.length() > 0) {
-			list.add(parseLineString(lineString));
-			lineString = readNestedContents(r2);
+	protected void parseMultilinestring(Lines lines) throws IOException {
+		expect('(');
+		while (skipWhitespace() == '(') {
+			pos++;
+			parseLineString(lines);
+			if (skipWhitespace() == ',') {
+				pos++;
+			}
 		}
-		
-		return list;
+		expect(')');
 	}
 	
 	/**
@@ -196,18 +237,181 @@ public class WKTReader {
 	 * @throws IOException if couldn't parse coordinate values
 	 */
 	protected Coord parsePoint() throws IOException {
-		String coords = readNestedContents(reader);
-		Scanner s = new Scanner(coords);
-		double x,y;
+		expect('(');
+		double x = parseNumber();
+		double y = parseNumber();
+		skipRestOfTuple();
+		expect(')');
 		
-		try {
-			x = s.nextDouble();
-			y = s.nextDouble();
-		} catch (RuntimeException e) {
-			throw new IOException("Bad coordinate values: '" + coords + "'");
+		return new Coord(x,y);
+	}
+
+	/**
+	 * Parses coordinate tuples of a "LINESTRING" whose opening parenthesis
+	 * has been read. Values after the first two of a tuple are skipped.
+	 * @param lines The store where the linestring is added
+	 * @throws IOException if couldn't parse coordinate values
+	 */
+	protected void parseLineString(Lines lines) throws IOException {
+		while (true) {
+			double x = parseNumber();
+			double y = parseNumber();
+			lines.addPoint(x, y);
+
+			int c = skipRestOfTuple();
+			pos++;
+			if (c == ')') {
+				break;
+			}
+		}
+		lines.endLine();
+	}
+
+	/**
+	 * Skips the extra values of a coordinate tuple
+	 * @return The character that ended the tuple (',' or ')'); it isn't
+	 * consumed
+	 * @throws IOException if the input ended before the tuple
+	 */
+	private int skipRestOfTuple() throws IOException {
+		int c = peek();
+		while (c != ',' && c != ')') {
+			if (c == -1) {
+				throw new IOException("Unexpected end of input in a " +
+						"coordinate tuple");
+			}
+			pos++;
+			c = peek();
+		}
+		return c;
+	}
+
+	/**
+	 * Parses a coordinate value from the input. Values that have at most
+	 * 15 significant digits (and a moderate exponent) are computed from the
+	 * digits directly; others are parsed with
+	 * {@link Double#parseDouble(String)}. The result is the same in both
+	 * cases.
+	 * @return The value
+	 * @throws IOException if there was no valid value
+	 */
+	protected double parseNumber() throws IOException {
+		int c = skipWhitespace();
+		int len = 0;
+
+		while (c != -1 && c != ',' && c != '(' && c != ')' &&
+				!Character.isWhitespace(c)) {
+			if (len == number.length) {
+				number = Arrays.copyOf(number, len * 2);
+			}
+			number[len++] = (char)c;
+			pos++;
+			c = peek();
 		}
 		
-		return new Coord(x,y);
+		if (len == 0) {
+			throw new IOException("Missing coordinate value");
+		}
+
+		double value = parseSimpleNumber(number, len);
+		if (Double.isNaN(value)) {
+			String s = new String(number, 0, len);
+			try {
+				value = Double.parseDouble(s);
+			} catch (NumberFormatException e) {
+				throw new IOException("Bad coordinate value: '" + s + "'");
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a decimal number whose mantissa and value can be exactly
+	 * represented as a double (as then one multiplication or division
+	 * gives the correctly rounded result).
+	 * @param chars The characters of the number
+	 * @param len Number of characters
+	 * @return The value or NaN if the number couldn't be parsed this way
+	 */
+	private static double parseSimpleNumber(char[] chars, int len) {
+		int i = 0;
+		boolean negative = false;
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+
+		if (chars[0] == '-' || chars[0] == '+') {
+			negative = chars[0] == '-';
+			i++;
+		}
+
+		int start = i;
+		boolean point = false;
+		for (; i < len; i++) {
+			char c = chars[i];
+			if (c >= '0' && c <= '9') {
+				if (digits >= 18) {
+					return Double.NaN; // mantissa could overflow
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				if (mantissa > 0) {
+					digits++;
+				}
+				if (point) {
+					scale--;
+				}
+			}
+			else if (c == '.' && !point) {
+				point = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (i == start || (point && i == start + 1)) {
+			return Double.NaN; // no digits
+		}
+
+		if (i < len) { // exponent
+			if (chars[i] != 'e' && chars[i] != 'E' || ++i == len) {
+				return Double.NaN;
+			}
+			boolean negativeExp = false;
+			if (chars[i] == '-' || chars[i] == '+') {
+				negativeExp = chars[i] == '-';
+				if (++i == len) {
+					return Double.NaN;
+				}
+			}
+			int exp = 0;
+			for (; i < len; i++) {
+				char c = chars[i];
+				if (c < '0' || c > '9' || exp > 1000) {
+					return Double.NaN;
+				}
+				exp = exp * 10 + (c - '0');
+			}
+			scale += negativeExp ? -exp : exp;
+		}
+
+		if (mantissa > MAX_EXACT_MANTISSA) {
+			return Double.NaN;
+		}
+
+		double value = mantissa;
+		if (mantissa != 0) {
+			if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+				value /= POWERS_OF_TEN[-scale];
+			}
+			else if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+				value *= POWERS_OF_TEN[scale];
+			}
+			else {
+				return Double.NaN;
+			}
+		}
+
+		return negative ? -value : value;
 	}
 	
 	/**
@@ -224,21 +428,6 @@ public class WKTReader {
 		} while (c != until && c != (char)-1);
 	}
 	
-	/**
-	 * Skips all consecutive whitespace characters from reader
-	 * @param r Reader where the whitespace is skipped
-	 * @return First non-whitespace character read from the reader
-	 * @throws IOException
-	 */
-	protected char skipAllWhitespace(Reader r) throws IOException {
-		char c;
-		do {
-			c = (char)r.read();
-		} while (Character.isWhitespace(c) && c != (char)-1);
-		
-		return c;
-	}
-	
 	/**
 	 * Reads everything from the first opening parenthesis until line that
 	 * ends to a closing parenthesis and returns the contents in one string
@@ -272,40 +461,99 @@ public class WKTReader {
 	}
 	
 	/**
-	 * Returns nested contents from the reader given at init
-	 * @return nested contents from the reader given at init
+	 * Skips everything from the next opening parenthesis until the matching
+	 * closing parenthesis in the reader given at init
 	 * @throws IOException
-	 * @see #readNestedContents(Reader)
 	 */
-	public String readNestedContents() throws IOException {
-		return readNestedContents(reader);
+	protected void skipNestedContents() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != '(' && c != -1);
+
+		int parOpen = 1;
+		while (c != -1 && parOpen > 0) {
+			c = read();
+			if (c == '(') {
+				parOpen++;
+			}
+			else if (c == ')') {
+				parOpen--;
+			}
+		}
 	}
 	
 	/**
-	 * Parses coordinate tuples from "LINESTRING" lines
-	 * @param line String that contains the whole "LINESTRING"'s content
-	 * @return List of coordinates parsed from the linestring
+	 * Skips whitespace and reads an expected character
+	 * @param expected The expected character
+	 * @throws IOException if some other character (or end of input) was
+	 * read
 	 */
-	protected List<Coord> parseLineString(String line) {
-		List<Coord> coords = new ArrayList<Coord>(); 
-		Scanner lineScan;
-		Scanner tupleScan;
-		double x,y;
-		Coord c;
+	private void expect(char expected) throws IOException {
+		int c = skipWhitespace();
+		if (c != expected) {
+			throw new IOException("Expected '" + expected + "' but found " +
+					(c == -1 ? "end of input" : "'" + (char)c + "'"));
+		}
+		pos++;
+	}
 		
-		lineScan = new Scanner(line);
-		lineScan.useDelimiter(",");
+	/**
+	 * Skips all consecutive whitespace characters from the reader given at
+	 * init
+	 * @return The next (non-whitespace) character, which is not consumed,
+	 * or -1 if the input ended
+	 * @throws IOException
+	 */
+	private int skipWhitespace() throws IOException {
+		int c = peek();
+		while (c != -1 && Character.isWhitespace(c)) {
+			pos++;
+			c = peek();
+		}
+		return c;
+	}
 			
-		while (lineScan.hasNext()) {			
-			tupleScan = new Scanner(lineScan.next());
-			x = Double.parseDouble(tupleScan.next());
-			y = Double.parseDouble(tupleScan.next());
-			c = new Coord(x,y);
+	/**
+	 * Reads the next character from the reader given at init
+	 * @return The character or -1 if the input ended
+	 * @throws IOException
+	 */
+	private int read() throws IOException {
+		int c = peek();
+		if (c != -1) {
+			pos++;
+		}
+		return c;
+	}
 						
-			coords.add(c);
+	/**
+	 * Returns the next character from the reader given at init without
+	 * consuming it
+	 * @return The character or -1 if the input ended
+	 * @throws IOException
+	 */
+	private int peek() throws IOException {
+		if (pos < limit) {
+			return buffer[pos];
+		}
+		if (done) {
+			return -1;
 		}
 		
-		return coords;
+		int n;
+		do {
+			n = reader.read(buffer, 0, buffer.length);
+		} while (n == 0);
+
+		if (n < 0) {
+			setDone(true);
+			pos = limit = 0;
+			return -1;
+		}
+		pos = 0;
+		limit = n;
+		return buffer[0];
 	}
 	
 	/**
@@ -324,4 +572,83 @@ public class WKTReader {
 		this.done = done;
 	}
 
+	/**
+	 * Coordinates of linestrings stored in flat arrays
+	 */
+	public static class Lines {
+		/** x and y values of all the points */
+		private double[] coords = new double[256];
+		private int nrofPoints;
+		/** index of the first point after each line */
+		private int[] ends = new int[16];
+		private int nrofLines;
+
+		/**
+		 * Adds a point to the current line
+		 * @param x The x coordinate
+		 * @param y The y coordinate
+		 */
+		public void addPoint(double x, double y) {
+			if (2 * nrofPoints + 2 > coords.length) {
+				coords = Arrays.copyOf(coords, coords.length * 2);
+			}
+			coords[2 * nrofPoints] = x;
+			coords[2 * nrofPoints + 1] = y;
+			nrofPoints++;
+		}
+
+		/**
+		 * Ends the current line. The next point starts a new line.
+		 */
+		public void endLine() {
+			if (nrofLines == ends.length) {
+				ends = Arrays.copyOf(ends, ends.length * 2);
+			}
+			ends[nrofLines++] = nrofPoints;
+		}
+
+		/**
+		 * Returns the number of lines
+		 * @return the number of lines
+		 */
+		public int getNrofLines() {
+			return this.nrofLines;
+		}
+
+		/**
+		 * Returns the index of the first point of a line
+		 * @param line Index of the line
+		 * @return The index of the line's first point
+		 */
+		public int getStart(int line) {
+			return line == 0 ? 0 : ends[line - 1];
+		}
+
+		/**
+		 * Returns the index after the last point of a line
+		 * @param line Index of the line
+		 * @return The index after the line's last point
+		 */
+		public int getEnd(int line) {
+			return ends[line];
+		}
+
+		/**
+		 * Returns the x coordinate of a point
+		 * @param point Index of the point
+		 * @return The x coordinate
+		 */
+		public double getX(int point) {
+			return coords[2 * point];
+		}
+
+		/**
+		 * Returns the y coordinate of a point
+		 * @param point Index of the point
+		 * @return The y coordinate
+		 */
+		public double getY(int point) {
+			return coords[2 * point + 1];
+		}
+	}
 }
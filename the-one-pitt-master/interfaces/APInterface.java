@@ -15,8 +15,8 @@ import core.*;
  * mobile hosts across a wired network. The collection of all APInterface 
  * instances collectively manage a collection of hosts within range of any
  * AP. When a new host comes in range of one of them, instead of creating a new
- * connection between the AP node and the mobile node, multiple connections are
- * created to all the other mobile hosts in range of any AP.</p> 
+ * connection between the AP node and the mobile node, the mobile node is 
+ * connected to all the other mobile hosts in range of any other AP.</p> 
  * 
  * <p>Each AP can listen on multiple interface types, configurable with the 
  * <code>interfaceCount</code> and <code>interface{i}</code> settings, where {i}
@@ -25,6 +25,12 @@ import core.*;
  * groups. In either case, then, the APs act as a bridge not only across a 
  * distance but also across different interfaces.</p>
  * 
+ * <p>The hosts in range of the APs are members of a {@link SharedMedium}
+ * backbone that joined through the AP that found them. The connections to 
+ * the hosts of the other APs are resolved on demand by the backbone instead
+ * of creating a connection object for every pair of hosts. A host can be
+ * connected through only one AP at a time; it leaves the backbone when it 
+ * moves out of the AP's range or becomes inactive.</p>
  * 
  * <p>Facilitating this paradigm required some modification to the 
  * NetworkInterface superclass and the other known subclasses of it. It is 
@@ -48,13 +54,18 @@ public class APInterface extends NetworkInterface
 	protected static String[] interfaceTypes;
 	
 	/**
-	 * Collection of all hosts in range of an AP.
+	 * The backbone of all hosts in range of an AP.
 	 */
-	protected static Map<NetworkInterface, 
-                       Collection<NetworkInterface>> connectedHosts;
+	protected static SharedMedium backbone;
 	
 	protected ConnectivityOptimizer[] optimizers = null;
 	
+	static
+	{
+		DTNSim.registerForReset(APInterface.class.getCanonicalName());
+		reset();
+	}
+	
 	public APInterface(Settings settings)
 	{
 		super(settings);
@@ -95,24 +106,12 @@ public class APInterface extends NetworkInterface
 			for(String str : interfaces)
 				interfaceTypes[i++] = str;
 		}
-		
-		if(connectedHosts == null)
-			connectedHosts = new HashMap<NetworkInterface, 
-												Collection<NetworkInterface>>();
-		
-		/*
-		 *  Note that we specifically don't add this instance of APInterface to the
-		 *  connectedHosts map here because this instance is a prototype instance 
-		 *  that is not actually used during simulation.
-		 */
-		
 	}
 
 	public APInterface(APInterface ni)
 	{
 		super(ni);
 		this.optimizers = new ConnectivityOptimizer[interfaceTypes.length];
-		connectedHosts.put(this, new HashSet<NetworkInterface>());
 	}
 
 	@Override
@@ -126,9 +125,9 @@ public class APInterface extends NetworkInterface
 	{
 		this.host = host;
 		ModuleCommunicationBus comBus = host.getComBus();
-		comBus.subscribe(SCAN_INTERVAL_ID, this);
-		comBus.subscribe(RANGE_ID, this);
-		comBus.subscribe(SPEED_ID, this);
+		comBus.subscribe(SCAN_INTERVAL_KEY, this);
+		comBus.subscribe(RANGE_KEY, this);
+		comBus.subscribe(SPEED_KEY, this);
 		
 		// Instead of creating an new interface type, we add the instance to some
 		// of or all of the other declared interface types
@@ -143,59 +142,10 @@ public class APInterface extends NetworkInterface
 	@Override
 	public void connect(NetworkInterface anotherInterface)
 	{
-		Collection<NetworkInterface> myCollection = connectedHosts.get(this);
-		
-		if(anotherInterface.isActive() 
-				&& isWithinRange(anotherInterface) 
-				&& !myCollection.contains(anotherInterface)
-				&& !(anotherInterface instanceof APInterface))
+		if(anotherInterface.isActive() && isWithinRange(anotherInterface))
 		{
-			for(Map.Entry<NetworkInterface, Collection<NetworkInterface>> entry : 
-							connectedHosts.entrySet())
-			{
-				NetworkInterface farAP = entry.getKey();
-				if(farAP == this) continue;
-				for(NetworkInterface ni : entry.getValue())
-				{
-					int conSpeed = anotherInterface.getTransmitSpeed();
-					if (conSpeed > this.transmitSpeed) {
-						conSpeed = this.transmitSpeed; 
-					}
-					if(conSpeed > ni.getTransmitSpeed()) {
-						conSpeed = ni.getTransmitSpeed();
-					}
-					
-					DTNHost nearEndpoint = anotherInterface.getHost();
-					DTNHost farEndpoint = ni.getHost();
-		
-					/*
-					 * Connection Diagram:
-					 * 
-					 * Host:          nearEndpoint                 farEndpoint
-					 *                    \                          /
-					 * Intermediary:    anotherInterface            ni
-					 *                      \                      /
-					 * AP:                  this---------------farAP
-					 */
-					Connection con = new ProxiedCBRConnection(farEndpoint, ni, farAP, 
-							nearEndpoint, anotherInterface, this, conSpeed);
-					
-					
-					ni.notifyConnectionListeners(CON_UP, anotherInterface.getHost());
-					
-					// add con to end point connection lists
-					anotherInterface.getConnections().add(con);
-					ni.getConnections().add(con);
-					
-					// inform host routers about connection
-					nearEndpoint.connectionUp(con);
-					farEndpoint.connectionUp(con);
-					
-				}
-			}
-			myCollection.add(anotherInterface);
+			createConnection(anotherInterface);
 		}
-
 	}
 
 	@Override
@@ -206,14 +156,14 @@ public class APInterface extends NetworkInterface
 			optimizers[i].updateLocation(this);
 		}
 		
-		// First break the old ones
-		for (Iterator<NetworkInterface> i =  connectedHosts.get(this).iterator(); 
-					i.hasNext();) 
+		// First break the old ones (leaving only moves the last member)
+		for(int i = backbone.getNrofMembers(this) - 1; i >= 0; i--)
 		{
-			NetworkInterface anotherInterface = i.next();
+			NetworkInterface anotherInterface = backbone.getMember(this, i);
 
-			if (!isWithinRange(anotherInterface)) {
-				i.remove();
+			if (!anotherInterface.isActive() || 
+					!isWithinRange(anotherInterface)) {
+				backbone.leave(anotherInterface);
 			}
 		}
 		
@@ -227,28 +177,36 @@ public class APInterface extends NetworkInterface
 		}
 	}
 
+	/**
+	 * Joins the other interface to the backbone through this AP, which 
+	 * connects it to the hosts of all the other APs.
+	 * 
+	 * <pre>
+	 * Connection Diagram:
+	 * 
+	 * Host:          nearEndpoint                 farEndpoint
+	 *                    \                          /
+	 * Intermediary:    anotherInterface            ni
+	 *                      \                      /
+	 * AP:                  this---------------farAP
+	 * </pre>
+	 */
 	@Override
 	public void createConnection(NetworkInterface anotherInterface)
 	{
-		Collection<NetworkInterface> myCollection = connectedHosts.get(this);
-		if (!isConnected(anotherInterface) && 
-				!myCollection.contains(anotherInterface)) {  
-			for(NetworkInterface ni : myCollection)
-			{
-				// connection speed is the lower one of the two speeds 
-				int conSpeed = anotherInterface.getTransmitSpeed();
-				if (conSpeed > this.transmitSpeed) {
-					conSpeed = this.transmitSpeed; 
-				}
-								
-				Connection con = new CBRConnection( 
-						anotherInterface.getHost(), anotherInterface, 
-						ni.getHost(), this, 
-							conSpeed);
-				connect(con,anotherInterface);
-			}
+		if(!(anotherInterface instanceof APInterface) && 
+				!backbone.isMember(anotherInterface))
+		{
+			backbone.join(anotherInterface, this);
 		}
+	}
 
+	/**
+	 * Creates a new backbone for a new simulation run
+	 */
+	public static void reset()
+	{
+		backbone = new SharedMedium();
 	}
 
 	@Override
@@ -8,12 +8,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 
-import movement.MovementModel;
-
 import core.Coord;
 import core.DTNSim;
 import core.NetworkInterface;
-import core.Settings;
 
 /**
  * <P>
@@ -33,18 +30,48 @@ import core.Settings;
  * connectivity. 
  * </P>
  * <P>
- * <strong>Note:</strong> this class does NOT support negative
- * coordinates. Also, it makes sense to normalize the coordinates to start
- * from zero to conserve memory. 
+ * The grid has multiple levels for interfaces with different transmit ranges
+ * (e.g., access points that share the grid of other interface types). Level
+ * <CODE>k</CODE> has the interfaces whose range is at most
+ * <CODE>baseSize * 2^k</CODE>, where the base size is the range the grid was
+ * created with, and its cells are (at least) that large. Since the range of
+ * a connection is the smaller range of the two interfaces, the interfaces of
+ * a level only need to be searched up to that smaller range: a long range
+ * interface only sees the short range interfaces in the few small cells
+ * around it, and vice versa. With a single range, there is only one level
+ * with the interfaces' range as the cell size. Ranges below the size of
+ * the lowest level ({@link #MIN_LEVEL}), including zero, share that level,
+ * and a level is dropped when its last interface leaves it.
+ * </P>
+ * <P>
+ * If the interfaces of a level crowd in a few cells (e.g. in the center area
+ * of {@link movement.CrowdMovement}), the cells of the level are subdivided
+ * so that the near interfaces include less of the interfaces that are out of
+ * range. The cells are merged back when the crowd disperses.
+ * </P>
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
-	private GridCell[][] cells;
-	private HashMap<NetworkInterface,GridCell> ginterfaces;
+	/** Interface-weighted average number of interfaces per cell that
+	 * causes the cells of a level to be subdivided ({@value}) */
+	public static final int SPLIT_LOAD = 16;
+	/** Interface-weighted average number of interfaces per cell that
+	 * causes subdivided cells of a level to be merged ({@value}) */
+	public static final int MERGE_LOAD = 2;
+	/** Maximum number of times the cells of a level are halved ({@value}) */
+	public static final int MAX_SUBDIVISIONS = 2;
+	/** Index of the lowest level ({@value}). Interfaces with smaller
+	 * ranges (including zero) are put on this level. */
+	public static final int MIN_LEVEL = -4;
+
+	/** levels of the grid by their index */
+	private HashMap<Integer, Level> levels;
+	/** levels of the grid in index order */
+	private ArrayList<Level> levelList;
+	private HashMap<NetworkInterface, Entry> ginterfaces;
+	/** the cells of the last near interfaces query */
+	private ArrayList<GridCell> nearCells;
+	/** size of the cells of the level 0 */
 	private int cellSize;
-	private int rows;
-	private int cols;
-	private static int worldSizeX;
-	private static int worldSizeY;
 
 	static HashMap<Integer,ConnectivityGrid> gridobjects;
 
@@ -55,39 +82,27 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	
 	public static void reset() {
 		gridobjects = new HashMap<Integer,ConnectivityGrid>();
-
-		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
-		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
-		worldSizeX = worldSize[0];
-		worldSizeY = worldSize[1];
 	}
 
 	/**
 	 * Creates a new overlay connectivity grid
 	 *
-	 * @param cellSize Cell's edge's length (must be larger than the largest
-	 * 	radio coverage's diameter)
+	 * @param cellSize Cell's edge's length for the interfaces of the base
+	 * range (other ranges get their own levels)
 	 */
 	private ConnectivityGrid(int cellSize) {
-		this.rows = worldSizeY/cellSize + 1;
-		this.cols = worldSizeX/cellSize + 1;
-		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2];
 		this.cellSize = cellSize;
-
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
-		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		this.levels = new HashMap<Integer, Level>();
+		this.levelList = new ArrayList<Level>();
+		this.ginterfaces = new HashMap<NetworkInterface, Entry>();
+		this.nearCells = new ArrayList<GridCell>();
 	}
 
 	/**
 	 * Returns a connectivity grid object based on a hash value
 	 * @param key A hash value that separates different interfaces from each other
-	 * @param cellSize  Cell's edge's length (must be larger than the largest
-	 * 	radio coverage's diameter)
+	 * @param cellSize  Cell's edge's length for the base range if a new grid
+	 * is created (interfaces with other ranges use other levels of the grid)
 	 * @return The connectivity grid object for a specific interface
 	 */
 	public static ConnectivityGrid ConnectivityGridFactory(int key, 
@@ -96,20 +111,86 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			return (ConnectivityGrid)gridobjects.get((Integer)key);
 		} else {
 			ConnectivityGrid newgrid = 
-				new ConnectivityGrid((int)Math.ceil(cellSize));
+				new ConnectivityGrid(Math.max(1, (int)Math.ceil(cellSize)));
 			gridobjects.put((Integer)key,newgrid);
 			return newgrid;
 		}
 	}
 
+	/**
+	 * Returns the grid level for interfaces of a transmit range
+	 * @param range The transmit range
+	 * @return The level whose size is the smallest one that is at least the
+	 * range (or the lowest level for very small ranges)
+	 */
+	private Level getLevel(double range) {
+		double ratio = range / cellSize;
+		int index = 0;
+		if (ratio <= Math.scalb(1.0, MIN_LEVEL)) {
+			index = MIN_LEVEL;
+		}
+		else if (ratio > 1 || ratio <= 0.5) {
+			index = Math.getExponent(ratio);
+			if (Math.scalb(1.0, index) < ratio) {
+				index++;
+			}
+		}
+
+		Level level = levels.get(index);
+		if (level == null) {
+			level = new Level(index);
+			levels.put(index, level);
+			int i = 0;
+			while (i < levelList.size() && levelList.get(i).index < index) {
+				i++;
+			}
+			levelList.add(i, level);
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the distance from an interface to the outer edge of its
+	 * neighboring cells (see {@link #getNearInterfaces(NetworkInterface)}).
+	 * All the interfaces that are not near interfaces were at least this far
+	 * away when their location was last updated. With multiple levels, the
+	 * distance is adjusted so that the interfaces that are not near can't
+	 * get in range of the interface (as defined by the ranges of both
+	 * interfaces) before they have moved the same distance less the range
+	 * of the interface.
+	 * @param ni The interface
+	 * @return The distance to the edge of the neighboring cells
+	 */
+	@Override
+	public double getNearDistance(NetworkInterface ni) {
+		Coord c = ni.getLocation();
+		double range = ni.getTransmitRange();
+		double slack = Double.POSITIVE_INFINITY;
+		double distance = Double.POSITIVE_INFINITY;
+
+		for (int i = 0, n = levelList.size(); i < n; i++) {
+			Level level = levelList.get(i);
+			double q = Math.min(range, level.size);
+			double d = level.block(c, q);
+			if (d - q < slack) {
+				slack = d - q;
+				distance = (q == range ? d : range + slack);
+			}
+		}
+		return distance;
+	}
+
 	/**
 	 * Adds a network interface to the overlay grid
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		if (ginterfaces.containsKey(ni)) {
+			return;
+		}
+		Entry e = new Entry(ni.getTransmitRange());
+		ginterfaces.put(ni, e);
+		e.level.add(ni, e, ni.getLocation());
 	}
 
 	/** 
@@ -117,11 +198,10 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		Entry e = ginterfaces.remove(ni);
+		if (e != null) {
+			e.level.remove(ni, e);
 		}
-		ginterfaces.remove(ni);
 	}
 
 	/**
@@ -135,60 +215,63 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	/**
-	 * Checks and updates (if necessary) interface's position in the grid
+	 * Checks and updates (if necessary) interface's position in the grid.
+	 * Interfaces that are not in the grid (e.g. inactive ones) are ignored.
+	 * If the transmit range of the interface has changed, the interface is
+	 * moved to the level of the new range.
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
-
-		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+		Entry e = ginterfaces.get(ni);
+		if (e == null) {
+			return;
 		}
-	}
+		if (e.range != ni.getTransmitRange()) {
+			e.level.remove(ni, e);
+			e.setRange(ni.getTransmitRange());
+			e.level.add(ni, e, ni.getLocation());
+			return;
+		}
+		Level level = e.level;
+		GridCell newCell = level.cellFromCoord(ni.getLocation(), true);
 
-	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
-	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+		if (newCell != e.cell) {
+			level.move(ni, e, newCell);
+		}
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Sets whether an interface is an active transmitter. The number of
+	 * active transmitters is kept per cell and moved along with the interface
+	 * when it changes cells, so the contention around any location can be
+	 * read without visiting the interfaces.
+	 * @param ni The interface whose state changed
+	 * @param transmitting True if the interface is transmitting
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	public void setTransmitting(NetworkInterface ni, boolean transmitting) {
+		Entry e = ginterfaces.get(ni);
+		if (e == null || e.transmitting == transmitting) {
+			return;
+		}
+		e.transmitting = transmitting;
+		e.cell.transmitters += transmitting ? 1 : -1;
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
-	 * @param c Coordinates
-	 * @return The cell
+	 * Returns the number of active transmitters in the cell of the interface
+	 * and in its neighboring cells (including the interface itself if it is
+	 * transmitting).
+	 * @param ni The interface
+	 * @return Number of active transmitters near the interface
+	 * @see #setTransmitting(NetworkInterface, boolean)
 	 */
-	private GridCell cellFromCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1; 
-		int col = (int)(c.getX()/cellSize) + 1;
-
-		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
-		c + " is out of world's bounds";
-		
-		return this.cells[row][col];
+	public int getTransmittersNear(NetworkInterface ni) {
+		collectNearCells(ni);
+		int count = 0;
+		for (int i = 0, n = nearCells.size(); i < n; i++) {
+			count += nearCells.get(i).transmitters;
+		}
+		return count;
 	}
 
 	/**
@@ -200,32 +283,338 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 
 	/**
 	 * Returns all interfaces using the same technology and channel that are in
-	 * neighboring cells
+	 * neighboring cells. On each level, the neighboring cells are the cells
+	 * that are within the smaller one of the interface's range and the
+	 * level's range from the interface.
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
-		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
-
-		GridCell loc = (GridCell)ginterfaces.get(netinterf);
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
+		int count = collectNearCells(netinterf);
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>(count);
+
+		for (int i = 0, n = nearCells.size(); i < n; i++) {
+			ArrayList<NetworkInterface> interfaces = 
+				nearCells.get(i).interfaces;
+			for (int j = 0, m = interfaces.size(); j < m; j++) {
+				ni.add(interfaces.get(j));
 			}
 		}
 		return ni;
 	}
 
+	/**
+	 * Collects the neighboring cells of an interface on all levels to
+	 * {@link #nearCells} (see {@link #getNearInterfaces(NetworkInterface)})
+	 * @param netinterf The interface
+	 * @return Number of interfaces in the cells
+	 */
+	private int collectNearCells(NetworkInterface netinterf) {
+		nearCells.clear();
+		if (!ginterfaces.containsKey(netinterf)) {
+			return 0;
+		}
+
+		Coord c = netinterf.getLocation();
+		double range = netinterf.getTransmitRange();
+		int count = 0;
+		for (int i = 0, n = levelList.size(); i < n; i++) {
+			Level level = levelList.get(i);
+			level.block(c, Math.min(range, level.size));
+			for (int row = level.rowLo; row <= level.rowHi; row++) {
+				for (int col = level.colLo; col <= level.colHi; col++) {
+					GridCell cell = level.cells.get(row, col);
+					if (cell != null) {
+						nearCells.add(cell);
+						count += cell.interfaces.size();
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of levels in the grid
+	 * @return the number of levels
+	 */
+	public int getNrofLevels() {
+		return this.levelList.size();
+	}
+
+	/**
+	 * Returns the size of the cells where the interface is
+	 * @param ni The interface
+	 * @return The cell size or 0 if the interface is not in the grid
+	 */
+	public double getCellSize(NetworkInterface ni) {
+		Entry e = ginterfaces.get(ni);
+		return e == null ? 0 : e.level.cellSize;
+	}
 
 	/**
 	 * Returns a string representation of the ConnectivityCells object
 	 * @return a string representation of the ConnectivityCells object
 	 */
 	public String toString() {
-		return getClass().getSimpleName() + " of size " + 
-			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+		return getClass().getSimpleName() + " with " + levelList.size() +
+			" levels, cell size=" + this.cellSize;
+	}
+
+	/**
+	 * Grid state of an interface
+	 */
+	private class Entry {
+		private double range;
+		private Level level;
+		private GridCell cell;
+		private boolean transmitting;
+
+		private Entry(double range) {
+			setRange(range);
+		}
+
+		private void setRange(double range) {
+			this.range = range;
+			this.level = getLevel(range);
+		}
+	}
+
+	/**
+	 * One level of the grid. Contains the interfaces with ranges between
+	 * the half of the level's size and the size.
+	 */
+	private class Level {
+		private final int index;
+		/** the largest range of the interfaces of this level */
+		private final double size;
+		/** how many times the cells of this level are subdivided */
+		private int subdivisions;
+		private double cellSize;
+		private CellMap cells;
+		/** number of interfaces on this level */
+		private int count;
+		/** sum of the squared numbers of interfaces of the cells */
+		private long load;
+		/** the last block of cells (see {@link #block(Coord, double)}) */
+		private int rowLo, rowHi, colLo, colHi;
+
+		private Level(int index) {
+			this.index = index;
+			this.size = index == 0 ? ConnectivityGrid.this.cellSize :
+				Math.scalb((double)ConnectivityGrid.this.cellSize, index);
+			this.subdivisions = 0;
+			this.cellSize = size;
+			this.cells = new CellMap();
+		}
+
+		/**
+		 * Returns the cell of the given location
+		 * @param c The location
+		 * @param create If true, the cell is created if it doesn't exist
+		 * @return The cell (or null if it didn't exist and wasn't created)
+		 */
+		private GridCell cellFromCoord(Coord c, boolean create) {
+			int row = cellIndex(c.getY());
+			int col = cellIndex(c.getX());
+			GridCell cell = cells.get(row, col);
+			if (cell == null && create) {
+				cell = new GridCell(row, col);
+				cells.put(cell);
+			}
+			return cell;
+		}
+
+		/**
+		 * Returns the index of the cell (row or column) where a coordinate
+		 * is
+		 * @param v The coordinate
+		 * @return The floor of the coordinate divided by the cell size
+		 */
+		private int cellIndex(double v) {
+			double d = v / cellSize;
+			int i = (int)d;
+			return d < i ? i - 1 : i;
+		}
+
+		/**
+		 * Sets {@link #rowLo}, {@link #rowHi}, {@link #colLo} and
+		 * {@link #colHi} to the block of cells that contains all the
+		 * locations that are at most the given distance away from the
+		 * given location (in both axes).
+		 * @param c The location
+		 * @param distance The distance
+		 * @return Distance from the location to the outer edge of the block
+		 */
+		private double block(Coord c, double distance) {
+			int row = cellIndex(c.getY());
+			int col = cellIndex(c.getX());
+			double x = c.getX() - col * cellSize;
+			double y = c.getY() - row * cellSize;
+
+			if (distance >= cellSize) {
+				int n = distance == cellSize ? 1 :
+					(int)Math.ceil(distance / cellSize);
+				rowLo = row - n;
+				rowHi = row + n;
+				colLo = col - n;
+				colHi = col + n;
+				return n * cellSize + Math.min(Math.min(x, cellSize - x),
+						Math.min(y, cellSize - y));
+			}
+
+			/* only the cells that the range reaches */
+			colLo = x < distance ? col - 1 : col;
+			colHi = cellSize - x <= distance ? col + 1 : col;
+			rowLo = y < distance ? row - 1 : row;
+			rowHi = cellSize - y <= distance ? row + 1 : row;
+			return Math.min(
+					Math.min(x + (col - colLo) * cellSize,
+							cellSize - x + (colHi - col) * cellSize),
+					Math.min(y + (row - rowLo) * cellSize,
+							cellSize - y + (rowHi - row) * cellSize));
+		}
+
+		private void add(NetworkInterface ni, Entry e, Coord c) {
+			e.cell = cellFromCoord(c, true);
+			load += 2 * e.cell.interfaces.size() + 1;
+			e.cell.addInterface(ni);
+			if (e.transmitting) {
+				e.cell.transmitters++;
+			}
+			count++;
+			rebalance();
+		}
+
+		private void remove(NetworkInterface ni, Entry e) {
+			e.cell.removeInterface(ni);
+			load -= 2 * e.cell.interfaces.size() + 1;
+			if (e.transmitting) {
+				e.cell.transmitters--;
+			}
+			count--;
+			if (count == 0) { /* no need to search the level anymore */
+				levels.remove(index);
+				levelList.remove(this);
+				return;
+			}
+			rebalance();
+		}
+
+		private void move(NetworkInterface ni, Entry e, GridCell to) {
+			GridCell from = e.cell;
+			load += 2 * (to.interfaces.size() - from.interfaces.size()) + 2;
+			from.moveInterface(ni, to);
+			if (e.transmitting) {
+				from.transmitters--;
+				to.transmitters++;
+			}
+			e.cell = to;
+			rebalance();
+		}
+
+		/**
+		 * Subdivides or merges the cells of this level if the interfaces
+		 * have crowded in or dispersed from a few cells
+		 */
+		private void rebalance() {
+			if (load > (long)SPLIT_LOAD * count &&
+					subdivisions < MAX_SUBDIVISIONS) {
+				subdivisions++;
+			}
+			else if (load < (long)MERGE_LOAD * count && subdivisions > 0) {
+				subdivisions--;
+			}
+			else {
+				return;
+			}
+
+			cellSize = Math.scalb(size, -subdivisions);
+			CellMap old = cells;
+			cells = new CellMap();
+			load = 0;
+			for (GridCell cell : old.values()) {
+				for (NetworkInterface ni : cell.getInterfaces()) {
+					Entry e = ginterfaces.get(ni);
+					e.cell = cellFromCoord(ni.getLocation(), true);
+					load += 2 * e.cell.interfaces.size() + 1;
+					e.cell.addInterface(ni);
+					if (e.transmitting) {
+						e.cell.transmitters++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cells of a level in an open addressing hash table keyed by the row
+	 * and column of the cell. Only the cells that have had interfaces are
+	 * stored, so the grid doesn't depend on the world's size, supports
+	 * negative coordinates, and interfaces far away from each other don't
+	 * make the level allocate the cells between them.
+	 */
+	private static class CellMap {
+		/** initial size of the table (a power of two) */
+		private static final int INIT_SIZE = 16;
+		private GridCell[] table;
+		private int size;
+
+		private CellMap() {
+			this.table = new GridCell[INIT_SIZE];
+		}
+
+		private static int hash(int row, int col) {
+			int h = row * 0x9E3779B9 + col;
+			return h ^ (h >>> 16);
+		}
+
+		private GridCell get(int row, int col) {
+			int mask = table.length - 1;
+			for (int i = hash(row, col) & mask; ; i = (i + 1) & mask) {
+				GridCell cell = table[i];
+				if (cell == null || (cell.row == row && cell.col == col)) {
+					return cell;
+				}
+			}
+		}
+
+		/**
+		 * Adds a cell to the map. The map must not have a cell with the
+		 * same row and column yet.
+		 * @param cell The cell to add
+		 */
+		private void put(GridCell cell) {
+			if (2 * (size + 1) > table.length) {
+				GridCell[] old = table;
+				table = new GridCell[old.length * 2];
+				for (GridCell c : old) {
+					if (c != null) {
+						insert(c);
+					}
+				}
+			}
+			insert(cell);
+			size++;
+		}
+
+		private void insert(GridCell cell) {
+			int mask = table.length - 1;
+			int i = hash(cell.row, cell.col) & mask;
+			while (table[i] != null) {
+				i = (i + 1) & mask;
+			}
+			table[i] = cell;
+		}
+
+		private Collection<GridCell> values() {
+			ArrayList<GridCell> list = new ArrayList<GridCell>(size);
+			for (GridCell cell : table) {
+				if (cell != null) {
+					list.add(cell);
+				}
+			}
+			return list;
+		}
 	}
 
 	/**
@@ -236,8 +625,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
 		private ArrayList<NetworkInterface> interfaces;
+		/** number of active transmitters in this cell */
+		private int transmitters;
+		private final int row;
+		private final int col;
 
-		private GridCell() {
+		private GridCell(int row, int col) {
+			this.row = row;
+			this.col = col;
 			this.interfaces = new ArrayList<NetworkInterface>(
 					EXPECTED_INTERFACE_COUNT);
 		}
@@ -25,6 +25,11 @@ abstract public class ConnectivityOptimizer {
 	 */
 	abstract public void addInterfaces(Collection<NetworkInterface> interfaces);
 
+	/**
+	 * Removes a network interface from the optimizer (if it is present)
+	 */
+	abstract public void removeInterface(NetworkInterface ni);
+
 	/**
 	 * Updates a network interface's location
 	 */
@@ -45,4 +50,16 @@ abstract public class ConnectivityOptimizer {
 	 * ConnectivityOptimizer
 	 */
 	abstract public Collection<NetworkInterface> getAllInterfaces();
+
+	/**
+	 * Returns a distance that all the interfaces that are not returned by
+	 * {@link #getNearInterfaces(NetworkInterface)} were at least away from
+	 * the interface when their location was last updated. The default
+	 * implementation returns 0, i.e., gives no guarantees.
+	 * @param ni The interface
+	 * @return The distance
+	 */
+	public double getNearDistance(NetworkInterface ni) {
+		return 0;
+	}
 }
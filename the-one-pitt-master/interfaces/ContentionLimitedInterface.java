@@ -0,0 +1,201 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.Collection;
+
+import core.Connection;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+import core.VBRConnection;
+
+/**
+ * A Network Interface that provides a variable bit-rate service where the
+ * bit-rate depends on the number of active transmitters around the
+ * interface. Unlike {@link InterferenceLimitedInterface}, which only counts
+ * the transmitting peers it is connected to, the contention here is read from
+ * the per-cell transmitter counts of the {@link ConnectivityGrid}. Each
+ * interface keeps its own entry in the grid up to date, so the contention
+ * around an interface costs a constant amount of work per update regardless
+ * of the crowd density. The configured transmit speed is the maximum
+ * obtainable speed.
+ */
+public class ContentionLimitedInterface extends NetworkInterface {
+	private int currentTransmitSpeed;
+	private int numberOfTransmissions;
+	/** simulation time of the previous update */
+	private double lastUpdate;
+	/** the optimizer of the interface, which counts the transmitters */
+	private ConnectivityGrid grid;
+
+	public ContentionLimitedInterface(Settings s) {
+		super(s);
+		this.currentTransmitSpeed = 0;
+		this.numberOfTransmissions = 0;
+	}
+
+	/**
+	 * Copy constructor
+	 * @param ni the copied network interface object
+	 */
+	public ContentionLimitedInterface(ContentionLimitedInterface ni) {
+		super(ni);
+		this.currentTransmitSpeed = 0;
+		this.numberOfTransmissions = 0;
+		this.lastUpdate = SimClock.getTime();
+	}
+
+	public NetworkInterface replicate() {
+		return new ContentionLimitedInterface(this);
+	}
+
+	/**
+	 * Sets the host of the interface and checks that the interface's
+	 * optimizer is a {@link ConnectivityGrid}, which counts the transmitters
+	 * @throws SettingsError if the optimizer isn't a ConnectivityGrid
+	 */
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		if (!(optimizer instanceof ConnectivityGrid)) {
+			throw new SettingsError("Interface " + getInterfaceType() +
+					" of " + host + " requires a ConnectivityGrid instead of " +
+					optimizer);
+		}
+		this.grid = (ConnectivityGrid)optimizer;
+	}
+
+	/**
+	 * Returns the transmit speed of this network layer
+	 * @return the transmit speed
+	 */
+	public int getTransmitSpeed() {
+		return this.currentTransmitSpeed;
+	}
+
+	/**
+	 * Tries to connect this host to another host. The other host must be
+	 * active and within range of this host for the connection to succeed.
+	 * @param anotherInterface The host to connect to
+	 */
+	public void connect(NetworkInterface anotherInterface) {
+		if (isScanning()
+				&& anotherInterface.acceptingConnections()
+				&& isWithinRange(anotherInterface)
+				&& !isConnected(anotherInterface)
+				&& (this != anotherInterface)) {
+			// new contact within range
+
+			Connection con = new VBRConnection(this.host, this,
+					anotherInterface.getHost(), anotherInterface);
+			connect(con, anotherInterface);
+		}
+	}
+
+	/**
+	 * Updates the state of current connections (i.e., tears down connections
+	 * that are out of range), the transmitter count of this interface in the
+	 * grid and the current transmit speed. Finally advances the transfers of
+	 * the connections this host initiated, so every connection is advanced
+	 * once per update round.
+	 */
+	public void update() {
+		double timeIncrement = SimClock.getTime() - this.lastUpdate;
+		this.lastUpdate = SimClock.getTime();
+
+		// First break the old ones
+		optimizer.updateLocation(this);
+		if (!isActive()) {
+			for (int i=0; i < connections.size();) {
+				connections.get(i).disconnect(this);
+			}
+		}
+
+		for (int i=0; i<this.connections.size(); ) {
+			Connection con = this.connections.get(i);
+			NetworkInterface anotherInterface = con.getOtherInterface(this);
+
+			// all connections should be up at this stage
+			assert con.isUp() : "Connection " + con + " was down!";
+
+			if (!isWithinRange(anotherInterface)) {
+				con.disconnect(this);
+			} else {
+				i++;
+			}
+		}
+
+		if (isActive()) {
+			// Then find new possible connections
+			Collection<NetworkInterface> interfaces =
+				grid.getNearInterfaces(this);
+			for (NetworkInterface i : interfaces) {
+				connect(i);
+			}
+		}
+
+		numberOfTransmissions = 0;
+		for (int i=0, n = connections.size(); i < n; i++) {
+			if (connections.get(i).getMessage() != null) {
+				numberOfTransmissions++;
+			}
+		}
+		grid.setTransmitting(this, numberOfTransmissions > 0);
+
+		int ntrans = numberOfTransmissions;
+		if (ntrans < 1) ntrans = 1;
+		int numberOfActive = grid.getTransmittersNear(this);
+		if (numberOfActive < 2) numberOfActive = 2;
+
+		// Based on the equation of Gupta and Kumar - and the transmission speed
+		// is divided equally to all the ongoing transmissions
+		currentTransmitSpeed =
+			(int)Math.floor((double)transmitSpeed /
+					(Math.sqrt((1.0*numberOfActive) *
+							Math.log(1.0*numberOfActive))) /
+							ntrans );
+
+		for (int i=0, n = connections.size(); i < n; i++) {
+			Connection con = connections.get(i);
+			if (con.isInitiator(this.host) && con instanceof VBRConnection) {
+				((VBRConnection)con).update(timeIncrement);
+			}
+		}
+	}
+
+	/**
+	 * Creates a connection to another host. This method does not do any checks
+	 * on whether the other node is in range or active
+	 * @param anotherInterface The interface to create the connection to
+	 */
+	public void createConnection(NetworkInterface anotherInterface) {
+		if (!isConnected(anotherInterface) && (this != anotherInterface)) {
+			// new contact within range
+
+			Connection con = new VBRConnection(this.host, this,
+					anotherInterface.getHost(), anotherInterface);
+			connect(con,anotherInterface);
+		}
+	}
+
+	/**
+	 * Returns true if this interface is actually transmitting data
+	 */
+	public boolean isTransferring() {
+		return (numberOfTransmissions > 0);
+	}
+
+	/**
+	 * Returns a string representation of the object.
+	 * @return a string representation of the object.
+	 */
+	public String toString() {
+		return "ContentionLimitedInterface " + super.toString();
+	}
+
+}
@@ -1,30 +1,36 @@
 package interfaces;
 
-import java.util.*;
-
-import core.CBRConnection;
-import core.Connection;
+import core.DTNSim;
 import core.NetworkInterface;
 import core.Settings;
+import core.SharedMedium;
 
+/**
+ * A NetworkInterface that connects its host to all the other hosts that
+ * have an InternetInterface. The interfaces are members of a
+ * {@link SharedMedium} backbone, so the connections between the hosts are
+ * resolved on demand instead of creating a connection object for every pair
+ * of hosts.
+ */
 public class InternetInterface extends NetworkInterface
 {
+	/** The backbone that connects all the InternetInterfaces */
+	protected static SharedMedium backbone;
+
+	static
+	{
+		DTNSim.registerForReset(InternetInterface.class.getCanonicalName());
+		reset();
+	}
 
-	protected static Collection<NetworkInterface> connectedHosts;
-	protected boolean connectionsMade;
-	
 	public InternetInterface(Settings s)
 	{
 		super(s);
-		connectedHosts = new HashSet<NetworkInterface>();
-		connectionsMade = false;
 	}
 
 	public InternetInterface(InternetInterface ni)
 	{
 		super(ni);
-		connectedHosts.add(this);
-		connectionsMade = ni.connectionsMade;
 	}
 
 	@Override
@@ -36,50 +42,38 @@ public class InternetInterface extends NetworkInterface
 	@Override
 	public void connect(NetworkInterface anotherInterface)
 	{
-		if(this != anotherInterface)
-		{
-			// connection speed is the lower one of the two speeds 
-			int conSpeed = anotherInterface.getTransmitSpeed();
-			if (conSpeed > this.transmitSpeed) {
-				conSpeed = this.transmitSpeed; 
-			}
-
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
-			connect(con,anotherInterface);
-		}
-
+		createConnection(anotherInterface);
 	}
 
 	@Override
 	public void update()
 	{
-		if(!connectionsMade)
+		if(!backbone.isMember(this))
 		{
-			for(Iterator<NetworkInterface> i = connectedHosts.iterator(); i.hasNext();)
-			{
-				NetworkInterface ni = i.next();
-				createConnection(ni);
-			}
-			connectionsMade = true;
+			backbone.join(this, null);
 		}
-
 	}
 
+	/**
+	 * Joins this and the other interface (if it is an InternetInterface) to
+	 * the backbone, which connects them to each other.
+	 */
 	@Override
 	public void createConnection(NetworkInterface anotherInterface)
 	{
-		if (!isConnected(anotherInterface) && (this != anotherInterface)) {    			
-			// connection speed is the lower one of the two speeds 
-			int conSpeed = anotherInterface.getTransmitSpeed();
-			if (conSpeed > this.transmitSpeed) {
-				conSpeed = this.transmitSpeed; 
-			}
-
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
-			connect(con,anotherInterface);
+		update();
+		if(anotherInterface instanceof InternetInterface &&
+				!backbone.isMember(anotherInterface))
+		{
+			backbone.join(anotherInterface, null);
 		}
 	}
 
+	/**
+	 * Creates a new backbone for a new simulation run
+	 */
+	public static void reset()
+	{
+		backbone = new SharedMedium();
+	}
 }
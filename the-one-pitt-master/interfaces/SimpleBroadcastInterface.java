@@ -69,15 +69,20 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 * that are out of range).
 	 */
 	public void update() {
-		// First break the old ones
-		optimizer.updateLocation(this);
 		if(!isActive())
 		{
 			for(int i=0; i < connections.size();)
 				connections.get(i).disconnect(this);
+			resetContactCheck();
 			return;
 		}
 		
+		optimizer.updateLocation(this);
+		if (isContactCheckDeferred()) {
+			return; // no connection can change yet
+		}
+		
+		// First break the old ones
 		for (int i=0; i<this.connections.size(); ) {
 			Connection con = this.connections.get(i);
 			NetworkInterface anotherInterface = con.getOtherInterface(this);
@@ -102,6 +107,8 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 		for (NetworkInterface i : interfaces) {
 			connect(i);
 		}
+		
+		deferContactCheck(interfaces, optimizer.getNearDistance(this));
 	}
 
 	/** 
@@ -84,7 +84,8 @@ public class SmartphoneActiveness implements Activeness
 	public SmartphoneActiveness(Settings s)
 	{
 		if(rng == null)
-			rng = new Random();
+			rng = RandomStreams.getStream(
+					SmartphoneActiveness.class.getSimpleName());
 		/*
 		 * From the paper, the rng distribution parameters vary over a population
 		 * of users. In most cases, the parameters vary uniformly, except for the
@@ -207,6 +208,15 @@ public class SmartphoneActiveness implements Activeness
 		return true;
 	}
 	
+	public double nextTransitionTime()
+	{
+		/* isActive() picks the next interval at the first moment after the
+		 * current one */
+		if(SimClock.getTime() < curStartTime) return curStartTime;
+		
+		return Math.nextUp(curEndTime);
+	}
+	
 	public SmartphoneActiveness replicate()
 	{
 		return new SmartphoneActiveness(this);
@@ -84,7 +84,7 @@ public class ActivenessHandler {
 		
 		double time = SimClock.getTime();
 		
-		if (this.curRange.isOut(time)) { // time for the next time range
+		while (this.curRange.isOut(time)) { // time for the next time range
 			this.curRange = activeTimes.poll();
 			if (curRange == null) {
 				return false; // out of active times
@@ -93,6 +93,36 @@ public class ActivenessHandler {
 		
 		return curRange.isInRange(time);
 	}
+	
+	/**
+	 * Returns the next time when the value of {@link #isActive()} may 
+	 * change, i.e., the start of the current time range or the first moment
+	 * after its end.
+	 * @return The time of the next change or Double.MAX_VALUE if the value 
+	 * doesn't change after the current time
+	 */
+	public double nextChangeTime() {
+		if (this.activeTimes == null || this.curRange == null) {
+			return Double.MAX_VALUE;
+		}
+		double time = SimClock.getTime();
+		if (curRange.isOut(time)) {
+			return Math.nextUp(time); // isActive() moves to the next range
+		}
+		if (time < curRange.start) {
+			return curRange.start;
+		}
+		return Math.nextUp(curRange.end);
+	}
+
+	/**
+	 * Returns true if no active times are defined, i.e., the node is active
+	 * all the time
+	 * @return true if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return this.activeTimes == null;
+	}
 
 	/**
 	 * Class for handling time ranges
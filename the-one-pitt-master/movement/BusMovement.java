@@ -74,6 +74,15 @@ public class BusMovement extends MapRouteMovement {
 		return path;
 	}
 
+	/**
+	 * Returns false; the stops of a bus are reported to the bus control
+	 * system as they happen.
+	 */
+	@Override
+	protected boolean hasIndependentPaths() {
+		return false;
+	}
+
 	@Override
 	public BusMovement replicate() {
 		return new BusMovement(this);
@@ -172,6 +172,14 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		return 0;
 	}
 	
+	/**
+	 * Returns false; travellers wait for the buses of the control system.
+	 */
+	@Override
+	protected boolean hasIndependentPaths() {
+		return false;
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new BusTravellerMovement(this);
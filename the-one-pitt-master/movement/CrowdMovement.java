@@ -4,9 +4,13 @@
  */
 package movement;
 
+import java.util.Random;
+
+import core.AliasSampler;
 import core.Coord;
+import core.DTNSim;
+import core.RandomStreams;
 import core.Settings;
-import java.util.Random;
 
 /**
  * Random waypoint movement model. Creates zig-zag paths within the simulation
@@ -18,16 +22,39 @@ public class CrowdMovement extends MovementModel {
      * how many waypoints should there be per path
      */
     private static final int PATH_LENGTH = 1;
+    /**
+     * sampler of the areas; the areas 0-8 share probability 0.3 and the
+     * area 9 (the center of the world) has the rest
+     */
+    private static final AliasSampler AREA_SAMPLER = new AliasSampler(
+            new double[] {0.3/9, 0.3/9, 0.3/9, 0.3/9, 0.3/9, 0.3/9, 0.3/9,
+            0.3/9, 0.3/9, 0.7});
+    /** index of the next model's area stream */
+    private static int nextAreaStream;
     private Coord lastWaypoint;
 
     private int area;
+    /**
+     * the model's own stream for choosing the areas, so the choices don't
+     * shift the values of the (possibly shared) movement rng
+     */
+    private Random areaRng;
+
+    static {
+        DTNSim.registerForReset(CrowdMovement.class.getCanonicalName());
+        reset();
+    }
 
     public CrowdMovement(Settings settings) {
         super(settings);
+        this.areaRng = RandomStreams.getStream(
+                CrowdMovement.class.getSimpleName(), -1);
     }
 
     protected CrowdMovement(CrowdMovement rwp) {
         super(rwp);
+        this.areaRng = RandomStreams.getStream(
+                CrowdMovement.class.getSimpleName(), nextAreaStream++);
     }
 
     /**
@@ -60,6 +87,11 @@ public class CrowdMovement extends MovementModel {
         return p;
     }
 
+    @Override
+    protected boolean hasIndependentPaths() {
+        return true;
+    }
+
     @Override
     public CrowdMovement replicate() {
         return new CrowdMovement(this);
@@ -114,14 +146,16 @@ public class CrowdMovement extends MovementModel {
     }
     
     protected int chooseArea(){
-        double probability = new Random().nextDouble();
-        
-        // if probability is under equal 0.2, the node will move in area 1 until 8
-        // else, the node will move in area 9, which is in the center of the world
-        if(probability <= 0.3){
-            return new Random().nextInt(9);
-        } else {
-            return 9;
-        }
+        // with probability 0.3, the node will move in one of the areas 0 to 8
+        // (area 0 is the whole world and 1 to 8 are the edges of the world)
+        // else, the node will move in area 9, which is the center of the world
+        return AREA_SAMPLER.sample(areaRng);
+    }
+
+    /**
+     * Resets all static fields to default values
+     */
+    public static void reset() {
+        nextAreaStream = 0;
     }
 }
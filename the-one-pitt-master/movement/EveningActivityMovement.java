@@ -223,6 +223,15 @@ public class EveningActivityMovement extends MapBasedMovement
 		}
 	}
 	
+	/**
+	 * Returns false; the groups are formed by the evening activity control
+	 * system.
+	 */
+	@Override
+	protected boolean hasIndependentPaths() {
+		return false;
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new EveningActivityMovement(this);
@@ -4,8 +4,11 @@
  */
 package movement;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -19,7 +22,11 @@ import core.SimClock;
 import core.Tuple;
 
 /**
- * Movement model that uses external data of node locations.
+ * Movement model that uses external data of node locations. The data can be
+ * either a text trace ({@link ExternalMovementReader}) or a binary trace
+ * ({@link BinaryMovementReader}); the format is detected from the file.
+ * The movement can start from any time of the trace, in which case the
+ * trace time is shifted so that the start time is at simulation time 0.
  */
 public class ExternalMovement extends MovementModel {
 	/** Namespace for settings */
@@ -28,16 +35,35 @@ public class ExternalMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** trace time where the movement starts -setting id ({@value}).
+	 * Location data before the time is skipped. Default = 0 */
+	public static final String START_TIME_S = "startTime";
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
+	/** reader of binary traces (null if the trace is a text trace) */
+	private static BinaryMovementReader binReader;
 	private static String inputFileName;
 	
 	/** mapping of external id to movement model */
 	private static Map<String, ExternalMovement> idMapping;
+	/** mapping of binary trace's node id to movement model */
+	private static ExternalMovement[] binIdMapping;
+	/** buffers for the samples read from a binary trace */
+	private static int[] frameIds;
+	private static double[] frameX;
+	private static double[] frameY;
 	/** initial locations for nodes */
 	private static List<Tuple<String, Coord>> initLocations;
+	/** binary trace's node ids of the initial locations */
+	private static int[] initBinIds;
+	/** index of the next unused initial location */
+	private static int nextInitLocation;
+	/** trace time that corresponds to simulation time 0 */
+	private static double startTime;
+	/** size of the area of the trace */
+	private static int maxX, maxY;
 	/** time of the very first location data */
 	private static double initTime;
 	/** sampling interval (seconds) of the location data */
@@ -81,10 +107,16 @@ public class ExternalMovement extends MovementModel {
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
 			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
+			startTime = s.contains(START_TIME_S) ?
+					s.getDouble(START_TIME_S) : 0;
 			
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
+			if (BinaryMovementReader.isBinaryTrace(inputFileName)) {
+				openBinaryTrace();
+			}
+			else {
+				openTextTrace();
+			}
+			nextInitLocation = 0;
 			samplingInterval = -1;
 			lastPreloadTime = -1;
 			
@@ -98,6 +130,51 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 	
+	/**
+	 * Opens a text trace and reads the initial locations from the first time
+	 * instance at or after the start time
+	 */
+	private static void openTextTrace() {
+		reader = new ExternalMovementReader(inputFileName);
+		binReader = null;
+		maxX = (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		maxY = (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		
+		do {
+			initLocations = reader.readNextMovements();
+		} while (initLocations.size() > 0 && 
+				reader.getLastTimeStamp() < startTime);
+		initTime = reader.getLastTimeStamp() - startTime;
+	}
+	
+	/**
+	 * Opens a binary trace, seeks to the start time and reads the initial
+	 * locations from the first time instance at or after it
+	 */
+	private static void openBinaryTrace() {
+		binReader = new BinaryMovementReader(inputFileName);
+		reader = null;
+		maxX = (int)(binReader.getMaxX() - binReader.getMinX()) + 1;
+		maxY = (int)(binReader.getMaxY() - binReader.getMinY()) + 1;
+		
+		int size = binReader.getMaxFrameSize();
+		frameIds = new int[size];
+		frameX = new double[size];
+		frameY = new double[size];
+		binIdMapping = new ExternalMovement[binReader.getNrofIds()];
+		
+		binReader.seek(startTime);
+		int n = binReader.readNextFrame(frameIds, frameX, frameY);
+		initBinIds = Arrays.copyOf(frameIds, n);
+		initLocations = new ArrayList<Tuple<String, Coord>>(n);
+		for (int i=0; i<n; i++) {
+			initLocations.add(new Tuple<String, Coord>(
+					binReader.getId(frameIds[i]),
+					new Coord(frameX[i], frameY[i])));
+		}
+		initTime = binReader.getLastTimeStamp() - startTime;
+	}
+	
 	/** 
 	 * Copy constructor. Gives out location data for the new node from 
 	 * location queue.
@@ -109,14 +186,18 @@ public class ExternalMovement extends MovementModel {
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 		
-		if (initLocations.size() > 0) { // we have location data left
+		if (nextInitLocation < initLocations.size()) { // location data left
 			// gets a new location from the list
-			Tuple<String, Coord> initLoc = initLocations.remove(0); 
+			int index = nextInitLocation++;
+			Tuple<String, Coord> initLoc = initLocations.get(index);
 			this.intialLocation = this.latestLocation = initLoc.getValue();
 			this.latestPathStartTime = initTime;
 			
 			// puts the new model to model map for later updates
 			idMapping.put(initLoc.getKey(), this);
+			if (binReader != null) {
+				binIdMapping[initBinIds[index]] = this;
+			}
 			isActive = true;
 		}
 		else {
@@ -153,6 +234,16 @@ public class ExternalMovement extends MovementModel {
 	public boolean isActive() {
 		return isActive;
 	}
+	
+	@Override
+	public boolean isAlwaysActive() {
+		return false;
+	}
+	
+	@Override
+	public double nextActivenessChange() {
+		return Double.NaN; // the trace may (de)activate the node at any time
+	}
 
 	/**
 	 * Adds a new location with a time to this model's move pattern. If the
@@ -223,12 +314,12 @@ public class ExternalMovement extends MovementModel {
 	
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return maxX;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return maxY;
 	}
 
 	
@@ -243,8 +334,12 @@ public class ExternalMovement extends MovementModel {
 	 * were read.
 	 */
 	private static double readMorePaths() {
+		if (binReader != null) {
+			return readMoreBinaryPaths();
+		}
+		
 		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+		double time = reader.getLastTimeStamp() - startTime;
 		
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
@@ -266,11 +361,38 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 	
+	/**
+	 * Reads paths for the next time instance from the binary trace
+	 * @return The time stamp of the reading or Double.NaN if no movements
+	 * were read.
+	 */
+	private static double readMoreBinaryPaths() {
+		int n = binReader.readNextFrame(frameIds, frameX, frameY);
+		double time = binReader.getLastTimeStamp() - startTime;
+		
+		if (samplingInterval == -1) {
+			samplingInterval = time - initTime;
+		}
+		
+		for (int i=0; i<n; i++) {
+			ExternalMovement em = binIdMapping[frameIds[i]];
+			if (em != null) { // skip IDs not mentioned in the init phase
+				em.addLocation(new Coord(frameX[i], frameY[i]), time);
+			}
+		}
+		
+		return n > 0 ? time : Double.NaN;
+	}
+	
 	/**
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
 		idMapping = null;
+		if (binReader != null) {
+			binReader.close();
+			binReader = null;
+		}
 	}
 
 }
@@ -285,12 +285,14 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 
 		try {
 			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+			List<File> mapFiles = new ArrayList<File>();
 
 			for (int i = 1; i <= nrofMapFiles; i++ ) {
 				String pathFile = settings.getSetting(FILE_S + i);
 				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+				mapFiles.add(new File(pathFile));
 			}
+			r.addPaths(mapFiles, 1);
 			
 			nrofMapFilesRead = nrofMapFiles;
 		} catch (IOException e) {
@@ -396,6 +398,11 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return cachedMap;
 	}
 	
+	@Override
+	protected boolean hasIndependentPaths() {
+		return true;
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
@@ -9,6 +9,7 @@ import java.util.Random;
 import core.Coord;
 import core.DTNSim;
 import core.ModuleCommunicationBus;
+import core.RandomStreams;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -41,9 +42,23 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/** use own random number streams -setting id ({@value}). Boolean. If
+	 * true, every movement model instance created with the copy constructor
+	 * (i.e., the model of every host) gets its own stream from 
+	 * {@link RandomStreams}, seeded with the scenario's root seed. Default is
+	 * false (all models share one generator seeded with {@link #RNG_SEED}). 
+	 */
+	public static final String RNG_STREAMS = "rngStreams";
 	
 	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	private static Random sharedRng;
+	/** do the replicated models use their own streams */
+	private static boolean useStreams;
+	/** index of the next model's own stream */
+	private static int nextStream;
+	
+	/** the model's rng; the common rng or the model's own stream */
+	protected Random rng;
 	
 	private ActivenessHandler ah;
 		
@@ -87,6 +102,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = sharedRng;
 	}
 	
 	/**
@@ -97,6 +113,7 @@ public abstract class MovementModel {
 		double[] speeds;
 		double[] times;
 		
+		this.rng = sharedRng;
 		ah = new ActivenessHandler(settings);
 		
 		if (settings.contains(SPEED)) {
@@ -142,6 +159,9 @@ public abstract class MovementModel {
 		this.maxX = mm.maxX;
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
+		this.rng = useStreams ? 
+				RandomStreams.getStream(MOVEMENT_MODEL_NS, nextStream++) :
+				sharedRng;
 		this.comBus = null;
 	}
 		
@@ -220,6 +240,50 @@ public abstract class MovementModel {
 		return SimClock.getTime() + generateWaitTime();
 	}
 	
+	/**
+	 * Returns true if hosts using this model can be moved over a long period
+	 * at once with {@link core.DTNHost#fastForward(double)} instead of
+	 * stepping them one update interval at a time. This requires that the
+	 * model {@link #hasIndependentPaths() has independent paths} and that the
+	 * node is active all the time.
+	 * @return true if the hosts of this model can be fast-forwarded
+	 */
+	public boolean canFastForward() {
+		return hasIndependentPaths() && isAlwaysActive();
+	}
+	
+	/**
+	 * Returns true if the node is active all the time, i.e., 
+	 * {@link #isActive()} never returns false.
+	 * @return true if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return ah == null || ah.isAlwaysActive();
+	}
+	
+	/**
+	 * Returns the next time when the value of {@link #isActive()} may 
+	 * change. Used for updating only the active hosts.
+	 * @return The time of the next change, Double.MAX_VALUE if the value 
+	 * doesn't change anymore, or NaN if the time isn't known beforehand (and
+	 * {@link #isActive()} must be checked at every update)
+	 */
+	public double nextActivenessChange() {
+		return ah == null ? Double.MAX_VALUE : ah.nextChangeTime();
+	}
+	
+	/**
+	 * Returns true if the paths and wait times of this model depend only on
+	 * the model's own state and the time when they are requested (and not
+	 * e.g. on the state of other nodes). This implementation returns false;
+	 * models that fulfill the requirement should override this.
+	 * @return true if the paths of the model are independent
+	 * @see #canFastForward()
+	 */
+	protected boolean hasIndependentPaths() {
+		return false;
+	}
+	
 	/**
 	 * Sets the module communication bus for this movement model
 	 * @param comBus The communications bus to set
@@ -257,11 +321,13 @@ public abstract class MovementModel {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			sharedRng = new Random(seed);
 		}
 		else {
-			rng = new Random(0);
+			sharedRng = new Random(0);
 		}
+		useStreams = s.contains(RNG_STREAMS) && s.getBoolean(RNG_STREAMS);
+		nextStream = 0;
 	}
 	
 }
@@ -48,7 +48,7 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
-		MapNode to = pois.selectDestination();
+		MapNode to = pois.selectDestination(rng);
 		
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
 		
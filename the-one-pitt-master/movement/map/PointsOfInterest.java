@@ -9,10 +9,10 @@ import input.WKTReader;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 
+import core.AliasSampler;
 import core.Coord;
 import core.Settings;
 import core.SettingsError;
@@ -45,6 +45,8 @@ public class PointsOfInterest {
 	private ArrayList<List<MapNode>> poiLists;
 	/** list of probabilites of choosing a POI group */
 	private List<Tuple<Double, Integer>> poiProbs;
+	/** sampler of the POI groups; the last index is "any map node" */
+	private AliasSampler groupSampler;
 	/** (pseudo) random number generator */
 	private Random rng;
 
@@ -59,7 +61,7 @@ public class PointsOfInterest {
 	public PointsOfInterest(SimMap parentMap, int [] okMapNodeTypes, 
 			Settings settings, Random rng) {
 		this.poiLists = new ArrayList<List<MapNode>>();
-		this.poiProbs = new LinkedList<Tuple<Double, Integer>>();
+		this.poiProbs = new ArrayList<Tuple<Double, Integer>>();
 		this.map = parentMap;
 		this.okMapNodeTypes = okMapNodeTypes;
 		this.rng = rng;
@@ -74,15 +76,23 @@ public class PointsOfInterest {
 	 * @return A destination among POIs or all MapNodes
 	 */
 	public MapNode selectDestination() {
-		double random = rng.nextDouble();
-		double acc = 0;
-		
-		for (Tuple<Double, Integer> t : poiProbs) {
-			acc += t.getKey();
-			
-			if (acc > random) {
+		return selectDestination(this.rng);
+	}
+	
+	/**
+	 * Selects a random destination like {@link #selectDestination()} but
+	 * using the given random number generator. The POI group is selected in
+	 * constant time.
+	 * @param rng The random number generator to use
+	 * @return A destination among POIs or all MapNodes
+	 */
+	public MapNode selectDestination(Random rng) {
+		if (groupSampler != null) {
+			int group = groupSampler.sample(rng);
+			if (group < poiProbs.size()) {
 				// get the lucky POI group
-				List<MapNode> pois = poiLists.get(t.getValue());
+				List<MapNode> pois = poiLists.get(
+						poiProbs.get(group).getValue());
 				// return a random POI from that group
 				return pois.get(rng.nextInt(pois.size()));
 			}
@@ -160,6 +170,12 @@ public class PointsOfInterest {
 					") exceeds 1.0 in " + fqSetting);
 		}
 		
+		double[] weights = new double[poiProbs.size() + 1];
+		for (int i=0; i<poiProbs.size(); i++) {
+			weights[i] = poiProbs.get(i).getKey();
+		}
+		weights[poiProbs.size()] = Math.max(0, 1.0 - probSum);
+		groupSampler = new AliasSampler(weights);
 	}
 	
 	/**
@@ -26,6 +26,8 @@ package reinforcement;
 
 import java.util.Random;
 
+import core.RandomStreams;
+
 
 /**
  * <para>The class implements exploration policy base on Boltzmann distribution.
@@ -42,14 +44,25 @@ import java.util.Random;
  */
 public class BoltzmannExploration implements IExplorationPolicy{
     double temperature;
-    private Random r = new Random();
+    private Random r;
 
     /**
      * Initializes a new instance of the BoltzmannExploration class.
      * @param temperature Temperature parameter of Boltzmann distribution.
      */
     public BoltzmannExploration(double temperature) {
+        this(temperature, RandomStreams.getStream(
+                BoltzmannExploration.class.getSimpleName()));
+    }
+
+    /**
+     * Initializes a new instance of the BoltzmannExploration class.
+     * @param temperature Temperature parameter of Boltzmann distribution.
+     * @param r Random number generator used for choosing the actions.
+     */
+    public BoltzmannExploration(double temperature, Random r) {
         this.temperature = temperature;
+        this.r = r;
     }
 
     /**
@@ -4,8 +4,9 @@
  */
 package report;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 
 import core.ConnectionListener;
 import core.DTNHost;
@@ -18,8 +19,10 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 	/** Name of the graphviz report ({@value})*/
 	public static final String GRAPH_NAME = "adjgraph";
 	
-	private String HOST_DELIM = "<->"; // used in toString()
-	private HashMap<String, ConnectionInfo> cons;
+	/** number of connections of each (ordered) host pair */
+	private PairStore cons;
+	/** the connected hosts by their address */
+	private List<DTNHost> hosts;
 	private Collection<DTNHost> allHosts;
 	
 	/**
@@ -32,7 +35,8 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 	
 	protected void init() {
 		super.init();
-		this.cons = new HashMap<String, ConnectionInfo>();
+		this.cons = new PairStore();
+		this.hosts = new ArrayList<DTNHost>();
 	}
 	
 		
@@ -42,14 +46,22 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		}
 		
 		newEvent();
-		ConnectionInfo ci = cons.get(host1+HOST_DELIM+host2);
-		
-		if (ci == null) {
-			cons.put(host1+HOST_DELIM+host2, new ConnectionInfo(host1,host2));
-		}
-		else {
-			ci.nrofConnections++;
+		addHost(host1);
+		addHost(host2);
+		cons.add(PairStore.orderedKey(host1.getAddress(), host2.getAddress()),
+				1);
+	}
+	
+	/**
+	 * Adds a host to the list of hosts by address
+	 * @param host The host
+	 */
+	private void addHost(DTNHost host) {
+		int address = host.getAddress();
+		while (hosts.size() <= address) {
+			hosts.add(null);
 		}
+		hosts.set(address, host);
 	}
 
 	// 	Nothing to do here..
@@ -67,9 +79,15 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		write("graph " + GRAPH_NAME + " {");
 		setPrefix("\t"); // indent following lines by one tab
 		
-		for (ConnectionInfo ci : cons.values()) {
-			int weight = ci.nrofConnections;
-			write(ci.h1 + "--" + ci.h2 + " [weight=" + weight + "];");
+		for (int i=0, n=cons.capacity(); i<n; i++) {
+			if (!cons.isUsed(i)) {
+				continue;
+			}
+			long key = cons.keyAt(i);
+			int weight = (int)cons.valueAt(i);
+			write(hosts.get(PairStore.first(key)) + "--" + 
+					hosts.get(PairStore.second(key)) + 
+					" [weight=" + weight + "];");
 		}
 		
 		// mention all hosts in the graph at least once
@@ -85,33 +103,4 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		super.done();
 	}
 
-	/**
-	 * Private class stores information of the connected hosts
-	 * and nrof times they have connected.
-	 */
-	private class ConnectionInfo {
-		private DTNHost h1;
-		private DTNHost h2;
-		private int nrofConnections;
-		
-		public ConnectionInfo(DTNHost h1, DTNHost h2) {
-			this.h1 = h1;
-			this.h2 = h2;
-			this.nrofConnections = 1;
-		}
-				
-		public boolean equals(Object o) {
-			return o.toString().equals(this.toString());
-		}
-		public int hashCode() {
-			return toString().hashCode();
-		}
-		public String toString() {
-			return h1+HOST_DELIM+h2;
-		}
-		public int compareTo(Object o) {
-			return nrofConnections - ((ConnectionInfo)o).nrofConnections;
-		}
-	}
-
 }
@@ -5,7 +5,6 @@
 package report;
 
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
 import core.ConnectionListener;
@@ -26,9 +25,13 @@ import core.UpdateListener;
 public class ContactsDuringAnICTReport extends Report 
 	implements ConnectionListener, UpdateListener {
 
-	private boolean[][] areDisconnected;
-	private int[][] contactCount;
-	private LinkedList<Integer> contactsDuringIC;
+	/** number of contacts each host has had (indexed by address) */
+	private int[] contactCount;
+	/** value of the first host's contact count when a (directed) pair was
+	 * disconnected, for the pairs that are currently disconnected */
+	private PairStore disconnectedAt;
+	/** how many inter-contacts had each number of contacts */
+	private int[] contactsDuringIC;
 	
 	private boolean updateHasBeenCalled;
 	
@@ -41,7 +44,7 @@ public class ContactsDuringAnICTReport extends Report
 	@Override
 	protected void init() {
 		super.init();
-		contactsDuringIC = new LinkedList<Integer>();
+		contactsDuringIC = new int[16];
 	}
 	
 	
@@ -51,65 +54,59 @@ public class ContactsDuringAnICTReport extends Report
 		}
 		int id1 = host1.getAddress();
 		int id2 = host2.getAddress();
-		if (areDisconnected[id1][id2]) {
-			areDisconnected[id1][id2] = false;
-			areDisconnected[id2][id1] = false;
-			contactsDuringIC.add(new Integer(contactCount[id1][id2]));
-			contactsDuringIC.add(new Integer(contactCount[id2][id1]));
-			contactCount[id1][id2] = 0;
-			contactCount[id2][id1] = 0;
+		double since1 = disconnectedAt.remove(
+				PairStore.orderedKey(id1, id2), -1);
+		if (since1 >= 0) {
+			double since2 = disconnectedAt.remove(
+					PairStore.orderedKey(id2, id1), -1);
+			addContactsDuringIC(contactCount[id1] - (int)since1);
+			addContactsDuringIC(contactCount[id2] - (int)since2);
 		} 
-			
-		incContactForAllDisconnectedNodes(host1);
-		incContactForAllDisconnectedNodes(host2);
 		
+		/* counts as a contact for all the pairs the hosts are disconnected
+		 * from (the snapshot of this pair was removed above) */
+		contactCount[id1]++;
+		contactCount[id2]++;
 	}
 	
-	private void incContactForAllDisconnectedNodes(DTNHost host) {
-		int id = host.getAddress();
-		for (int i=0; i<contactCount[id].length; i++) {
-			if (areDisconnected[id][i]) {
-				contactCount[id][i]++;
-			} 
+	private void addContactsDuringIC(int contacts) {
+		if (contacts >= contactsDuringIC.length) {
+			contactsDuringIC = Arrays.copyOf(contactsDuringIC, 
+					Math.max(contacts + 1, contactsDuringIC.length * 2));
 		}
+		contactsDuringIC[contacts]++;
 	}
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		if (!updateHasBeenCalled) {
 			return;
 		}
-		areDisconnected[host1.getAddress()][host2.getAddress()] = true;
-		areDisconnected[host2.getAddress()][host1.getAddress()] = true;
+		int id1 = host1.getAddress();
+		int id2 = host2.getAddress();
+		disconnectedAt.put(PairStore.orderedKey(id1, id2), contactCount[id1]);
+		disconnectedAt.put(PairStore.orderedKey(id2, id1), contactCount[id2]);
 	}
 
 	public void updated(List<DTNHost> hosts) {
-		if (areDisconnected == null || contactCount == null) {	
-			areDisconnected = new boolean[hosts.size()][hosts.size()];
-			contactCount = new int[hosts.size()][hosts.size()];
+		if (contactCount == null) {	
+			contactCount = new int[hosts.size()];
+			disconnectedAt = new PairStore();
 		}
 		updateHasBeenCalled = true;
 	}
 	
 	@Override
 	public void done() {
-		Integer[] contacts = (Integer[])contactsDuringIC.toArray(new Integer[0]);
-		Arrays.sort(contacts);
-				
-		int count = 0;
-		int last = 0;
-		for (int i=0; i<contacts.length; i++) {
-			if (contacts[i].intValue() == last) {
-				count++;
-				if (i == contacts.length -1) {
-					write(last + "\t" + count);
-				}
-			} else {
-				write(last + "\t" + count);
-				last++;
-				i--;
-				count = 0;
+		int max = -1;
+		for (int i=0; i<contactsDuringIC.length; i++) {
+			if (contactsDuringIC[i] > 0) {
+				max = i;
 			}
 		}
+		
+		for (int i=0; i<=max; i++) {
+			write(i + "\t" + contactsDuringIC[i]);
+		}
 		super.done();
 	}	
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reconstructs the full snapshots of {@link MessageLocationReport} and
+ * {@link EnergyLevelReport} reports that were created with keyframes and
+ * change snapshots. The output has the original format of the reports, so
+ * it can be given to e.g. <CODE>toolkit/messageLocationAnimator.pl</CODE>.
+ * Snapshots without a keyframe or change marker are copied as they are.
+ * <P>Usage: <CODE>java report.DeltaSnapshotReader reportFile
+ * [outputFile]</CODE> (the output is written to the standard output if no
+ * output file is given)</P>
+ */
+public class DeltaSnapshotReader {
+	/** the hosts of the current snapshot in the order they appeared */
+	private Map<String, HostState> hosts;
+	/** time stamp of the current snapshot (or null if none) */
+	private String timeStamp;
+	/** are the lines of the current snapshot copied as they are */
+	private boolean copy;
+	private PrintWriter out;
+
+	/**
+	 * Creates a reader that writes the full snapshots to a writer
+	 * @param out The writer for the full snapshots
+	 */
+	public DeltaSnapshotReader(Writer out) {
+		this.out = new PrintWriter(out);
+		this.hosts = new LinkedHashMap<String, HostState>();
+	}
+
+	/**
+	 * Reads a report and writes its full snapshots
+	 * @param in The reader of the report
+	 * @throws IOException if reading failed or the report was malformed
+	 */
+	public void read(Reader in) throws IOException {
+		BufferedReader reader = new BufferedReader(in);
+		String line;
+		int lineNr = 0;
+
+		while ((line = reader.readLine()) != null) {
+			lineNr++;
+			if (line.trim().length() == 0) {
+				continue;
+			}
+			try {
+				readLine(line);
+			} catch (RuntimeException e) {
+				throw new IOException("Bad report line " + lineNr + ": '" +
+						line + "'");
+			}
+		}
+		flush();
+		out.flush();
+	}
+
+	/**
+	 * Reads one (non-empty) report line
+	 * @param line The line
+	 */
+	private void readLine(String line) {
+		if (line.startsWith("[")) {
+			flush();
+			int end = line.indexOf(']');
+			String marker = line.substring(end + 1).trim();
+			timeStamp = line.substring(0, end + 1);
+			copy = !marker.equals(MessageLocationReport.KEYFRAME) &&
+				!marker.equals(MessageLocationReport.DELTA);
+			if (copy) {
+				out.println(line);
+			}
+			else if (marker.equals(MessageLocationReport.KEYFRAME)) {
+				hosts.clear();
+			}
+			return;
+		}
+		if (copy) {
+			out.println(line);
+			return;
+		}
+
+		String[] parts = line.split(" ");
+		char op = parts[0].length() == 1 ? parts[0].charAt(0) : ' ';
+
+		if (op == '@') {
+			getHost(parts[1]).location = parts[2];
+		}
+		else if (op == '+') {
+			HostState h = getHost(parts[1]);
+			for (int i = 2; i < parts.length; i++) {
+				h.messages.add(parts[i]);
+			}
+		}
+		else if (op == '-') {
+			HostState h = getHost(parts[1]);
+			for (int i = 2; i < parts.length; i++) {
+				h.messages.remove(parts[i]);
+			}
+		}
+		else if (parts[1].startsWith("(")) { /* message location keyframe */
+			HostState h = getHost(parts[0]);
+			h.location = parts[1];
+			for (int i = 2; i < parts.length; i++) {
+				h.messages.add(parts[i]);
+			}
+		}
+		else { /* energy level */
+			getHost(parts[0]).value = parts[1];
+		}
+	}
+
+	/**
+	 * Writes the current snapshot (if there is one)
+	 */
+	private void flush() {
+		if (timeStamp == null || copy) {
+			return;
+		}
+
+		out.println(timeStamp);
+		for (Iterator<Map.Entry<String, HostState>> i = 
+				hosts.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<String, HostState> e = i.next();
+			HostState h = e.getValue();
+			if (h.messages.isEmpty() && h.value == null) {
+				i.remove(); /* host has nothing to report anymore */
+				continue;
+			}
+			if (h.value != null) {
+				out.println(e.getKey() + " " + h.value);
+			}
+			if (!h.messages.isEmpty()) {
+				StringBuilder line = new StringBuilder(h.location);
+				for (String id : h.messages) {
+					line.append(' ').append(id);
+				}
+				out.println(line);
+			}
+		}
+		timeStamp = null;
+	}
+
+	private HostState getHost(String name) {
+		HostState h = hosts.get(name);
+		if (h == null) {
+			h = new HostState();
+			hosts.put(name, h);
+		}
+		return h;
+	}
+
+	/**
+	 * State of a host in a snapshot
+	 */
+	private static class HostState {
+		private String location;
+		private Set<String> messages = new LinkedHashSet<String>();
+		/** energy level (or null if not reported) */
+		private String value;
+	}
+
+	/**
+	 * Reconstructs the full snapshots of a report file
+	 * @param args The report file and optionally the output file
+	 * @throws IOException if reading or writing failed
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java report.DeltaSnapshotReader " +
+					"reportFile [outputFile]");
+			System.exit(1);
+		}
+
+		Writer out = args.length > 1 ? new FileWriter(args[1]) :
+			new OutputStreamWriter(System.out);
+		Reader in = new FileReader(args[0]);
+		try {
+			new DeltaSnapshotReader(out).read(in);
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+}
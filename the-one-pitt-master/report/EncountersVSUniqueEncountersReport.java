@@ -44,20 +44,14 @@ public class EncountersVSUniqueEncountersReport extends Report
 	@Override
 	public void done() {
 		int[] totalEncounters = totalEncountersReport.getEncounters();
-		int[][] nodeRelationships = uniqueEncountersReport.getNodeRelationships();
+		int[] uniqueEncounters = 
+			uniqueEncountersReport.getNrofUniqueEncounters();
 		
 		for (int i=0; i<totalEncounters.length; i++) {
 			String row = "";
 			row += i + "\t";
 			row += totalEncounters[i] + "\t";
-			
-			int count = 0;
-			for (int j=0; j<nodeRelationships.length; j++) {
-				if (nodeRelationships[i][j] > 0) {
-					count++;
-				}
-			}
-			row += count;
+			row += uniqueEncounters[i];
 			write(row);
 		}
 		
@@ -4,10 +4,14 @@
  */
 package report;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 
+import routing.EnergyAwareRouter;
 import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.ModuleCommunicationSlotListener;
 import core.Settings;
 import core.SimError;
 import core.UpdateListener;
@@ -16,6 +20,16 @@ import core.UpdateListener;
  * Node energy level report. Reports the energy level of all (or only some) 
  * nodes every configurable-amount-of seconds. Writes reports only after
  * the warmup period.
+ * <P>If the {@link #KEYFRAME_INTERVAL} setting is used, only every
+ * n<SUP>th</SUP> snapshot is a full snapshot (a keyframe) and the snapshots
+ * between them only have the nodes whose energy level has changed by at
+ * least {@link #ENERGY_QUANTUM} since it was last reported. The changes are
+ * tracked by subscribing to the energy values of the nodes, so the nodes
+ * whose energy didn't change cost nothing. The {@link DeltaSnapshotReader}
+ * tool reconstructs the full snapshots. The time stamps of the snapshots
+ * are followed by {@link MessageLocationReport#KEYFRAME} or 
+ * {@link MessageLocationReport#DELTA} and the lines of the nodes have the
+ * same format in both.</P>
  */
 public class EnergyLevelReport extends Report implements UpdateListener {
 	/** Reporting granularity -setting id ({@value}). 
@@ -25,12 +39,32 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 	/** Optional reported nodes (comma separated list of network addresses). 
 	 * By default all nodes are reported. */
 	public static final String REPORTED_NODES = "nodes";
+	/** Keyframe interval -setting id ({@value}). 
+	 * Defines how many snapshots there are between full snapshots. Default 
+	 * is 1 (all snapshots are full snapshots in the original format). */
+	public static final String KEYFRAME_INTERVAL = "keyframeInterval";
+	/** Energy quantum -setting id ({@value}). 
+	 * Defines how much the energy level of a node must change since it was 
+	 * last reported until it is reported in the change snapshots. Default 
+	 * is 0 (all changes are reported). */
+	public static final String ENERGY_QUANTUM = "energyQuantum";
 	/** value of the granularity setting */
 	protected final int granularity;
 	/** time of last update*/
 	protected double lastUpdate; 
 	/** Networks addresses (integers) of the nodes which are reported */
 	protected HashSet<Integer> reportedNodes;
+	/** value of the keyframe interval setting */
+	protected final int keyframeInterval;
+	/** value of the energy quantum setting */
+	protected final double energyQuantum;
+	/** number of snapshots since the last keyframe */
+	private int snapshotsSinceKeyframe;
+	/** energy trackers of the reported nodes (or null before the first 
+	 * keyframe) */
+	private List<EnergyTracker> trackers;
+	/** trackers whose energy has changed enough since the last snapshot */
+	private List<EnergyTracker> changedTrackers;
 	
 	/**
 	 * Constructor. Reads the settings and initializes the report module.
@@ -50,6 +84,19 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 			this.reportedNodes = null;
 		}
 		
+		if (settings.contains(KEYFRAME_INTERVAL)) {
+			this.keyframeInterval = settings.getInt(KEYFRAME_INTERVAL);
+		}
+		else {
+			this.keyframeInterval = 1;
+		}
+		if (settings.contains(ENERGY_QUANTUM)) {
+			this.energyQuantum = settings.getDouble(ENERGY_QUANTUM);
+		}
+		else {
+			this.energyQuantum = 0;
+		}
+		
 		init();
 	}
 
@@ -65,11 +112,58 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 		}
 		/* creates a snapshot once every granularity seconds */
 		if (simTime - lastUpdate >= granularity) {
-			createSnapshot(hosts);
+			if (keyframeInterval <= 1) {
+				createSnapshot(hosts);
+			}
+			else if (trackers == null || 
+					snapshotsSinceKeyframe >= keyframeInterval) {
+				createKeyframe(hosts);
+			}
+			else {
+				createDeltaSnapshot();
+			}
 			this.lastUpdate = simTime - simTime % granularity;
 		}
 	}
 	
+	/**
+	 * Creates a full snapshot of energy levels and starts tracking the 
+	 * changes of the reported nodes' energy (if not tracking yet)
+	 * @param hosts The list of hosts in the world
+	 */
+	private void createKeyframe(List<DTNHost> hosts) {
+		if (trackers == null) {
+			trackers = new ArrayList<EnergyTracker>();
+			changedTrackers = new ArrayList<EnergyTracker>();
+			for (DTNHost h : hosts) {
+				if (this.reportedNodes == null || 
+						this.reportedNodes.contains(h.getAddress())) {
+					trackers.add(new EnergyTracker(h));
+				}
+			}
+		}
+		this.snapshotsSinceKeyframe = 1;
+		
+		write("[" + (int)getSimTime() + "] " + 
+				MessageLocationReport.KEYFRAME);
+		for (EnergyTracker t : trackers) {
+			t.report();
+		}
+		changedTrackers.clear();
+	}
+	
+	/**
+	 * Creates a snapshot of the nodes whose energy has changed enough
+	 */
+	private void createDeltaSnapshot() {
+		this.snapshotsSinceKeyframe++;
+		write("[" + (int)getSimTime() + "] " + MessageLocationReport.DELTA);
+		for (EnergyTracker t : changedTrackers) {
+			t.report();
+		}
+		changedTrackers.clear();
+	}
+	
 	/**
 	 * Creates a snapshot of energy levels 
 	 * @param hosts The list of hosts in the world
@@ -81,16 +175,56 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 				!this.reportedNodes.contains(h.getAddress())) {
 				continue; /* node not in the list */
 			}
-			Double value = (Double)h.getComBus().
-				getProperty(routing.EnergyAwareRouter.ENERGY_VALUE_ID);
-			if (value == null) {
+			ModuleCommunicationBus comBus = h.getComBus();
+			if (!comBus.hasValue(EnergyAwareRouter.ENERGY_VALUE_KEY)) {
 				throw new SimError("Host " + h + 
 						" is not using an energy aware router");
 			}
 			
-			write(h.toString() + " " +  format(value));
+			write(h.toString() + " " +  format(comBus.getDouble(
+					EnergyAwareRouter.ENERGY_VALUE_KEY, 0)));
 		}
 	
 	}
 	
+	/**
+	 * Tracks the energy level of a node and tells when it has changed enough
+	 * since it was last reported
+	 */
+	private class EnergyTracker implements ModuleCommunicationSlotListener {
+		private DTNHost host;
+		private double reportedValue;
+		private boolean changed;
+		
+		private EnergyTracker(DTNHost host) {
+			this.host = host;
+			host.getComBus().subscribe(EnergyAwareRouter.ENERGY_VALUE_KEY, 
+					this);
+		}
+		
+		/**
+		 * Writes the current energy level of the node
+		 */
+		private void report() {
+			ModuleCommunicationBus comBus = host.getComBus();
+			if (!comBus.hasValue(EnergyAwareRouter.ENERGY_VALUE_KEY)) {
+				throw new SimError("Host " + host + 
+						" is not using an energy aware router");
+			}
+			
+			this.reportedValue = comBus.getDouble(
+					EnergyAwareRouter.ENERGY_VALUE_KEY, 0);
+			this.changed = false;
+			write(host.toString() + " " +  format(reportedValue));
+		}
+		
+		public void moduleSlotChanged(ModuleCommunicationBus.Key key,
+				double newValue) {
+			if (!changed && Math.abs(newValue - reportedValue) > 0 &&
+					Math.abs(newValue - reportedValue) >= energyQuantum) {
+				this.changed = true;
+				changedTrackers.add(this);
+			}
+		}
+	}
 }
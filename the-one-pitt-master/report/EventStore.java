@@ -0,0 +1,469 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * Columnar store of simulation events. Each event is a time, a type (see
+ * the public constants), addresses of one or two hosts and a reference to
+ * a row of the message or the movement table, all stored to primitive
+ * arrays. The events are stored in chunks of {@link #CHUNK_SIZE} events
+ * and, if a spill directory is given, every full chunk is written to a
+ * temporary file and read back through a memory mapping when the events
+ * are scanned, so only the last chunk of the events is kept in the heap.
+ * <P>The message table has the static properties of every message (ID,
+ * source, destination, size and response size) and the movement table has
+ * the coordinates and speeds of the movement events. The events must be
+ * added in time order and they are scanned in the same order with
+ * {@link #scan(EventVisitor)}.</P>
+ */
+public class EventStore {
+	/** Event type: hosts connected */
+	public static final int CONN_UP = 0;
+	/** Event type: hosts disconnected */
+	public static final int CONN_DOWN = 1;
+	/** Event type: message created (host1 is the source) */
+	public static final int MSG_CREATED = 2;
+	/** Event type: message transfer started from host1 to host2 */
+	public static final int MSG_STARTED = 3;
+	/** Event type: message relayed from host1 to host2 */
+	public static final int MSG_RELAYED = 4;
+	/** Event type: message delivered from host1 to host2 for the first
+	 * time */
+	public static final int MSG_DELIVERED = 5;
+	/** Event type: message transfer from host1 to host2 aborted */
+	public static final int MSG_ABORTED = 6;
+	/** Event type: message removed from host1 */
+	public static final int MSG_REMOVED = 7;
+	/** Event type: message dropped from host1 */
+	public static final int MSG_DROPPED = 8;
+	/** Event type: initial location of host1 */
+	public static final int MOVE_INITIAL = 9;
+	/** Event type: new destination of host1 */
+	public static final int MOVE_DESTINATION = 10;
+	/** Event type: hosts updated (no hosts) */
+	public static final int UPDATED = 11;
+
+	/** Host address value for events without a (second) host */
+	public static final int NO_HOST = -1;
+	/** Reference value for events without a message or a movement row */
+	public static final int NO_REF = -1;
+	/** Number of events in a chunk */
+	public static final int CHUNK_SIZE = 1 << 16;
+	/** Size of a stored event (bytes) */
+	private static final int EVENT_SIZE = 8 + 4 + 4 + 4 + 1;
+	private static final int INITIAL_TABLE_SIZE = 1024;
+
+	private File spillDir;
+	private RandomAccessFile spillFile;
+	private File spillPath;
+	private long spillEnd;
+
+	/** chunks kept in memory (null for spilled chunks) */
+	private List<Chunk> chunks;
+	/** offsets of the spilled chunks in the spill file */
+	private List<Long> chunkOffsets;
+	private Chunk current;
+	private long nrofEvents;
+	private double lastTime;
+
+	private Map<String, Integer> messageIndexes;
+	private List<String> messageIds;
+	private int[] msgFrom;
+	private int[] msgTo;
+	private int[] msgSize;
+	private int[] msgResponseSize;
+
+	private int nrofMovements;
+	private double[] moveX;
+	private double[] moveY;
+	private double[] moveSpeed;
+
+	/**
+	 * Creates a new empty event store
+	 * @param spillDir The directory where full chunks are spilled to or null
+	 * if all the events should be kept in the heap
+	 */
+	public EventStore(File spillDir) {
+		this.spillDir = spillDir;
+		this.chunks = new ArrayList<Chunk>();
+		this.chunkOffsets = new ArrayList<Long>();
+		this.current = new Chunk();
+		this.nrofEvents = 0;
+		this.lastTime = Double.NEGATIVE_INFINITY;
+
+		this.messageIndexes = new HashMap<String, Integer>();
+		this.messageIds = new ArrayList<String>();
+		this.msgFrom = new int[INITIAL_TABLE_SIZE];
+		this.msgTo = new int[INITIAL_TABLE_SIZE];
+		this.msgSize = new int[INITIAL_TABLE_SIZE];
+		this.msgResponseSize = new int[INITIAL_TABLE_SIZE];
+
+		this.nrofMovements = 0;
+		this.moveX = new double[INITIAL_TABLE_SIZE];
+		this.moveY = new double[INITIAL_TABLE_SIZE];
+		this.moveSpeed = new double[INITIAL_TABLE_SIZE];
+	}
+
+	/**
+	 * Adds an event to the store
+	 * @param time Time of the event. Must not be smaller than the time of
+	 * the previous event.
+	 * @param type Type of the event
+	 * @param host1 Address of the first host of the event or
+	 * {@link #NO_HOST}
+	 * @param host2 Address of the second host of the event or
+	 * {@link #NO_HOST}
+	 * @param ref Index of the event's row in the message or movement table,
+	 * or {@link #NO_REF}
+	 * @throws SimError if the event is older than the previous event
+	 */
+	public void addEvent(double time, int type, int host1, int host2,
+			int ref) {
+		if (time < lastTime) {
+			throw new SimError("Event at " + time + " added after an event " +
+					"at " + lastTime);
+		}
+		lastTime = time;
+
+		Chunk c = current;
+		int i = c.size++;
+		c.times[i] = time;
+		c.types[i] = (byte)type;
+		c.hosts1[i] = host1;
+		c.hosts2[i] = host2;
+		c.refs[i] = ref;
+		nrofEvents++;
+
+		if (c.size == CHUNK_SIZE) {
+			if (spillDir != null) {
+				spill(c);
+				chunks.add(null);
+				c.size = 0; // the chunk's arrays are reused
+			}
+			else {
+				chunks.add(c);
+				current = new Chunk();
+			}
+		}
+	}
+
+	/**
+	 * Writes a full chunk to the end of the spill file
+	 * @param c The chunk
+	 */
+	private void spill(Chunk c) {
+		int length = c.size * EVENT_SIZE;
+		try {
+			if (spillFile == null) {
+				spillPath = File.createTempFile("events", ".bin", spillDir);
+				spillPath.deleteOnExit();
+				spillFile = new RandomAccessFile(spillPath, "rw");
+			}
+			MappedByteBuffer buf = spillFile.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, spillEnd, length);
+			buf.asDoubleBuffer().put(c.times, 0, c.size);
+			buf.position(c.size * 8);
+			buf.asIntBuffer().put(c.hosts1, 0, c.size);
+			buf.position(c.size * 12);
+			buf.asIntBuffer().put(c.hosts2, 0, c.size);
+			buf.position(c.size * 16);
+			buf.asIntBuffer().put(c.refs, 0, c.size);
+			buf.position(c.size * 20);
+			buf.put(c.types, 0, c.size);
+		} catch (IOException e) {
+			throw new SimError("Couldn't spill events to " + spillDir + ": " +
+					e.getMessage());
+		}
+		chunkOffsets.add(spillEnd);
+		spillEnd += length;
+	}
+
+	/**
+	 * Reads a spilled chunk from the spill file
+	 * @param offset Offset of the chunk in the file
+	 * @param c The chunk where the events are read to
+	 */
+	private void load(long offset, Chunk c) {
+		c.size = CHUNK_SIZE; // only full chunks are spilled
+		try {
+			MappedByteBuffer buf = spillFile.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, offset,
+					(long)c.size * EVENT_SIZE);
+			buf.asDoubleBuffer().get(c.times, 0, c.size);
+			buf.position(c.size * 8);
+			buf.asIntBuffer().get(c.hosts1, 0, c.size);
+			buf.position(c.size * 12);
+			buf.asIntBuffer().get(c.hosts2, 0, c.size);
+			buf.position(c.size * 16);
+			buf.asIntBuffer().get(c.refs, 0, c.size);
+			buf.position(c.size * 20);
+			buf.get(c.types, 0, c.size);
+		} catch (IOException e) {
+			throw new SimError("Couldn't read spilled events from " +
+					spillPath + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Passes all the events of the store to a visitor in the order they
+	 * were added
+	 * @param visitor The visitor
+	 */
+	public void scan(EventVisitor visitor) {
+		Chunk spilled = null;
+		int spillIndex = 0;
+
+		for (int k=0; k<=chunks.size(); k++) {
+			Chunk c;
+			if (k == chunks.size()) {
+				c = current;
+			}
+			else if (chunks.get(k) != null) {
+				c = chunks.get(k);
+			}
+			else {
+				if (spilled == null) {
+					spilled = new Chunk();
+				}
+				load(chunkOffsets.get(spillIndex++), spilled);
+				c = spilled;
+			}
+
+			for (int i=0, n=c.size; i<n; i++) {
+				visitor.event(c.times[i], c.types[i], c.hosts1[i],
+						c.hosts2[i], c.refs[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of a message in the message table. Messages that
+	 * are not yet in the table are added to it.
+	 * @param id ID of the message
+	 * @param from Address of the source host
+	 * @param to Address of the destination host
+	 * @param size Size of the message
+	 * @param responseSize Size of the requested response (0 for none)
+	 * @return The index of the message
+	 */
+	public int addMessage(String id, int from, int to, int size,
+			int responseSize) {
+		Integer index = messageIndexes.get(id);
+		if (index != null) {
+			return index;
+		}
+
+		int i = messageIds.size();
+		if (i == msgFrom.length) {
+			int n = i * 2;
+			msgFrom = Arrays.copyOf(msgFrom, n);
+			msgTo = Arrays.copyOf(msgTo, n);
+			msgSize = Arrays.copyOf(msgSize, n);
+			msgResponseSize = Arrays.copyOf(msgResponseSize, n);
+		}
+		msgFrom[i] = from;
+		msgTo[i] = to;
+		msgSize[i] = size;
+		msgResponseSize[i] = responseSize;
+		messageIds.add(id);
+		messageIndexes.put(id, i);
+		return i;
+	}
+
+	/**
+	 * Returns the index of a message in the message table
+	 * @param id ID of the message
+	 * @return The index of the message or {@link #NO_REF} if the message
+	 * is not in the table
+	 */
+	public int getMessageIndex(String id) {
+		Integer index = messageIndexes.get(id);
+		return index != null ? index : NO_REF;
+	}
+
+	/**
+	 * Adds a row to the movement table
+	 * @param x The x coordinate of the location
+	 * @param y The y coordinate of the location
+	 * @param speed The speed (NaN for initial locations)
+	 * @return The index of the row
+	 */
+	public int addMovement(double x, double y, double speed) {
+		int i = nrofMovements++;
+		if (i == moveX.length) {
+			int n = i * 2;
+			moveX = Arrays.copyOf(moveX, n);
+			moveY = Arrays.copyOf(moveY, n);
+			moveSpeed = Arrays.copyOf(moveSpeed, n);
+		}
+		moveX[i] = x;
+		moveY[i] = y;
+		moveSpeed[i] = speed;
+		return i;
+	}
+
+	/**
+	 * Deletes the spill file (if any) and releases the stored events. The
+	 * store can't be used after this.
+	 */
+	public void close() {
+		chunks = null;
+		current = null;
+		if (spillFile != null) {
+			try {
+				spillFile.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+			spillPath.delete();
+			spillFile = null;
+		}
+	}
+
+	/**
+	 * Returns the number of events in the store
+	 * @return the number of events
+	 */
+	public long getNrofEvents() {
+		return nrofEvents;
+	}
+
+	/**
+	 * Returns the number of chunks that have been spilled to the disk
+	 * @return the number of spilled chunks
+	 */
+	public int getNrofSpilledChunks() {
+		return chunkOffsets.size();
+	}
+
+	/**
+	 * Returns the number of messages in the message table
+	 * @return the number of messages
+	 */
+	public int getNrofMessages() {
+		return messageIds.size();
+	}
+
+	/**
+	 * Returns the number of rows in the movement table
+	 * @return the number of movement rows
+	 */
+	public int getNrofMovements() {
+		return nrofMovements;
+	}
+
+	/**
+	 * Returns the ID of a message
+	 * @param msg Index of the message
+	 * @return the ID
+	 */
+	public String getMessageId(int msg) {
+		return messageIds.get(msg);
+	}
+
+	/**
+	 * Returns the address of the source host of a message
+	 * @param msg Index of the message
+	 * @return the address of the source
+	 */
+	public int getMessageFrom(int msg) {
+		return msgFrom[msg];
+	}
+
+	/**
+	 * Returns the address of the destination host of a message
+	 * @param msg Index of the message
+	 * @return the address of the destination
+	 */
+	public int getMessageTo(int msg) {
+		return msgTo[msg];
+	}
+
+	/**
+	 * Returns the size of a message
+	 * @param msg Index of the message
+	 * @return the size
+	 */
+	public int getMessageSize(int msg) {
+		return msgSize[msg];
+	}
+
+	/**
+	 * Returns the response size of a message
+	 * @param msg Index of the message
+	 * @return the response size
+	 */
+	public int getMessageResponseSize(int msg) {
+		return msgResponseSize[msg];
+	}
+
+	/**
+	 * Returns the x coordinate of a movement row
+	 * @param move Index of the row
+	 * @return the x coordinate
+	 */
+	public double getMovementX(int move) {
+		return moveX[move];
+	}
+
+	/**
+	 * Returns the y coordinate of a movement row
+	 * @param move Index of the row
+	 * @return the y coordinate
+	 */
+	public double getMovementY(int move) {
+		return moveY[move];
+	}
+
+	/**
+	 * Returns the speed of a movement row
+	 * @param move Index of the row
+	 * @return the speed (NaN for initial locations)
+	 */
+	public double getMovementSpeed(int move) {
+		return moveSpeed[move];
+	}
+
+	/**
+	 * Visitor of the events of a store
+	 */
+	public interface EventVisitor {
+		/**
+		 * Called for every event of the store
+		 * @param time Time of the event
+		 * @param type Type of the event
+		 * @param host1 Address of the first host or {@link #NO_HOST}
+		 * @param host2 Address of the second host or {@link #NO_HOST}
+		 * @param ref Index of the message or movement row or {@link #NO_REF}
+		 */
+		public void event(double time, int type, int host1, int host2,
+				int ref);
+	}
+
+	/**
+	 * Columns of a chunk of events
+	 */
+	private static class Chunk {
+		private double[] times = new double[CHUNK_SIZE];
+		private byte[] types = new byte[CHUNK_SIZE];
+		private int[] hosts1 = new int[CHUNK_SIZE];
+		private int[] hosts2 = new int[CHUNK_SIZE];
+		private int[] refs = new int[CHUNK_SIZE];
+		private int size = 0;
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.MovementListener;
+import core.SimClock;
+import core.UpdateListener;
+
+/**
+ * Computes reports from the events of an {@link EventStore} after a
+ * simulation run. The events are replayed, in one scan of the store, to
+ * all the reports that are connection, message, movement or update
+ * listeners, the same way the simulator would have called them during the
+ * run. The
+ * simulation clock follows the replayed events, so the reports see the
+ * same times (and warm up periods) as in the run.
+ * <P>The message copies the reports get are rebuilt from the message
+ * table: every host's copy has the path and receive time it had in the
+ * run, but not e.g. the properties routers added to the messages. The
+ * hosts themselves are not replayed, so reports that read the state of
+ * the hosts (e.g. their locations or buffers) see the state of the end of
+ * the run.</P>
+ */
+public class EventStoreReplayer implements EventStore.EventVisitor {
+	private EventStore store;
+	private List<DTNHost> hostList;
+	private DTNHost[] hosts;
+	private ConnectionListener[] connectionListeners;
+	private MessageListener[] messageListeners;
+	private MovementListener[] movementListeners;
+	private UpdateListener[] updateListeners;
+
+	/** copies of the messages; keyed by message index and host address */
+	private Map<Long, Message> copies;
+	/** messages being transferred; keyed by the sender and receiver pair
+	 * and the message index */
+	private Map<Long, Map<Integer, Message>> incoming;
+
+	/**
+	 * Creates a new replayer for a store
+	 * @param store The store whose events are replayed
+	 * @param hosts The hosts of the simulation (the host with address N
+	 * must be in the index N)
+	 */
+	public EventStoreReplayer(EventStore store, List<DTNHost> hosts) {
+		this.store = store;
+		this.hostList = hosts;
+		this.hosts = hosts.toArray(new DTNHost[hosts.size()]);
+	}
+
+	/**
+	 * Replays the events of the store to the reports. The simulation clock
+	 * is left to the time of the last event.
+	 * @param reports The reports to replay the events to
+	 */
+	public void replay(List<Report> reports) {
+		int nrofConn = 0, nrofMsg = 0, nrofMove = 0, nrofUpd = 0;
+		for (Report r : reports) {
+			nrofConn += r instanceof ConnectionListener ? 1 : 0;
+			nrofMsg += r instanceof MessageListener ? 1 : 0;
+			nrofMove += r instanceof MovementListener ? 1 : 0;
+			nrofUpd += r instanceof UpdateListener ? 1 : 0;
+		}
+		connectionListeners = new ConnectionListener[nrofConn];
+		messageListeners = new MessageListener[nrofMsg];
+		movementListeners = new MovementListener[nrofMove];
+		updateListeners = new UpdateListener[nrofUpd];
+		nrofConn = nrofMsg = nrofMove = nrofUpd = 0;
+		for (Report r : reports) {
+			if (r instanceof ConnectionListener) {
+				connectionListeners[nrofConn++] = (ConnectionListener)r;
+			}
+			if (r instanceof MessageListener) {
+				messageListeners[nrofMsg++] = (MessageListener)r;
+			}
+			if (r instanceof MovementListener) {
+				movementListeners[nrofMove++] = (MovementListener)r;
+			}
+			if (r instanceof UpdateListener) {
+				updateListeners[nrofUpd++] = (UpdateListener)r;
+			}
+		}
+
+		copies = new HashMap<Long, Message>();
+		incoming = new HashMap<Long, Map<Integer, Message>>();
+
+		try {
+			store.scan(this);
+		} finally {
+			copies = null;
+			incoming = null;
+		}
+	}
+
+	public void event(double time, int type, int host1, int host2, int ref) {
+		SimClock.getInstance().setTime(time);
+		DTNHost h1 = host1 != EventStore.NO_HOST ? hosts[host1] : null;
+		DTNHost h2 = host2 != EventStore.NO_HOST ? hosts[host2] : null;
+
+		switch (type) {
+		case EventStore.CONN_UP:
+			for (ConnectionListener cl : connectionListeners) {
+				cl.hostsConnected(h1, h2);
+			}
+			break;
+		case EventStore.CONN_DOWN:
+			for (ConnectionListener cl : connectionListeners) {
+				cl.hostsDisconnected(h1, h2);
+			}
+			break;
+		case EventStore.MSG_CREATED:
+			messageCreated(ref, h1);
+			break;
+		case EventStore.MSG_STARTED:
+			transferStarted(ref, h1, h2);
+			break;
+		case EventStore.MSG_RELAYED:
+		case EventStore.MSG_DELIVERED:
+			transferred(ref, h1, h2, type == EventStore.MSG_DELIVERED);
+			break;
+		case EventStore.MSG_ABORTED:
+			transferAborted(ref, h1, h2);
+			break;
+		case EventStore.MSG_REMOVED:
+		case EventStore.MSG_DROPPED:
+			deleted(ref, h1, type == EventStore.MSG_DROPPED);
+			break;
+		case EventStore.MOVE_INITIAL:
+			Coord loc = new Coord(store.getMovementX(ref),
+					store.getMovementY(ref));
+			for (MovementListener ml : movementListeners) {
+				ml.initialLocation(h1, loc);
+			}
+			break;
+		case EventStore.MOVE_DESTINATION:
+			Coord dest = new Coord(store.getMovementX(ref),
+					store.getMovementY(ref));
+			double speed = store.getMovementSpeed(ref);
+			for (MovementListener ml : movementListeners) {
+				ml.newDestination(h1, dest, speed);
+			}
+			break;
+		case EventStore.UPDATED:
+			for (UpdateListener ul : updateListeners) {
+				ul.updated(hostList);
+			}
+			break;
+		}
+	}
+
+	private static long copyKey(int msg, DTNHost host) {
+		return PairStore.orderedKey(msg, host.getAddress());
+	}
+
+	private static long transferKey(DTNHost from, DTNHost to) {
+		return PairStore.orderedKey(from.getAddress(), to.getAddress());
+	}
+
+	/**
+	 * Creates a message as it was created in the run (the clock is at the
+	 * creation time)
+	 */
+	private Message createMessage(int msg) {
+		Message m = new Message(hosts[store.getMessageFrom(msg)],
+				hosts[store.getMessageTo(msg)], store.getMessageId(msg),
+				store.getMessageSize(msg));
+		m.setResponseSize(store.getMessageResponseSize(msg));
+		return m;
+	}
+
+	/**
+	 * Returns a host's copy of a message. If the copy was created before
+	 * the recording started, a copy without a path is created.
+	 */
+	private Message getCopy(int msg, DTNHost host) {
+		Message m = copies.get(copyKey(msg, host));
+		if (m == null) {
+			m = createMessage(msg);
+			copies.put(copyKey(msg, host), m);
+		}
+		return m;
+	}
+
+	private void messageCreated(int msg, DTNHost from) {
+		Message m = createMessage(msg);
+		copies.put(copyKey(msg, from), m);
+		for (MessageListener ml : messageListeners) {
+			ml.newMessage(m);
+		}
+	}
+
+	private void transferStarted(int msg, DTNHost from, DTNHost to) {
+		Message m = getCopy(msg, from).replicate();
+		m.addNodeOnPath(to);
+		Map<Integer, Message> transfers = incoming.get(transferKey(from, to));
+		if (transfers == null) {
+			transfers = new HashMap<Integer, Message>();
+			incoming.put(transferKey(from, to), transfers);
+		}
+		transfers.put(msg, m);
+		for (MessageListener ml : messageListeners) {
+			ml.messageTransferStarted(m, from, to);
+		}
+	}
+
+	/**
+	 * Removes a message from the messages being transferred. If the
+	 * transfer started before the recording, a new copy is created.
+	 */
+	private Message removeIncoming(int msg, DTNHost from, DTNHost to) {
+		Map<Integer, Message> transfers = incoming.get(transferKey(from, to));
+		Message m = transfers != null ? transfers.remove(msg) : null;
+		if (transfers != null && transfers.isEmpty()) {
+			incoming.remove(transferKey(from, to));
+		}
+		if (m == null) {
+			m = getCopy(msg, from).replicate();
+			m.addNodeOnPath(to);
+		}
+		return m;
+	}
+
+	private void transferred(int msg, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		Message m = removeIncoming(msg, from, to);
+		m.setReceiveTime(SimClock.getTime());
+		copies.put(copyKey(msg, to), m);
+		for (MessageListener ml : messageListeners) {
+			ml.messageTransferred(m, from, to, firstDelivery);
+		}
+	}
+
+	private void transferAborted(int msg, DTNHost from, DTNHost to) {
+		Message m = removeIncoming(msg, from, to);
+		for (MessageListener ml : messageListeners) {
+			ml.messageTransferAborted(m, from, to);
+		}
+	}
+
+	private void deleted(int msg, DTNHost where, boolean dropped) {
+		Message m = copies.remove(copyKey(msg, where));
+		if (m == null) {
+			m = createMessage(msg);
+		}
+		for (MessageListener ml : messageListeners) {
+			ml.messageDeleted(m, where, dropped);
+		}
+	}
+}
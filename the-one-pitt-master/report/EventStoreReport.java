@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.MovementListener;
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+import core.UpdateListener;
+
+/**
+ * Records the connection, message, update and (optionally) movement events
+ * of the simulation to an {@link EventStore} and computes the reports listed in
+ * the {@link #REPORTS_S} setting from the recorded events when the
+ * simulation is done (see {@link EventStoreReplayer}). During the run, the
+ * simulation only pays for appending the events to the store, and the
+ * same run's events can be used for many reports.
+ * <P>The post-run reports write their output like they would if they were
+ * run normally, so the same report shouldn't be both a normal and a
+ * post-run report. This report's own output is a summary of the recorded
+ * events.</P>
+ */
+public class EventStoreReport extends Report implements ConnectionListener,
+	MessageListener, MovementListener, UpdateListener {
+	/** Names of the reports to compute after the run -setting id
+	 * ({@value}). Comma separated list of report class names. */
+	public static final String REPORTS_S = "reports";
+	/** Record movement events -setting id ({@value}). Boolean, default is
+	 * false. */
+	public static final String RECORD_MOVEMENT_S = "recordMovement";
+	/** Directory of the spill file -setting id ({@value}). Default is the
+	 * system's temporary directory. */
+	public static final String SPILL_DIR_S = "spillDir";
+	/** Keep all events in memory -setting id ({@value}). Boolean, default
+	 * is false (spill the events to a memory mapped file). */
+	public static final String IN_MEMORY_S = "inMemory";
+
+	/** package of the post-run reports */
+	private static final String REPORT_PAC = "report.";
+
+	private EventStore store;
+	private String[] reportNames;
+	private boolean recordMovement;
+	private double startTime;
+
+	/**
+	 * Constructor.
+	 */
+	public EventStoreReport() {
+		Settings s = getSettings();
+		this.reportNames = s.contains(REPORTS_S) ?
+				s.getCsvSetting(REPORTS_S) : new String[0];
+		this.recordMovement = s.contains(RECORD_MOVEMENT_S) ?
+				s.getBoolean(RECORD_MOVEMENT_S) : false;
+
+		File spillDir = null;
+		if (!(s.contains(IN_MEMORY_S) && s.getBoolean(IN_MEMORY_S))) {
+			spillDir = new File(s.contains(SPILL_DIR_S) ?
+					s.getSetting(SPILL_DIR_S) :
+					System.getProperty("java.io.tmpdir"));
+		}
+
+		this.store = new EventStore(spillDir);
+		this.startTime = getSimTime();
+		init();
+	}
+
+	private static int address(DTNHost host) {
+		return host != null ? host.getAddress() : EventStore.NO_HOST;
+	}
+
+	private int messageIndex(Message m) {
+		return store.addMessage(m.getId(), address(m.getFrom()),
+				address(m.getTo()), m.getSize(), m.getResponseSize());
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		store.addEvent(getSimTime(), EventStore.CONN_UP, host1.getAddress(),
+				host2.getAddress(), EventStore.NO_REF);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		store.addEvent(getSimTime(), EventStore.CONN_DOWN, host1.getAddress(),
+				host2.getAddress(), EventStore.NO_REF);
+	}
+
+	public void newMessage(Message m) {
+		store.addEvent(getSimTime(), EventStore.MSG_CREATED,
+				m.getFrom().getAddress(), EventStore.NO_HOST, messageIndex(m));
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		store.addEvent(getSimTime(), EventStore.MSG_STARTED, from.getAddress(),
+				to.getAddress(), messageIndex(m));
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		store.addEvent(getSimTime(), firstDelivery ? EventStore.MSG_DELIVERED :
+			EventStore.MSG_RELAYED, from.getAddress(), to.getAddress(),
+			messageIndex(m));
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		store.addEvent(getSimTime(), EventStore.MSG_ABORTED, from.getAddress(),
+				to.getAddress(), messageIndex(m));
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		store.addEvent(getSimTime(), dropped ? EventStore.MSG_DROPPED :
+			EventStore.MSG_REMOVED, where.getAddress(), EventStore.NO_HOST,
+			messageIndex(m));
+	}
+
+	public void newDestination(DTNHost host, Coord destination, double speed) {
+		if (recordMovement) {
+			store.addEvent(getSimTime(), EventStore.MOVE_DESTINATION,
+					host.getAddress(), EventStore.NO_HOST, store.addMovement(
+							destination.getX(), destination.getY(), speed));
+		}
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		if (recordMovement) {
+			store.addEvent(getSimTime(), EventStore.MOVE_INITIAL,
+					host.getAddress(), EventStore.NO_HOST, store.addMovement(
+							location.getX(), location.getY(), Double.NaN));
+		}
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		store.addEvent(getSimTime(), EventStore.UPDATED, EventStore.NO_HOST,
+				EventStore.NO_HOST, EventStore.NO_REF);
+	}
+
+	/**
+	 * Returns the store where the events are recorded
+	 * @return the event store
+	 */
+	public EventStore getStore() {
+		return this.store;
+	}
+
+	@Override
+	public void done() {
+		SimClock clock = SimClock.getInstance();
+		double endTime = getSimTime();
+
+		Settings s = new Settings();
+		List<Report> reports = new ArrayList<Report>();
+		try {
+			/* the reports are created as if the simulation was starting */
+			clock.setTime(startTime);
+			for (String name : reportNames) {
+				reports.add((Report)s.createObject(REPORT_PAC + name));
+			}
+			new EventStoreReplayer(store,
+					SimScenario.getInstance().getHosts()).replay(reports);
+		} finally {
+			clock.setTime(endTime);
+		}
+		for (Report r : reports) {
+			r.done();
+		}
+
+		write("Event store for scenario " + getScenarioName() +
+				"\nsim_time: " + format(endTime));
+		write("events: " + store.getNrofEvents());
+		write("messages: " + store.getNrofMessages());
+		write("movements: " + store.getNrofMovements());
+		write("spilled_chunks: " + store.getNrofSpilledChunks());
+		write("post-run_reports: " + reports.size());
+		store.close();
+		super.done();
+	}
+}
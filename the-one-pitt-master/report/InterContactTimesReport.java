@@ -15,12 +15,11 @@ public class InterContactTimesReport extends ContactTimesReport {
 	
 	@Override
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = this.removeConnection(host1, host2);
+		double time = this.removeConnection(host1, host2);
 		
-		if (ci != null) { // connected again
+		if (time >= 0) { // connected again
 			newEvent();
-			ci.connectionEnd();			
-			increaseTimeCount(ci.getConnectionTime());
+			increaseTimeCount(time);
 		}		
 	}
 	
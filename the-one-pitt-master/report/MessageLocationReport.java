@@ -4,11 +4,18 @@
  */
 package report;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import core.Coord;
 import core.DTNHost;
 import core.Message;
+import core.MessageListener;
 import core.Settings;
 import core.UpdateListener;
 
@@ -16,8 +23,24 @@ import core.UpdateListener;
 /**
  * Message location report. Reports the location (coordinates) of messages.
  * The messages that are reported and the reporting interval can be configured.
+ * <P>If the {@link #KEYFRAME_INTERVAL} setting is used, only every
+ * n<SUP>th</SUP> snapshot is a full snapshot (a keyframe) and the snapshots
+ * between them only have the changes since the previous snapshot. Only the
+ * hosts whose messages changed (see {@link MessageListener}) and the hosts
+ * that carry reported messages are checked for the changes. The
+ * {@link DeltaSnapshotReader} tool reconstructs the full snapshots. The
+ * format of the keyframes and changes is:</P>
+ * <PRE>
+ * [time] K              (keyframe)
+ * host (x,y) M1 M2      (a host and its reported messages)
+ * [time] D              (changes)
+ * &#64; host (x,y)          (host moved or got its first reported messages)
+ * + host M3             (messages added to the host)
+ * - host M1             (messages removed from the host)
+ * </PRE>
  */
-public class MessageLocationReport extends Report implements UpdateListener {
+public class MessageLocationReport extends Report implements UpdateListener,
+		MessageListener {
 	/** Reporting granularity -setting id ({@value}). 
 	 * Defines the interval how often (seconds) a new snapshot of message 
 	 * locations is created */
@@ -26,12 +49,40 @@ public class MessageLocationReport extends Report implements UpdateListener {
 	 * Defines the IDs of the messages that are reported 
 	 * (comma separated list)*/
 	public static final String REPORTED_MESSAGES = "messages";
+	/** Keyframe interval -setting id ({@value}). 
+	 * Defines how many snapshots there are between full snapshots. Default 
+	 * is 1 (all snapshots are full snapshots in the original format). */
+	public static final String KEYFRAME_INTERVAL = "keyframeInterval";
+	/** Movement threshold -setting id ({@value}). 
+	 * Defines how far (meters) a host must move from its previously reported
+	 * location until the new location is reported in the change snapshots.
+	 * Default is 0 (all movement is reported). */
+	public static final String MOVE_THRESHOLD = "moveThreshold";
+	/** keyframe marker of snapshot time stamps */
+	public static final String KEYFRAME = "K";
+	/** change snapshot marker of snapshot time stamps */
+	public static final String DELTA = "D";
+	
 	/** value of the granularity setting */
 	protected final int granularity;
 	/** time of last update*/
 	protected double lastUpdate; 
 	/** Identifiers of the message which are reported */
 	protected HashSet<String> reportedMessages;
+	/** value of the keyframe interval setting */
+	protected final int keyframeInterval;
+	/** value of the movement threshold setting */
+	protected final double moveThreshold;
+	/** number of snapshots since the last keyframe */
+	private int snapshotsSinceKeyframe;
+	/** reported messages and locations of the hosts that carry them, as 
+	 * they were in the last snapshot (DTNHost has no hashCode, so the 
+	 * collections keyed by hosts keep the insertion order to make the
+	 * output the same in every run) */
+	private Map<DTNHost, Set<String>> hostMessages;
+	private Map<DTNHost, Coord> hostLocations;
+	/** hosts whose messages may have changed since the last snapshot */
+	private Set<DTNHost> changedHosts;
 	
 	/**
 	 * Constructor. Reads the settings and initializes the report module.
@@ -46,6 +97,19 @@ public class MessageLocationReport extends Report implements UpdateListener {
 			this.reportedMessages.add(msgId);
 		}
 		
+		if (settings.contains(KEYFRAME_INTERVAL)) {
+			this.keyframeInterval = settings.getInt(KEYFRAME_INTERVAL);
+		}
+		else {
+			this.keyframeInterval = 1;
+		}
+		if (settings.contains(MOVE_THRESHOLD)) {
+			this.moveThreshold = settings.getDouble(MOVE_THRESHOLD);
+		}
+		else {
+			this.moveThreshold = 0;
+		}
+		
 		init();
 	}
 
@@ -58,11 +122,177 @@ public class MessageLocationReport extends Report implements UpdateListener {
 		double simTime = getSimTime();
 		/* creates a snapshot once every granularity seconds */
 		if (simTime - lastUpdate >= granularity) {
-			createSnapshot(hosts);
+			if (keyframeInterval <= 1) {
+				createSnapshot(hosts);
+			}
+			else if (hostMessages == null || 
+					snapshotsSinceKeyframe >= keyframeInterval) {
+				createKeyframe(hosts);
+			}
+			else {
+				createDeltaSnapshot();
+			}
 			this.lastUpdate = simTime - simTime % granularity;
 		}
 	}
 	
+	/**
+	 * Creates a full snapshot of message locations that also tells the 
+	 * hosts, and resets the state the change snapshots are based on
+	 * @param hosts The list of hosts in the world
+	 */
+	private void createKeyframe(List<DTNHost> hosts) {
+		this.hostMessages = new LinkedHashMap<DTNHost, Set<String>>();
+		this.hostLocations = new LinkedHashMap<DTNHost, Coord>();
+		this.changedHosts = new LinkedHashSet<DTNHost>();
+		this.snapshotsSinceKeyframe = 1;
+		
+		write("[" + (int)getSimTime() + "] " + KEYFRAME);
+		
+		for (DTNHost host : hosts) {
+			Set<String> ids = getReportedMessages(host);
+			if (ids.isEmpty()) {
+				continue;
+			}
+			Coord location = host.getLocation().clone();
+			hostMessages.put(host, ids);
+			hostLocations.put(host, location);
+			
+			StringBuilder line = new StringBuilder();
+			line.append(host).append(' ').append(location);
+			for (String id : ids) {
+				line.append(' ').append(id);
+			}
+			write(line.toString());
+		}
+	}
+	
+	/**
+	 * Creates a snapshot of the changes since the previous snapshot
+	 */
+	private void createDeltaSnapshot() {
+		this.snapshotsSinceKeyframe++;
+		write("[" + (int)getSimTime() + "] " + DELTA);
+		
+		/* moved hosts (this also reports the location of the hosts that 
+		 * get their first reported messages) */
+		for (DTNHost host : changedHosts) {
+			if (!hostMessages.containsKey(host) && 
+					!getReportedMessages(host).isEmpty()) {
+				hostLocations.remove(host);
+				hostMessages.put(host, new LinkedHashSet<String>());
+			}
+		}
+		for (Map.Entry<DTNHost, Set<String>> e : hostMessages.entrySet()) {
+			DTNHost host = e.getKey();
+			Coord old = hostLocations.get(host);
+			if (old == null || host.getLocation().distance(old) > 
+					moveThreshold) {
+				Coord location = host.getLocation().clone();
+				hostLocations.put(host, location);
+				write("@ " + host + " " + location);
+			}
+		}
+		
+		for (DTNHost host : changedHosts) {
+			Set<String> old = hostMessages.get(host);
+			if (old == null) {
+				continue; /* no reported messages before or now */
+			}
+			Set<String> current = getReportedMessages(host);
+			
+			List<String> removed = new ArrayList<String>();
+			for (String id : old) {
+				if (!current.contains(id)) {
+					removed.add(id);
+				}
+			}
+			List<String> added = new ArrayList<String>();
+			for (String id : current) {
+				if (!old.contains(id)) {
+					added.add(id);
+				}
+			}
+			
+			writeChange("- ", host, removed);
+			writeChange("+ ", host, added);
+			
+			if (current.isEmpty()) {
+				hostMessages.remove(host);
+				hostLocations.remove(host);
+			}
+			else {
+				hostMessages.put(host, current);
+			}
+		}
+		changedHosts.clear();
+	}
+	
+	/**
+	 * Writes a line of added or removed messages of a host (if there are 
+	 * any)
+	 */
+	private void writeChange(String prefix, DTNHost host, List<String> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		StringBuilder line = new StringBuilder(prefix);
+		line.append(host);
+		for (String id : ids) {
+			line.append(' ').append(id);
+		}
+		write(line.toString());
+	}
+	
+	/**
+	 * Returns the IDs of the reported messages a host has
+	 * @param host The host
+	 * @return The message IDs in the order of the host's message collection
+	 */
+	private Set<String> getReportedMessages(DTNHost host) {
+		Set<String> ids = new LinkedHashSet<String>();
+		for (Message m : host.getMessageCollection()) {
+			if (this.reportedMessages.contains(m.getId())) {
+				ids.add(m.getId());
+			}
+		}
+		return ids;
+	}
+	
+	/**
+	 * Marks a host's reported messages possibly changed
+	 * @param m The message that was involved in the change
+	 * @param host The host
+	 */
+	private void changed(Message m, DTNHost host) {
+		if (changedHosts != null && reportedMessages.contains(m.getId())) {
+			changedHosts.add(host);
+		}
+	}
+	
+	public void newMessage(Message m) {
+		changed(m, m.getFrom());
+	}
+	
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		/* the messages don't change until the transfer is done */
+	}
+	
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		changed(m, where);
+	}
+	
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		/* the messages don't change */
+	}
+	
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		/* some routers also remove the message from the sender */
+		changed(m, from);
+		changed(m, to);
+	}
+	
 	/**
 	 * Creates a snapshot of message locations 
 	 * @param hosts The list of hosts in the world
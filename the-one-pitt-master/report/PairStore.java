@@ -0,0 +1,261 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+/**
+ * Sparse store of per host pair values for the contact analysis reports.
+ * The pairs are keyed by the two host addresses packed to a long (see
+ * {@link #key(int, int)} and {@link #orderedKey(int, int)}) and stored with
+ * open addressing to primitive arrays, so the memory use depends on the
+ * number of pairs that have a value instead of the square of the number of
+ * hosts, and no objects are created per pair or per lookup.
+ * <P>The stored values are doubles, which also hold (counter) values of
+ * integers exactly. The entries can be iterated with {@link #capacity()},
+ * {@link #isUsed(int)}, {@link #keyAt(int)} and {@link #valueAt(int)}.</P>
+ */
+public class PairStore {
+	private static final int INITIAL_CAPACITY = 64;
+	/** key of a free entry (not a valid pair key) */
+	private static final long FREE = -1;
+
+	private long[] keys;
+	private double[] values;
+	private int size;
+	private int mask;
+
+	/**
+	 * Creates a new empty store
+	 */
+	public PairStore() {
+		this.keys = new long[INITIAL_CAPACITY];
+		this.values = new double[INITIAL_CAPACITY];
+		Arrays.fill(keys, FREE);
+		this.mask = INITIAL_CAPACITY - 1;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the key of an unordered host pair; the same key for (a, b) and
+	 * (b, a)
+	 * @param a Address of a host
+	 * @param b Address of the other host
+	 * @return The key of the pair
+	 */
+	public static long key(int a, int b) {
+		return a < b ? orderedKey(a, b) : orderedKey(b, a);
+	}
+
+	/**
+	 * Returns the key of an ordered host pair (different keys for (a, b)
+	 * and (b, a))
+	 * @param from Address of the first host
+	 * @param to Address of the second host
+	 * @return The key of the pair
+	 */
+	public static long orderedKey(int from, int to) {
+		return ((long)from << 32) | (to & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the address of the first host of a key
+	 * @param key The key
+	 * @return The address of the first (for unordered keys, the smaller)
+	 * host
+	 */
+	public static int first(long key) {
+		return (int)(key >>> 32);
+	}
+
+	/**
+	 * Returns the address of the second host of a key
+	 * @param key The key
+	 * @return The address of the second (for unordered keys, the larger)
+	 * host
+	 */
+	public static int second(long key) {
+		return (int)key;
+	}
+
+	/**
+	 * Returns the entry index of a key or of the free entry where it would
+	 * be inserted
+	 */
+	private int indexOf(long key) {
+		int i = hash(key) & mask;
+		while (keys[i] != key && keys[i] != FREE) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns true if the store has a value for the pair
+	 * @param key Key of the pair
+	 * @return true if the pair has a value
+	 */
+	public boolean containsKey(long key) {
+		return keys[indexOf(key)] == key;
+	}
+
+	/**
+	 * Returns the value of a pair
+	 * @param key Key of the pair
+	 * @param naValue The value to return if the pair has no value
+	 * @return The value of the pair or naValue
+	 */
+	public double get(long key, double naValue) {
+		int i = indexOf(key);
+		return keys[i] == key ? values[i] : naValue;
+	}
+
+	/**
+	 * Sets the value of a pair
+	 * @param key Key of the pair
+	 * @param value The new value
+	 */
+	public void put(long key, double value) {
+		int i = indexOf(key);
+		if (keys[i] != key) {
+			i = insert(key, i);
+		}
+		values[i] = value;
+	}
+
+	/**
+	 * Adds to the value of a pair. A pair without a value is considered to
+	 * have value 0.
+	 * @param key Key of the pair
+	 * @param delta The value to add
+	 * @return The new value of the pair
+	 */
+	public double add(long key, double delta) {
+		int i = indexOf(key);
+		if (keys[i] != key) {
+			i = insert(key, i);
+			values[i] = 0;
+		}
+		values[i] += delta;
+		return values[i];
+	}
+
+	/**
+	 * Inserts a new key to a free entry (growing the store if needed)
+	 * @param key The key
+	 * @param i Index of the free entry for the key
+	 * @return The index of the key's entry
+	 */
+	private int insert(long key, int i) {
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+			i = indexOf(key);
+		}
+		keys[i] = key;
+		size++;
+		return i;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new double[oldKeys.length * 2];
+		Arrays.fill(keys, FREE);
+		mask = keys.length - 1;
+
+		for (int j=0; j<oldKeys.length; j++) {
+			if (oldKeys[j] != FREE) {
+				int i = indexOf(oldKeys[j]);
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * Removes the value of a pair
+	 * @param key Key of the pair
+	 * @param naValue The value to return if the pair had no value
+	 * @return The removed value or naValue
+	 */
+	public double remove(long key, double naValue) {
+		int i = indexOf(key);
+		if (keys[i] != key) {
+			return naValue;
+		}
+		double value = values[i];
+		size--;
+
+		/* shift the following entries of the probe sequence back so that
+		 * no lookup stops at the freed entry too early */
+		int free = i;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == FREE) {
+				break;
+			}
+			int home = hash(keys[j]) & mask;
+			/* the entry can move to the free slot if its home isn't
+			 * (cyclically) between the free slot and the entry */
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				keys[free] = keys[j];
+				values[free] = values[j];
+				free = j;
+			}
+		}
+		keys[free] = FREE;
+		return value;
+	}
+
+	/**
+	 * Returns the number of pairs with a value
+	 * @return the number of pairs
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of entries (used or not) for iterating the store
+	 * @return the number of entries
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Returns true if an entry has a pair
+	 * @param i Index of the entry
+	 * @return true if the entry is used
+	 */
+	public boolean isUsed(int i) {
+		return keys[i] != FREE;
+	}
+
+	/**
+	 * Returns the key of an (used) entry
+	 * @param i Index of the entry
+	 * @return The key of the entry
+	 */
+	public long keyAt(int i) {
+		return keys[i];
+	}
+
+	/**
+	 * Returns the value of an (used) entry
+	 * @param i Index of the entry
+	 * @return The value of the entry
+	 */
+	public double valueAt(int i) {
+		return values[i];
+	}
+}
@@ -19,7 +19,9 @@ import core.UpdateListener;
 public class UniqueEncountersReport extends Report implements 
 	ConnectionListener, UpdateListener {
 
-	private int[][] nodeRelationships;
+	/** number of encounters of each host pair that has met */
+	private PairStore nodeRelationships;
+	private int nrofHosts;
 	
 	public UniqueEncountersReport() {
 		
@@ -29,31 +31,26 @@ public class UniqueEncountersReport extends Report implements
 		if (nodeRelationships == null) {
 			return;
 		}
-		nodeRelationships[host1.getAddress()][host2.getAddress()]++;
-		nodeRelationships[host2.getAddress()][host1.getAddress()]++;
+		nodeRelationships.add(PairStore.key(host1.getAddress(), 
+				host2.getAddress()), 1);
 	}
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
 
 	public void updated(List<DTNHost> hosts) {
 		if (nodeRelationships == null) {
-			nodeRelationships = new int[hosts.size()][hosts.size()];
+			nodeRelationships = new PairStore();
+			nrofHosts = hosts.size();
 		}
 	}
 
 	@Override
 	public void done() {
 		int[] distribution = new int[1000];
+		int[] uniqueEncounters = getNrofUniqueEncounters();
 		
-		for (int i=0; i<nodeRelationships.length; i++) {
-			int count = 0;
-			for (int j=0; j<nodeRelationships.length; j++) {
-				if (nodeRelationships[i][j] > 0) {
-					count++;
-				}
-			}
-
-			int promille = (count * 1000)/nodeRelationships.length;
+		for (int i=0; i<uniqueEncounters.length; i++) {
+			int promille = (uniqueEncounters[i] * 1000)/nrofHosts;
 			distribution[promille]++;
 		}
 		
@@ -65,12 +62,24 @@ public class UniqueEncountersReport extends Report implements
 		super.done();
 	}
 
-	public int[][] getNodeRelationships() {
-		return nodeRelationships;
-	}
-
-	public void setNodeRelationships(int[][] nodeRelationships) {
-		this.nodeRelationships = nodeRelationships;
+	/**
+	 * Returns the number of different hosts each host has encountered
+	 * @return The number of unique encounters of each host (indexed by
+	 * the host address)
+	 */
+	public int[] getNrofUniqueEncounters() {
+		if (nodeRelationships == null) {
+			return new int[0];
+		}
+		int[] counts = new int[nrofHosts];
+		for (int i=0, n=nodeRelationships.capacity(); i<n; i++) {
+			if (nodeRelationships.isUsed(i)) {
+				long key = nodeRelationships.keyAt(i);
+				counts[PairStore.first(key)]++;
+				counts[PairStore.second(key)]++;
+			}
+		}
+		return counts;
 	}
 	
 }
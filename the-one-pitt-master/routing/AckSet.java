@@ -0,0 +1,428 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import core.DTNSim;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Set of message IDs for acknowledgments and tombstones, i.e., IDs of the
+ * messages that are known to have reached their final recipient. The IDs
+ * are interned to indexes that are shared by all the sets and each set
+ * stores its indexes in a bitmap. A set also keeps a log of the indexes in
+ * the order they were added and remembers how far it has read the logs of
+ * the other sets, so merging a set only goes through the entries the other
+ * set has added since the previous merge.
+ * <P>An entry expires when the TTL of the message has passed twice since
+ * the creation of the message, which leaves the routers plenty of time to
+ * drop their expired copies of the message. Expired entries are removed
+ * from the sets (and their logs) and they are not merged anymore. Entries
+ * of messages with infinite TTL never expire.</P>
+ * <P>The indexes of expired IDs are given to new IDs. A set may still have
+ * the bit of a reused index for the previous ID if it hasn't removed its
+ * expired entries since, so every set remembers the number of indexes that
+ * had been freed when it last removed them, and the bits and log entries of
+ * the indexes freed after that are ignored until the set removes them.</P>
+ */
+public class AckSet {
+	/** Minimum time between two expiry checks of a set (seconds) */
+	public static final int EXPIRY_CHECK_INTERVAL = 600;
+	/** number of bits in a bitmap word */
+	private static final int WORD_BITS = 64;
+	/** initial length of the logs */
+	private static final int LOG_SIZE = 16;
+
+	/** indexes of the interned message IDs */
+	private static Map<String, Integer> indexes;
+	/** interned message IDs by the index */
+	private static String[] ids;
+	/** expiry times of the entries by the index */
+	private static double[] expiries;
+	/** number of indexes freed before each index was last freed */
+	private static int[] freeCounts;
+	/** number of indexes that have been given out */
+	private static int nrofIndexes;
+	/** number of times an index has been freed */
+	private static int nrofFrees;
+	/** the freed indexes that can be given to new IDs */
+	private static Deque<Integer> freeIndexes;
+	/** the indexes with finite expiry times by the expiry time */
+	private static PriorityQueue<Integer> expiryQueue;
+	/** identifier for the next set */
+	private static int nextSetId;
+
+	/** bitmap of the indexes, the first word is for indexes base*64... */
+	private long[] words;
+	private int base;
+	private int size;
+	/** added (and not expired) indexes in the order they were added */
+	private int[] log;
+	/** versions of the log's indexes, i.e., the numbers of indexes logged
+	 * before them */
+	private int[] logVersions;
+	private int logSize;
+	/** version of this set, i.e., the number of indexes ever logged */
+	private int version;
+	/** value of {@link #nrofFrees} when this set last removed its expired
+	 * entries; bits of the indexes freed after that belong to expired IDs */
+	private int checkedFrees;
+	/** identifier of this set */
+	private int setId;
+	/** versions of the other sets that have been merged to this set, by
+	 * the identifiers of the sets */
+	private int[] merged;
+	/** time of the next expiry check */
+	private double nextExpiry;
+
+	static {
+		reset();
+		DTNSim.registerForReset(AckSet.class.getCanonicalName());
+	}
+
+	/**
+	 * Creates a new empty set
+	 */
+	public AckSet() {
+		this.words = new long[4];
+		this.log = new int[LOG_SIZE];
+		this.logVersions = new int[LOG_SIZE];
+		this.checkedFrees = nrofFrees;
+		this.setId = nextSetId++;
+		this.merged = new int[0];
+		this.nextExpiry = Double.MAX_VALUE;
+	}
+
+	/**
+	 * Copy constructor. The copy has the same entries as the original.
+	 * @param s The set to copy
+	 */
+	public AckSet(AckSet s) {
+		this.words = s.words.clone();
+		this.base = s.base;
+		this.size = s.size;
+		this.log = s.log.clone();
+		this.logVersions = s.logVersions.clone();
+		this.logSize = s.logSize;
+		this.version = s.version;
+		this.checkedFrees = s.checkedFrees;
+		this.setId = nextSetId++;
+		this.merged = s.merged.clone();
+		this.nextExpiry = s.nextExpiry;
+	}
+
+	/**
+	 * Adds the ID of a message to the set
+	 * @param m The message
+	 * @return True if the ID wasn't in the set yet
+	 */
+	public boolean add(Message m) {
+		double now = SimClock.getTime();
+		boolean added = addIndex(intern(m, now), now);
+		checkExpiry(now);
+		return added;
+	}
+
+	/**
+	 * Returns true if the set contains the ID of a message
+	 * @param id The ID of the message
+	 * @return True if the ID is in the set and it hasn't expired
+	 */
+	public boolean contains(String id) {
+		Integer index = indexes.get(id);
+		if (index == null) {
+			return false;
+		}
+		int word = (index / WORD_BITS) - this.base;
+		if (word < 0 || word >= this.words.length ||
+				freeCounts[index] > this.checkedFrees) {
+			return false;
+		}
+		return (this.words[word] & (1L << (index % WORD_BITS))) != 0 &&
+			expiries[index] > SimClock.getTime();
+	}
+
+	/**
+	 * Adds the entries of another set to this set. Only the entries the
+	 * other set has added after the previous merge are checked.
+	 * @param other The set to merge to this set
+	 * @return The number of entries added to this set
+	 */
+	public int merge(AckSet other) {
+		double now = SimClock.getTime();
+		if (other.setId >= this.merged.length) {
+			this.merged = Arrays.copyOf(this.merged, other.setId + 1);
+		}
+		int added = 0;
+		for (int i = other.logPosition(this.merged[other.setId]);
+				i < other.logSize; i++) {
+			int index = other.log[i];
+			if (freeCounts[index] <= other.checkedFrees &&
+					expiries[index] > now && addIndex(index, now)) {
+				added++;
+			}
+		}
+		this.merged[other.setId] = other.version;
+		checkExpiry(now);
+		return added;
+	}
+
+	/**
+	 * Returns the number of entries in the set. The count includes expired
+	 * entries until the set removes them at its next expiry check.
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the version of the set. The version grows by one every time
+	 * an entry is added to the set.
+	 * @return the version of the set
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Returns the position of the first log entry of at least a version
+	 * @param version The version
+	 * @return The position (the log size if there are no such entries)
+	 */
+	private int logPosition(int version) {
+		int low = 0;
+		int high = this.logSize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.logVersions[mid] < version) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Sets the bit of an index and logs the index if it wasn't set yet
+	 * @param index The index to add
+	 * @param now The current simulation time
+	 * @return True if the index wasn't in the set yet
+	 */
+	private boolean addIndex(int index, double now) {
+		if (freeCounts[index] > this.checkedFrees) {
+			/* the bit may still be set for the index's previous ID */
+			removeExpired(now);
+		}
+
+		int word = (index / WORD_BITS) - this.base;
+		if (word < 0) { /* index below the trimmed part of the bitmap */
+			long[] w = new long[this.words.length - word];
+			System.arraycopy(this.words, 0, w, -word, this.words.length);
+			this.words = w;
+			this.base += word;
+			word = 0;
+		}
+		else if (word >= this.words.length) {
+			this.words = Arrays.copyOf(this.words,
+					Math.max(word + 1, this.words.length * 2));
+		}
+
+		long bit = 1L << (index % WORD_BITS);
+		if ((this.words[word] & bit) != 0) {
+			return false;
+		}
+		this.words[word] |= bit;
+		this.size++;
+
+		if (this.logSize == this.log.length) {
+			this.log = Arrays.copyOf(this.log, this.logSize * 2);
+			this.logVersions = Arrays.copyOf(this.logVersions,
+					this.logSize * 2);
+		}
+		this.log[this.logSize] = index;
+		this.logVersions[this.logSize] = this.version;
+		this.logSize++;
+		this.version++;
+
+		if (expiries[index] < this.nextExpiry) {
+			this.nextExpiry = expiries[index];
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the expired entries if there can be any
+	 * @param now The current simulation time
+	 */
+	private void checkExpiry(double now) {
+		if (now < this.nextExpiry) {
+			return;
+		}
+		removeExpired(now);
+	}
+
+	/**
+	 * Removes the expired entries and the entries of the indexes that have
+	 * been freed after the previous removal
+	 * @param now The current simulation time
+	 */
+	private void removeExpired(double now) {
+		double next = Double.MAX_VALUE;
+		for (int i = 0; i < this.words.length; i++) {
+			long w = this.words[i];
+			while (w != 0) {
+				long bit = Long.lowestOneBit(w);
+				w ^= bit;
+				int index = (this.base + i) * WORD_BITS +
+					Long.numberOfTrailingZeros(bit);
+				if (!isLive(index, now)) {
+					this.words[i] ^= bit;
+					this.size--;
+				}
+				else if (expiries[index] < next) {
+					next = expiries[index];
+				}
+			}
+		}
+
+		/* drop the empty words from the start of the bitmap */
+		int empty = 0;
+		while (empty < this.words.length - 1 && this.words[empty] == 0) {
+			empty++;
+		}
+		if (empty > 0) {
+			this.words = Arrays.copyOfRange(this.words, empty,
+					Math.max(empty + 4, this.words.length));
+			this.base += empty;
+		}
+
+		/* drop the expired entries from the log (also from between the
+		 * entries that never expire) */
+		int n = 0;
+		for (int i = 0; i < this.logSize; i++) {
+			if (isLive(this.log[i], now)) {
+				this.log[n] = this.log[i];
+				this.logVersions[n] = this.logVersions[i];
+				n++;
+			}
+		}
+		this.logSize = n;
+		if (n * 4 < this.log.length && this.log.length > LOG_SIZE) {
+			int length = Math.max(LOG_SIZE, n * 2);
+			this.log = Arrays.copyOf(this.log, length);
+			this.logVersions = Arrays.copyOf(this.logVersions, length);
+		}
+
+		this.checkedFrees = nrofFrees;
+		this.nextExpiry = Math.max(next, now + EXPIRY_CHECK_INTERVAL);
+	}
+
+	/**
+	 * Returns true if an entry of this set is for an ID that hasn't expired.
+	 * Only valid before the set's expired entries are removed.
+	 * @param index Index of the entry
+	 * @param now The current simulation time
+	 * @return True if the entry should be kept
+	 */
+	private boolean isLive(int index, double now) {
+		return expiries[index] > now && freeCounts[index] <= this.checkedFrees;
+	}
+
+	/**
+	 * Returns the index of a message's ID. New IDs are given an index of an
+	 * expired ID or the next unused index.
+	 * @param m The message
+	 * @param now The current simulation time
+	 * @return The index of the message's ID
+	 */
+	private static int intern(Message m, double now) {
+		Integer index = indexes.get(m.getId());
+		if (index != null) {
+			return index;
+		}
+
+		freeExpired(now);
+		if (!freeIndexes.isEmpty()) {
+			index = freeIndexes.pop();
+		}
+		else {
+			index = nrofIndexes++;
+			if (index == expiries.length) {
+				ids = Arrays.copyOf(ids, index * 2);
+				expiries = Arrays.copyOf(expiries, index * 2);
+				freeCounts = Arrays.copyOf(freeCounts, index * 2);
+			}
+		}
+
+		indexes.put(m.getId(), index);
+		ids[index] = m.getId();
+		if (m.getInitTtl() == Message.INFINITE_TTL) {
+			expiries[index] = Double.MAX_VALUE;
+		}
+		else {
+			expiries[index] = m.getCreationTime() + 2 * 60.0 * m.getInitTtl();
+			expiryQueue.add(index);
+		}
+		return index;
+	}
+
+	/**
+	 * Frees the indexes of the expired IDs for reuse
+	 * @param now The current simulation time
+	 */
+	private static void freeExpired(double now) {
+		while (!expiryQueue.isEmpty() && expiries[expiryQueue.peek()] <= now) {
+			int index = expiryQueue.poll();
+			indexes.remove(ids[index]);
+			ids[index] = null;
+			freeCounts[index] = ++nrofFrees;
+			freeIndexes.push(index);
+		}
+	}
+
+	/**
+	 * Returns the number of indexes the interned IDs use, i.e., the number
+	 * of indexes that have been given out less the freed ones
+	 * @return The number of used indexes
+	 */
+	public static int getNrofIndexes() {
+		return nrofIndexes - freeIndexes.size();
+	}
+
+	/**
+	 * Resets all static fields to default values
+	 */
+	public static void reset() {
+		indexes = new HashMap<String, Integer>();
+		ids = new String[64];
+		expiries = new double[64];
+		freeCounts = new int[64];
+		nrofIndexes = 0;
+		nrofFrees = 0;
+		freeIndexes = new ArrayDeque<Integer>();
+		expiryQueue = new PriorityQueue<Integer>(11, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(expiries[i1], expiries[i2]);
+			}
+		});
+		nextSetId = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "AckSet of " + this.size + " IDs (version " + this.version + ")";
+	}
+}
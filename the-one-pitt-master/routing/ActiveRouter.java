@@ -14,6 +14,7 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.NetworkInterface;
 import core.Settings;
 import core.SimClock;
 import core.Tuple;
@@ -329,9 +330,9 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
+		List<Connection> connections = getHost().getConnections();
 		for (Message m : getMessageCollection()) {
-			for(Connection con : getHost().getConnections()) {
-			//for (Connection con : getConnections()) {
+			for (Connection con : connections) {
 				DTNHost to = con.getOtherNode(getHost());
 				if (m.getTo() == to) {
 					forTuples.add(new Tuple<Message, Connection>(m,con));
@@ -536,8 +537,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}*/
 		
-		for(Connection con : getHost()) {
-			if(!con.isReadyForTransfer()) {
+		for (NetworkInterface ni : getHost().getInterfaces()) {
+			if (ni.isTransferring()) {
 				return true;
 			}
 		}
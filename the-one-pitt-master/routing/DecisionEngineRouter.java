@@ -11,19 +11,24 @@ import core.*;
  * 
  * <strong>Forwarding Logic:</strong> 
  * 
- * A DecisionEngineRouter maintains a List of Tuple<Message, Connection> in 
- * support of a call to ActiveRouter.tryMessagesForConnected() in 
+ * A DecisionEngineRouter maintains an OutgoingMessageQueue (a queue of 
+ * messages per connection, indexed by message ID) that is tried in 
  * DecisionEngineRouter.update(). Since update() is called so frequently, we'd 
- * like as little computation done in it as possible; hence the List that gets
- * updated when events happen. Four events cause the List to be updated: a new 
+ * like as little computation done in it as possible; hence the queue that gets
+ * updated when events happen. Four events cause the queue to be updated: a new 
  * message from this host, a new received message, a connection goes up, or a 
  * connection goes down. On a new message (either from this host or received 
  * from a peer), the collection of open connections is examined to see if the
- * message should be forwarded along them. If so, a new Tuple is added to the
- * List. When a connection goes up, the collection of messages is examined to 
- * determine to determine if any should be sent to this new peer, adding a Tuple
- * to the list if so. When a connection goes down, any Tuple in the list
- * associated with that connection is removed from the List.
+ * message should be forwarded along them. If so, the message is queued for the
+ * connection. When a connection goes up, the collection of messages is 
+ * examined to determine to determine if any should be sent to this new peer, 
+ * queueing them if so. When a connection goes down, its queue is removed. 
+ * Sent and deleted messages are removed from the queues using the ID index.
+ * 
+ * The messages of a connection are sent in FIFO order by default. If the
+ * <code>outgoingOrder</code> setting is <code>utility</code>, the decision 
+ * engine must implement MessagePrioritizer and the messages with the highest
+ * priority are sent first.
  * 
  * <strong>Decision Engines</strong>
  * 
@@ -86,12 +91,24 @@ public class DecisionEngineRouter extends ActiveRouter
 	public static final String ENGINE_SETTING = "decisionEngine";
 	public static final String TOMBSTONE_SETTING = "tombstones";
 	public static final String CONNECTION_STATE_SETTING = "";
+	/** Order of the outgoing messages of a connection -setting id ({@value}).
+	 * Either {@link #ORDER_FIFO} (default) or {@link #ORDER_UTILITY} */
+	public static final String OUTGOING_ORDER_SETTING = "outgoingOrder";
+	public static final String ORDER_FIFO = "fifo";
+	public static final String ORDER_UTILITY = "utility";
+	/** Should the connection changes be passed to connectionUp() and 
+	 * connectionDown() -setting id ({@value}). Boolean, default is false,
+	 * which keeps the earlier behaviour where the decision engine isn't told
+	 * about the connections that go up or down. */
+	public static final String CONNECTION_EVENTS_SETTING = "connectionEvents";
 	
 	protected boolean tombstoning;
+	protected boolean connectionEvents;
+	protected boolean utilityOrder;
 	protected RoutingDecisionEngine decider;
-	protected List<Tuple<Message, Connection>> outgoingMessages;
+	protected OutgoingMessageQueue outgoingMessages;
 	
-	protected Set<String> tombstones;
+	protected AckSet tombstones;
 	
 	/** 
 	 * Used to save state machine when new connections are made. See comment in
@@ -105,30 +122,51 @@ public class DecisionEngineRouter extends ActiveRouter
 		
 		Settings routeSettings = new Settings(PUBSUB_NS);
 		
-		outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
-		
 		decider = (RoutingDecisionEngine)routeSettings.createIntializedObject(
 				"routing." + routeSettings.getSetting(ENGINE_SETTING));
 		
+		utilityOrder = false;
+		if(routeSettings.contains(OUTGOING_ORDER_SETTING))
+		{
+			String order = routeSettings.getSetting(OUTGOING_ORDER_SETTING);
+			if(order.equals(ORDER_UTILITY))
+				utilityOrder = true;
+			else if(!order.equals(ORDER_FIFO))
+				throw new SettingsError("Unknown value '" + order + "' for " + 
+						PUBSUB_NS + "." + OUTGOING_ORDER_SETTING);
+		}
+		if(utilityOrder && !(decider instanceof MessagePrioritizer))
+			throw new SettingsError("Decision engine " + 
+					decider.getClass().getName() + " can't be used with " + 
+					PUBSUB_NS + "." + OUTGOING_ORDER_SETTING + " = " + ORDER_UTILITY);
+		outgoingMessages = createOutgoingQueue();
+		
+		if(routeSettings.contains(CONNECTION_EVENTS_SETTING))
+			connectionEvents = routeSettings.getBoolean(CONNECTION_EVENTS_SETTING);
+		else
+			connectionEvents = false;
+		
 		if(routeSettings.contains(TOMBSTONE_SETTING))
 			tombstoning = routeSettings.getBoolean(TOMBSTONE_SETTING);
 		else
 			tombstoning = false;
 		
 		if(tombstoning)
-			tombstones = new HashSet<String>(10);
+			tombstones = new AckSet();
 		conStates = new HashMap<Connection, Integer>(4);
 	}
 
 	public DecisionEngineRouter(DecisionEngineRouter r)
 	{
 		super(r);
-		outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
 		decider = r.decider.replicate();
+		utilityOrder = r.utilityOrder;
+		outgoingMessages = createOutgoingQueue();
+		connectionEvents = r.connectionEvents;
 		tombstoning = r.tombstoning;
 		
 		if(this.tombstoning)
-			tombstones = new HashSet<String>(10);
+			tombstones = new AckSet();
 		conStates = new HashMap<Connection, Integer>(4);
 	}
 
@@ -137,6 +175,12 @@ public class DecisionEngineRouter extends ActiveRouter
 	{
 		return new DecisionEngineRouter(this);
 	}
+	
+	private OutgoingMessageQueue createOutgoingQueue()
+	{
+		return new OutgoingMessageQueue(utilityOrder ? 
+				(MessagePrioritizer)decider : null);
+	}
 
 	@Override
 	public boolean createNewMessage(Message m)
@@ -199,7 +243,7 @@ public class DecisionEngineRouter extends ActiveRouter
 		for(Message m : msgs)
 		{
 			if(decider.shouldSendMessageToHost(m, otherNode))
-				outgoingMessages.add(new Tuple<Message,Connection>(m, con));
+				outgoingMessages.add(m, con, otherNode);
 		}
 	}
 	
@@ -218,15 +262,26 @@ public class DecisionEngineRouter extends ActiveRouter
 		
 		/*
 		 * If we  were trying to send message to this peer, we need to remove them
-		 * from the outgoing List.
+		 * from the outgoing queue.
 		 */
-		for(Iterator<Tuple<Message,Connection>> i = outgoingMessages.iterator(); 
-				i.hasNext();)
-		{
-			Tuple<Message, Connection> t = i.next();
-			if(t.getValue() == con)
-				i.remove();
-		}
+		outgoingMessages.removeConnection(con);
+	}
+
+	/**
+	 * DTNHost reports both new and lost connections through this method, so
+	 * it's dispatched to connectionUp() or connectionDown() here if the
+	 * {@link #CONNECTION_EVENTS_SETTING} setting is true. Otherwise the
+	 * connection changes are ignored like in the earlier versions.
+	 */
+	@Override
+	public void changedConnection(Connection con)
+	{
+		if(!connectionEvents)
+			return;
+		if(con.isUp())
+			connectionUp(con);
+		else
+			connectionDown(con);
 	}
 
 	/*@Override
@@ -328,7 +383,7 @@ public class DecisionEngineRouter extends ActiveRouter
 		else if(tombstoning && retVal == DENIED_DELIVERED)
 		{
 			this.deleteMessage(m.getId(), false);
-			tombstones.add(m.getId());
+			tombstones.add(m);
 		}
 		else if (deleteDelivered && (retVal == DENIED_OLD || retVal == DENIED_DELIVERED) && 
 				decider.shouldDeleteOldMessage(m, con.getOtherNode(getHost()))) {
@@ -402,37 +457,27 @@ public class DecisionEngineRouter extends ActiveRouter
 	@Override
 	protected void transferDone(Connection con)
 	{
-		Message transferred = this.getMessage(con.getMessage().getId());
+		String id = con.getMessage().getId();
+		Message transferred = this.getMessage(id);
 		
-		for(Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator(); 
-		i.hasNext();)
-		{
-			Tuple<Message, Connection> t = i.next();
-			if(t.getKey().getId().equals(transferred.getId()) && 
-					t.getValue().equals(con))
-			{
-				i.remove();
-				break;
-			}
-		}
+		outgoingMessages.remove(id, con);
+		if(transferred == null)
+			return; // deleted while it was being transferred
 		
 		if(decider.shouldDeleteSentMessage(transferred, con.getOtherNode(getHost())))
 		{
 			if(transferred.getId().equals("M14"))
 				System.out.println("Host: " + getHost() + " deleting M14 after transfer");
-			this.deleteMessage(transferred.getId(), false);
-			
-			for(Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator(); 
-			i.hasNext();)
-			{
-				Tuple<Message, Connection> t = i.next();
-				if(t.getKey().getId().equals(transferred.getId()))
-				{
-					i.remove();
-				}
-			}
+			this.deleteMessage(transferred.getId(), false); // also dequeues it
 		}
 	}
+	
+	@Override
+	public void deleteMessage(String id, boolean drop)
+	{
+		super.deleteMessage(id, drop);
+		outgoingMessages.removeMessage(id);
+	}
 
 	@Override
 	public void update()
@@ -442,17 +487,39 @@ public class DecisionEngineRouter extends ActiveRouter
 			return; // nothing to transfer or is currently transferring 
 		}
 		
-		tryMessagesForConnected(outgoingMessages);
+		tryOutgoingMessages();
+	}
+	
+	/**
+	 * Tries to start a transfer of a queued message. The connections are 
+	 * tried in turn and the messages of each connection in the queue order
+	 * until a transfer starts. 
+	 * 
+	 * @return The connection over which a transfer was started or null
+	 */
+	protected Connection tryOutgoingMessages()
+	{
+		if(outgoingMessages.isEmpty())
+			return null;
 		
-		for(Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator(); 
-			i.hasNext();)
+		for(Connection con : getHost())
 		{
-			Tuple<Message, Connection> t = i.next();
-			if(!this.hasMessage(t.getKey().getId()))
+			if(!con.isReadyForTransfer())
+				continue;
+			
+			for(Iterator<Message> i = outgoingMessages.iterator(con); i.hasNext();)
 			{
-				i.remove();
+				Message m = i.next();
+				if(!this.hasMessage(m.getId()))
+				{
+					i.remove(); // no longer held
+					continue;
+				}
+				if(startTransfer(m, con) == RCV_OK)
+					return con;
 			}
 		}
+		return null;
 	}
 	
 	public RoutingDecisionEngine getDecisionEngine()
@@ -476,7 +543,7 @@ public class DecisionEngineRouter extends ActiveRouter
 			{
 				if(m.getId().equals("M14"))
 					System.out.println("Adding attempt for M14 from: " + getHost() + " to: " + other);
-				outgoingMessages.add(new Tuple<Message, Connection>(m, c));
+				outgoingMessages.add(m, c, other);
 			}
 		}
 	}
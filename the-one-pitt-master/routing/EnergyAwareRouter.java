@@ -11,7 +11,7 @@ import core.*;
  * Energy level-aware variant of Epidemic router.
  */
 public class EnergyAwareRouter extends ActiveRouter 
-		implements ModuleCommunicationListener{
+		implements ModuleCommunicationSlotListener{
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -31,6 +31,10 @@ public class EnergyAwareRouter extends ActiveRouter
 	/** {@link ModuleCommunicationBus} identifier for the "current amount of 
 	 * energy left" variable. Value type: double */
 	public static final String ENERGY_VALUE_ID = "Energy.value";
+	/** Registered {@link ModuleCommunicationBus} key of 
+	 * {@link #ENERGY_VALUE_ID} */
+	public static final ModuleCommunicationBus.Key ENERGY_VALUE_KEY = 
+		ModuleCommunicationBus.registerDouble(ENERGY_VALUE_ID);
 	
 	private final double[] initEnergy;
 	private double warmupTime;
@@ -131,9 +135,9 @@ public class EnergyAwareRouter extends ActiveRouter
 			return;
 		}
 		
-		comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+		comBus.updateDouble(ENERGY_VALUE_KEY, -amount);
 		if (this.currentEnergy < 0) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_KEY, 0.0);
 		}
 	}
 	
@@ -146,13 +150,19 @@ public class EnergyAwareRouter extends ActiveRouter
 		
 		if (this.comBus == null) {
 			this.comBus = getHost().getComBus();
-			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
-			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+			if (this.comBus.hasValue(ENERGY_VALUE_KEY)) {
+				throw new SimError("A value for the key " + ENERGY_VALUE_ID + 
+						" already exists");
+			}
+			this.comBus.setDouble(ENERGY_VALUE_KEY, this.currentEnergy);
+			this.comBus.subscribe(ENERGY_VALUE_KEY, this);
 		}
 		
 		if (this.currentEnergy <= 0) {
 			/* turn radio off */
-			this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
+			if (this.comBus.getDouble(NetworkInterface.RANGE_KEY, -1) != 0) {
+				this.comBus.setDouble(NetworkInterface.RANGE_KEY, 0.0);
+			}
 			return; /* no more energy to start new transfers */
 		}
 		
@@ -193,11 +203,12 @@ public class EnergyAwareRouter extends ActiveRouter
 	
 	/**
 	 * Called by the combus is the energy value is changed
-	 * @param key The energy ID
+	 * @param key The energy key
 	 * @param newValue The new energy value
 	 */
-	public void moduleValueChanged(String key, Object newValue) {
-		this.currentEnergy = (Double)newValue;
+	public void moduleSlotChanged(ModuleCommunicationBus.Key key, 
+			double newValue) {
+		this.currentEnergy = newValue;
 	}
 
 	
@@ -14,18 +14,18 @@ public class EpidemicWithCureRouter extends ActiveRouter
 	 * the message has already been delivered and it can be deleted from the
 	 * buffer.
 	 */
-	protected Set<String> finishedMessages;
+	protected AckSet finishedMessages;
 	
 	public EpidemicWithCureRouter(Settings s)
 	{
 		super(s);
-		finishedMessages = new HashSet<String>();
+		finishedMessages = new AckSet();
 	}
 
 	public EpidemicWithCureRouter(EpidemicWithCureRouter r)
 	{
 		super(r);
-		finishedMessages = new HashSet<String>(r.finishedMessages);
+		finishedMessages = new AckSet(r.finishedMessages);
 	}
 
 	//@Override
@@ -49,7 +49,7 @@ public class EpidemicWithCureRouter extends ActiveRouter
 		if(retVal == DENIED_DELIVERED)
 		{
 			String id = m.getId();
-			finishedMessages.add(id);
+			finishedMessages.add(m);
 			if(hasMessage(id))
 				deleteMessage(id, false);
 		}
@@ -61,7 +61,7 @@ public class EpidemicWithCureRouter extends ActiveRouter
 	{
 		Message m = super.messageTransferred(id, from);
 		if(isDeliveredMessage(m))
-			finishedMessages.add(m.getId());
+			finishedMessages.add(m);
 		return m;
 	}
 
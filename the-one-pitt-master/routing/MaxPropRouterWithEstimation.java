@@ -51,7 +51,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;	
 	/** IDs of the messages that are known to have reached the final dst */
-	private Set<String> ackedMessageIds;
+	private AckSet ackedMessageIds;
 	/** mapping of the current costs for all messages. This should be set to
 	 * null always when the costs should be updated (a host is met or a new
 	 * message is received) */
@@ -121,7 +121,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 				MeetingProbabilitySet.INFINITE_SET_SIZE, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
-		this.ackedMessageIds = new HashSet<String>();
+		this.ackedMessageIds = new AckSet();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
 		initMeetings();
 	}	
@@ -164,8 +164,8 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 				}
 				
 				/* exchange ACKed message data */
-				this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-				otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+				this.ackedMessageIds.merge(otherRouter.ackedMessageIds);
+				otherRouter.ackedMessageIds.merge(this.ackedMessageIds);
 				deleteAckedMessages();
 				otherRouter.deleteAckedMessages();
 				
@@ -320,8 +320,12 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id) && !isSending(id)) {
+		if (this.ackedMessageIds.size() == 0) {
+			return;
+		}
+		for (Message m : getMessageCollection().toArray(new Message[0])) {
+			String id = m.getId();
+			if (this.ackedMessageIds.contains(id) && !isSending(id)) {
 				this.deleteMessage(id, false);
 			}
 		}
@@ -333,7 +337,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
-			this.ackedMessageIds.add(id);
+			this.ackedMessageIds.add(m);
 		}
 		return m;
 	}
@@ -349,7 +353,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		Message m = con.getMessage();
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == con.getOtherNode(getHost())) { 
-			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+			this.ackedMessageIds.add(m); // yes, add to ACKed messages
 			this.deleteMessage(m.getId(), false); // delete from buffer
 		}
 	}
@@ -0,0 +1,23 @@
+package routing;
+
+import core.*;
+
+/**
+ * Optional interface for a RoutingDecisionEngine that can rank the messages
+ * it has decided to forward to a peer. When the DecisionEngineRouter is
+ * configured to order its outgoing messages by utility, messages with a
+ * higher priority are offered to the peer first.
+ */
+public interface MessagePrioritizer
+{
+	/**
+	 * Called when a message is queued to be sent to the given host (after
+	 * {@link RoutingDecisionEngine#shouldSendMessageToHost(Message, DTNHost)}
+	 * returned true). The value is computed once per queued message.
+	 *
+	 * @param m Message to be sent
+	 * @param otherHost peer the message is sent to
+	 * @return Priority of the message; higher values are sent first
+	 */
+	public double getMessagePriority(Message m, DTNHost otherHost);
+}
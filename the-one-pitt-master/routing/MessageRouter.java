@@ -264,12 +264,10 @@ public abstract class MessageRouter {
 	public void sendMessage(String id, DTNHost to) {
 		
 		Message m = getMessage(id);
-		Message m2;
 		if (m == null) throw new SimError("no message for id " +
 				id + " to send at " + this.host);
  
-		m2 = m.replicate();	// send a replicate of the message
-		to.receiveMessage(m2, this.host);
+		to.receiveMessage(m, this.host); // receiver replicates the message
 	}
 	
 	/**
@@ -283,7 +281,9 @@ public abstract class MessageRouter {
 	}
 	
 	/**
-	 * Try to start receiving a message from another host.
+	 * Try to start receiving a message from another host. The given message
+	 * is the sender's instance and must not be modified; a replicate of it
+	 * is put to the incoming buffer once the message is accepted.
 	 * @param m Message to put in the receiving buffer
 	 * @param from Who the message is from
 	 * @return Value zero if the node accepted the message (RCV_OK), value less
@@ -0,0 +1,265 @@
+package routing;
+
+import java.util.*;
+
+import core.*;
+
+/**
+ * Messages a DecisionEngineRouter has decided to send, organized as one
+ * ordered queue per connection and an index by message ID. Removing the
+ * entries of a sent message, a deleted message or a connection that went
+ * down only touches the entries in question instead of the whole set of
+ * outgoing messages.
+ *
+ * Messages of a connection are ordered by their priority (if a
+ * MessagePrioritizer is given) and then in the order they were added.
+ */
+public class OutgoingMessageQueue
+{
+	private Map<Connection, TreeSet<Entry>> byConnection;
+	private Map<String, List<Entry>> byMessage;
+	private MessagePrioritizer prioritizer;
+	private long nextSeqNo;
+	private int size;
+
+	/**
+	 * Creates a new empty queue.
+	 *
+	 * @param prioritizer Gives the priorities of the messages or null if the
+	 * messages should be sent in FIFO order
+	 */
+	public OutgoingMessageQueue(MessagePrioritizer prioritizer)
+	{
+		this.byConnection = new HashMap<Connection, TreeSet<Entry>>();
+		this.byMessage = new HashMap<String, List<Entry>>();
+		this.prioritizer = prioritizer;
+		this.nextSeqNo = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Queues a message to be sent over a connection. Nothing is done if the
+	 * message is already queued for the connection.
+	 *
+	 * @param m Message to send
+	 * @param con Connection to send the message over
+	 * @param otherHost The peer at the other end of the connection
+	 * @return true if the message was queued
+	 */
+	public boolean add(Message m, Connection con, DTNHost otherHost)
+	{
+		List<Entry> entries = byMessage.get(m.getId());
+		if(entries == null)
+		{
+			entries = new ArrayList<Entry>(2);
+			byMessage.put(m.getId(), entries);
+		}
+		else
+		{
+			for(Entry e : entries)
+				if(e.con.equals(con))
+					return false;
+		}
+
+		double priority = prioritizer == null ? 0 :
+			prioritizer.getMessagePriority(m, otherHost);
+		Entry e = new Entry(m, con, priority, nextSeqNo++);
+
+		TreeSet<Entry> queue = byConnection.get(con);
+		if(queue == null)
+		{
+			queue = new TreeSet<Entry>();
+			byConnection.put(con, queue);
+		}
+		queue.add(e);
+		entries.add(e);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes the message from the queue of the given connection.
+	 *
+	 * @param id ID of the message
+	 * @param con The connection
+	 */
+	public void remove(String id, Connection con)
+	{
+		List<Entry> entries = byMessage.get(id);
+		if(entries == null) return;
+
+		for(Iterator<Entry> i = entries.iterator(); i.hasNext();)
+		{
+			Entry e = i.next();
+			if(e.con.equals(con))
+			{
+				i.remove();
+				removeFromConnection(e);
+				break;
+			}
+		}
+		if(entries.isEmpty())
+			byMessage.remove(id);
+	}
+
+	/**
+	 * Removes the message from the queues of all connections.
+	 *
+	 * @param id ID of the message
+	 */
+	public void removeMessage(String id)
+	{
+		List<Entry> entries = byMessage.remove(id);
+		if(entries == null) return;
+
+		for(Entry e : entries)
+			removeFromConnection(e);
+	}
+
+	/**
+	 * Removes all messages queued for the given connection.
+	 *
+	 * @param con The connection
+	 */
+	public void removeConnection(Connection con)
+	{
+		TreeSet<Entry> queue = byConnection.remove(con);
+		if(queue == null) return;
+
+		for(Entry e : queue)
+		{
+			String id = e.msg.getId();
+			List<Entry> entries = byMessage.get(id);
+			entries.remove(e);
+			if(entries.isEmpty())
+				byMessage.remove(id);
+		}
+		size -= queue.size();
+	}
+
+	/**
+	 * Returns an iterator over the messages queued for the given connection
+	 * in the order they should be sent. The iterator walks the queue itself
+	 * instead of a copy of it. The queue may be modified while iterating;
+	 * the iterator always continues from the entry that follows the one it
+	 * returned last. Removing through the iterator removes the message
+	 * from the queue of the connection.
+	 *
+	 * @param con The connection
+	 * @return Iterator over the messages queued for the connection
+	 */
+	public Iterator<Message> iterator(final Connection con)
+	{
+		final TreeSet<Entry> queue = byConnection.get(con);
+		if(queue == null) return Collections.<Message>emptyList().iterator();
+
+		return new Iterator<Message>()
+		{
+			private Entry last = null;
+			private boolean removed = false;
+
+			private Entry following()
+			{
+				if(last == null)
+					return queue.isEmpty() ? null : queue.first();
+				return queue.higher(last);
+			}
+
+			public boolean hasNext()
+			{
+				return following() != null;
+			}
+
+			public Message next()
+			{
+				Entry e = following();
+				if(e == null) throw new NoSuchElementException();
+				last = e;
+				removed = false;
+				return e.msg;
+			}
+
+			public void remove()
+			{
+				if(last == null || removed) throw new IllegalStateException();
+				OutgoingMessageQueue.this.remove(last.msg.getId(), con);
+				removed = true;
+			}
+		};
+	}
+
+	/**
+	 * Returns true if the message is queued for the given connection.
+	 *
+	 * @param id ID of the message
+	 * @param con The connection
+	 * @return true if the message is queued for the connection
+	 */
+	public boolean contains(String id, Connection con)
+	{
+		List<Entry> entries = byMessage.get(id);
+		if(entries == null) return false;
+		for(Entry e : entries)
+			if(e.con.equals(con))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the total number of queued (message, connection) pairs.
+	 *
+	 * @return the size of the queue
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns true if no messages are queued.
+	 *
+	 * @return true if the queue is empty
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	private void removeFromConnection(Entry e)
+	{
+		TreeSet<Entry> queue = byConnection.get(e.con);
+		if(queue != null && queue.remove(e))
+		{
+			size--;
+			if(queue.isEmpty())
+				byConnection.remove(e.con);
+		}
+	}
+
+	/**
+	 * A message queued for a connection.
+	 */
+	private static class Entry implements Comparable<Entry>
+	{
+		private final Message msg;
+		private final Connection con;
+		private final double priority;
+		private final long seqNo;
+
+		public Entry(Message msg, Connection con, double priority, long seqNo)
+		{
+			this.msg = msg;
+			this.con = con;
+			this.priority = priority;
+			this.seqNo = seqNo;
+		}
+
+		public int compareTo(Entry other)
+		{
+			if(this.priority != other.priority)
+				return this.priority > other.priority ? -1 : 1;
+			return this.seqNo < other.seqNo ? -1 :
+				(this.seqNo == other.seqNo ? 0 : 1);
+		}
+	}
+}
@@ -99,7 +99,7 @@ public class PubSubRouter extends ActiveRouter
 					i.hasNext();)
 			{
 				Tuple<Message, Connection> t = i.next();
-				if(t.getValue() == con)
+				if(t.getValue().equals(con))
 					i.remove();
 			}
 		}
@@ -7,12 +7,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
+import core.RandomStreams;
 import core.SimClock;
 import reinforcement.BoltzmannExploration;
 import reinforcement.IExplorationPolicy;
@@ -32,6 +34,8 @@ public class QLearningRouter extends ActiveRouter {
     private double[][] qvalues;
     // exploration policy
     private IExplorationPolicy explorationPolicy;
+    // random number stream of the host (topics and exploration)
+    private Random rng;
 
     // discount factor
     private double discountFactor = 1;
@@ -79,6 +83,14 @@ public class QLearningRouter extends ActiveRouter {
         }
     }
 
+    @Override
+    public void initialize(DTNHost host, List<MessageListener> mListeners) {
+        super.initialize(host, mListeners);
+        this.rng = RandomStreams.getStream(
+                QLearningRouter.class.getSimpleName(), host.getAddress());
+        this.explorationPolicy = new BoltzmannExploration(1, rng);
+    }
+
     @Override
     public boolean createNewMessage(Message msg) {
         makeRoomForNewMessage(msg.getSize());
@@ -90,7 +102,7 @@ public class QLearningRouter extends ActiveRouter {
 
         int i = 0;
         while (i < 5) {
-            topics.add(Math.random() < 0.5);
+            topics.add(rng.nextDouble() < 0.5);
             i++;
         }
 
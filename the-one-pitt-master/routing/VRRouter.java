@@ -5,6 +5,8 @@ import java.util.*;
 //import java.awt.geom.*;
 //import java.text.*;
 import core.*;
+import routing.vr.NeighborTable;
+import routing.vr.VirtualRegionIndex;
 //import gui.playfield.*;
 
 /**
@@ -42,7 +44,6 @@ public class VRRouter extends ActiveRouter
 	public static final double defaultVrRadius = 50.0; //meters
 	public static final int defaultExpirationInterval = 300; //seconds
 	
-	private static final double A = (Math.sqrt(5.0) - 1)/2;
 	private static final String CHECKIN_ID_PREFIX = "checkIN";
 	private static int checkInID = 0;
 	
@@ -54,6 +55,8 @@ public class VRRouter extends ActiveRouter
 	protected static int checkInTTL;
 	protected static double vrRadius;
 	protected static int neighborExpirationInterval;
+	/** cached VR homes and the grid of VR centers of all destinations */
+	protected static VirtualRegionIndex vrIndex;
 	
 	/*
 	 * For now, the hashing scheme assumes we're using a rectangular movement
@@ -98,31 +101,19 @@ public class VRRouter extends ActiveRouter
 		else {
 			neighborExpirationInterval = defaultExpirationInterval;
 		}
+		
+		vrIndex = new VirtualRegionIndex(maxVrX, maxVrY, vrOriginX, vrOriginY,
+				vrRadius);
 	}
 	
 	/*
 	 * hash functions for the router; takes a node's address and returns a Coord
-	 * object indicating the focus of the node's VR.
+	 * object indicating the focus of the node's VR. The hashed values are
+	 * cached by the VR index.
 	 */
 	public static Coord hash(DTNHost node)
 	{
-		double x = hashX(node), 
-		 	y = hashY(node, x);
-		return new Coord(x, y);
-	}
-	
-	private static double hashX(DTNHost node)
-	{
-		int addr = node.getAddress();
-//		return node.hashCode() / ((double)Integer.MAX_VALUE) * worldSizeX;
-		return maxVrX * (A* addr - Math.floor(A * addr)) + vrOriginX;
-	}
-	
-	private static double hashY(DTNHost node, double x)
-	{
-		int addr = node.getAddress();
-//		return node.hashCode() / ((double)Integer.MAX_VALUE) * worldSizeY;
-		return maxVrY * (A*(x+1)*addr - Math.floor(A *(x+1)* addr)) + vrOriginY;
+		return vrIndex.getHome(node.getAddress());
 	}
 	
 	/**
@@ -145,15 +136,7 @@ public class VRRouter extends ActiveRouter
 	 */
 	private static boolean isHostInMsgVR(DTNHost host, Message m)
 	{
-		Coord hostLoc = host.getLocation();
-		Coord vrHome = hash(m.getTo());
-		
-		double hx = hostLoc.getX(), hy = hostLoc.getY(), 
-		 //vector lengths for 'here' to 'dest' vector
-		 vx = vrHome.getX() - hx, vy = vrHome.getY() - hy, 
-		 vmag = Math.hypot(vx, vy); //distance bwt here and dest
-		
-		return vmag < vrRadius;
+		return vrIndex.isInRegion(host.getLocation(), m.getTo().getAddress());
 	}
 	
 	/**
@@ -162,7 +145,7 @@ public class VRRouter extends ActiveRouter
 	 * data messages should be forwarded towards this location. Check-in messages
 	 * should, however, always be directed towards the destination's VR.
 	 */
-	protected Map<DTNHost, NeighborEntry> neighborhood;
+	protected NeighborTable neighborhood;
 	
 	/**
 	 * Stores the IDs of messages that have been delivered to their final 
@@ -203,12 +186,23 @@ public class VRRouter extends ActiveRouter
 	
 	protected void init()
 	{
-		neighborhood = new HashMap<DTNHost, NeighborEntry>();
+		neighborhood = new NeighborTable(neighborExpirationInterval);
 		finishedMessages = new HashSet<String>();
-		nextCheckInTime = SimClock.getTime() + (double)(checkInInterval * 2) * Math.random();
 		checkInSeqNum = 0;
 	}
 	
+	@Override
+	public void initialize(DTNHost host, List<MessageListener> mListeners)
+	{
+		super.initialize(host, mListeners);
+		vrIndex.register(host.getAddress());
+		// spread the first check-ins of the hosts over two intervals
+		Random rng = RandomStreams.getStream(VRRouter.class.getSimpleName(),
+				host.getAddress());
+		nextCheckInTime = SimClock.getTime() + 
+			(double)(checkInInterval * 2) * rng.nextDouble();
+	}
+	
 /*	@Override
 	public void draw(Graphics2D g2)
 	{
@@ -233,9 +227,10 @@ public class VRRouter extends ActiveRouter
 		DTNHost to = m.getTo();
 		
 		makeRoomForNewMessage(m.getSize());
+		vrIndex.register(to.getAddress());
 		
 		if(neighborhood.containsKey(to)) {
-			NeighborEntry entry = neighborhood.get(to);
+			NeighborTable.Entry entry = neighborhood.get(to);
 			doLook(m, entry.getLocation(), entry.getLocationTimestamp());
 		}
 		else {
@@ -366,8 +361,7 @@ public class VRRouter extends ActiveRouter
 		if(isCheckInMessage(vrm) && removeOldCheckInMsgs(vrm))
 		{	
 			Coord homeloc = getCheckInLocation(vrm);
-			neighborhood.put(vrm.getFrom(), 
-					new NeighborEntry(homeloc, vrm.getCreationTime()));
+			neighborhood.put(vrm.getFrom(), homeloc, vrm.getCreationTime());
 			
 			if(isHostInMsgVR(getHost(), vrm))
 			{
@@ -384,7 +378,7 @@ public class VRRouter extends ActiveRouter
 		{
 //			System.out.println("Host:" + getHost().getAddress() + " starting Look " +
 //					vrm.getId());
-			NeighborEntry entry = neighborhood.get(vrm.getTo());
+			NeighborTable.Entry entry = neighborhood.get(vrm.getTo());
 			doLook(vrm, entry.getLocation(), entry.getLocationTimestamp());
 		}
 		
@@ -528,6 +522,27 @@ public class VRRouter extends ActiveRouter
 							new LinkedList<Tuple<Message, Connection>>();
 		Coord here = this.getHost().getLocation(); //host knows its own location
 		
+		/*
+		 * Per-peer state does not depend on the message, so it is collected
+		 * once. Peers that are not inside any VR can skip the per-message VR
+		 * checks.
+		 */
+		List<Connection> idleCons = new ArrayList<Connection>();
+		for(Connection c : getHost())
+		{
+			DTNHost peer = c.getOtherNode(getHost());
+			if(!((ActiveRouter)peer.getRouter()).isTransferring())
+				idleCons.add(c);
+		}
+		int nrofPeers = idleCons.size();
+		DTNHost[] peers = new DTNHost[nrofPeers];
+		boolean[] peerInAnyVR = new boolean[nrofPeers];
+		for(int i = 0; i < nrofPeers; i++)
+		{
+			peers[i] = idleCons.get(i).getOtherNode(getHost());
+			peerInAnyVR[i] = vrIndex.isInAnyRegion(peers[i].getLocation());
+		}
+		
 		/*
 		 * For each message, we need to determine several things: 
 		 *   1. Do we know the actual location of the destination or do we have to
@@ -578,13 +593,10 @@ public class VRRouter extends ActiveRouter
 //						 mySpeedX = mySpeed * Math.cos(myDirectionAngle),
 //						 mySpeedY = mySpeed * Math.sin(myDirectionAngle);
 		
-			for(Connection c : getHost())
-			//for(Connection c : getConnections())
+			for(int i = 0; i < nrofPeers; i++)
 			{
-				DTNHost peer = c.getOtherNode(getHost());
-				if(((ActiveRouter)peer.getRouter()).isTransferring())
-					continue;
-				
+				Connection c = idleCons.get(i);
+				DTNHost peer = peers[i];
 				Coord peerLoc = peer.getLocation();
 				
 				/*
@@ -593,7 +605,8 @@ public class VRRouter extends ActiveRouter
 				 * transfer the msg to the peer. This essentially broadcasts the message 
 				 * to all peers inside the VR.
 				 */
-				if(isDestOutsideNeighborhood && isHostInMsgVR(peer, m))
+				if(isDestOutsideNeighborhood && peerInAnyVR[i] && 
+						isHostInMsgVR(peer, m))
 				{
 					messages.add(new Tuple<Message, Connection>(m, c));
 					continue;
@@ -684,17 +697,10 @@ public class VRRouter extends ActiveRouter
 		//for(Connection conn : getConnections())
 		{
 			DTNHost otherHost = conn.getOtherNode(getHost());
-			neighborhood.put(otherHost, new NeighborEntry(otherHost.getLocation(), time));
+			neighborhood.refresh(otherHost, otherHost.getLocation(), time);
 		}
 		
-		for(Iterator<Map.Entry<DTNHost, NeighborEntry>> i =
-						neighborhood.entrySet().iterator(); i.hasNext();)
-		{
-			Map.Entry<DTNHost, NeighborEntry> e = i.next();
-			if(e.getValue().isExpired(time)) {
-				i.remove();
-			}
-		}
+		neighborhood.expire(time);
 	}
 	
 	private void updateMessageCollection(double time)
@@ -710,51 +716,4 @@ public class VRRouter extends ActiveRouter
 	{
 		return new VRRouter(this);
 	}
-	
-	/**
-	 * Entry for the neighborhood map. Each entry contains a stored location for
-	 * an associated DTNHost (the key of the map) and a time when this entry 
-	 * should expire and be removed from the map. 
-	 * 
-	 * @author PJ Dillon
-	 */
-	protected class NeighborEntry
-	{
-		private Coord knownLocation;
-		private double locationTimestamp; //time at which the neighbor was at knownlocation
-		private int expirationTime;
-		
-		NeighborEntry(Coord location, double timestampOfLocation)
-		{
-			knownLocation = location;
-			locationTimestamp = timestampOfLocation;
-			setExpiration();
-		}
-		
-		public Coord getLocation()
-		{
-			return knownLocation;
-		}
-		
-		public double getLocationTimestamp()
-		{
-			return locationTimestamp;
-		}
-		
-		public boolean isExpired(double timeNow)
-		{
-			return expirationTime < timeNow;
-		}
-		
-		public void refresh()
-		{
-			setExpiration();
-		}
-		
-		private void setExpiration()
-		{
-			expirationTime = SimClock.getIntTime() + 
-			VRRouter.neighborExpirationInterval;
-		}
-	}
 }
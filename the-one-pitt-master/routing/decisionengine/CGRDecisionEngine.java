@@ -0,0 +1,198 @@
+package routing.decisionengine;
+
+import java.io.File;
+import java.util.*;
+
+import core.*;
+import routing.*;
+import routing.schedule.*;
+
+/**
+ * Contact Graph Routing (CGR) as a RoutingDecisionEngine. The contacts of
+ * the whole simulation are known in advance from a contact plan, which is
+ * read from a contact trace (a file in the StandardEventsReader format, such
+ * as the output of ConnectivityONEReport or the trace used to drive the
+ * connections with ExternalEvents). A message is forwarded to a peer if the
+ * peer is the next hop of one of the k earliest arrival routes from this
+ * host to the destination.
+ *
+ * As the routing decisions use the future contacts, the engine works as an
+ * oracle that gives an upper bound of the performance of routers that have
+ * to learn the contacts (e.g., QLearningRouter) in the same scenario.
+ *
+ * The contact plan and its route cache are shared by all hosts using the
+ * same trace file.
+ *
+ * The engine learns its own host from connectionUp(), so the
+ * {@link routing.DecisionEngineRouter#CONNECTION_EVENTS_SETTING} setting of
+ * the router must be true.
+ */
+public class CGRDecisionEngine implements RoutingDecisionEngine,
+	MessagePrioritizer
+{
+	/** Contact trace file -setting id ({@value}) */
+	public static final String CONTACT_PLAN_SETTING = "contactPlanFile";
+	/** Number of routes to forward the messages on -setting id ({@value}) */
+	public static final String NROF_ROUTES_SETTING = "cgrRoutes";
+	/** Time to transfer a message over a contact -setting id ({@value}) */
+	public static final String HOP_DELAY_SETTING = "cgrHopDelay";
+	public static final int DEFAULT_NROF_ROUTES = 1;
+	public static final double DEFAULT_HOP_DELAY = 0;
+
+	/** contact graphs by the trace file they were read from */
+	private static Map<String, ContactGraph> graphs;
+
+	static
+	{
+		DTNSim.registerForReset(CGRDecisionEngine.class.getCanonicalName());
+		reset();
+	}
+
+	protected int nrofRoutes;
+	protected ContactGraph graph;
+
+	/** address of the host of this engine (-1 until known) */
+	private int self;
+
+	public CGRDecisionEngine(Settings s)
+	{
+		String traceFile = s.getSetting(CONTACT_PLAN_SETTING);
+
+		if(s.contains(NROF_ROUTES_SETTING))
+			nrofRoutes = s.getInt(NROF_ROUTES_SETTING);
+		else
+			nrofRoutes = DEFAULT_NROF_ROUTES;
+
+		double hopDelay;
+		if(s.contains(HOP_DELAY_SETTING))
+			hopDelay = s.getDouble(HOP_DELAY_SETTING);
+		else
+			hopDelay = DEFAULT_HOP_DELAY;
+
+		if(nrofRoutes < 1)
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(NROF_ROUTES_SETTING) + ": " + nrofRoutes);
+
+		String key = traceFile + "@" + hopDelay;
+		graph = graphs.get(key);
+		if(graph == null)
+		{
+			File f = new File(traceFile);
+			if(!f.exists())
+				throw new SettingsError("Contact plan file " +
+						f.getAbsolutePath() + " doesn't exist");
+
+			ContactPlan plan = ContactPlan.fromTraceFile(f,
+					Double.POSITIVE_INFINITY);
+			graph = new ContactGraph(plan, hopDelay);
+			graphs.put(key, graph);
+		}
+		self = -1;
+	}
+
+	public CGRDecisionEngine(CGRDecisionEngine cgr)
+	{
+		nrofRoutes = cgr.nrofRoutes;
+		graph = cgr.graph;
+		self = -1;
+	}
+
+	/**
+	 * Forgets the contact graphs read so far
+	 */
+	public static void reset()
+	{
+		graphs = new HashMap<String, ContactGraph>();
+	}
+
+	public RoutingDecisionEngine replicate()
+	{
+		return new CGRDecisionEngine(this);
+	}
+
+	public void connectionUp(DTNHost thisHost, DTNHost peer)
+	{
+		self = thisHost.getAddress();
+	}
+
+	public void connectionDown(DTNHost thisHost, DTNHost peer)
+	{
+		self = thisHost.getAddress();
+	}
+
+	public void doExchangeForNewConnection(Connection con, DTNHost peer) {}
+
+	public boolean isFinalDest(Message m, DTNHost aHost)
+	{
+		return m.getTo() == aHost;
+	}
+
+	public boolean newMessage(Message m)
+	{
+		return true;
+	}
+
+	public boolean shouldDeleteOldMessage(Message m, DTNHost hostReportingOld)
+	{
+		return m.getTo() == hostReportingOld;
+	}
+
+	public boolean shouldDeleteSentMessage(Message m, DTNHost otherHost)
+	{
+		// with one route, only a single copy of a message exists
+		return nrofRoutes == 1 || m.getTo() == otherHost;
+	}
+
+	public boolean shouldSaveReceivedMessage(Message m, DTNHost thisHost)
+	{
+		return m.getTo() != thisHost;
+	}
+
+	public boolean shouldSendMessageToHost(Message m, DTNHost otherHost)
+	{
+		if(m.getTo() == otherHost) return true;
+		return getArrivalVia(m.getTo(), otherHost) < Double.POSITIVE_INFINITY;
+	}
+
+	public double getMessagePriority(Message m, DTNHost otherHost)
+	{
+		if(m.getTo() == otherHost) return Double.MAX_VALUE;
+
+		// messages that get to their destination sooner go first
+		return -getArrivalVia(m.getTo(), otherHost);
+	}
+
+	/**
+	 * Returns the earliest arrival time at the destination over the routes
+	 * whose next hop is the given peer.
+	 *
+	 * @param dest The destination host
+	 * @param nextHop The peer
+	 * @return The earliest arrival time or infinity if none of the routes
+	 * goes through the peer
+	 */
+	public double getArrivalVia(DTNHost dest, DTNHost nextHop)
+	{
+		if(self < 0) return Double.POSITIVE_INFINITY;
+
+		ContactPlan plan = graph.getPlan();
+		int hop = nextHop.getAddress();
+		List<ContactRoute> routes = graph.getRoutes(self, dest.getAddress(),
+				SimClock.getTime(), nrofRoutes);
+
+		for(ContactRoute r : routes) // routes are in the order of arrival
+			if(plan.getTo(r.getContact(0)) == hop)
+				return r.getArrival();
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the contact graph the engine uses
+	 *
+	 * @return the contact graph
+	 */
+	public ContactGraph getContactGraph()
+	{
+		return graph;
+	}
+}
@@ -5,78 +5,550 @@ import java.util.*;
 import core.*;
 import routing.*;
 
-public class MEEDDecisionEngine implements RoutingDecisionEngine
+/**
+ * Implementation of the Minimum Estimated Expected Delay (MEED) routing
+ * protocol as a RoutingDecisionEngine.
+ *
+ * Each host estimates the expected waiting time of its links to the peers it
+ * has met. The estimate of a link is computed over a sliding window of the
+ * latest contacts with the peer as the sum of the squared disconnection
+ * periods divided by twice the total time of the window (the expected time
+ * until the next contact when arriving at a random time). A host publishes the
+ * estimates of its links as a versioned row of a link-state table. On contact,
+ * the peers exchange only the rows for which they have an older version than
+ * the other. Rows are immutable, so an exchange only copies references.
+ *
+ * The minimum expected delay from the host to every other host is kept in
+ * primitive arrays and maintained incrementally: a new or improved link
+ * only relaxes the paths it can shorten, and a full shortest path
+ * computation is done (lazily, when a route is next needed) only if a link
+ * on the current shortest path tree got worse. Links that are currently up
+ * have a zero delay. A message is forwarded to a peer if the peer is the
+ * next hop on the minimum expected delay path to the destination, and only
+ * a single copy of a message exists.
+ *
+ * Delays are kept from the host itself only (not all pairs), as every host
+ * would otherwise need memory quadratic in the number of hosts.
+ *
+ * The link histories are kept from connectionUp() and connectionDown(), so
+ * the {@link routing.DecisionEngineRouter#CONNECTION_EVENTS_SETTING} setting
+ * of the router must be true.
+ *
+ * @author PJ Dillon, University of Pittsburgh
+ */
+public class MEEDDecisionEngine implements RoutingDecisionEngine,
+	MessagePrioritizer
 {
-	
-	protected Map<Tuple<DTNHost, DTNHost>, Double> avgWaitingTimes;
+	/** Number of contacts in the sliding window of a link -setting id
+	 * ({@value}) */
+	public static final String WINDOW_SETTING = "meedWindowSize";
+	public static final int DEFAULT_WINDOW = 20;
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+
+	protected int windowSize;
+
+	/** address of the host of this engine (-1 until known) */
+	private int self;
+
+	/** observed history of the links to peers indexed by the peer address */
+	private LinkHistory[] links;
+	/** latest known link-state row of each host indexed by address */
+	private LinkStateRow[] rows;
+
+	/** minimum expected delay from this host to each host */
+	private double[] dist;
+	/** previous host on the path from this host (-1 if none) */
+	private int[] parent;
+	/** first hop on the path from this host (-1 if none) */
+	private int[] firstHop;
+	/** must the paths be computed from scratch before use */
+	private boolean needsRecompute;
+
+	/** binary heap of (host, delay) pairs used for the path computations */
+	private int[] heapNodes;
+	private double[] heapKeys;
+	private int heapSize;
 
 	public MEEDDecisionEngine(Settings s)
 	{
-		
+		if(s.contains(WINDOW_SETTING))
+			windowSize = s.getInt(WINDOW_SETTING);
+		else
+			windowSize = DEFAULT_WINDOW;
+
+		if(windowSize < 1)
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(WINDOW_SETTING) + ": " + windowSize);
+		init();
 	}
-	
+
 	public MEEDDecisionEngine(MEEDDecisionEngine meed)
 	{
-		
+		windowSize = meed.windowSize;
+		init();
+	}
+
+	private void init()
+	{
+		self = -1;
+		links = new LinkHistory[INITIAL_CAPACITY];
+		rows = new LinkStateRow[INITIAL_CAPACITY];
+		dist = new double[INITIAL_CAPACITY];
+		parent = new int[INITIAL_CAPACITY];
+		firstHop = new int[INITIAL_CAPACITY];
+		Arrays.fill(dist, INFINITY);
+		Arrays.fill(parent, -1);
+		Arrays.fill(firstHop, -1);
+		needsRecompute = true;
+
+		heapNodes = new int[INITIAL_CAPACITY];
+		heapKeys = new double[INITIAL_CAPACITY];
+		heapSize = 0;
 	}
-	
+
 	public RoutingDecisionEngine replicate()
 	{
 		return new MEEDDecisionEngine(this);
 	}
-	
-	public void connectionDown(DTNHost thisHost, DTNHost peer)
+
+	public void connectionUp(DTNHost thisHost, DTNHost peer)
 	{
-	// TODO Auto-generated method stub
+		setSelf(thisHost);
+		int p = peer.getAddress();
+		ensureCapacity(p);
 
+		LinkHistory link = links[p];
+		if(link == null)
+		{
+			link = new LinkHistory(windowSize);
+			links[p] = link;
+		}
+		link.up(SimClock.getTime());
+		publishOwnRow(); // the link has no delay while it's up
 	}
 
-	public void connectionUp(DTNHost thisHost, DTNHost peer)
+	public void connectionDown(DTNHost thisHost, DTNHost peer)
 	{
-	// TODO Auto-generated method stub
+		setSelf(thisHost);
+		int p = peer.getAddress();
+		ensureCapacity(p);
 
+		LinkHistory link = links[p];
+		if(link == null) return;
+		if(parent[p] == self)
+			needsRecompute = true; // a link on the path tree got worse
+		link.down(SimClock.getTime());
+		publishOwnRow();
 	}
 
 	public void doExchangeForNewConnection(Connection con, DTNHost peer)
 	{
-		// TODO Auto-generated method stub
-		
+		DTNHost myHost = con.getOtherNode(peer);
+		MEEDDecisionEngine de = getOtherMEEDDecisionEngine(peer);
+		setSelf(myHost);
+		de.setSelf(peer);
+
+		int n = Math.max(rows.length, de.rows.length);
+		for(int i = 0; i < n; i++)
+		{
+			LinkStateRow mine = i < rows.length ? rows[i] : null;
+			LinkStateRow theirs = i < de.rows.length ? de.rows[i] : null;
+			if(mine == theirs)
+				continue;
+			if(theirs != null && (mine == null || theirs.version > mine.version))
+				this.updateRow(theirs);
+			else if(mine != null && (theirs == null || mine.version > theirs.version))
+				de.updateRow(mine);
+		}
+
+		this.propagate();
+		de.propagate();
 	}
 
 	public boolean isFinalDest(Message m, DTNHost aHost)
 	{
-		// TODO Auto-generated method stub
-		return false;
+		return m.getTo() == aHost;
 	}
 
 	public boolean newMessage(Message m)
 	{
-		// TODO Auto-generated method stub
-		return false;
+		return true;
 	}
 
 	public boolean shouldDeleteOldMessage(Message m, DTNHost hostReportingOld)
 	{
-		// TODO Auto-generated method stub
-		return false;
+		return m.getTo() == hostReportingOld;
 	}
 
 	public boolean shouldDeleteSentMessage(Message m, DTNHost otherHost)
 	{
-		// TODO Auto-generated method stub
-		return false;
+		return true; // MEED keeps a single copy of each message
 	}
 
 	public boolean shouldSaveReceivedMessage(Message m, DTNHost thisHost)
 	{
-		// TODO Auto-generated method stub
-		return false;
+		return m.getTo() != thisHost;
 	}
 
 	public boolean shouldSendMessageToHost(Message m, DTNHost otherHost)
 	{
-		// TODO Auto-generated method stub
-		return false;
+		if(m.getTo() == otherHost) return true;
+		if(self < 0) return false;
+
+		int dest = m.getTo().getAddress();
+		updatePaths();
+		return dest < firstHop.length &&
+			firstHop[dest] == otherHost.getAddress();
 	}
 
+	public double getMessagePriority(Message m, DTNHost otherHost)
+	{
+		if(m.getTo() == otherHost) return Double.MAX_VALUE;
+
+		// messages that get to their destination sooner go first
+		return -getExpectedDelay(m.getTo());
+	}
+
+	/**
+	 * Returns the minimum expected delay from this engine's host to the given
+	 * host or infinity if no path is known.
+	 *
+	 * @param host The destination host
+	 * @return The minimum expected delay (seconds)
+	 */
+	public double getExpectedDelay(DTNHost host)
+	{
+		int dest = host.getAddress();
+		if(self < 0 || dest >= dist.length) return INFINITY;
+
+		updatePaths();
+		return dist[dest];
+	}
+
+	private MEEDDecisionEngine getOtherMEEDDecisionEngine(DTNHost host)
+	{
+		MessageRouter otherRouter = host.getRouter();
+		assert otherRouter instanceof DecisionEngineRouter : "This router only works " +
+		" with other routers of same type";
+
+		return (MEEDDecisionEngine) ((DecisionEngineRouter)otherRouter).getDecisionEngine();
+	}
+
+	private void setSelf(DTNHost host)
+	{
+		if(self >= 0) return;
+
+		self = host.getAddress();
+		ensureCapacity(self);
+		needsRecompute = true;
+	}
+
+	/**
+	 * Makes sure the arrays indexed by address can hold the given address.
+	 */
+	private void ensureCapacity(int addr)
+	{
+		if(addr < rows.length) return;
+
+		int oldSize = rows.length;
+		int newSize = Math.max(oldSize * 2, addr + 1);
+		links = Arrays.copyOf(links, newSize);
+		rows = Arrays.copyOf(rows, newSize);
+		dist = Arrays.copyOf(dist, newSize);
+		parent = Arrays.copyOf(parent, newSize);
+		firstHop = Arrays.copyOf(firstHop, newSize);
+		Arrays.fill(dist, oldSize, newSize, INFINITY);
+		Arrays.fill(parent, oldSize, newSize, -1);
+		Arrays.fill(firstHop, oldSize, newSize, -1);
+	}
+
+	/**
+	 * Publishes the current waiting time estimates of this host's links as a
+	 * new version of its link-state row.
+	 */
+	private void publishOwnRow()
+	{
+		int count = 0;
+		for(int i = 0; i < links.length; i++)
+			if(links[i] != null) count++;
+
+		int[] peers = new int[count];
+		double[] weights = new double[count];
+		int j = 0;
+		for(int i = 0; i < links.length; i++)
+		{
+			if(links[i] == null) continue;
+			peers[j] = i;
+			weights[j] = links[i].getExpectedWaitingTime();
+			j++;
+		}
+
+		LinkStateRow old = rows[self];
+		LinkStateRow row = new LinkStateRow(self,
+				old == null ? 1 : old.version + 1, peers, weights);
+		rows[self] = row;
+
+		if(!needsRecompute)
+		{
+			// up links have zero weight for this host, so only the changes of
+			// the down links matter here
+			checkTreeEdges(old, row);
+			if(!needsRecompute)
+			{
+				relaxRow(row);
+				propagate();
+			}
+		}
+	}
+
+	/**
+	 * Replaces the row of a host with a newer version received from a peer
+	 * and updates the paths accordingly. {@link #propagate()} must be called
+	 * after all rows have been updated.
+	 */
+	private void updateRow(LinkStateRow row)
+	{
+		if(row.owner == self) return; // this host knows its own links best
+		ensureCapacity(row.owner);
+		for(int i = 0; i < row.peers.length; i++)
+			ensureCapacity(row.peers[i]);
+
+		LinkStateRow old = rows[row.owner];
+		rows[row.owner] = row;
+
+		if(needsRecompute) return;
+		checkTreeEdges(old, row);
+		if(!needsRecompute && dist[row.owner] < INFINITY)
+			relaxRow(row);
+	}
+
+	/**
+	 * Sets the recompute flag if a tree edge of the old row is worse or
+	 * missing in the new row.
+	 */
+	private void checkTreeEdges(LinkStateRow oldRow, LinkStateRow newRow)
+	{
+		if(oldRow == null) return;
+		int u = oldRow.owner;
+		for(int i = 0; i < oldRow.peers.length; i++)
+		{
+			int v = oldRow.peers[i];
+			if(parent[v] != u) continue;
+			if(weight(newRow, v) > weight(oldRow, v))
+			{
+				needsRecompute = true;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the weight of the link from the row's owner to the given host
+	 * as seen by this host (links of this host that are up have no delay).
+	 */
+	private double weight(LinkStateRow row, int v)
+	{
+		if(row.owner == self && links[v] != null && links[v].isUp())
+			return 0;
+		int i = Arrays.binarySearch(row.peers, v);
+		return i < 0 ? INFINITY : row.weights[i];
+	}
+
+	private void relaxRow(LinkStateRow row)
+	{
+		int u = row.owner;
+		for(int i = 0; i < row.peers.length; i++)
+		{
+			int v = row.peers[i];
+			double w = (u == self && links[v] != null && links[v].isUp()) ?
+					0 : row.weights[i];
+			relax(u, v, w);
+		}
+	}
+
+	/**
+	 * Shortens the path to v through u if it is better than the current one
+	 */
+	private void relax(int u, int v, double w)
+	{
+		double d = dist[u] + w;
+		if(d < dist[v])
+		{
+			dist[v] = d;
+			parent[v] = u;
+			firstHop[v] = (u == self) ? v : firstHop[u];
+			heapPush(v, d);
+		}
+	}
+
+	/**
+	 * Continues the relaxations from the hosts in the heap until no path can
+	 * be shortened.
+	 */
+	private void propagate()
+	{
+		if(needsRecompute)
+		{
+			heapSize = 0;
+			return;
+		}
+		while(heapSize > 0)
+		{
+			double d = heapKeys[0];
+			int u = heapPop();
+			if(d > dist[u]) continue; // stale entry
+			LinkStateRow row = rows[u];
+			if(row != null)
+				relaxRow(row);
+		}
+	}
+
+	/**
+	 * Makes sure the paths are up to date, computing them from scratch if
+	 * needed.
+	 */
+	private void updatePaths()
+	{
+		if(!needsRecompute) return;
+
+		Arrays.fill(dist, INFINITY);
+		Arrays.fill(parent, -1);
+		Arrays.fill(firstHop, -1);
+		heapSize = 0;
+		needsRecompute = false;
+
+		dist[self] = 0;
+		heapPush(self, 0);
+		propagate();
+	}
+
+	private void heapPush(int node, double key)
+	{
+		if(heapSize == heapNodes.length)
+		{
+			heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		int i = heapSize++;
+		while(i > 0)
+		{
+			int p = (i - 1) / 2;
+			if(heapKeys[p] <= key) break;
+			heapNodes[i] = heapNodes[p];
+			heapKeys[i] = heapKeys[p];
+			i = p;
+		}
+		heapNodes[i] = node;
+		heapKeys[i] = key;
+	}
+
+	private int heapPop()
+	{
+		int top = heapNodes[0];
+		int node = heapNodes[--heapSize];
+		double key = heapKeys[heapSize];
+		int i = 0;
+		while(2 * i + 1 < heapSize)
+		{
+			int c = 2 * i + 1;
+			if(c + 1 < heapSize && heapKeys[c + 1] < heapKeys[c]) c++;
+			if(key <= heapKeys[c]) break;
+			heapNodes[i] = heapNodes[c];
+			heapKeys[i] = heapKeys[c];
+			i = c;
+		}
+		heapNodes[i] = node;
+		heapKeys[i] = key;
+		return top;
+	}
+
+	/**
+	 * Immutable link-state row of a host: the expected waiting times of the
+	 * links from the host to its peers (sorted by peer address).
+	 */
+	private static class LinkStateRow
+	{
+		private final int owner;
+		private final int version;
+		private final int[] peers;
+		private final double[] weights;
+
+		public LinkStateRow(int owner, int version, int[] peers, double[] weights)
+		{
+			this.owner = owner;
+			this.version = version;
+			this.peers = peers;
+			this.weights = weights;
+		}
+	}
+
+	/**
+	 * Sliding window of the latest disconnection and contact periods of a
+	 * link.
+	 */
+	private static class LinkHistory
+	{
+		/** disconnection period before each contact */
+		private double[] gaps;
+		/** duration of each contact (0 for the ongoing one) */
+		private double[] contacts;
+		private int next;
+		private int count;
+		private boolean isUp;
+		/** time of the latest change of the link state */
+		private double lastChange;
+
+		public LinkHistory(int windowSize)
+		{
+			gaps = new double[windowSize];
+			contacts = new double[windowSize];
+			next = 0;
+			count = 0;
+			isUp = false;
+			lastChange = 0; // disconnected since the start of the simulation
+		}
+
+		public void up(double time)
+		{
+			if(isUp) return;
+			gaps[next] = time - lastChange;
+			contacts[next] = 0;
+			next = (next + 1) % gaps.length;
+			if(count < gaps.length) count++;
+			isUp = true;
+			lastChange = time;
+		}
+
+		public void down(double time)
+		{
+			if(!isUp) return;
+			int latest = (next + gaps.length - 1) % gaps.length;
+			contacts[latest] = time - lastChange;
+			isUp = false;
+			lastChange = time;
+		}
+
+		public boolean isUp()
+		{
+			return isUp;
+		}
+
+		/**
+		 * Returns the expected time until the next contact over the window
+		 * for a message arriving at a random time.
+		 */
+		public double getExpectedWaitingTime()
+		{
+			double squares = 0, total = 0;
+			for(int i = 0; i < count; i++)
+			{
+				squares += gaps[i] * gaps[i];
+				total += gaps[i] + contacts[i];
+			}
+			if(total == 0) return 0;
+			return squares / (2 * total);
+		}
+	}
 }
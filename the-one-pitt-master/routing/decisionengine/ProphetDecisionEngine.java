@@ -7,10 +7,12 @@ import java.util.Set;
 
 import core.*;
 import routing.DecisionEngineRouter;
+import routing.MessagePrioritizer;
 import routing.MessageRouter;
 import routing.RoutingDecisionEngine;
 
-public class ProphetDecisionEngine implements RoutingDecisionEngine
+public class ProphetDecisionEngine implements RoutingDecisionEngine, 
+	MessagePrioritizer
 {
 	protected final static String BETA_SETTING = "beta";
 	protected final static String P_INIT_SETTING = "initial_p";
@@ -121,6 +123,13 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine
 		return de.getPredFor(m.getTo()) > this.getPredFor(m.getTo());
 	}
 
+	public double getMessagePriority(Message m, DTNHost otherHost)
+	{
+		if(m.getTo() == otherHost) return Double.MAX_VALUE;
+		
+		return getOtherProphetDecisionEngine(otherHost).getPredFor(m.getTo());
+	}
+
 	public boolean shouldDeleteSentMessage(Message m, DTNHost otherHost)
 	{
 		return false;
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Contact Graph Routing over a {@link ContactPlan}. Computes earliest
+ * arrival routes with a Dijkstra search over the contacts (using primitive
+ * arrays and a binary heap) and the k earliest arrival routes with Yen's
+ * algorithm.
+ * <P>The routes found for a source-destination pair are cached. A message
+ * that can leave the source at time t' can still use all the cached routes
+ * with the same times as long as t' is not later than the first departure
+ * of any of them, and no route from t' can be better than the routes from
+ * the earlier time, so the cache entry stays valid until then. After that
+ * (e.g., when the first contact of a route has expired) the routes are
+ * computed again. Entries that are no longer valid are pruned from the
+ * cache whenever it has grown to twice its size after the previous
+ * pruning.</P>
+ */
+public class ContactGraph {
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+	/** cache size that triggers the first pruning */
+	private static final int MIN_PRUNE_SIZE = 64;
+
+	private ContactPlan plan;
+	/** time it takes to transfer a message over a contact */
+	private double hopDelay;
+
+	/** earliest arrival time at each node */
+	private double[] arrival;
+	/** contact used to arrive at each node (-1 for none) */
+	private int[] predecessor;
+	private boolean[] excludedNode;
+	private boolean[] excludedContact;
+
+	/** binary heap of (node, arrival time) pairs */
+	private int[] heapNodes;
+	private double[] heapKeys;
+	private int heapSize;
+
+	/** cached routes by source-destination pair */
+	private Map<Long, CachedRoutes> cache;
+	/** cache size that triggers the next pruning */
+	private int pruneSize;
+	private int nrofSearches;
+
+	/**
+	 * Creates a contact graph on top of a contact plan. The plan must not be
+	 * modified after this.
+	 * @param plan The contact plan
+	 * @param hopDelay How long it takes to transfer a message over a contact.
+	 * A contact can be used only if the transfer completes before it ends.
+	 */
+	public ContactGraph(ContactPlan plan, double hopDelay) {
+		this.plan = plan;
+		this.hopDelay = hopDelay;
+
+		int n = plan.getNrofNodes();
+		this.arrival = new double[n];
+		this.predecessor = new int[n];
+		this.excludedNode = new boolean[n];
+		this.excludedContact = new boolean[plan.size()];
+		this.heapNodes = new int[Math.max(n, 1)];
+		this.heapKeys = new double[Math.max(n, 1)];
+		this.cache = new HashMap<Long, CachedRoutes>();
+		this.pruneSize = MIN_PRUNE_SIZE;
+		this.nrofSearches = 0;
+	}
+
+	/**
+	 * Returns the contact plan of the graph
+	 * @return the contact plan
+	 */
+	public ContactPlan getPlan() {
+		return this.plan;
+	}
+
+	/**
+	 * Returns the earliest arrival route from a node to another
+	 * @param from Address of the source node
+	 * @param to Address of the destination node
+	 * @param time Time when the message is at the source
+	 * @return The earliest arrival route or null if there is no route
+	 */
+	public ContactRoute getRoute(int from, int to, double time) {
+		List<ContactRoute> routes = getRoutes(from, to, time, 1);
+		return routes.isEmpty() ? null : routes.get(0);
+	}
+
+	/**
+	 * Returns the k earliest arrival routes from a node to another (routes
+	 * differ from each other by at least one contact). Routes are returned
+	 * from the cache if they are still valid.
+	 * @param from Address of the source node
+	 * @param to Address of the destination node
+	 * @param time Time when the message is at the source
+	 * @param k Maximum number of routes
+	 * @return The routes in the order of their arrival times (an empty list
+	 * if there are no routes)
+	 */
+	public List<ContactRoute> getRoutes(int from, int to, double time, int k) {
+		Long key = ((long)from << 32) | to;
+		CachedRoutes cached = cache.get(key);
+
+		if (cached != null && cached.k >= k && cached.computedAt <= time &&
+				time <= cached.validUntil) {
+			return cached.routes.size() <= k ? cached.routes :
+				cached.routes.subList(0, k);
+		}
+
+		List<ContactRoute> routes = computeRoutes(from, to, time, k);
+		double validUntil = INFINITY;
+		for (ContactRoute r : routes) {
+			validUntil = Math.min(validUntil, r.getDeparture(0));
+		}
+		cache.put(key, new CachedRoutes(routes, k, time, validUntil));
+		if (cache.size() >= pruneSize) {
+			pruneCache(time);
+		}
+
+		return routes;
+	}
+
+	/**
+	 * Removes the cached routes that are no longer valid at the given time
+	 * @param time The time
+	 */
+	public void pruneCache(double time) {
+		for (Iterator<CachedRoutes> i = cache.values().iterator();
+				i.hasNext();) {
+			if (i.next().validUntil < time) {
+				i.remove();
+			}
+		}
+		this.pruneSize = Math.max(MIN_PRUNE_SIZE, 2 * cache.size());
+	}
+
+	/**
+	 * Returns the number of source-destination pairs in the route cache
+	 * @return the size of the route cache
+	 */
+	public int getCacheSize() {
+		return this.cache.size();
+	}
+
+	/**
+	 * Returns the number of route searches done (for testing the cache)
+	 * @return the number of route searches done
+	 */
+	public int getNrofSearches() {
+		return this.nrofSearches;
+	}
+
+	/**
+	 * Computes the k earliest arrival routes with Yen's algorithm
+	 */
+	private List<ContactRoute> computeRoutes(int from, int to, double time,
+			int k) {
+		if (from == to || from >= arrival.length || to >= arrival.length) {
+			return Collections.emptyList();
+		}
+
+		ContactRoute best = search(from, to, time);
+		if (best == null) {
+			return Collections.emptyList();
+		}
+		List<ContactRoute> found = new ArrayList<ContactRoute>();
+		found.add(best);
+
+		PriorityQueue<ContactRoute> candidates =
+			new PriorityQueue<ContactRoute>();
+
+		while (found.size() < k) {
+			ContactRoute prev = found.get(found.size() - 1);
+
+			for (int i=0; i<prev.getHopCount(); i++) {
+				/* the spur node is where the i:th hop of the route starts */
+				int spurNode = i == 0 ? from : plan.getTo(prev.getContact(i-1));
+				double spurTime = i == 0 ? time :
+					prev.getDeparture(i-1) + hopDelay;
+
+				for (ContactRoute r : found) {
+					if (r.hasSamePrefix(prev, i) && r.getHopCount() > i) {
+						excludedContact[r.getContact(i)] = true;
+					}
+				}
+				excludedNode[from] = true;
+				for (int j=0; j<i; j++) {
+					excludedNode[plan.getTo(prev.getContact(j))] = true;
+				}
+				excludedNode[spurNode] = false;
+
+				ContactRoute spur = search(spurNode, to, spurTime);
+
+				Arrays.fill(excludedContact, false);
+				Arrays.fill(excludedNode, false);
+
+				if (spur != null) {
+					ContactRoute total = join(prev, i, spur);
+					if (!found.contains(total) &&
+							!candidates.contains(total)) {
+						candidates.add(total);
+					}
+				}
+			}
+
+			if (candidates.isEmpty()) {
+				break;
+			}
+			found.add(candidates.poll());
+		}
+
+		return Collections.unmodifiableList(found);
+	}
+
+	/**
+	 * Joins the first hops of a route and a route from the end of them
+	 */
+	private ContactRoute join(ContactRoute root, int nrofHops,
+			ContactRoute spur) {
+		int n = nrofHops + spur.getHopCount();
+		int[] contacts = new int[n];
+		double[] departures = new double[n];
+
+		for (int i=0; i<nrofHops; i++) {
+			contacts[i] = root.getContact(i);
+			departures[i] = root.getDeparture(i);
+		}
+		for (int i=0; i<spur.getHopCount(); i++) {
+			contacts[nrofHops + i] = spur.getContact(i);
+			departures[nrofHops + i] = spur.getDeparture(i);
+		}
+
+		return new ContactRoute(root.getFrom(), root.getTo(), contacts,
+				departures, spur.getArrival());
+	}
+
+	/**
+	 * Earliest arrival search from a node to another avoiding the excluded
+	 * nodes and contacts
+	 * @param from Address of the source node
+	 * @param to Address of the destination node
+	 * @param time Time when the message is at the source
+	 * @return The route or null if there is no route
+	 */
+	private ContactRoute search(int from, int to, double time) {
+		nrofSearches++;
+		Arrays.fill(arrival, INFINITY);
+		Arrays.fill(predecessor, -1);
+		heapSize = 0;
+
+		arrival[from] = time;
+		heapPush(from, time);
+
+		while (heapSize > 0) {
+			double t = heapKeys[0];
+			int u = heapPop();
+			if (t > arrival[u]) {
+				continue; // stale entry
+			}
+			if (u == to) {
+				break;
+			}
+
+			int n = plan.getNrofNodeContacts(u);
+			for (int p = plan.firstContactEndingAfter(u, t); p < n; p++) {
+				int c = plan.getNodeContact(u, p);
+				int v = plan.getTo(c);
+				if (excludedContact[c] || excludedNode[v]) {
+					continue;
+				}
+
+				double departure = Math.max(t, plan.getStart(c));
+				double arrivalTime = departure + hopDelay;
+				if (arrivalTime > plan.getEnd(c)) {
+					continue; // transfer can't complete before the end
+				}
+				if (arrivalTime < arrival[v]) {
+					arrival[v] = arrivalTime;
+					predecessor[v] = c;
+					heapPush(v, arrivalTime);
+				}
+			}
+		}
+
+		if (arrival[to] == INFINITY) {
+			return null;
+		}
+
+		int nrofHops = 0;
+		for (int v = to; v != from; v = plan.getFrom(predecessor[v])) {
+			nrofHops++;
+		}
+		int[] contacts = new int[nrofHops];
+		double[] departures = new double[nrofHops];
+		for (int v = to, i = nrofHops - 1; v != from; i--) {
+			int c = predecessor[v];
+			contacts[i] = c;
+			departures[i] = arrival[v] - hopDelay;
+			v = plan.getFrom(c);
+		}
+
+		return new ContactRoute(from, to, contacts, departures, arrival[to]);
+	}
+
+	private void heapPush(int node, double key) {
+		if (heapSize == heapNodes.length) {
+			heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			int p = (i - 1) / 2;
+			if (heapKeys[p] <= key) {
+				break;
+			}
+			heapNodes[i] = heapNodes[p];
+			heapKeys[i] = heapKeys[p];
+			i = p;
+		}
+		heapNodes[i] = node;
+		heapKeys[i] = key;
+	}
+
+	private int heapPop() {
+		int top = heapNodes[0];
+		int node = heapNodes[--heapSize];
+		double key = heapKeys[heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int c = 2 * i + 1;
+			if (c + 1 < heapSize && heapKeys[c + 1] < heapKeys[c]) {
+				c++;
+			}
+			if (key <= heapKeys[c]) {
+				break;
+			}
+			heapNodes[i] = heapNodes[c];
+			heapKeys[i] = heapKeys[c];
+			i = c;
+		}
+		heapNodes[i] = node;
+		heapKeys[i] = key;
+		return top;
+	}
+
+	/**
+	 * Routes of a source-destination pair and the time until they are valid
+	 */
+	private static class CachedRoutes {
+		private final List<ContactRoute> routes;
+		private final int k;
+		private final double computedAt;
+		private final double validUntil;
+
+		public CachedRoutes(List<ContactRoute> routes, int k,
+				double computedAt, double validUntil) {
+			this.routes = routes;
+			this.k = k;
+			this.computedAt = computedAt;
+			this.validUntil = validUntil;
+		}
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A contact plan: the (directed) contacts between nodes, each with a start
+ * and an end time. The contacts are stored in primitive arrays and, once the
+ * plan is built, indexed per source node in the order of their start times.
+ * The latest end time of the contacts up to each position of the index is
+ * also kept, so the contacts of a node that all have ended before a given
+ * time are skipped with a binary search.
+ * <P>A plan can be built from connection up/down events, e.g. from a
+ * recorded contact trace in the {@link StandardEventsReader} format (which is
+ * the output format of the ConnectivityONEReport).</P>
+ */
+public class ContactPlan {
+	private static final int INITIAL_CAPACITY = 64;
+	/** how many events are read from a trace file at a time */
+	private static final int READ_CHUNK_SIZE = 1000;
+
+	private int nrofContacts;
+	private int[] from;
+	private int[] to;
+	private double[] start;
+	private double[] end;
+
+	/** number of nodes (largest address + 1) */
+	private int nrofNodes;
+	/** contact ids sorted by source node and start time */
+	private int[] byNode;
+	/** latest end time of a node's contacts up to each position of byNode */
+	private double[] maxEnd;
+	/** offsets of the nodes' contacts in byNode (size nrofNodes + 1) */
+	private int[] nodeOffsets;
+	private boolean indexed;
+
+	/**
+	 * Creates a new empty plan
+	 */
+	public ContactPlan() {
+		this.from = new int[INITIAL_CAPACITY];
+		this.to = new int[INITIAL_CAPACITY];
+		this.start = new double[INITIAL_CAPACITY];
+		this.end = new double[INITIAL_CAPACITY];
+		this.nrofContacts = 0;
+		this.nrofNodes = 0;
+		this.indexed = false;
+	}
+
+	/**
+	 * Creates a plan from connection events. Every "up" event starts a
+	 * (bidirectional) contact that ends at the matching "down" event. Contacts
+	 * that are still up after the last event end at the given end time.
+	 * Other than connection events are ignored.
+	 * @param events The events (in time order)
+	 * @param endTime End time for contacts without a "down" event
+	 * @return The plan
+	 */
+	public static ContactPlan fromEvents(List<ExternalEvent> events,
+			double endTime) {
+		ContactPlan plan = new ContactPlan();
+		Map<Long, Double> upSince = new HashMap<Long, Double>();
+
+		for (ExternalEvent ee : events) {
+			if (!(ee instanceof ConnectionEvent)) {
+				continue;
+			}
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			int a = Math.min(ce.getFromAddr(), ce.getToAddr());
+			int b = Math.max(ce.getFromAddr(), ce.getToAddr());
+			Long key = ((long)a << 32) | b;
+
+			if (ce.isUp()) {
+				if (!upSince.containsKey(key)) {
+					upSince.put(key, ce.getTime());
+				}
+			}
+			else {
+				Double since = upSince.remove(key);
+				if (since != null) {
+					plan.addLink(a, b, since, ce.getTime());
+				}
+			}
+		}
+
+		for (Map.Entry<Long, Double> e : upSince.entrySet()) {
+			long key = e.getKey();
+			plan.addLink((int)(key >>> 32), (int)key, e.getValue(), endTime);
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Creates a plan from a contact trace file in the
+	 * {@link StandardEventsReader} format
+	 * @param traceFile The trace file
+	 * @param endTime End time for contacts without a "down" event
+	 * @return The plan
+	 * @see #fromEvents(List, double)
+	 */
+	public static ContactPlan fromTraceFile(File traceFile, double endTime) {
+		StandardEventsReader reader = new StandardEventsReader(traceFile);
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		List<ExternalEvent> read;
+		do {
+			read = reader.readEvents(READ_CHUNK_SIZE);
+			events.addAll(read);
+		} while (!read.isEmpty());
+		reader.close();
+		return fromEvents(events, endTime);
+	}
+
+	/**
+	 * Adds a contact from a node to another
+	 * @param fromNode Address of the sending node
+	 * @param toNode Address of the receiving node
+	 * @param startTime Start time of the contact
+	 * @param endTime End time of the contact
+	 * @return Id of the new contact
+	 */
+	public int addContact(int fromNode, int toNode, double startTime,
+			double endTime) {
+		assert fromNode >= 0 && toNode >= 0 : "Invalid address";
+		assert startTime <= endTime : "Contact ends before it starts";
+
+		if (nrofContacts == from.length) {
+			int capacity = from.length * 2;
+			from = Arrays.copyOf(from, capacity);
+			to = Arrays.copyOf(to, capacity);
+			start = Arrays.copyOf(start, capacity);
+			end = Arrays.copyOf(end, capacity);
+		}
+
+		from[nrofContacts] = fromNode;
+		to[nrofContacts] = toNode;
+		start[nrofContacts] = startTime;
+		end[nrofContacts] = endTime;
+		nrofNodes = Math.max(nrofNodes, Math.max(fromNode, toNode) + 1);
+		indexed = false;
+
+		return nrofContacts++;
+	}
+
+	/**
+	 * Adds a bidirectional contact (a contact to both directions)
+	 * @param a Address of a node
+	 * @param b Address of the other node
+	 * @param startTime Start time of the contact
+	 * @param endTime End time of the contact
+	 */
+	public void addLink(int a, int b, double startTime, double endTime) {
+		addContact(a, b, startTime, endTime);
+		addContact(b, a, startTime, endTime);
+	}
+
+	/**
+	 * Builds the per node index of the contacts (if not up to date)
+	 */
+	private void index() {
+		if (indexed) {
+			return;
+		}
+
+		nodeOffsets = new int[nrofNodes + 1];
+		for (int i=0; i<nrofContacts; i++) {
+			nodeOffsets[from[i] + 1]++;
+		}
+		for (int i=0; i<nrofNodes; i++) {
+			nodeOffsets[i + 1] += nodeOffsets[i];
+		}
+
+		/* contacts are put to their node's range in the order of their ids
+		 * and then each range is sorted by the rank of the start time */
+		double[] starts = Arrays.copyOf(start, nrofContacts);
+		Arrays.sort(starts);
+		long[] keys = new long[nrofContacts];
+		int[] next = Arrays.copyOf(nodeOffsets, nrofNodes);
+		for (int i=0; i<nrofContacts; i++) {
+			keys[next[from[i]]++] = ((long)rankOf(starts, start[i]) << 32) | i;
+		}
+
+		byNode = new int[nrofContacts];
+		maxEnd = new double[nrofContacts];
+		for (int n=0; n<nrofNodes; n++) {
+			Arrays.sort(keys, nodeOffsets[n], nodeOffsets[n + 1]);
+			double latest = Double.NEGATIVE_INFINITY;
+			for (int i=nodeOffsets[n]; i<nodeOffsets[n + 1]; i++) {
+				byNode[i] = (int)keys[i];
+				latest = Math.max(latest, end[byNode[i]]);
+				maxEnd[i] = latest;
+			}
+		}
+		indexed = true;
+	}
+
+	/**
+	 * Returns the index of the first occurrence of a value in a sorted array
+	 * @param sorted The sorted array
+	 * @param value The value (that is in the array)
+	 * @return The index of the value
+	 */
+	private static int rankOf(double[] sorted, double value) {
+		int lo = 0;
+		int hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] < value) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the position (in the order given by {@link #getNodeContact})
+	 * of the first contact from the node that has not ended before the
+	 * given time. All the contacts before the position have ended before the
+	 * time, but some of the later contacts may have ended too.
+	 * @param node Address of the node
+	 * @param time The time
+	 * @return Position of the first contact that ends at or after the time
+	 */
+	public int firstContactEndingAfter(int node, double time) {
+		index();
+		if (node >= nrofNodes) {
+			return 0;
+		}
+
+		int lo = nodeOffsets[node];
+		int hi = nodeOffsets[node + 1];
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (maxEnd[mid] < time) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo - nodeOffsets[node];
+	}
+
+	/**
+	 * Returns the number of contacts from the given node
+	 * @param node Address of the node
+	 * @return Number of contacts from the node
+	 */
+	public int getNrofNodeContacts(int node) {
+		index();
+		if (node >= nrofNodes) {
+			return 0;
+		}
+		return nodeOffsets[node + 1] - nodeOffsets[node];
+	}
+
+	/**
+	 * Returns the id of a contact from the given node. The contacts of a node
+	 * are in the order of their start times.
+	 * @param node Address of the node
+	 * @param position Position of the contact among the node's contacts
+	 * @return Id of the contact
+	 */
+	public int getNodeContact(int node, int position) {
+		index();
+		return byNode[nodeOffsets[node] + position];
+	}
+
+	/**
+	 * Returns the number of contacts in the plan
+	 * @return the number of contacts in the plan
+	 */
+	public int size() {
+		return nrofContacts;
+	}
+
+	/**
+	 * Returns the number of nodes (largest address + 1)
+	 * @return the number of nodes
+	 */
+	public int getNrofNodes() {
+		return nrofNodes;
+	}
+
+	/**
+	 * Returns the sending node of a contact
+	 * @param contact Id of the contact
+	 * @return Address of the sending node
+	 */
+	public int getFrom(int contact) {
+		return from[contact];
+	}
+
+	/**
+	 * Returns the receiving node of a contact
+	 * @param contact Id of the contact
+	 * @return Address of the receiving node
+	 */
+	public int getTo(int contact) {
+		return to[contact];
+	}
+
+	/**
+	 * Returns the start time of a contact
+	 * @param contact Id of the contact
+	 * @return The start time
+	 */
+	public double getStart(int contact) {
+		return start[contact];
+	}
+
+	/**
+	 * Returns the end time of a contact
+	 * @param contact Id of the contact
+	 * @return The end time
+	 */
+	public double getEnd(int contact) {
+		return end[contact];
+	}
+}
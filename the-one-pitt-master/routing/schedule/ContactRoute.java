@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+import java.util.Arrays;
+
+/**
+ * A route through a contact plan: a sequence of contacts with the times the
+ * route departs over each of them. Routes are immutable.
+ */
+public class ContactRoute implements Comparable<ContactRoute> {
+	private final int[] contacts;
+	private final double[] departures;
+	private final double arrival;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Creates a new route
+	 * @param from Address of the source node
+	 * @param to Address of the destination node
+	 * @param contacts Ids of the contacts of the route (in order)
+	 * @param departures Departure times over the contacts
+	 * @param arrival Arrival time at the destination
+	 */
+	public ContactRoute(int from, int to, int[] contacts, double[] departures,
+			double arrival) {
+		this.from = from;
+		this.to = to;
+		this.contacts = contacts;
+		this.departures = departures;
+		this.arrival = arrival;
+	}
+
+	/**
+	 * Returns the number of hops (contacts) on the route
+	 * @return the number of hops
+	 */
+	public int getHopCount() {
+		return contacts.length;
+	}
+
+	/**
+	 * Returns the id of a contact on the route
+	 * @param hop Index of the hop
+	 * @return Id of the contact used for the hop
+	 */
+	public int getContact(int hop) {
+		return contacts[hop];
+	}
+
+	/**
+	 * Returns the departure time over the contact of a hop
+	 * @param hop Index of the hop
+	 * @return The departure time
+	 */
+	public double getDeparture(int hop) {
+		return departures[hop];
+	}
+
+	/**
+	 * Returns the arrival time at the destination
+	 * @return the arrival time at the destination
+	 */
+	public double getArrival() {
+		return arrival;
+	}
+
+	/**
+	 * Returns the address of the source node
+	 * @return the address of the source node
+	 */
+	public int getFrom() {
+		return from;
+	}
+
+	/**
+	 * Returns the address of the destination node
+	 * @return the address of the destination node
+	 */
+	public int getTo() {
+		return to;
+	}
+
+	/**
+	 * Returns true if the route uses the same contacts as another route for
+	 * its first hops
+	 * @param other The other route
+	 * @param nrofHops Number of first hops to compare
+	 * @return true if the first hops of the routes are the same
+	 */
+	boolean hasSamePrefix(ContactRoute other, int nrofHops) {
+		if (other.contacts.length < nrofHops ||
+				this.contacts.length < nrofHops) {
+			return false;
+		}
+		for (int i=0; i<nrofHops; i++) {
+			if (this.contacts[i] != other.contacts[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Orders routes by the arrival time and then by the number of hops
+	 */
+	public int compareTo(ContactRoute other) {
+		int cmp = Double.compare(this.arrival, other.arrival);
+		if (cmp != 0) {
+			return cmp;
+		}
+		return this.contacts.length - other.contacts.length;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ContactRoute)) {
+			return false;
+		}
+		return Arrays.equals(this.contacts, ((ContactRoute)o).contacts);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(contacts);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(from);
+		for (int i=0; i<contacts.length; i++) {
+			sb.append(" -(" + departures[i] + ")-> contact " + contacts[i]);
+		}
+		return sb.append(" @" + arrival).toString();
+	}
+}
@@ -0,0 +1,172 @@
+package routing.vr;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import core.Coord;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Known locations of neighbors for the VR style routers. Each entry
+ * expires a fixed interval after it was last stored or refreshed. The
+ * entries are kept in a priority queue ordered by their expiration times,
+ * so expiration only has to look at the head of the queue instead of
+ * sweeping the whole table on every update.
+ */
+public class NeighborTable
+{
+	private Map<DTNHost, Entry> entries;
+	/** entries in the order of their queued expiration times */
+	private PriorityQueue<Entry> expiryQueue;
+	private int expirationInterval;
+
+	/**
+	 * Creates a new empty table.
+	 * @param expirationInterval How long (seconds) an entry is kept after it
+	 * was stored or refreshed
+	 */
+	public NeighborTable(int expirationInterval)
+	{
+		this.entries = new HashMap<DTNHost, Entry>();
+		this.expiryQueue = new PriorityQueue<Entry>(11,
+				new Comparator<Entry>() {
+					public int compare(Entry e1, Entry e2) {
+						return e1.queuedExpiration - e2.queuedExpiration;
+					}
+				});
+		this.expirationInterval = expirationInterval;
+	}
+
+	/**
+	 * Returns true if there is an (unexpired) entry for the host
+	 * @param host The host to look for
+	 * @return True if the host's location is known
+	 */
+	public boolean containsKey(DTNHost host)
+	{
+		return entries.containsKey(host);
+	}
+
+	/**
+	 * Returns the entry of a host or null if there is no such entry
+	 * @param host The host to look for
+	 * @return The entry or null
+	 */
+	public Entry get(DTNHost host)
+	{
+		return entries.get(host);
+	}
+
+	/**
+	 * Stores a new location for the host, replacing any older entry.
+	 * @param host The host whose location is stored
+	 * @param location The location of the host
+	 * @param timestampOfLocation Time at which the host was at the location
+	 */
+	public void put(DTNHost host, Coord location, double timestampOfLocation)
+	{
+		Entry e = new Entry(host, location, timestampOfLocation);
+		entries.put(host, e);
+		expiryQueue.add(e);
+	}
+
+	/**
+	 * Stores the location of a currently connected neighbor. An existing
+	 * entry is updated in place instead of creating a new one.
+	 * @param host The neighbor
+	 * @param location The current location of the neighbor
+	 * @param time Current simulation time
+	 */
+	public void refresh(DTNHost host, Coord location, double time)
+	{
+		Entry e = entries.get(host);
+		if (e == null) {
+			put(host, location, time);
+		}
+		else {
+			e.knownLocation = location;
+			e.locationTimestamp = time;
+			e.setExpiration();
+		}
+	}
+
+	/**
+	 * Removes all entries that have expired by the given time. Entries that
+	 * were refreshed after they were queued are queued again with their new
+	 * expiration time; replaced entries are dropped.
+	 * @param timeNow Current simulation time
+	 */
+	public void expire(double timeNow)
+	{
+		while (!expiryQueue.isEmpty() &&
+				expiryQueue.peek().queuedExpiration < timeNow) {
+			Entry e = expiryQueue.poll();
+			if (entries.get(e.host) != e) {
+				continue; // replaced by a newer entry
+			}
+			if (e.isExpired(timeNow)) {
+				entries.remove(e.host);
+			}
+			else { // refreshed after queueing
+				e.queuedExpiration = e.expirationTime;
+				expiryQueue.add(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entries in the table
+	 * @return the number of entries in the table
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Entry of the table. Each entry contains a stored location for an
+	 * associated DTNHost and a time when this entry should expire and be
+	 * removed from the table.
+	 */
+	public class Entry
+	{
+		private final DTNHost host;
+		private Coord knownLocation;
+		private double locationTimestamp; //time at which the neighbor was at knownlocation
+		private int expirationTime;
+		/** expiration time when the entry was (re)queued */
+		private int queuedExpiration;
+
+		private Entry(DTNHost host, Coord location, double timestampOfLocation)
+		{
+			this.host = host;
+			knownLocation = location;
+			locationTimestamp = timestampOfLocation;
+			setExpiration();
+			queuedExpiration = expirationTime;
+		}
+
+		public Coord getLocation()
+		{
+			return knownLocation;
+		}
+
+		public double getLocationTimestamp()
+		{
+			return locationTimestamp;
+		}
+
+		public boolean isExpired(double timeNow)
+		{
+			return expirationTime < timeNow;
+		}
+
+		private void setExpiration()
+		{
+			expirationTime = SimClock.getIntTime() + expirationInterval;
+		}
+	}
+}
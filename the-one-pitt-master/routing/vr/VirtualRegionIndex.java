@@ -0,0 +1,213 @@
+package routing.vr;
+
+import java.util.Arrays;
+
+import core.Coord;
+
+/**
+ * Index of the Virtual Repository (VR) areas used by the VR style routers
+ * ({@link routing.VRRouter}, {@link routing.GeoRouter}). The home coordinates
+ * of a destination are a pure function of its network address, so they are
+ * computed once and cached in primitive arrays indexed by the address. The
+ * centers of all registered regions are also kept in a grid whose cell size
+ * equals the VR radius, so the regions that may contain a point are always
+ * found from the 3x3 cells around that point.
+ */
+public class VirtualRegionIndex
+{
+	private static final double A = (Math.sqrt(5.0) - 1)/2;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int INITIAL_CELL_CAPACITY = 4;
+
+	private final int maxVrX;
+	private final int maxVrY;
+	private final int vrOriginX;
+	private final int vrOriginY;
+	private final double vrRadius;
+
+	/** cached home coordinates; valid only where {@link #known} is set */
+	private double[] homeX;
+	private double[] homeY;
+	private boolean[] known;
+	/** is the region of the address in the center grid */
+	private boolean[] registered;
+
+	/** addresses of the regions whose center is in a cell, row major */
+	private int[][] cellMembers;
+	private int[] cellSizes;
+	private final double cellSize;
+	private final int rows;
+	private final int cols;
+
+	/**
+	 * Creates a new index for the given rectangular VR area.
+	 * @param maxVrX Width of the area the homes are hashed to
+	 * @param maxVrY Height of the area the homes are hashed to
+	 * @param vrOriginX X coordinate of the area's origin
+	 * @param vrOriginY Y coordinate of the area's origin
+	 * @param vrRadius Radius of a single virtual repository
+	 */
+	public VirtualRegionIndex(int maxVrX, int maxVrY, int vrOriginX,
+			int vrOriginY, double vrRadius)
+	{
+		this.maxVrX = maxVrX;
+		this.maxVrY = maxVrY;
+		this.vrOriginX = vrOriginX;
+		this.vrOriginY = vrOriginY;
+		this.vrRadius = vrRadius;
+
+		this.homeX = new double[INITIAL_CAPACITY];
+		this.homeY = new double[INITIAL_CAPACITY];
+		this.known = new boolean[INITIAL_CAPACITY];
+		this.registered = new boolean[INITIAL_CAPACITY];
+
+		this.cellSize = Math.max(vrRadius, 1.0);
+		this.cols = (int)(maxVrX / cellSize) + 1;
+		this.rows = (int)(maxVrY / cellSize) + 1;
+		this.cellMembers = new int[rows * cols][];
+		this.cellSizes = new int[rows * cols];
+	}
+
+	/**
+	 * Returns the x coordinate of the VR home of the given address
+	 * @param addr Network address of the destination
+	 * @return The x coordinate of the home
+	 */
+	public double getHomeX(int addr)
+	{
+		ensureHome(addr);
+		return homeX[addr];
+	}
+
+	/**
+	 * Returns the y coordinate of the VR home of the given address
+	 * @param addr Network address of the destination
+	 * @return The y coordinate of the home
+	 */
+	public double getHomeY(int addr)
+	{
+		ensureHome(addr);
+		return homeY[addr];
+	}
+
+	/**
+	 * Returns the VR home of the given address as a new Coord object (the
+	 * caller is free to store or modify it).
+	 * @param addr Network address of the destination
+	 * @return The focus of the destination's VR
+	 */
+	public Coord getHome(int addr)
+	{
+		ensureHome(addr);
+		return new Coord(homeX[addr], homeY[addr]);
+	}
+
+	/**
+	 * Returns true if the given location is inside the VR of the given
+	 * destination address.
+	 * @param loc The location to check
+	 * @param addr Network address of the destination
+	 * @return True if the location is inside the VR
+	 */
+	public boolean isInRegion(Coord loc, int addr)
+	{
+		ensureHome(addr);
+		return Math.hypot(homeX[addr] - loc.getX(),
+				homeY[addr] - loc.getY()) < vrRadius;
+	}
+
+	/**
+	 * Adds the region of the given address to the grid of region centers.
+	 * Registering the same address more than once has no effect.
+	 * @param addr Network address of the destination
+	 */
+	public void register(int addr)
+	{
+		ensureHome(addr);
+		if (registered[addr]) {
+			return;
+		}
+		registered[addr] = true;
+
+		int cell = cellIndex(cellCol(homeX[addr]), cellRow(homeY[addr]));
+		int[] members = cellMembers[cell];
+		if (members == null) {
+			members = new int[INITIAL_CELL_CAPACITY];
+			cellMembers[cell] = members;
+		}
+		else if (cellSizes[cell] == members.length) {
+			members = Arrays.copyOf(members, members.length * 2);
+			cellMembers[cell] = members;
+		}
+		members[cellSizes[cell]++] = addr;
+	}
+
+	/**
+	 * Returns true if the given location is inside the VR of any registered
+	 * address. Only the grid cells next to the location are examined.
+	 * @param loc The location to check
+	 * @return True if some registered VR contains the location
+	 */
+	public boolean isInAnyRegion(Coord loc)
+	{
+		double x = loc.getX(), y = loc.getY();
+		int col = cellCol(x), row = cellRow(y);
+
+		for (int r = Math.max(row - 1, 0), rMax = Math.min(row + 1, rows - 1);
+				r <= rMax; r++) {
+			for (int c = Math.max(col - 1, 0), cMax = Math.min(col + 1, cols - 1);
+					c <= cMax; c++) {
+				int cell = cellIndex(c, r);
+				int[] members = cellMembers[cell];
+				for (int i = 0, n = cellSizes[cell]; i < n; i++) {
+					int addr = members[i];
+					if (Math.hypot(homeX[addr] - x, homeY[addr] - y) < vrRadius) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes and caches the home of the address if it is not known yet
+	 */
+	private void ensureHome(int addr)
+	{
+		if (addr >= known.length) {
+			int newSize = Math.max(known.length * 2, addr + 1);
+			homeX = Arrays.copyOf(homeX, newSize);
+			homeY = Arrays.copyOf(homeY, newSize);
+			known = Arrays.copyOf(known, newSize);
+			registered = Arrays.copyOf(registered, newSize);
+		}
+		if (known[addr]) {
+			return;
+		}
+
+		double x = maxVrX * (A * addr - Math.floor(A * addr)) + vrOriginX;
+		double y = maxVrY * (A * (x+1) * addr - Math.floor(A * (x+1) * addr)) +
+			vrOriginY;
+		homeX[addr] = x;
+		homeY[addr] = y;
+		known[addr] = true;
+	}
+
+	private int cellCol(double x)
+	{
+		int col = (int)((x - vrOriginX) / cellSize);
+		return col < 0 ? 0 : (col >= cols ? cols - 1 : col);
+	}
+
+	private int cellRow(double y)
+	{
+		int row = (int)((y - vrOriginY) / cellSize);
+		return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+	}
+
+	private int cellIndex(int col, int row)
+	{
+		return row * cols + col;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.AckSet;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the acknowledgment sets
+ */
+public class AckSetTest extends TestCase {
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		AckSet.reset();
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+	}
+
+	private Message msg(String id, int ttl) {
+		Message m = new Message(null, null, id, 1);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	public void testAddAndContains() {
+		AckSet s = new AckSet();
+		assertTrue(s.add(msg("M1", 10)));
+		assertFalse(s.add(msg("M1", 10)));
+		assertTrue(s.add(msg("M2", 10)));
+
+		assertTrue(s.contains("M1"));
+		assertTrue(s.contains("M2"));
+		assertFalse(s.contains("M3"));
+		assertFalse(new AckSet().contains("M1"));
+		assertEquals(2, s.size());
+		assertEquals(2, s.getVersion());
+	}
+
+	public void testMerge() {
+		AckSet a = new AckSet();
+		AckSet b = new AckSet();
+		a.add(msg("M1", 10));
+		a.add(msg("M2", 10));
+		b.add(msg("M2", 10));
+		b.add(msg("M3", 10));
+
+		assertEquals(1, a.merge(b));
+		assertEquals(1, b.merge(a));
+		for (AckSet s : new AckSet[] {a, b}) {
+			assertEquals(3, s.size());
+			assertTrue(s.contains("M1") && s.contains("M2") &&
+					s.contains("M3"));
+		}
+
+		assertEquals(0, a.merge(b)); // nothing new since the last merge
+		b.add(msg("M4", 10));
+		assertEquals(1, a.merge(b));
+		assertTrue(a.contains("M4"));
+
+		AckSet copy = new AckSet(a);
+		assertEquals(4, copy.size());
+		assertTrue(copy.contains("M4"));
+	}
+
+	public void testExpiry() {
+		AckSet a = new AckSet();
+		AckSet b = new AckSet();
+		a.add(msg("short", 10)); // expires at 2 * 10 min
+		a.add(msg("long", 100));
+		a.add(msg("infinite", Message.INFINITE_TTL));
+
+		clock.setTime(1199);
+		assertEquals(3, b.merge(a));
+		assertTrue(b.contains("short"));
+
+		clock.setTime(1200);
+		AckSet c = new AckSet();
+		assertEquals(2, c.merge(a)); // expired entries are not merged
+		assertFalse(c.contains("short"));
+		assertFalse(a.contains("short"));
+		assertFalse(b.contains("short"));
+
+		clock.setTime(1e6);
+		a.add(msg("new", 10));
+		assertFalse(a.contains("long"));
+		assertTrue(a.contains("infinite"));
+		assertTrue(a.contains("new"));
+		assertEquals(2, a.size());
+	}
+
+	public void testMergeAfterLogCompaction() {
+		AckSet a = new AckSet();
+		AckSet b = new AckSet();
+		a.add(msg("infinite", Message.INFINITE_TTL));
+		a.add(msg("short", 10));
+		a.add(msg("long", 100));
+		assertEquals(3, b.merge(a));
+
+		clock.setTime(1200); // "short" expires between the other two
+		a.add(msg("new", 100));
+		assertEquals(3, a.size());
+		assertEquals(1, b.merge(a));
+		assertTrue(b.contains("new"));
+
+		AckSet c = new AckSet();
+		assertEquals(3, c.merge(a));
+		assertTrue(c.contains("infinite") && c.contains("long") &&
+				c.contains("new"));
+		a.add(msg("newer", 100));
+		assertEquals(1, c.merge(a));
+	}
+
+	public void testIndexReuse() {
+		AckSet a = new AckSet();
+		AckSet stale = new AckSet();
+		for (int i = 0; i < 100; i++) {
+			a.add(msg("old" + i, 10));
+		}
+		assertEquals(100, stale.merge(a));
+		assertEquals(100, AckSet.getNrofIndexes());
+
+		/* the new IDs get the indexes of the expired ones, which the sets
+		 * that haven't removed their expired entries still have */
+		clock.setTime(1200);
+		AckSet b = new AckSet();
+		for (int i = 0; i < 100; i++) {
+			assertTrue(b.add(msg("new" + i, 10)));
+		}
+		assertEquals(100, AckSet.getNrofIndexes());
+		assertFalse(stale.contains("new0"));
+		assertFalse(stale.contains("old0"));
+		assertEquals(0, new AckSet().merge(stale));
+
+		assertEquals(100, a.merge(b));
+		assertTrue(a.contains("new0") && a.contains("new99"));
+		assertEquals(100, a.size());
+		assertEquals(100, stale.merge(b));
+		assertEquals(100, stale.size());
+		assertTrue(stale.contains("new0"));
+	}
+}
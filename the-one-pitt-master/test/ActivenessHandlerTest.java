@@ -70,5 +70,32 @@ public class ActivenessHandlerTest extends TestCase {
 
 	}
 	
+	public void testNextChangeTime() {
+		assertEquals(in, ah.nextChangeTime());
+		clock.setTime(in);
+		assertTrue(ah.isActive());
+		assertEquals(Math.nextUp(out), ah.nextChangeTime());
+		
+		// value changes at the first moment after the end time
+		clock.setTime(out);
+		assertTrue(ah.isActive());
+		clock.setTime(Math.nextUp(out));
+		assertFalse(ah.isActive());
+		assertEquals(100.0, ah.nextChangeTime());
+		
+		// skipping over whole time ranges
+		clock.setTime(300);
+		assertFalse(ah.isActive());
+		assertEquals(350.0, ah.nextChangeTime());
+		clock.setTime(350);
+		assertTrue(ah.isActive());
+		assertEquals(Math.nextUp(400.0), ah.nextChangeTime());
+		
+		// out of active times
+		clock.setTime(401);
+		assertFalse(ah.isActive());
+		assertEquals(Double.MAX_VALUE, ah.nextChangeTime());
+	}
+	
 }
 
@@ -49,6 +49,24 @@ public class AllTests {
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(SimpleBroadcastInterfaceTest.class);
+		suite.addTestSuite(SharedMediumTest.class);
+		suite.addTestSuite(ContentionLimitedInterfaceTest.class);
+		suite.addTestSuite(VirtualRegionIndexTest.class);
+		suite.addTestSuite(OutgoingMessageQueueTest.class);
+		suite.addTestSuite(MEEDDecisionEngineTest.class);
+		suite.addTestSuite(ContactGraphTest.class);
+		suite.addTestSuite(RealTimePacerTest.class);
+		suite.addTestSuite(LoopbackGatewayTest.class);
+		suite.addTestSuite(EventLogTest.class);
+		suite.addTestSuite(PairStoreTest.class);
+		suite.addTestSuite(EventStoreTest.class);
+		suite.addTestSuite(RandomStreamsTest.class);
+		suite.addTestSuite(DeltaSnapshotReaderTest.class);
+		suite.addTestSuite(ConnectivityGridTest.class);
+		suite.addTestSuite(AckSetTest.class);
+		suite.addTestSuite(NeighborTableTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.NetworkInterface;
+
+/**
+ * Tests for the multi-level ConnectivityGrid
+ */
+public class ConnectivityGridTest extends TestCase {
+	private static final int BASE = 10;
+	private ConnectivityGrid grid;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ConnectivityGrid.reset();
+		grid = ConnectivityGrid.ConnectivityGridFactory(0, BASE);
+	}
+
+	private GridInterface add(double x, double y, double range) {
+		GridInterface ni = new GridInterface(x, y, range);
+		grid.addInterface(ni);
+		return ni;
+	}
+
+	public void testSingleRange() {
+		GridInterface a = add(15, 15, BASE);
+		GridInterface b = add(25, 15, BASE);
+		GridInterface c = add(5, 5, BASE);
+		GridInterface far = add(45, 15, BASE);
+
+		Collection<NetworkInterface> near = grid.getNearInterfaces(a);
+		assertTrue(near.contains(a));
+		assertTrue(near.contains(b));
+		assertTrue(near.contains(c));
+		assertFalse(near.contains(far));
+		assertEquals(1, grid.getNrofLevels());
+		assertEquals(15.0, grid.getNearDistance(a)); // 10 + 5 from edge
+	}
+
+	public void testMixedRanges() {
+		GridInterface longRange = add(500, 500, 1000);
+		GridInterface closeShort = add(505, 500, BASE);
+		GridInterface farShort = add(600, 500, BASE);
+		GridInterface farLong = add(1400, 500, 1000);
+
+		assertEquals(2, grid.getNrofLevels());
+		Collection<NetworkInterface> near = grid.getNearInterfaces(longRange);
+		assertTrue(near.contains(closeShort));
+		assertTrue(near.contains(farLong));
+		assertFalse(near.contains(farShort)); // connection range is 10
+
+		assertTrue(grid.getNearInterfaces(closeShort).contains(longRange));
+	}
+
+	public void testNearInterfacesAndDistance() {
+		Random rng = new Random(1);
+		List<GridInterface> all = new ArrayList<GridInterface>();
+		double[] ranges = {3, 10, 25, 100, 400};
+		for (int i = 0; i < 300; i++) {
+			all.add(add(rng.nextDouble() * 2000, rng.nextDouble() * 2000,
+					ranges[rng.nextInt(ranges.length)]));
+		}
+
+		for (GridInterface ni : all) {
+			Collection<NetworkInterface> near = grid.getNearInterfaces(ni);
+			double nearDist = grid.getNearDistance(ni);
+			for (GridInterface other : all) {
+				double pairRange = Math.min(ni.range, other.range);
+				double dist = ni.loc.distance(other.loc);
+				if (dist <= pairRange) {
+					assertTrue(near.contains(other));
+				}
+				if (!near.contains(other)) {
+					assertTrue(dist - pairRange >= nearDist - ni.range);
+				}
+			}
+		}
+	}
+
+	public void testRangeChange() {
+		GridInterface a = add(100, 100, BASE);
+		GridInterface b = add(150, 100, 100);
+		assertFalse(grid.getNearInterfaces(b).contains(a));
+		assertEquals((double)BASE, grid.getCellSize(a));
+
+		a.range = 100;
+		grid.updateLocation(a);
+		assertTrue(grid.getNearInterfaces(b).contains(a));
+		assertEquals(grid.getCellSize(b), grid.getCellSize(a));
+	}
+
+	public void testZeroRange() {
+		GridInterface a = add(15, 15, BASE);
+		GridInterface zero = add(17, 15, 0);
+		assertEquals(2, grid.getNrofLevels());
+		assertTrue(grid.getCellSize(zero) > 0);
+		assertTrue(grid.getNearDistance(zero) >= 0);
+		assertTrue(grid.getNearDistance(a) >= 0);
+		assertTrue(grid.getNearInterfaces(zero).contains(zero));
+		assertFalse(grid.getNearInterfaces(a).contains(zero));
+
+		zero.loc.setLocation(900000, 900000);
+		grid.updateLocation(zero);
+		assertEquals(1, grid.getNearInterfaces(zero).size());
+	}
+
+	public void testEmptyLevelRemoved() {
+		GridInterface a = add(100, 100, BASE);
+		GridInterface b = add(150, 100, 100);
+		assertEquals(2, grid.getNrofLevels());
+
+		grid.removeInterface(b);
+		assertEquals(1, grid.getNrofLevels());
+		a.range = 100;
+		grid.updateLocation(a); // moves to the level of the new range
+		assertEquals(1, grid.getNrofLevels());
+		assertEquals(160.0, grid.getCellSize(a)); // BASE * 2^4
+	}
+
+	public void testFarAwayInterfaces() {
+		GridInterface a = add(0, 0, BASE);
+		GridInterface far = add(900000, 900000, BASE);
+		GridInterface neg = add(-900000, 5, BASE);
+		assertEquals(1, grid.getNearInterfaces(a).size());
+		assertEquals(1, grid.getNearInterfaces(far).size());
+		assertEquals(1, grid.getNearInterfaces(neg).size());
+
+		far.loc.setLocation(5, 5);
+		grid.updateLocation(far);
+		assertTrue(grid.getNearInterfaces(a).contains(far));
+	}
+
+	public void testRebalance() {
+		List<GridInterface> crowd = new ArrayList<GridInterface>();
+		for (int i = 0; i < 100; i++) {
+			crowd.add(add(100 + i * 0.05, 100, BASE));
+		}
+		GridInterface a = crowd.get(0);
+		assertTrue(grid.getCellSize(a) < BASE);
+		assertTrue(grid.getNearInterfaces(a).contains(crowd.get(99)));
+
+		for (int i = 0; i < crowd.size(); i++) { // disperse the crowd
+			crowd.get(i).loc.setLocation(i * 50, 1000);
+			grid.updateLocation(crowd.get(i));
+		}
+		assertEquals((double)BASE, grid.getCellSize(a));
+		assertEquals(1, grid.getNearInterfaces(a).size());
+	}
+
+	public void testTransmitters() {
+		GridInterface a = add(15, 15, BASE);
+		GridInterface b = add(25, 15, BASE);
+		GridInterface far = add(95, 15, BASE);
+		grid.setTransmitting(b, true);
+		grid.setTransmitting(far, true);
+		assertEquals(1, grid.getTransmittersNear(a));
+
+		b.loc.setLocation(85, 15);
+		grid.updateLocation(b);
+		assertEquals(0, grid.getTransmittersNear(a));
+		assertEquals(2, grid.getTransmittersNear(far));
+
+		grid.removeInterface(far);
+		assertEquals(1, grid.getTransmittersNear(b));
+	}
+
+	/**
+	 * Interface with a fixed location and no host
+	 */
+	private static class GridInterface extends NetworkInterface {
+		private Coord loc;
+		private double range;
+
+		private GridInterface(double x, double y, double range) {
+			this.loc = new Coord(x, y);
+			this.range = range;
+		}
+
+		public Coord getLocation() {
+			return loc;
+		}
+
+		public double getTransmitRange() {
+			return range;
+		}
+
+		public NetworkInterface replicate() {
+			return null;
+		}
+
+		public void connect(NetworkInterface anotherInterface) {}
+
+		public void update() {}
+
+		public void createConnection(NetworkInterface anotherInterface) {}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import routing.schedule.ContactGraph;
+import routing.schedule.ContactPlan;
+import routing.schedule.ContactRoute;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the contact plan and the contact graph routing
+ */
+public class ContactGraphTest extends TestCase {
+	private ContactPlan plan;
+	private ContactGraph graph;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		plan = new ContactPlan();
+		plan.addLink(0, 1, 10, 20);
+		plan.addLink(1, 3, 50, 60);
+		plan.addLink(0, 2, 5, 10);
+		plan.addLink(2, 3, 30, 40);
+		plan.addLink(1, 2, 0, 100);
+		graph = new ContactGraph(plan, 0);
+	}
+
+	private void checkHops(int[] nodes, ContactRoute r) {
+		assertEquals(nodes.length - 1, r.getHopCount());
+		for (int i=0; i<r.getHopCount(); i++) {
+			assertEquals(nodes[i], plan.getFrom(r.getContact(i)));
+			assertEquals(nodes[i+1], plan.getTo(r.getContact(i)));
+		}
+	}
+
+	public void testPlanFromEvents() {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		events.add(new ConnectionEvent(0, 1, null, true, 10));
+		events.add(new ConnectionEvent(2, 1, null, true, 15));
+		events.add(new ConnectionEvent(1, 0, null, false, 20));
+		events.add(new ConnectionEvent(0, 1, null, true, 30));
+		events.add(new ConnectionEvent(0, 1, null, false, 35));
+
+		ContactPlan p = ContactPlan.fromEvents(events, 100);
+		assertEquals(6, p.size());
+		assertEquals(3, p.getNrofNodes());
+		assertEquals(2, p.getNrofNodeContacts(0));
+		assertEquals(3, p.getNrofNodeContacts(1));
+
+		/* contacts of a node are in the order of their start times */
+		assertEquals(10.0, p.getStart(p.getNodeContact(1, 0)));
+		assertEquals(15.0, p.getStart(p.getNodeContact(1, 1)));
+		assertEquals(30.0, p.getStart(p.getNodeContact(1, 2)));
+		assertEquals(0, p.firstContactEndingAfter(0, 20));
+		assertEquals(1, p.firstContactEndingAfter(0, 20.5));
+		assertEquals(2, p.firstContactEndingAfter(0, 40));
+
+		/* the 15-100 contact hasn't ended, so the 30-35 one is after it */
+		assertEquals(1, p.firstContactEndingAfter(1, 21));
+		assertEquals(1, p.firstContactEndingAfter(1, 40));
+		assertEquals(3, p.firstContactEndingAfter(1, 101));
+	}
+
+	public void testEarliestArrival() {
+		ContactRoute r = graph.getRoute(0, 3, 0);
+		checkHops(new int[] {0, 2, 3}, r);
+		assertEquals(30.0, r.getArrival());
+		assertEquals(5.0, r.getDeparture(0));
+
+		/* contact 0-2 has ended: via 1 and 2 */
+		r = graph.getRoute(0, 3, 16);
+		assertEquals(30.0, r.getArrival());
+		checkHops(new int[] {0, 1, 2, 3}, r);
+
+		assertNull(graph.getRoute(0, 3, 21));
+		assertNull(graph.getRoute(3, 4, 0));
+	}
+
+	public void testHopDelay() {
+		ContactGraph slow = new ContactGraph(plan, 6);
+		/* 0-2 contact is too short for a transfer */
+		ContactRoute r = slow.getRoute(0, 3, 0);
+		checkHops(new int[] {0, 1, 2, 3}, r);
+		assertEquals(36.0, r.getArrival());
+		assertEquals(30.0, r.getDeparture(2));
+	}
+
+	public void testKRoutes() {
+		List<ContactRoute> routes = graph.getRoutes(0, 3, 0, 10);
+		assertEquals(4, routes.size());
+		checkHops(new int[] {0, 2, 3}, routes.get(0));
+		for (int i=1; i<routes.size(); i++) {
+			assertTrue(routes.get(i-1).getArrival() <=
+				routes.get(i).getArrival());
+			assertFalse(routes.get(i-1).equals(routes.get(i)));
+		}
+		assertEquals(50.0, routes.get(routes.size() - 1).getArrival());
+	}
+
+	public void testRouteCache() {
+		graph.getRoutes(0, 3, 0, 2);
+		int searches = graph.getNrofSearches();
+
+		/* still before the first departures: from the cache */
+		graph.getRoutes(0, 3, 4, 1);
+		graph.getRoutes(0, 3, 5, 2);
+		assertEquals(searches, graph.getNrofSearches());
+
+		/* first contact of a route has been passed */
+		ContactRoute r = graph.getRoute(0, 3, 16);
+		assertTrue(graph.getNrofSearches() > searches);
+		checkHops(new int[] {0, 1, 2, 3}, r);
+
+		graph.pruneCache(17);
+		searches = graph.getNrofSearches();
+		graph.getRoute(0, 3, 17);
+		assertTrue(graph.getNrofSearches() > searches);
+	}
+
+	public void testCachePruning() {
+		ContactPlan star = new ContactPlan();
+		for (int i=1; i<=200; i++) {
+			star.addLink(0, i, i, i + 1);
+		}
+		ContactGraph g = new ContactGraph(star, 0);
+
+		/* every route expires soon after it's looked up */
+		for (int i=1; i<=200; i++) {
+			assertNotNull(g.getRoute(0, i, i - 0.5));
+			assertTrue(g.getCacheSize() < 64);
+		}
+	}
+}
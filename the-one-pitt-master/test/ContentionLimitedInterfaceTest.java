@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ContentionLimitedInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Tests for the ContentionLimitedInterface, the variable bit-rate
+ * connections it advances and the transmitter counts of the grid cells
+ */
+public class ContentionLimitedInterfaceTest extends TestCase {
+	private static final String INTERFACE_NS = "contentionTestInterface";
+	private static final double RANGE = 10;
+	private static final int SPEED = 1000;
+	/** speed with a single transmission and at most two transmitters:
+	 * 1000 / sqrt(2 * ln(2)) */
+	private static final int SPEED_OF_TWO = 849;
+	/** speed of one of two transmissions with three transmitters:
+	 * 1000 / sqrt(3 * ln(3)) / 2 */
+	private static final int HALF_SPEED_OF_THREE = 275;
+
+	private TestSettings ts;
+	private SimClock clock;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(INTERFACE_NS + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + RANGE);
+		ts.putSetting(INTERFACE_NS + "." + NetworkInterface.TRANSMIT_SPEED_S,
+				"" + SPEED);
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		ConnectivityGrid.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+		hosts = new ArrayList<DTNHost>();
+	}
+
+	private DTNHost createHost(double x, double y) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new ContentionLimitedInterface(new Settings(INTERFACE_NS)));
+		DTNHost host = new DTNHost(new ArrayList<MessageListener>(), null,
+				"n", li, new ModuleCommunicationBus(),
+				new StationaryMovement(new Coord(x, y)), new PassiveRouter(ts));
+		host.setLocation(new Coord(x, y));
+		hosts.add(host);
+		return host;
+	}
+
+	private NetworkInterface ni(DTNHost host) {
+		return host.getInterfaces().get(0);
+	}
+
+	/**
+	 * Advances the clock and updates the interfaces of all the hosts
+	 */
+	private void updateAll(double timeIncrement) {
+		clock.advance(timeIncrement);
+		for (DTNHost h : hosts) {
+			ni(h).update();
+		}
+	}
+
+	private Connection startTransfer(DTNHost from, DTNHost to, String id) {
+		for (Connection con : from.getConnections()) {
+			if (con.getOtherNode(from) == to) {
+				con.startTransfer(from, new Message(from, to, id, 100000));
+				return con;
+			}
+		}
+		fail("No connection from " + from + " to " + to);
+		return null;
+	}
+
+	private ConnectivityGrid grid() {
+		return ConnectivityGrid.ConnectivityGridFactory(
+				INTERFACE_NS.hashCode(), RANGE);
+	}
+
+	public void testContentionSharing() {
+		DTNHost a = createHost(5, 5);
+		DTNHost b = createHost(8, 5);
+		DTNHost c = createHost(12, 5);
+		updateAll(0.1);
+		assertEquals(2, b.getConnections().size());
+		assertEquals(SPEED_OF_TWO, ni(a).getTransmitSpeed());
+
+		Connection ab = startTransfer(a, b, "M1");
+		updateAll(0.1);
+		updateAll(0.1); // all the transmitters have been counted
+		assertEquals(SPEED_OF_TWO, ni(a).getTransmitSpeed());
+		assertEquals(SPEED_OF_TWO, ni(b).getTransmitSpeed());
+
+		startTransfer(c, b, "M2");
+		updateAll(0.1);
+		updateAll(0.1);
+		assertEquals(3, grid().getTransmittersNear(ni(a)));
+		assertEquals(HALF_SPEED_OF_THREE, ni(b).getTransmitSpeed());
+		assertTrue(ni(a).getTransmitSpeed() > HALF_SPEED_OF_THREE);
+
+		/* the initiator advances the transfer by the speed of the slower
+		 * end for the time since its previous update */
+		int remaining = ab.getRemainingByteCount();
+		updateAll(2.0);
+		assertEquals(HALF_SPEED_OF_THREE, (int)ab.getSpeed());
+		assertEquals(remaining - 2 * HALF_SPEED_OF_THREE,
+				ab.getRemainingByteCount());
+	}
+
+	public void testTransmitterCountsFollowHosts() {
+		DTNHost a = createHost(5, 5);
+		DTNHost b = createHost(8, 5);
+		DTNHost far = createHost(55, 5);
+		updateAll(0.1);
+		assertEquals(0, grid().getTransmittersNear(ni(a)));
+
+		Connection ab = startTransfer(a, b, "M1");
+		updateAll(0.1);
+		assertEquals(2, grid().getTransmittersNear(ni(a)));
+		assertEquals(0, grid().getTransmittersNear(ni(far)));
+
+		/* the transmitting pair moves next to the far host */
+		a.setLocation(new Coord(52, 5));
+		b.setLocation(new Coord(58, 5));
+		updateAll(0.1);
+		assertTrue(ab.isUp());
+		assertEquals(2, grid().getTransmittersNear(ni(far)));
+		createHost(5, 5);
+		updateAll(0.1);
+		assertEquals(0, grid().getTransmittersNear(ni(hosts.get(3))));
+
+		ab.abortTransfer();
+		updateAll(0.1);
+		assertEquals(0, grid().getTransmittersNear(ni(far)));
+	}
+}
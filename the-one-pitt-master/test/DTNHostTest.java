@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementModel;
+import movement.Path;
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.HostKinematics;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Tests for the movement of DTNHost
+ */
+public class DTNHostTest extends TestCase {
+	private static final double UP_INTERVAL = 0.1;
+	private TestUtils utils;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		this.clock = SimClock.getInstance();
+		this.utils = new TestUtils(null, null, new TestSettings());
+	}
+
+	public void testFastForward() {
+		DTNHost h = utils.createHost(new ShuttleMovement(), null);
+		assertTrue(h.canFastForward());
+
+		/* initial wait of 5s, 6 cycles of 10s leg + 5s wait, and then 2s on
+		 * the 7th leg (towards x=10) */
+		h.fastForward(97);
+		assertEquals(0.0, SimClock.getTime());
+		assertEquals(2.0, h.getLocation().getX(), 0.00001);
+		assertEquals(0.0, h.getLocation().getY());
+	}
+
+	public void testFastForwardMatchesStepping() {
+		clock.setTime(-50);
+		DTNHost fast = utils.createHost(new ShuttleMovement(), null);
+		DTNHost stepped = utils.createHost(new ShuttleMovement(), null);
+
+		fast.fastForward(50);
+		while (SimClock.getTime() < -UP_INTERVAL/2) {
+			stepped.move(UP_INTERVAL);
+			clock.advance(UP_INTERVAL);
+		}
+
+		/* stepping rounds waiting times up to the next update interval */
+		assertEquals(stepped.getLocation().getX(),
+				fast.getLocation().getX(), 2 * UP_INTERVAL);
+	}
+
+	public void testKinematicsStoreMatchesMove() {
+		List<DTNHost> stored = new ArrayList<DTNHost>();
+		List<DTNHost> plain = new ArrayList<DTNHost>();
+		for (int i=0; i<3; i++) {
+			stored.add(utils.createHost(new ShuttleMovement(), null));
+			plain.add(utils.createHost(new ShuttleMovement(), null));
+		}
+		HostKinematics kinematics = new HostKinematics(stored);
+
+		while (SimClock.getTime() < 100) {
+			kinematics.move(UP_INTERVAL);
+			for (DTNHost h : plain) {
+				h.move(UP_INTERVAL);
+			}
+			clock.advance(UP_INTERVAL);
+
+			for (int i=0; i<3; i++) {
+				assertEquals(plain.get(i).getLocation(),
+						stored.get(i).getLocation());
+				assertEquals(stored.get(i).getLocation().getX(),
+						kinematics.getX(i));
+			}
+		}
+	}
+
+	public void testMaxSpeed() {
+		DTNHost ok = utils.createHost(new ShuttleMovement(), null);
+		DTNHost tooFast = utils.createHost(new ShuttleMovement(), null);
+		clock.setTime(10); // past the initial wait
+		try {
+			DTNHost.setMaxSpeed(1); // the paths' speed is 1
+			ok.move(UP_INTERVAL);
+			assertEquals(UP_INTERVAL, ok.getLocation().getX(), 0.00001);
+
+			DTNHost.setMaxSpeed(0.5);
+			try {
+				tooFast.move(UP_INTERVAL);
+				fail("Path faster than the maximum speed was accepted");
+			} catch (SimError e) {
+				// should happen
+			}
+		} finally {
+			DTNHost.setMaxSpeed(0);
+		}
+	}
+
+	public void testNoFastForwardForDefaultModel() {
+		DTNHost h = utils.createHost(new Coord(0,0), null);
+		assertFalse(h.canFastForward());
+	}
+
+	/**
+	 * Movement model that goes back and forth between (0,0) and (10,0) with
+	 * speed of 1 m/s and waits 5 seconds at both ends
+	 */
+	private static class ShuttleMovement extends MovementModel {
+		private Coord last = new Coord(0,0);
+
+		@Override
+		public Coord getInitialLocation() {
+			return last.clone();
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(1);
+			p.addWaypoint(last.clone());
+			last = new Coord(last.getX() == 0 ? 10 : 0, 0);
+			p.addWaypoint(last.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + 5;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		protected boolean hasIndependentPaths() {
+			return true;
+		}
+
+		@Override
+		public ShuttleMovement replicate() {
+			return new ShuttleMovement();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import report.DeltaSnapshotReader;
+
+/**
+ * Tests for reconstructing the full snapshots of keyframe and change
+ * snapshot reports
+ */
+public class DeltaSnapshotReaderTest extends TestCase {
+
+	private String reconstruct(String report) throws Exception {
+		StringWriter out = new StringWriter();
+		new DeltaSnapshotReader(out).read(new StringReader(report));
+		return out.toString().replace("\r\n", "\n");
+	}
+
+	public void testMessageLocations() throws Exception {
+		String report =
+			"[100] K\n" +
+			"p1 (1.00,2.00) M1 M2\n" +
+			"p2 (3.00,4.00) M2\n" +
+			"[200] D\n" +
+			"@ p1 (1.50,2.00)\n" +
+			"@ p3 (5.00,6.00)\n" +
+			"- p1 M1\n" +
+			"+ p3 M1\n" +
+			"- p2 M2\n" +
+			"[300] D\n" +
+			"+ p1 M3\n" +
+			"[400] K\n" +
+			"p3 (7.00,8.00) M1\n";
+
+		assertEquals(
+			"[100]\n" +
+			"(1.00,2.00) M1 M2\n" +
+			"(3.00,4.00) M2\n" +
+			"[200]\n" +
+			"(1.50,2.00) M2\n" +
+			"(5.00,6.00) M1\n" +
+			"[300]\n" +
+			"(1.50,2.00) M2 M3\n" +
+			"(5.00,6.00) M1\n" +
+			"[400]\n" +
+			"(7.00,8.00) M1\n", reconstruct(report));
+	}
+
+	public void testEnergyLevels() throws Exception {
+		String report =
+			"[10] K\n" +
+			"p1 1.0000\n" +
+			"p2 0.5000\n" +
+			"[20] D\n" +
+			"[30] D\n" +
+			"p2 0.2500\n";
+
+		assertEquals(
+			"[10]\n" +
+			"p1 1.0000\n" +
+			"p2 0.5000\n" +
+			"[20]\n" +
+			"p1 1.0000\n" +
+			"p2 0.5000\n" +
+			"[30]\n" +
+			"p1 1.0000\n" +
+			"p2 0.2500\n", reconstruct(report));
+	}
+
+	public void testFullSnapshotsAreCopied() throws Exception {
+		String report =
+			"[100]\n" +
+			"(1.00,2.00) M1 M2\n" +
+			"[200]\n" +
+			"(3.00,4.00) M1\n";
+
+		assertEquals(report, reconstruct(report));
+	}
+}
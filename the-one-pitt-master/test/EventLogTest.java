@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import gui.EventLog;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the event log ring buffer
+ */
+public class EventLogTest extends TestCase {
+	private EventLog log;
+	private EventLog.Record rec;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		log = new EventLog(5); // capacity is rounded up to 7
+		rec = new EventLog.Record();
+	}
+
+	public void testCapacity() {
+		assertEquals(7, log.getCapacity());
+		assertEquals(1, new EventLog(1).getCapacity());
+		assertEquals(31, new EventLog(16).getCapacity());
+	}
+
+	public void testAddAndGet() {
+		log.add(1.5, 3, 7, EventLog.NO_HOST, null, true);
+		log.add(2.0, 1, 2, 4, null, false);
+
+		assertEquals(2, log.getCount());
+		assertEquals(0, log.getFirst());
+		assertTrue(log.get(0, rec));
+		assertEquals(1.5, rec.time);
+		assertEquals(3, rec.type);
+		assertEquals(7, rec.host1);
+		assertEquals(EventLog.NO_HOST, rec.host2);
+		assertTrue(rec.highlight);
+
+		assertTrue(log.get(1, rec));
+		assertEquals(1, rec.seq);
+		assertEquals(4, rec.host2);
+		assertFalse(rec.highlight);
+
+		assertFalse(log.get(2, rec)); // not added yet
+	}
+
+	public void testOldestOverwritten() {
+		for (int i=0; i<20; i++) {
+			log.add(i, 0, i, i, null, false);
+		}
+
+		assertEquals(20, log.getCount());
+		assertEquals(13, log.getFirst());
+		assertFalse(log.get(12, rec));
+		for (int i=13; i<20; i++) {
+			assertTrue(log.get(i, rec));
+			assertEquals((double)i, rec.time);
+			assertEquals(i, rec.host1);
+		}
+	}
+
+	/**
+	 * Reads the oldest records (whose slots are overwritten next) while
+	 * another thread keeps adding records and checks that every record
+	 * that is read successfully is intact
+	 */
+	public void testConcurrentReadsAtWrapPoint() throws Exception {
+		final EventLog small = new EventLog(2);
+		final int nrofRecords = 2000000;
+		Thread writer = new Thread() {
+			public void run() {
+				for (int i = 0; i < nrofRecords; i++) {
+					small.add(i, i, i, -i, null, i % 2 == 0);
+				}
+			}
+		};
+		writer.start();
+
+		int reads = 0;
+		while (writer.isAlive()) {
+			/* the records around the oldest one, which may already have
+			 * dropped out of the log when they are read */
+			long first = small.getFirst();
+			for (long seq = first - 2; seq <= first + 1; seq++) {
+				if (small.get(seq, rec)) {
+					int i = (int)seq;
+					assertEquals((double)i, rec.time);
+					assertEquals(i, rec.type);
+					assertEquals(i, rec.host1);
+					assertEquals(-i, rec.host2);
+					assertEquals(i % 2 == 0, rec.highlight);
+					reads++;
+				}
+			}
+		}
+		writer.join();
+		assertTrue(reads > 0);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import report.EventStore;
+
+/**
+ * Tests for the columnar event store of the post-run reports
+ */
+public class EventStoreTest extends TestCase {
+	private static final int NROF_EVENTS = EventStore.CHUNK_SIZE * 2 + 5;
+
+	private void fill(EventStore store) {
+		for (int i=0; i<NROF_EVENTS; i++) {
+			store.addEvent(i / 10.0, i % (EventStore.UPDATED + 1), i % 100,
+					i % 7 == 0 ? EventStore.NO_HOST : i % 50, i);
+		}
+	}
+
+	private void check(EventStore store) {
+		final int[] next = new int[1];
+		store.scan(new EventStore.EventVisitor() {
+			public void event(double time, int type, int host1, int host2,
+					int ref) {
+				int i = next[0]++;
+				assertEquals(i / 10.0, time);
+				assertEquals(i % (EventStore.UPDATED + 1), type);
+				assertEquals(i % 100, host1);
+				assertEquals(i % 7 == 0 ? EventStore.NO_HOST : i % 50, host2);
+				assertEquals(i, ref);
+			}
+		});
+		assertEquals(NROF_EVENTS, next[0]);
+		assertEquals(NROF_EVENTS, store.getNrofEvents());
+	}
+
+	public void testInMemory() {
+		EventStore store = new EventStore(null);
+		fill(store);
+		check(store);
+		assertEquals(0, store.getNrofSpilledChunks());
+		store.close();
+	}
+
+	public void testSpilled() {
+		EventStore store = new EventStore(new File(
+				System.getProperty("java.io.tmpdir")));
+		fill(store);
+		assertEquals(2, store.getNrofSpilledChunks());
+		check(store);
+		check(store); // the store can be scanned many times
+		store.close();
+	}
+
+	public void testTimeOrder() {
+		EventStore store = new EventStore(null);
+		store.addEvent(5, EventStore.CONN_UP, 0, 1, EventStore.NO_REF);
+		store.addEvent(5, EventStore.CONN_DOWN, 0, 1, EventStore.NO_REF);
+		try {
+			store.addEvent(4, EventStore.CONN_UP, 0, 1, EventStore.NO_REF);
+			fail("Event older than the previous one was accepted");
+		} catch (core.SimError e) {
+			// expected
+		}
+	}
+
+	public void testMessagesAndMovements() {
+		EventStore store = new EventStore(null);
+		assertEquals(0, store.addMessage("M1", 1, 2, 100, 0));
+		assertEquals(1, store.addMessage("M2", 3, 4, 200, 50));
+		assertEquals(0, store.addMessage("M1", 1, 2, 100, 0));
+		assertEquals(2, store.getNrofMessages());
+		assertEquals(1, store.getMessageIndex("M2"));
+		assertEquals(EventStore.NO_REF, store.getMessageIndex("M3"));
+		assertEquals("M2", store.getMessageId(1));
+		assertEquals(3, store.getMessageFrom(1));
+		assertEquals(4, store.getMessageTo(1));
+		assertEquals(200, store.getMessageSize(1));
+		assertEquals(50, store.getMessageResponseSize(1));
+
+		for (int i=0; i<3000; i++) {
+			assertEquals(i, store.addMovement(i, i * 2, i * 3));
+		}
+		assertEquals(3000, store.getNrofMovements());
+		assertEquals(2999.0, store.getMovementX(2999));
+		assertEquals(2 * 2999.0, store.getMovementY(2999));
+		assertEquals(3 * 2999.0, store.getMovementSpeed(2999));
+	}
+}
@@ -4,6 +4,8 @@
  */
 package test;
 
+import input.BinaryMovementConverter;
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
 
 import java.io.File;
@@ -16,6 +18,7 @@ import core.Tuple;
 
 public class ExternalMovementReaderTest extends TestCase {
 	private ExternalMovementReader r;
+	private File inFile;
 	private static final String INPUT = 
 		"0 0 0 0 0 0\n"+
 		"10 1 10 10\n"+ 
@@ -46,6 +49,7 @@ public class ExternalMovementReaderTest extends TestCase {
 		pw.println(INPUT);
 		pw.close();
 
+		inFile = tmpFile;
 		r = new ExternalMovementReader(tmpFile.getAbsolutePath());
 	}
 	
@@ -62,6 +66,63 @@ public class ExternalMovementReaderTest extends TestCase {
 		assertEquals(0, list.size());
 	}
 
+	public void testBinaryReader() throws Exception {
+		BinaryMovementReader br = createBinaryReader();
+		int[] nodeIds = new int[br.getMaxFrameSize()];
+		double[] x = new double[nodeIds.length];
+		double[] y = new double[nodeIds.length];
+		
+		assertFalse(BinaryMovementReader.isBinaryTrace(
+				inFile.getAbsolutePath()));
+		assertEquals(times.length, br.getNrofFrames());
+		assertEquals(ids.length, br.getNrofIds());
+		for (int i=0; i<times.length; i++) {
+			assertEquals(ids.length, br.readNextFrame(nodeIds, x, y));
+			checkSamples(br, nodeIds, x, y, coords[i]);
+			assertEquals(times[i], br.getLastTimeStamp());
+		}
+		assertEquals(0, br.readNextFrame(nodeIds, x, y));
+		br.close();
+	}
+	
+	public void testBinaryReaderSeek() throws Exception {
+		BinaryMovementReader br = createBinaryReader();
+		int[] nodeIds = new int[br.getMaxFrameSize()];
+		double[] x = new double[nodeIds.length];
+		double[] y = new double[nodeIds.length];
+		
+		assertEquals(1, br.seek(15));
+		br.readNextFrame(nodeIds, x, y);
+		assertEquals(20.0, br.getLastTimeStamp());
+		checkSamples(br, nodeIds, x, y, coords[1]);
+		
+		assertEquals(0, br.seek(0));
+		br.readNextFrame(nodeIds, x, y);
+		checkSamples(br, nodeIds, x, y, coords[0]);
+		
+		assertEquals(times.length, br.seek(31));
+		assertEquals(0, br.readNextFrame(nodeIds, x, y));
+		br.close();
+	}
+	
+	private BinaryMovementReader createBinaryReader() throws Exception {
+		File binFile = File.createTempFile("EMRTest","bin");
+		binFile.deleteOnExit();
+		BinaryMovementConverter.convert(inFile.getAbsolutePath(),
+				binFile.getAbsolutePath());
+		assertTrue(BinaryMovementReader.isBinaryTrace(
+				binFile.getAbsolutePath()));
+		return new BinaryMovementReader(binFile.getAbsolutePath());
+	}
+	
+	private void checkSamples(BinaryMovementReader br, int[] nodeIds, 
+			double[] x, double[] y, Coord[] coords) {
+		for (int i=0; i<ids.length; i++) {
+			assertEquals(ids[i], br.getId(nodeIds[i]));
+			assertEquals(coords[i], new Coord(x[i], y[i]));
+		}
+	}
+
 	private void checkTuples(List<Tuple<String, Coord>> list, String[] ids,
 			Coord[] coords) {
 		
@@ -4,6 +4,8 @@
  */
 package test;
 
+import input.BinaryMovementConverter;
+
 import java.io.File;
 import java.io.PrintWriter;
 
@@ -49,6 +51,11 @@ public class ExternalMovementTest extends TestCase {
 	private SimClock clock;
 	
 	protected void setUpUsing(String[] input) throws Exception {
+		setUpUsing(input, false, null);
+	}
+	
+	protected void setUpUsing(String[] input, boolean binary, 
+			String startTime) throws Exception {
 		super.setUp();
 		ExternalMovement.reset();
 		TestSettings ts = new TestSettings();
@@ -64,6 +71,18 @@ public class ExternalMovementTest extends TestCase {
 		
 		pw.close();
 		
+		if (binary) {
+			File binFile = File.createTempFile("eMovementTest", ".bin");
+			binFile.deleteOnExit();
+			BinaryMovementConverter.convert(outFile.getAbsolutePath(),
+					binFile.getAbsolutePath());
+			outFile = binFile;
+		}
+		if (startTime != null) {
+			ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
+					ExternalMovement.START_TIME_S, startTime);
+		}
+		
 		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
 				ExternalMovement.MOVEMENT_FILE_S, outFile.getAbsolutePath());
 		
@@ -80,13 +99,35 @@ public class ExternalMovementTest extends TestCase {
 	
 	public void testMovement() throws Exception {
 		setUpUsing(INPUT);
-
+		checkMovement(0);
+	}
+	
+	public void testBinaryMovement() throws Exception {
+		setUpUsing(INPUT, true, null);
+		checkMovement(0);
+	}
+	
+	public void testStartTime() throws Exception {
+		setUpUsing(INPUT, false, "20");
+		checkMovement(1);
+	}
+	
+	public void testBinaryStartTime() throws Exception {
+		setUpUsing(INPUT, true, "15");
+		checkMovement(1);
+	}
+	
+	/**
+	 * Checks that h1 and h2 move according to the input data
+	 * @param first Index of the first expected coordinate
+	 */
+	private void checkMovement(int first) {
 		// h3 should not get any fancy coordinates
 		assertEquals(c0, h3.getLocation());
 		assertFalse(h3.isActive());
 		
 		// test that h1 and h2 move according to input data
-		for (int i=0; i<INPUT_COORDS.length; i++) {
+		for (int i=first; i<INPUT_COORDS[0].length; i++) {
 			assertEquals((i+1) + ". coord of h1",
 					INPUT_COORDS[0][i], h1.getLocation());
 			assertEquals((i+1) + ". coord of h2",
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.LoopbackGateway;
+import input.MessageCreateEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import junit.framework.TestCase;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the loopback gateway using local stand-in clients
+ */
+public class LoopbackGatewayTest extends TestCase {
+	private static final int NROF_HOSTS = 3;
+	private static final int TIMEOUT = 5000;
+
+	private LoopbackGateway gateway;
+	private TestUtils utils;
+	private DTNHost[] hosts;
+
+	private Socket socket;
+	private BufferedReader in;
+	private PrintWriter out;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		utils = new TestUtils(null, null, new TestSettings());
+		hosts = new DTNHost[NROF_HOSTS];
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts[i] = utils.createHost();
+		}
+
+		gateway = new LoopbackGateway(0, NROF_HOSTS);
+		gateway.start();
+
+		socket = new Socket(InetAddress.getLoopbackAddress(),
+				gateway.getPort());
+		socket.setSoTimeout(TIMEOUT);
+		in = new BufferedReader(new InputStreamReader(
+				socket.getInputStream(), "US-ASCII"));
+		out = new PrintWriter(socket.getOutputStream(), true);
+	}
+
+	protected void tearDown() throws Exception {
+		socket.close();
+		gateway.close();
+		super.tearDown();
+	}
+
+	private String command(String line) throws IOException {
+		out.println(line);
+		return in.readLine();
+	}
+
+	/**
+	 * Waits until the gateway has queued an event for the simulation
+	 */
+	private ExternalEvent nextEvent() throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (gateway.nextEventsTime() == Double.MAX_VALUE) {
+			assertTrue("No event", System.currentTimeMillis() < end);
+			Thread.sleep(1);
+		}
+		return gateway.nextEvent();
+	}
+
+	public void testSendOverTcp() throws Exception {
+		assertEquals(Double.MAX_VALUE, gateway.nextEventsTime());
+
+		SimClock.getInstance().setTime(42);
+		assertEquals("OK SEND m1", command("SEND 0 2 m1 100"));
+		ExternalEvent e = nextEvent();
+		assertTrue(e instanceof MessageCreateEvent);
+		assertEquals(42.0, e.getTime());
+		assertEquals(Double.MAX_VALUE, gateway.nextEventsTime());
+	}
+
+	public void testInvalidCommands() throws Exception {
+		assertTrue(command("SEND 0 5 m1 100").startsWith("ERROR"));
+		assertTrue(command("SEND 0 0 m1 100").startsWith("ERROR"));
+		assertTrue(command("SEND 0 1 m1 x").startsWith("ERROR"));
+		assertTrue(command("FOO").startsWith("ERROR"));
+		assertEquals("OK SEND m1", command("SEND 0 1 m1 100"));
+		assertTrue(command("SEND 0 1 m1 100").startsWith("ERROR"));
+		nextEvent();
+		assertEquals(Double.MAX_VALUE, gateway.nextEventsTime());
+	}
+
+	public void testDeliveryOverTcp() throws Exception {
+		assertEquals("OK REGISTER 2", command("REGISTER 2"));
+
+		Message m = new Message(hosts[0], hosts[2], "m1", 100);
+		gateway.messageTransferred(m, hosts[1], hosts[2], false);
+		gateway.messageTransferred(m, hosts[0], hosts[1], true);
+		SimClock.getInstance().setTime(10);
+		gateway.messageTransferred(m, hosts[1], hosts[2], true);
+
+		assertEquals("DELIVERED m1 0 2 10.0", in.readLine());
+	}
+
+	public void testUdp() throws Exception {
+		DatagramSocket udp = new DatagramSocket(0,
+				InetAddress.getLoopbackAddress());
+		udp.setSoTimeout(TIMEOUT);
+		try {
+			sendDatagram(udp, "REGISTER 1");
+			assertEquals("OK REGISTER 1", receiveDatagram(udp));
+			sendDatagram(udp, "SEND 2 1 u1 50");
+			assertEquals("OK SEND u1", receiveDatagram(udp));
+			assertTrue(nextEvent() instanceof MessageCreateEvent);
+
+			Message m = new Message(hosts[2], hosts[1], "u1", 50);
+			gateway.messageTransferred(m, hosts[2], hosts[1], true);
+			assertEquals("DELIVERED u1 2 1 0.0", receiveDatagram(udp));
+		} finally {
+			udp.close();
+		}
+	}
+
+	private void sendDatagram(DatagramSocket udp, String line)
+			throws IOException {
+		byte[] data = line.getBytes("US-ASCII");
+		udp.send(new DatagramPacket(data, data.length,
+				InetAddress.getLoopbackAddress(), gateway.getPort()));
+	}
+
+	private String receiveDatagram(DatagramSocket udp) throws IOException {
+		byte[] data = new byte[1024];
+		DatagramPacket p = new DatagramPacket(data, data.length);
+		udp.receive(p);
+		return new String(data, 0, p.getLength(), "US-ASCII");
+	}
+}
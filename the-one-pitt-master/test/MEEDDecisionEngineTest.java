@@ -0,0 +1,83 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import routing.DecisionEngineRouter;
+import routing.MessageRouter;
+import routing.decisionengine.MEEDDecisionEngine;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the MEED decision engine
+ */
+public class MEEDDecisionEngineTest extends AbstractRouterTest {
+	private static final double DELTA = 0.0001;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.MSG_TTL_S, "300");
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." + 
+				DecisionEngineRouter.ENGINE_SETTING, 
+				"decisionengine.MEEDDecisionEngine");
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." + 
+				DecisionEngineRouter.CONNECTION_EVENTS_SETTING, "true");
+		setRouterProto(new DecisionEngineRouter(ts));
+		super.setUp();
+	}
+
+	public void testExpectedDelays() {
+		contact(h1, h2, 100, 110);
+		contact(h2, h3, 200, 210);
+		clock.setTime(300);
+		h1.forceConnection(h2, null, true);
+
+		/* h1-h2 is up (no delay) and h2-h3 waiting time is 
+		 * 200^2 / (2 * 210) */
+		double h2h3 = 200.0 * 200 / (2 * 210);
+		assertEquals(h2h3, engine(h1).getExpectedDelay(h3), DELTA);
+		assertEquals(0.0, engine(h1).getExpectedDelay(h2), DELTA);
+		assertTrue(Double.isInfinite(engine(h1).getExpectedDelay(h4)));
+
+		Message m = new Message(h1, h3, msgId1, 1);
+		assertTrue(engine(h1).shouldSendMessageToHost(m, h2));
+		Message m2 = new Message(h1, h4, msgId2, 1);
+		assertFalse(engine(h1).shouldSendMessageToHost(m2, h2));
+
+		/* when the link goes down, its waiting time is
+		 * (100^2 + 190^2) / (2 * 310) */
+		clock.setTime(310);
+		h1.forceConnection(h2, null, false);
+		double h1h2 = (100.0 * 100 + 190 * 190) / (2 * 310);
+		assertEquals(h1h2, engine(h1).getExpectedDelay(h2), DELTA);
+		assertEquals(h1h2 + h2h3, engine(h1).getExpectedDelay(h3), DELTA);
+	}
+
+	public void testShorterPathIsFound() {
+		contact(h1, h2, 100, 110);
+		contact(h2, h3, 200, 210);
+		contact(h1, h2, 300, 310);
+		double viaH2 = engine(h1).getExpectedDelay(h3);
+
+		/* a direct contact gives a shorter path than the one through h2 */
+		contact(h1, h3, 320, 400);
+		double direct = 320.0 * 320 / (2 * 400);
+		assertTrue(direct < viaH2);
+		assertEquals(direct, engine(h1).getExpectedDelay(h3), DELTA);
+	}
+
+	private void contact(DTNHost a, DTNHost b, double start, double end) {
+		clock.setTime(start);
+		a.forceConnection(b, null, true);
+		clock.setTime(end);
+		a.forceConnection(b, null, false);
+	}
+
+	private MEEDDecisionEngine engine(DTNHost h) {
+		return (MEEDDecisionEngine)
+			((DecisionEngineRouter)h.getRouter()).getDecisionEngine();
+	}
+}
@@ -60,5 +60,39 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testReplicatePropertiesAreIndependent() {
+		msg.addProperty("foo", "value1");
+		Message rep = msg.replicate();
+		
+		rep.updateProperty("foo", "value2");
+		rep.addProperty("bar", "value3");
+		assertEquals("value1", msg.getProperty("foo"));
+		assertNull(msg.getProperty("bar"));
+		
+		msg.updateProperty("foo", "value4");
+		assertEquals("value2", rep.getProperty("foo"));
+	}
+	
+	@Test
+	public void testReplicateHops() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost h1 = utils.createHost();
+		DTNHost h2 = utils.createHost();
+		DTNHost h3 = utils.createHost();
+		Message m = new Message(h1, h3, "M2", 100);
+		m.addNodeOnPath(h2);
+		
+		Message rep = m.replicate();
+		rep.addNodeOnPath(h3);
+		
+		assertEquals(1, m.getHopCount());
+		assertEquals(2, m.getHops().size());
+		assertEquals(2, rep.getHopCount());
+		assertEquals(h1, rep.getHops().get(0));
+		assertEquals(h2, rep.getHops().get(1));
+		assertEquals(h3, rep.getHops().get(2));
+	}
+
 
 }
@@ -11,6 +11,8 @@ import org.junit.Test;
 
 import core.ModuleCommunicationBus;
 import core.ModuleCommunicationListener;
+import core.ModuleCommunicationSlotListener;
+import core.SimError;
 
 public class ModuleCommunicationBusTest extends TestCase {
 
@@ -103,4 +105,98 @@ public class ModuleCommunicationBusTest extends TestCase {
 		assertEquals(-16.7, b.getDouble(key, -1.0));
 	}	
 
+	@Test
+	public void testSlotValues() {
+		ModuleCommunicationBus.Key dKey = 
+			ModuleCommunicationBus.registerDouble("slottst.double");
+		ModuleCommunicationBus.Key iKey = 
+			ModuleCommunicationBus.registerInt("slottst.int");
+		assertSame(dKey, ModuleCommunicationBus.registerDouble(
+				"slottst.double"));
+		
+		assertFalse(b.hasValue(dKey));
+		assertEquals(-1.0, b.getDouble(dKey, -1.0));
+		b.setDouble(dKey, 15.5);
+		assertEquals(16.5, b.updateDouble(dKey, 1.0));
+		assertEquals(16.5, b.getDouble(dKey, -1.0));
+		
+		b.setInt(iKey, 3);
+		assertEquals(3, b.getInt(iKey, -1));
+		
+		/* string-keyed access to the same values */
+		assertEquals(16.5, b.getProperty("slottst.double"));
+		assertEquals(3, b.getProperty("slottst.int"));
+		b.updateProperty("slottst.int", 5);
+		assertEquals(5, b.getInt(iKey, -1));
+		
+		try {
+			b.setInt(dKey, 1);
+			fail("Int value was set for a double key");
+		} catch (SimError e) {
+			// should happen
+		}
+		try {
+			ModuleCommunicationBus.registerInt("slottst.double");
+			fail("Key was registered for two types");
+		} catch (SimError e) {
+			// should happen
+		}
+	}
+	
+	@Test
+	public void testValueStoredBeforeRegistration() {
+		b.addProperty("slottst.early", 2.5);
+		ModuleCommunicationBus other = new ModuleCommunicationBus();
+		other.addProperty("slottst.earlyInt", 7);
+		
+		ModuleCommunicationBus.Key key = 
+			ModuleCommunicationBus.registerDouble("slottst.early");
+		assertTrue(b.hasValue(key));
+		assertEquals(2.5, b.getDouble(key, -1.0));
+		assertEquals(2.5, b.getProperty("slottst.early"));
+		assertEquals(3.5, b.updateDouble("slottst.early", 1.0));
+		assertEquals(3.5, b.getDouble(key, -1.0));
+		try {
+			b.addProperty("slottst.early", 1.0);
+			fail("Value was added twice for the same key");
+		} catch (SimError e) {
+			// should happen
+		}
+		
+		/* the string-keyed getters move the value too */
+		ModuleCommunicationBus.registerInt("slottst.earlyInt");
+		assertEquals(7, other.getInt("slottst.earlyInt", -1));
+		assertEquals(7, other.getProperty("slottst.earlyInt"));
+	}
+	
+	@Test
+	public void testSlotSubscribe() {
+		final ModuleCommunicationBus.Key key = 
+			ModuleCommunicationBus.registerDouble("slottst.sub");
+		final double[] notified = {-1};
+		ModuleCommunicationSlotListener l = 
+			new ModuleCommunicationSlotListener() {
+			public void moduleSlotChanged(ModuleCommunicationBus.Key k,
+					double newValue) {
+				assertSame(key, k);
+				notified[0] = newValue;
+			}
+		};
+		
+		b.subscribe(key, l);
+		b.subscribe("slottst.sub", mcl);
+		b.setDouble(key, 2.0);
+		assertEquals(2.0, notified[0]);
+		assertEquals("slottst.sub", notifyKey);
+		assertEquals(2.0, notifyValue);
+		
+		b.updateProperty("slottst.sub", 4.0);
+		assertEquals(4.0, notified[0]);
+		
+		b.unsubscribe(key, l);
+		b.setDouble(key, 6.0);
+		assertEquals(4.0, notified[0]);
+		assertEquals(6.0, notifyValue);
+	}
+
 }
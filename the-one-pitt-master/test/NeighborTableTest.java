@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.vr.NeighborTable;
+import core.Coord;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Tests for the expiration of the VR routers' neighbor table
+ */
+public class NeighborTableTest extends TestCase {
+	private static final int INTERVAL = 10;
+	private TestUtils utils;
+	private SimClock clock;
+	private NeighborTable table;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		this.clock = SimClock.getInstance();
+		this.utils = new TestUtils(null, null, new TestSettings());
+		this.table = new NeighborTable(INTERVAL);
+	}
+
+	public void testExpire() {
+		DTNHost a = utils.createHost(new Coord(0, 0));
+		DTNHost b = utils.createHost(new Coord(0, 0));
+
+		table.put(a, new Coord(1, 1), 0);
+		clock.setTime(5);
+		table.put(b, new Coord(2, 2), 5);
+
+		clock.setTime(11);
+		table.expire(11);
+		assertFalse(table.containsKey(a));
+		assertTrue(table.containsKey(b));
+		assertEquals(1, table.size());
+
+		table.expire(16);
+		assertEquals(0, table.size());
+	}
+
+	public void testRefreshedEntryExpiresInOrder() {
+		DTNHost a = utils.createHost(new Coord(0, 0));
+		DTNHost c = utils.createHost(new Coord(0, 0));
+
+		table.put(a, new Coord(1, 1), 0); // expires at 10
+		clock.setTime(2);
+		table.refresh(a, new Coord(1, 2), 2); // expires at 12
+		clock.setTime(5);
+		table.put(c, new Coord(3, 3), 5); // expires at 15
+
+		clock.setTime(11);
+		table.expire(11); // a is queued again with its refreshed expiration
+		assertTrue(table.containsKey(a));
+		assertEquals(new Coord(1, 2), table.get(a).getLocation());
+
+		clock.setTime(13);
+		table.expire(13); // a expires before c even though it was requeued
+		assertFalse(table.containsKey(a));
+		assertTrue(table.containsKey(c));
+	}
+}
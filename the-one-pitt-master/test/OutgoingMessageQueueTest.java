@@ -0,0 +1,130 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.MessagePrioritizer;
+import routing.OutgoingMessageQueue;
+import core.CBRConnection;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the OutgoingMessageQueue class
+ */
+public class OutgoingMessageQueueTest extends TestCase {
+	private TestUtils utils;
+	private DTNHost h0, h1, h2;
+	private Connection c1, c2;
+	private Message m1, m2, m3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.utils = new TestUtils(null, null, new TestSettings());
+		h0 = utils.createHost();
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+		c1 = new CBRConnection(h0, h0.getInterfaces().get(0), 
+				h1, h1.getInterfaces().get(0), 1);
+		c2 = new CBRConnection(h0, h0.getInterfaces().get(0), 
+				h2, h2.getInterfaces().get(0), 1);
+		m1 = new Message(h0, h2, "M1", 10);
+		m2 = new Message(h0, h2, "M2", 10);
+		m3 = new Message(h0, h1, "M3", 10);
+	}
+
+	public void testFifoOrder() {
+		OutgoingMessageQueue q = new OutgoingMessageQueue(null);
+		assertTrue(q.add(m2, c1, h1));
+		assertTrue(q.add(m1, c1, h1));
+		assertFalse(q.add(m2, c1, h1)); // already queued
+		assertTrue(q.add(m3, c2, h2));
+
+		List<Message> msgs = messages(q, c1);
+		assertEquals(2, msgs.size());
+		assertEquals(m2, msgs.get(0));
+		assertEquals(m1, msgs.get(1));
+		assertEquals(3, q.size());
+	}
+
+	public void testRemovals() {
+		OutgoingMessageQueue q = new OutgoingMessageQueue(null);
+		q.add(m1, c1, h1);
+		q.add(m1, c2, h2);
+		q.add(m2, c1, h1);
+		q.add(m3, c2, h2);
+
+		q.remove("M1", c1);
+		assertFalse(q.contains("M1", c1));
+		assertTrue(q.contains("M1", c2));
+		assertEquals(3, q.size());
+
+		q.removeMessage("M1");
+		assertFalse(q.contains("M1", c2));
+		assertEquals(2, q.size());
+
+		q.removeConnection(c2);
+		assertFalse(q.contains("M3", c2));
+		assertEquals(0, messages(q, c2).size());
+		assertEquals(1, q.size());
+
+		q.removeMessage("M2");
+		assertTrue(q.isEmpty());
+	}
+
+	public void testPriorityOrder() {
+		OutgoingMessageQueue q = new OutgoingMessageQueue(
+			new MessagePrioritizer() {
+				public double getMessagePriority(Message m, DTNHost other) {
+					return m.getTo() == other ? 1 : 0;
+				}
+			});
+		q.add(m1, c1, h1);
+		q.add(m2, c1, h1);
+		q.add(m3, c1, h1); // to h1 -> higher priority
+
+		List<Message> msgs = messages(q, c1);
+		assertEquals(m3, msgs.get(0));
+		assertEquals(m1, msgs.get(1));
+		assertEquals(m2, msgs.get(2));
+	}
+
+	public void testIterator() {
+		OutgoingMessageQueue q = new OutgoingMessageQueue(null);
+		q.add(m1, c1, h1);
+		q.add(m2, c1, h1);
+		q.add(m3, c1, h1);
+		q.add(m2, c2, h2);
+
+		Iterator<Message> i = q.iterator(c1);
+		assertEquals(m1, i.next());
+		i.remove();
+		q.removeMessage("M2"); // modified while iterating
+		assertTrue(i.hasNext());
+		assertEquals(m3, i.next());
+		assertFalse(i.hasNext());
+
+		assertFalse(q.contains("M1", c1));
+		assertFalse(q.contains("M2", c2));
+		assertEquals(1, q.size());
+		assertFalse(q.iterator(c2).hasNext());
+	}
+
+	/**
+	 * Returns the messages queued for a connection in the queue order
+	 */
+	private List<Message> messages(OutgoingMessageQueue q, Connection con) {
+		List<Message> msgs = new ArrayList<Message>();
+		for (Iterator<Message> i = q.iterator(con); i.hasNext();) {
+			msgs.add(i.next());
+		}
+		return msgs;
+	}
+}
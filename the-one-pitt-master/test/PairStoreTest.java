@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.PairStore;
+
+/**
+ * Tests for the sparse host pair store of the reports
+ */
+public class PairStoreTest extends TestCase {
+	private PairStore store;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		store = new PairStore();
+	}
+
+	public void testKeys() {
+		assertEquals(PairStore.key(3, 7), PairStore.key(7, 3));
+		assertFalse(PairStore.orderedKey(3, 7) == PairStore.orderedKey(7, 3));
+		long key = PairStore.orderedKey(7, 3);
+		assertEquals(7, PairStore.first(key));
+		assertEquals(3, PairStore.second(key));
+		assertEquals(3, PairStore.first(PairStore.key(7, 3)));
+	}
+
+	public void testPutGetAdd() {
+		long key = PairStore.key(1, 2);
+		assertFalse(store.containsKey(key));
+		assertEquals(-1.0, store.get(key, -1));
+
+		assertEquals(1.0, store.add(key, 1));
+		assertEquals(3.0, store.add(key, 2));
+		store.put(PairStore.key(2, 5), 0.5);
+
+		assertEquals(2, store.size());
+		assertEquals(3.0, store.get(key, -1));
+		assertEquals(0.5, store.get(PairStore.key(5, 2), -1));
+		assertEquals(3.0, store.remove(key, -1));
+		assertEquals(-1.0, store.remove(key, -1));
+		assertEquals(1, store.size());
+	}
+
+	public void testAgainstMap() {
+		Random rng = new Random(42);
+		Map<Long, Double> expected = new HashMap<Long, Double>();
+
+		for (int i=0; i<20000; i++) {
+			long key = PairStore.key(rng.nextInt(100), rng.nextInt(100));
+			if (rng.nextInt(3) == 0) {
+				Double removed = expected.remove(key);
+				assertEquals(removed != null ? removed : -1.0,
+						store.remove(key, -1));
+			}
+			else {
+				expected.put(key, (double)i);
+				store.put(key, i);
+			}
+		}
+
+		assertEquals(expected.size(), store.size());
+		int used = 0;
+		for (int i=0; i<store.capacity(); i++) {
+			if (store.isUsed(i)) {
+				used++;
+				assertEquals(expected.get(store.keyAt(i)), store.valueAt(i));
+			}
+		}
+		assertEquals(expected.size(), used);
+	}
+}
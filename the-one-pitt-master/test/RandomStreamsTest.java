@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.AliasSampler;
+import core.RandomStreams;
+import core.SimError;
+import core.SplitMixRandom;
+
+/**
+ * Tests for the random number streams and the alias sampler
+ */
+public class RandomStreamsTest extends TestCase {
+	private static final int TOTAL = 100000;
+	private static final double DELTA = 0.01;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		new TestSettings();
+		RandomStreams.setRootSeed(0);
+	}
+
+	public void testSameStreamSameValues() {
+		Random r1 = RandomStreams.getStream("test", 5);
+		RandomStreams.getStream("other", 5).nextDouble();
+		Random r2 = RandomStreams.getStream("test", 5);
+		for (int i=0; i<100; i++) {
+			assertEquals(r1.nextLong(), r2.nextLong());
+		}
+	}
+
+	public void testDifferentStreams() {
+		long a = RandomStreams.getStream("test", 1).nextLong();
+		assertFalse(a == RandomStreams.getStream("test", 2).nextLong());
+		assertFalse(a == RandomStreams.getStream("test2", 1).nextLong());
+
+		RandomStreams.setRootSeed(1);
+		assertFalse(a == RandomStreams.getStream("test", 1).nextLong());
+	}
+
+	public void testSplitMixRandom() {
+		SplitMixRandom r = new SplitMixRandom(42);
+		SplitMixRandom r2 = new SplitMixRandom(42);
+		double sum = 0;
+		for (int i=0; i<TOTAL; i++) {
+			double d = r.nextDouble();
+			assertEquals(d, r2.nextDouble());
+			assertTrue(d >= 0 && d < 1);
+			int n = r.nextInt(10);
+			r2.nextInt(10);
+			assertTrue(n >= 0 && n < 10);
+			sum += d;
+		}
+		assertEquals(0.5, sum / TOTAL, DELTA);
+
+		SplitMixRandom s = r.split();
+		assertFalse(s.nextLong() == r.nextLong());
+
+		r.setSeed(7);
+		r2.setSeed(7);
+		assertEquals(r.nextLong(), r2.nextLong());
+	}
+
+	public void testAliasSampler() {
+		double[] weights = {1, 0, 3, 0.5, 5.5};
+		AliasSampler sampler = new AliasSampler(weights);
+		assertEquals(weights.length, sampler.size());
+
+		int[] hits = new int[weights.length];
+		Random rng = new SplitMixRandom(1);
+		for (int i=0; i<TOTAL; i++) {
+			hits[sampler.sample(rng)]++;
+		}
+		assertEquals(0, hits[1]);
+		for (int i=0; i<weights.length; i++) {
+			assertEquals("Index " + i, weights[i] / 10,
+					hits[i] / (double)TOTAL, DELTA);
+		}
+	}
+
+	public void testAliasSamplerSingleIndex() {
+		AliasSampler sampler = new AliasSampler(new double[] {0, 2, 0});
+		Random rng = new Random(3);
+		for (int i=0; i<100; i++) {
+			assertEquals(1, sampler.sample(rng));
+		}
+	}
+
+	public void testInvalidWeights() {
+		try {
+			new AliasSampler(new double[] {0, 0});
+			fail("All zero weights were accepted");
+		} catch (SimError e) {
+			// expected
+		}
+		try {
+			new AliasSampler(new double[] {1, -1});
+			fail("Negative weight was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.RealTimePacer;
+
+/**
+ * Tests for the real-time pacing with a simulated wall clock
+ */
+public class RealTimePacerTest extends TestCase {
+	private static final long MS = 1000000;
+
+	private TestPacer pacer;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		pacer = new TestPacer(1.0, 0.05);
+	}
+
+	public void testSleepsUntilDeadline() {
+		pacer.pace(10.0); // starts the pacing
+		pacer.now += 200 * MS; // the update took 0.2s
+		pacer.pace(11.0);
+		assertEquals(800 * MS, pacer.slept);
+		assertEquals(1000 * MS, pacer.now);
+		assertEquals(0, pacer.getNrofMissedDeadlines());
+	}
+
+	public void testNoDriftFromOversleeping() {
+		pacer.start(0);
+		pacer.oversleep = 3 * MS;
+		for (int i=1; i<=100; i++) {
+			pacer.pace(i * 0.1);
+		}
+		/* every sleep is shortened by the previous oversleeping */
+		assertEquals(10000 * MS + 3 * MS, pacer.now);
+		assertEquals(0, pacer.getNrofMissedDeadlines());
+	}
+
+	public void testMissedDeadlines() {
+		pacer.start(0);
+		pacer.now += 1030 * MS; // late, but within the tolerance
+		pacer.pace(1.0);
+		assertEquals(0, pacer.getNrofMissedDeadlines());
+		assertEquals(0.03, pacer.getLag(), 0.0001);
+
+		pacer.now += 1200 * MS; // 0.23s behind
+		pacer.pace(2.0);
+		assertEquals(1, pacer.getNrofMissedDeadlines());
+		assertEquals(0.23, pacer.getMaxLag(), 0.0001);
+
+		/* catches up: the lag is taken from the next sleep */
+		pacer.now += 500 * MS;
+		pacer.pace(3.0);
+		assertEquals(270 * MS, pacer.slept);
+		assertEquals(1, pacer.getNrofMissedDeadlines());
+		assertEquals(3, pacer.getNrofUpdates());
+	}
+
+	public void testSpeed() {
+		TestPacer fast = new TestPacer(10.0, 0.05);
+		fast.start(0);
+		fast.pace(5.0);
+		assertEquals(500 * MS, fast.now);
+	}
+
+	/**
+	 * Pacer that uses a simulated clock
+	 */
+	private static class TestPacer extends RealTimePacer {
+		private long now = 0;
+		private long slept = 0;
+		private long oversleep = 0;
+
+		public TestPacer(double speed, double tolerance) {
+			super(speed, tolerance);
+		}
+
+		@Override
+		protected long nanoTime() {
+			return now;
+		}
+
+		@Override
+		protected void sleep(long nanos) {
+			slept += nanos;
+			now += nanos + oversleep;
+		}
+	}
+}
@@ -8,7 +8,9 @@ import java.io.File;
 import java.io.PrintWriter;
 
 import junit.framework.TestCase;
+import core.CompiledSettings;
 import core.Settings;
+import core.SettingsSweep;
 
 /**
  * Tests Settings class' different setting getting methods
@@ -216,4 +218,45 @@ public class SettingsTest extends TestCase {
 		assertEquals("[val1 ; val2;val3; val4 ]", s.getSetting(RS_S));
 	}
 
+	public void testAddSettingOverridesCompiled() {
+		assertEquals("1", s.getSetting("int"));
+		Settings.addSetting("int", "[2;3]");
+		assertEquals("2", s.getSetting("int"));
+		Settings.setRunIndex(1);
+		assertEquals("3", s.getSetting("int"));
+	}
+	
+	public void testCompiledSettings() {
+		CompiledSettings c = Settings.getCompiled(2);
+		assertSame(c, Settings.getCompiled(2));
+		assertEquals(2, c.getRunIndex());
+		assertEquals("val3", c.getResolved(RS_S));
+		assertEquals("1,2", c.getResolved(CSV_RS_S));
+		assertEquals("[val1 ; val2", c.getResolved(IRS_S));
+		assertNull(c.getResolved("no.such.setting"));
+		
+		Settings.addSetting(RS_S, "val");
+		assertNotSame(c, Settings.getCompiled(2));
+		assertEquals("val3", c.getResolved(RS_S)); // compiled is immutable
+	}
+	
+	public void testSweep() {
+		SettingsSweep sweep = new SettingsSweep();
+		assertEquals(4, sweep.getNrofRuns()); // lcm(4, 2, 4)
+		assertEquals(3, sweep.getSettingNames().size());
+		assertEquals("val2", sweep.getValue(1, RS_S));
+		assertEquals("3,4", sweep.getValue(3, CSV_RS_S));
+		assertEquals("2", sweep.getValue(2, "Ns.runSetting"));
+		assertNull(sweep.getValue(0, "int"));
+		assertEquals("val4", sweep.getRun(3).get(RS_S));
+		
+		for (int i = 0; i < sweep.getNrofRuns(); i++) {
+			Settings.setRunIndex(i);
+			for (String name : sweep.getSettingNames()) {
+				assertEquals(sweep.getValue(i, name), 
+						sweep.getSettings(i).getResolved(name));
+			}
+		}
+	}
+
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.APInterface;
+import interfaces.ConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import core.Connection;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SharedMedium;
+import core.SimScenario;
+
+/**
+ * Tests for the shared medium and its connections
+ */
+public class SharedMediumTest extends TestCase {
+	private static final String AP_NS = "apTestInterface";
+	private TestSettings ts;
+	private TestUtils utils;
+	private SharedMedium medium;
+	private int ups;
+	private int downs;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+		DTNHost.reset();
+		APInterface.reset();
+
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				ups++;
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				downs++;
+			}
+		});
+		utils = new TestUtils(cl, null, ts);
+		utils.setTransmitRange(10);
+		medium = new SharedMedium();
+		ups = 0;
+		downs = 0;
+	}
+
+	private NetworkInterface createInterface(Coord loc) {
+		return utils.createHost(loc).getInterfaces().get(0);
+	}
+
+	public void testJoinAndLeave() {
+		NetworkInterface gw = createInterface(new Coord(0, 0));
+		NetworkInterface a = createInterface(new Coord(0, 0));
+		NetworkInterface b = createInterface(new Coord(0, 0));
+		NetworkInterface c = createInterface(new Coord(0, 0));
+
+		medium.join(a, null);
+		medium.join(b, gw);
+		assertEquals(1, ups);
+		medium.join(c, gw); // members of the same gateway aren't peers
+		assertEquals(2, ups);
+
+		assertEquals(2, medium.getNrofPeers(a));
+		assertEquals(1, medium.getNrofPeers(b));
+		assertTrue(medium.isConnected(a, c));
+		assertFalse(medium.isConnected(b, c));
+		assertEquals(2, a.getConnections().size());
+		assertEquals(1, c.connectionCount());
+		assertEquals(a, medium.getPeer(c, 0));
+
+		medium.leave(b);
+		assertEquals(1, downs);
+		assertFalse(medium.isMember(b));
+		assertEquals(0, b.getConnections().size());
+		assertEquals(1, medium.getNrofPeers(a));
+		assertEquals(c, medium.getPeer(a, 0));
+		assertEquals(1, medium.getNrofMembers(gw));
+		assertEquals(c, medium.getMember(gw, 0));
+
+		medium.leave(b); // not a member anymore
+		assertEquals(1, downs);
+		medium.leave(a);
+		assertEquals(2, downs);
+		assertEquals(0, medium.getNrofPeers(c));
+	}
+
+	public void testConnectionIdentity() {
+		NetworkInterface a = createInterface(new Coord(0, 0));
+		NetworkInterface b = createInterface(new Coord(0, 0));
+		NetworkInterface c = createInterface(new Coord(0, 0));
+		medium.join(a, null);
+		medium.join(b, null);
+		medium.join(c, null);
+
+		Connection ab = a.getConnections().get(0);
+		assertSame(ab, medium.getConnection(a, 0));
+		assertSame(ab, b.getConnections().get(0));
+		assertSame(ab, a.getConnections().get(0));
+		assertSame(a.getConnections().get(1), c.getConnections().get(0));
+		assertNotSame(ab, a.getConnections().get(1));
+		assertTrue(ab.isUp());
+
+		/* the last member moves to the index of the one leaving */
+		medium.leave(a);
+		assertFalse(ab.isUp());
+		assertEquals(1, b.getConnections().size());
+		Connection bc = b.getConnections().get(0);
+		assertSame(bc, c.getConnections().get(0));
+		assertFalse(bc.equals(ab));
+
+		medium.join(a, null);
+		Connection ab2 = medium.getConnection(b, 1);
+		assertEquals(a, ab2.getOtherInterface(b));
+		assertSame(ab2, medium.getConnection(a, 1));
+		assertTrue(ab2.isUp());
+		assertFalse(ab2.equals(ab)); // a new membership of the same pair
+		assertSame(bc, b.getConnections().get(0));
+	}
+
+	public void testRangeAndActivenessExits() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.NROF_INTERF_S,
+				"1");
+		ts.putSetting(SimScenario.GROUP_NS + "." +
+				SimScenario.INTERFACENAME_S + "1", "Default");
+		ts.putSetting(AP_NS + "." + NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(AP_NS + "." + NetworkInterface.TRANSMIT_SPEED_S, "1");
+
+		MessageRouter router = new PassiveRouter(ts);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new APInterface(new TestSettings(AP_NS)));
+		NetworkInterface ap1 = new DTNHost(null, null, "ap", li,
+				new ModuleCommunicationBus(), new StationaryMovement(
+						new Coord(0, 0)), router).getInterfaces().get(0);
+		NetworkInterface ap2 = new DTNHost(null, null, "ap", li,
+				new ModuleCommunicationBus(), new StationaryMovement(
+						new Coord(100, 0)), router).getInterfaces().get(0);
+
+		/* the hosts' interfaces are added to the grid at (0,0) */
+		ConnectivityGrid grid = ConnectivityGrid.ConnectivityGridFactory(
+				"Default".hashCode(), 10);
+		DTNHost h1 = utils.createHost(new Coord(5, 0));
+		DTNHost h2 = utils.createHost(new Coord(105, 0));
+		SwitchableInterface h3 = new SwitchableInterface();
+		List<NetworkInterface> li3 = new ArrayList<NetworkInterface>();
+		li3.add(h3);
+		h3 = (SwitchableInterface)new DTNHost(null, null, "h", li3,
+				new ModuleCommunicationBus(), new StationaryMovement(
+						new Coord(95, 0)), router).getInterfaces().get(0);
+		for (NetworkInterface ni : new NetworkInterface[] {
+				h1.getInterfaces().get(0), h2.getInterfaces().get(0), h3}) {
+			grid.updateLocation(ni);
+		}
+		ap1.update();
+		ap2.update();
+
+		NetworkInterface i1 = h1.getInterfaces().get(0);
+		assertEquals(2, i1.getConnections().size());
+		assertEquals(1, h2.getInterfaces().get(0).getConnections().size());
+
+		h3.active = false;
+		ap2.update();
+		assertEquals(0, h3.getConnections().size());
+		assertEquals(1, i1.getConnections().size());
+		assertEquals(h2, i1.getConnections().get(0).getOtherNode(h1));
+
+		h1.setLocation(new Coord(20, 0)); // out of the AP's range
+		grid.updateLocation(i1);
+		ap1.update();
+		assertEquals(0, i1.getConnections().size());
+		assertEquals(0, h2.getInterfaces().get(0).getConnections().size());
+
+		h3.active = true;
+		h1.setLocation(new Coord(5, 0));
+		grid.updateLocation(i1);
+		ap1.update();
+		ap2.update();
+		assertEquals(2, i1.getConnections().size());
+	}
+
+	/**
+	 * Test interface whose activeness can be switched off
+	 */
+	private static class SwitchableInterface extends TestInterface {
+		private boolean active = true;
+
+		public SwitchableInterface() {
+			super(10, 1);
+		}
+
+		public SwitchableInterface(SwitchableInterface ni) {
+			super(ni);
+		}
+
+		@Override
+		public NetworkInterface replicate() {
+			return new SwitchableInterface(this);
+		}
+
+		@Override
+		public boolean isActive() {
+			return active;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Tests for the SimpleBroadcastInterface and the deferring of its contact
+ * checks
+ */
+public class SimpleBroadcastInterfaceTest extends TestCase {
+	private static final String INTERFACE_NS = "deferTestInterface";
+	private static final double RANGE = 10;
+	private static final double HOST_SPEED = 10;
+	private static final double UP_INTERVAL = 0.1;
+	private TestSettings ts;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		/* a scenario without hosts, for the update interval */
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.GROUP_ID_S,
+				"g");
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.NROF_HOSTS_S,
+				"0");
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.NROF_INTERF_S,
+				"0");
+		ts.putSetting(INTERFACE_NS + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + RANGE);
+		ts.putSetting(INTERFACE_NS + "." + NetworkInterface.TRANSMIT_SPEED_S,
+				"1");
+		SimScenario.reset();
+		assertEquals(UP_INTERVAL,
+				SimScenario.getInstance().getUpdateInterval());
+
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		ConnectivityGrid.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+	}
+
+	protected void tearDown() throws Exception {
+		DTNHost.setMaxSpeed(0);
+		SimScenario.reset();
+		super.tearDown();
+	}
+
+	private DTNHost createHost(MovementModel mm) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new CountingInterface(new Settings(INTERFACE_NS)));
+		return new DTNHost(null, null, "n", li, new ModuleCommunicationBus(),
+				mm, new PassiveRouter(ts));
+	}
+
+	/**
+	 * Runs hosts that pass each other and checks after every update that
+	 * the hosts are connected exactly when they are within range. The
+	 * stationary host is in the middle of a grid cell, so it is far enough
+	 * from the cells it doesn't check to defer its contact checks.
+	 * @return Number of updates where the contact check was deferred
+	 */
+	private int runPassingHosts() {
+		DTNHost still = createHost(new StationaryMovement(new Coord(5, 5)));
+		DTNHost passing = createHost(new PassMovement());
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(still);
+		hosts.add(passing);
+
+		int contacts = 0;
+		boolean wasConnected = false;
+		while (SimClock.getTime() < 60) {
+			for (DTNHost h : hosts) {
+				h.move(UP_INTERVAL);
+			}
+			clock.advance(UP_INTERVAL);
+			for (DTNHost h : hosts) {
+				h.update(true);
+			}
+
+			boolean inRange = still.getLocation().distance(
+					passing.getLocation()) <= RANGE;
+			boolean connected = still.getConnections().size() == 1;
+			assertEquals("Connection state at " + SimClock.getTime(),
+					inRange, connected);
+			if (connected && !wasConnected) {
+				contacts++;
+			}
+			wasConnected = connected;
+		}
+		assertEquals(5, contacts); // passes at 5, 18, 31, 44 and 57 s
+
+		int deferred = 0;
+		for (DTNHost h : hosts) {
+			deferred += ((CountingInterface)h.getInterfaces().get(0)).deferred;
+		}
+		return deferred;
+	}
+
+	public void testContactsWithoutDeferral() {
+		assertEquals(0, runPassingHosts());
+	}
+
+	public void testDeferredContacts() {
+		DTNHost.setMaxSpeed(HOST_SPEED);
+		assertTrue(runPassingHosts() > 0);
+	}
+
+	/**
+	 * Interface that counts the updates where its contact check is deferred
+	 */
+	private static class CountingInterface extends SimpleBroadcastInterface {
+		private int deferred;
+
+		public CountingInterface(Settings s) {
+			super(s);
+		}
+
+		public CountingInterface(CountingInterface ni) {
+			super(ni);
+		}
+
+		@Override
+		public NetworkInterface replicate() {
+			return new CountingInterface(this);
+		}
+
+		@Override
+		public void update() {
+			if (isContactCheckDeferred()) {
+				deferred++;
+			}
+			super.update();
+		}
+	}
+
+	/**
+	 * Movement model that goes back and forth between (55,5) and (-45,5)
+	 * with the speed {@link #HOST_SPEED} and waits 3 seconds at both ends
+	 */
+	private static class PassMovement extends MovementModel {
+		private Coord last = new Coord(55, 5);
+
+		@Override
+		public Coord getInitialLocation() {
+			return last.clone();
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(HOST_SPEED);
+			p.addWaypoint(last.clone());
+			last = new Coord(10 - last.getX(), 5);
+			p.addWaypoint(last.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + 3;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public PassMovement replicate() {
+			return new PassMovement();
+		}
+	}
+}
@@ -60,7 +60,7 @@ public class TestSettings extends core.Settings {
 				System.exit(-1);
 			}
 		}
-		props.put(key, value);
+		addSetting(key, value);
 	}	
 
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.vr.VirtualRegionIndex;
+import core.Coord;
+import core.DTNHost;
+
+/**
+ * Tests for the index of the virtual repository regions
+ */
+public class VirtualRegionIndexTest extends TestCase {
+	private static final int MAX_X = 1000;
+	private static final int MAX_Y = 500;
+	private static final int ORIGIN_X = 100;
+	private static final int ORIGIN_Y = 200;
+	private static final double RADIUS = 50;
+	private static final double A = (Math.sqrt(5.0) - 1)/2;
+
+	private VirtualRegionIndex index;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		index = new VirtualRegionIndex(MAX_X, MAX_Y, ORIGIN_X, ORIGIN_Y,
+				RADIUS);
+	}
+
+	/**
+	 * Returns true if any of the addresses' regions contains the location
+	 */
+	private boolean inAny(Coord loc, int nrofAddresses) {
+		for (int i=0; i<nrofAddresses; i++) {
+			if (index.isInRegion(loc, i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void testRegionAssignment() {
+		/* addresses past the initial capacity of the cache too */
+		for (int addr = 0; addr < 200; addr++) {
+			double x = MAX_X * (A * addr - Math.floor(A * addr)) + ORIGIN_X;
+			double y = MAX_Y * (A * (x+1) * addr -
+					Math.floor(A * (x+1) * addr)) + ORIGIN_Y;
+			assertEquals(x, index.getHomeX(addr));
+			assertEquals(y, index.getHomeY(addr));
+			assertTrue(x >= ORIGIN_X && x < ORIGIN_X + MAX_X);
+			assertTrue(y >= ORIGIN_Y && y < ORIGIN_Y + MAX_Y);
+		}
+
+		Coord home = index.getHome(7);
+		assertEquals(new Coord(index.getHomeX(7), index.getHomeY(7)), home);
+		home.translate(10, 10); // the caller's copy
+		assertEquals(home.getX() - 10, index.getHomeX(7));
+		assertTrue(index.isInRegion(index.getHome(7), 7));
+	}
+
+	public void testRegionBorders() {
+		double x = index.getHomeX(3);
+		double y = index.getHomeY(3);
+		assertTrue(index.isInRegion(new Coord(x + RADIUS - 0.01, y), 3));
+		assertFalse(index.isInRegion(new Coord(x + RADIUS, y), 3));
+		assertFalse(index.isInRegion(new Coord(x, y - RADIUS - 0.01), 3));
+		assertFalse(index.isInAnyRegion(new Coord(x, y)));
+
+		/* points just inside the region in every direction are found,
+		 * also when they are in the neighboring grid cells */
+		index.register(3);
+		index.register(3); // no effect
+		for (int i=0; i<16; i++) {
+			double a = i * Math.PI / 8;
+			double dx = Math.cos(a);
+			double dy = Math.sin(a);
+			assertTrue(index.isInAnyRegion(new Coord(
+					x + dx * (RADIUS - 0.01), y + dy * (RADIUS - 0.01))));
+			assertFalse(index.isInAnyRegion(new Coord(
+					x + dx * (RADIUS + 0.01), y + dy * (RADIUS + 0.01))));
+		}
+	}
+
+	public void testLookupMatchesAllRegions() {
+		int nrofAddresses = 100;
+		for (int i=0; i<nrofAddresses; i++) {
+			index.register(i);
+		}
+
+		/* also outside the area, where the grid cells are clamped */
+		for (double x = ORIGIN_X - 2*RADIUS; x <= ORIGIN_X + MAX_X + 2*RADIUS;
+				x += RADIUS / 4) {
+			for (double y = ORIGIN_Y - 2*RADIUS;
+					y <= ORIGIN_Y + MAX_Y + 2*RADIUS; y += RADIUS / 4) {
+				Coord c = new Coord(x, y);
+				assertEquals(c.toString(), inAny(c, nrofAddresses),
+						index.isInAnyRegion(c));
+			}
+		}
+	}
+
+	public void testHostMovingThroughRegions() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost.reset();
+		double x = index.getHomeX(5);
+		double y = index.getHomeY(5);
+		DTNHost host = utils.createHost(new Coord(x - 2*RADIUS, y));
+		index.register(5);
+
+		/* the host moves across the region of address 5 */
+		int inside = 0;
+		for (int step = -10; step <= 10; step++) {
+			double dx = step * RADIUS / 5;
+			host.setLocation(new Coord(x + dx, y));
+			boolean expected = Math.abs(dx) < RADIUS;
+			assertEquals(expected, index.isInRegion(host.getLocation(), 5));
+			assertEquals(expected, index.isInAnyRegion(host.getLocation()));
+			if (expected) {
+				inside++;
+			}
+		}
+		assertEquals(9, inside);
+
+		/* a region registered later is found at the host's location */
+		host.setLocation(index.getHome(40));
+		assertEquals(index.isInRegion(host.getLocation(), 5),
+				index.isInAnyRegion(host.getLocation()));
+		index.register(40);
+		assertTrue(index.isInAnyRegion(host.getLocation()));
+	}
+}
@@ -6,8 +6,12 @@ package test;
 
 import input.WKTReader;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.StringReader;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
 import core.Coord;
@@ -30,6 +34,9 @@ public class WKTPointReaderTest extends TestCase {
 			new Coord(2552782.3212060533, 6673285.5993876355)
 	};
 	
+	/** number of points in the large test file */
+	private static final int NROF_LARGE_POINTS = 20000;
+	
 	protected void setUp() throws Exception {
 		super.setUp();
 		r = new WKTReader();
@@ -45,4 +52,82 @@ public class WKTPointReaderTest extends TestCase {
 			assertEquals(coords.get(i), POINTS[i]);
 		}
 	}
+	
+	public void testNumberFormats() throws Exception {
+		String[] values = {"0", "-0", "12", "-12.5", "+3.25", ".5", "5.", 
+				"1e3", "1.5E-3", "-2.5e+10", "0.1", "0.30000000000000004",
+				"123456789012345678901234", "4.9e-324", "1.7976931348623157E308",
+				"2552448.388211649", "6673384.4020657055", "0.000001234"};
+		StringBuilder data = new StringBuilder();
+		for (String v : values) {
+			data.append("POINT (" + v + " " + v + ")\n");
+		}
+		
+		List<Coord> coords = r.readPoints(new StringReader(data.toString()));
+		
+		assertEquals(values.length, coords.size());
+		for (int i=0; i<values.length; i++) {
+			double expected = Double.parseDouble(values[i]);
+			assertEquals(values[i], Double.doubleToLongBits(expected),
+					Double.doubleToLongBits(coords.get(i).getX()));
+			assertEquals(values[i], Double.doubleToLongBits(expected),
+					Double.doubleToLongBits(coords.get(i).getY()));
+		}
+	}
+	
+	public void testExtraValuesAndWhitespace() throws Exception {
+		String data = "POINT(1.0 2.0)\r\n  POINT ( 3.0\t4.0 5.0 )\n\n" +
+			"MULTILINESTRING ((1 2, 3 4), (5 6, 7 8))\nPOINT (6 7)";
+		List<Coord> coords = r.readPoints(new StringReader(data));
+		
+		assertEquals(3, coords.size());
+		assertEquals(new Coord(1, 2), coords.get(0));
+		assertEquals(new Coord(3, 4), coords.get(1));
+		assertEquals(new Coord(6, 7), coords.get(2));
+	}
+	
+	public void testBadValue() {
+		try {
+			r.readPoints(new StringReader("POINT (1.0 x)"));
+			fail("Bad coordinate value was accepted");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+	
+	public void testLargeFile() throws Exception {
+		double[] xs = new double[NROF_LARGE_POINTS];
+		double[] ys = new double[NROF_LARGE_POINTS];
+		File wktFile = createLargePointFile(xs, ys);
+		
+		List<Coord> coords = r.readPoints(wktFile);
+		
+		assertEquals(NROF_LARGE_POINTS, coords.size());
+		for (int i=0; i<NROF_LARGE_POINTS; i++) {
+			assertEquals(new Coord(xs[i], ys[i]), coords.get(i));
+		}
+	}
+	
+	/**
+	 * Creates a temporary file with random points (see also 
+	 * {@link WKTReaderBenchmark})
+	 * @param xs Array where the x coordinates of the points are stored
+	 * @param ys Array where the y coordinates are stored
+	 * @return The file with as many points as the arrays have space for
+	 */
+	static File createLargePointFile(double[] xs, double[] ys) 
+			throws IOException {
+		File wktFile = File.createTempFile("WKTPointReaderTest","tmp");
+		wktFile.deleteOnExit();
+		PrintWriter pw = new PrintWriter(wktFile);
+		Random rng = new Random(1);
+		
+		for (int i=0; i<xs.length; i++) {
+			xs[i] = 2552000 + rng.nextDouble() * 1000;
+			ys[i] = 6673000 + rng.nextDouble() * 1000;
+			pw.println("POINT (" + xs[i] + " " + ys[i] + ")");
+		}
+		pw.close();
+		return wktFile;
+	}
 }
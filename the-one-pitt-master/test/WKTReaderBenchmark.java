@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WKTMapReader;
+import input.WKTReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Measures the read speed of the WKT point and map readers with large
+ * generated files. This is not a part of the test suite because the speed
+ * depends on the machine and its load; the correctness of the same reads is
+ * checked by {@link WKTPointReaderTest} and {@link WKTReaderTest}.
+ * <P>Usage: <code>java test.WKTReaderBenchmark [rounds]</code></P>
+ */
+public class WKTReaderBenchmark {
+	/** number of points in the point file */
+	private static final int NROF_POINTS = 200000;
+	/** number of map files and linestrings per file */
+	private static final int NROF_MAP_FILES = 4;
+	private static final int NROF_MAP_LINES = 20000;
+	/** default number of measured rounds (after one warm-up round) */
+	private static final int DEF_ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEF_ROUNDS;
+
+		File pointFile = WKTPointReaderTest.createLargePointFile(
+				new double[NROF_POINTS], new double[NROF_POINTS]);
+		List<File> mapFiles = WKTReaderTest.createLargeMapFiles(
+				NROF_MAP_FILES, NROF_MAP_LINES);
+		int nrofMapPoints = NROF_MAP_FILES * NROF_MAP_LINES * 3;
+
+		for (int i = 0; i <= rounds; i++) {
+			String round = i == 0 ? "warm-up" : "round " + i;
+
+			long start = System.nanoTime();
+			new WKTReader().readPoints(pointFile);
+			print(round, "points", NROF_POINTS, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			new WKTMapReader(true).addPaths(mapFiles, 1);
+			print(round, "map", nrofMapPoints, System.nanoTime() - start);
+		}
+	}
+
+	private static void print(String round, String what, int nrofPoints,
+			long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.printf("%s %s: %d points in %.3f s (%.0f points/s)%n",
+				round, what, nrofPoints, seconds, nrofPoints / seconds);
+	}
+}
@@ -12,8 +12,12 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import junit.framework.TestCase;
 import movement.map.MapNode;
@@ -56,6 +60,10 @@ public class WKTReaderTest extends TestCase {
 	private Coord n10c = new Coord(5,3);
 	private Coord n11c = new Coord(3,5);
 
+	/** number of files and linestrings per file in the large map tests */
+	private static final int NROF_LARGE_FILES = 4;
+	private static final int NROF_LARGE_LINES = 5000;
+
 	
 	private WKTMapReader setUpWith(Reader input) {
 		reader = new WKTMapReader(true);
@@ -237,6 +245,90 @@ public class WKTReaderTest extends TestCase {
 		assertFalse(map.getNodeByCoord(n11c).isType(2));
 	}
 	
+	public void testMultiLineStringMixed() {
+		String wkt = "MULTILINESTRING ((1 1, 2 1), ( 2 1 , 2 2 ))\n" +
+			"POINT (9 9) LINESTRING(2 2, 3 3 0)";
+		Map<Coord, MapNode> nh = setUpWith(new StringReader(wkt)).
+			getNodesHash();
+		
+		assertEquals(4, nh.size());
+		assertEquals(2, nh.get(new Coord(2,2)).getNeighbors().size());
+		assertNull(nh.get(new Coord(9,9)));
+	}
+	
+	public void testParallelFilesMatchSequential() throws Exception {
+		List<File> files = createLargeMapFiles(NROF_LARGE_FILES, 500);
+		
+		WKTMapReader sequential = new WKTMapReader(true);
+		for (int i = 0; i < files.size(); i++) {
+			sequential.addPaths(files.get(i), i + 1);
+		}
+		WKTMapReader parallel = new WKTMapReader(true);
+		parallel.addPaths(files, 1);
+		
+		assertSameNodes(sequential, parallel);
+	}
+	
+	public void testLargeMap() throws Exception {
+		List<File> files = createLargeMapFiles(NROF_LARGE_FILES, 
+				NROF_LARGE_LINES);
+		
+		WKTMapReader reader = new WKTMapReader(true);
+		reader.addPaths(files, 1);
+		
+		basicNodesTests(reader);
+	}
+	
+	/**
+	 * Creates map files with random 3-point linestrings whose points are 
+	 * on a grid (so the lines and files share nodes). See also
+	 * {@link WKTReaderBenchmark}.
+	 */
+	static List<File> createLargeMapFiles(int nrofFiles, int nrofLines) 
+			throws IOException {
+		List<File> files = new ArrayList<File>();
+		Random rng = new Random(nrofFiles * nrofLines);
+		
+		for (int i = 0; i < nrofFiles; i++) {
+			File wktFile = File.createTempFile("WKTReaderTest","tmp");
+			wktFile.deleteOnExit();
+			PrintWriter pw = new PrintWriter(wktFile);
+			for (int j = 0; j < nrofLines; j++) {
+				pw.print("LINESTRING (");
+				for (int k = 0; k < 3; k++) {
+					pw.print((k > 0 ? ", " : "") + 
+							(2552000 + rng.nextInt(300) * 1.25) + " " +
+							(6673000 + rng.nextInt(300) * 0.75));
+				}
+				pw.println(")");
+			}
+			pw.close();
+			files.add(wktFile);
+		}
+		
+		return files;
+	}
+	
+	private void assertSameNodes(WKTMapReader r1, WKTMapReader r2) {
+		Collection<MapNode> c1 = r1.getNodes();
+		Collection<MapNode> c2 = r2.getNodes();
+		assertEquals(c1.size(), c2.size());
+		
+		Iterator<MapNode> i2 = c2.iterator();
+		for (MapNode n1 : c1) {
+			MapNode n2 = i2.next();
+			assertEquals(n1.getLocation(), n2.getLocation());
+			assertEquals(n1.getNeighbors().size(), n2.getNeighbors().size());
+			for (int i = 0; i < n1.getNeighbors().size(); i++) {
+				assertEquals(n1.getNeighbors().get(i).getLocation(), 
+						n2.getNeighbors().get(i).getLocation());
+			}
+			for (int type = 1; type <= NROF_LARGE_FILES; type++) {
+				assertEquals(n1.isType(type), n2.isType(type));
+			}
+		}
+	}
+	
 	private void basicNodesTests(WKTMapReader reader) {
 		Collection<MapNode> col = reader.getNodes();
 		
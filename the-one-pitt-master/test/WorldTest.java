@@ -5,6 +5,7 @@
 package test;
 
 import input.EventQueue;
+import input.ExternalEvent;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +36,7 @@ public class WorldTest extends TestCase {
 	protected void setUp() throws Exception {
 		super.setUp();
 		SimClock.reset();
+		DTNHost.reset(); // host addresses must match their indexes
 				
 		this.eQueues = new ArrayList<EventQueue>();
 		this.testHosts = new ArrayList<TestDTNHost>();
@@ -49,6 +51,10 @@ public class WorldTest extends TestCase {
 			this.testHosts.add(new TestDTNHost(li, comBus));
 		}
 		
+		createWorld();
+	}
+
+	private void createWorld() {
 		TestScenario ts = new TestScenario();
 		this.world = new World(ts.getHosts(),ts.getWorldSizeX(), 
 				ts.getWorldSizeY(),ts.getUpdateInterval(), 
@@ -98,6 +104,81 @@ public class WorldTest extends TestCase {
 
 	}
 	
+	public void testNoEventBatching() {
+		createWorldWithEvents(World.BATCHING_NONE);
+		world.update();
+		assertNrofUpdates(4); // after each of the 3 events and the interval
+	}
+
+	public void testEventBatchingAll() {
+		createWorldWithEvents(World.BATCHING_ALL);
+		world.update();
+		assertNrofUpdates(2);
+	}
+
+	public void testEventBatchingTouched() {
+		createWorldWithEvents(World.BATCHING_TOUCHED);
+		world.getNodeByAddress(0); // not an event -> host 0 isn't touched
+		world.update();
+		for (int i=0; i<testHosts.size(); i++) {
+			int expected = (i == 1 || i == 2) ? 2 : 1;
+			assertEquals(expected, testHosts.get(i).nrofUpdate);
+		}
+
+		/* an event without hosts still updates all of them */
+		world.scheduleUpdate(0.15);
+		world.update();
+		assertEquals(4, testHosts.get(1).nrofUpdate);
+		assertEquals(3, testHosts.get(0).nrofUpdate);
+	}
+
+	/**
+	 * Creates the world with an event queue that has three events touching
+	 * hosts 1, 1 and 2 at the same time
+	 */
+	private void createWorldWithEvents(String batching) {
+		TestSettings s = new TestSettings();
+		s.putSetting(World.SETTINGS_NS + "." + World.EVENT_BATCHING_S, 
+				batching);
+		eQueues.add(new TestEventQueue(0.05, 1, 1, 2));
+		createWorld();
+	}
+
+	/** Event that only looks up a host from the world */
+	private static class LookupEvent extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+		private int address;
+
+		public LookupEvent(double time, int address) {
+			super(time);
+			this.address = address;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			world.getNodeByAddress(address);
+		}
+	}
+
+	/** Event queue with lookup events all at the same time */
+	private static class TestEventQueue implements EventQueue {
+		private List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+
+		public TestEventQueue(double time, int... addresses) {
+			for (int a : addresses) {
+				events.add(new LookupEvent(time, a));
+			}
+		}
+
+		public ExternalEvent nextEvent() {
+			return events.remove(0);
+		}
+
+		public double nextEventsTime() {
+			return events.isEmpty() ? Double.MAX_VALUE : 
+				events.get(0).getTime();
+		}
+	}
 
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
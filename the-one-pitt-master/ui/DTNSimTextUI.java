@@ -4,6 +4,9 @@
  */
 package ui;
 
+import input.LoopbackGateway;
+import core.RealTimePacer;
+import core.Settings;
 import core.SimClock;
 
 /**
@@ -12,6 +15,8 @@ import core.SimClock;
 public class DTNSimTextUI extends DTNSimUI {
 	private long lastUpdateRt;	// real time of last ui update
 	private long startTime; // simulation start time
+	/** paces the simulation in real-time emulation mode (or null) */
+	private RealTimePacer pacer;
 	/** How often the UI view is updated (milliseconds) */
 	public static final long UI_UP_INTERVAL = 60000;
 
@@ -19,8 +24,25 @@ public class DTNSimTextUI extends DTNSimUI {
 		double simTime = SimClock.getTime();
 		double endTime = scen.getEndTime();
 	
+		LoopbackGateway gateway = null;
+	
 		print("Running simulation '" + scen.getName()+"'");
 
+		if (RealTimePacer.isEnabled()) {
+			Settings s = new Settings(RealTimePacer.REAL_TIME_NS);
+			pacer = new RealTimePacer(s);
+			if (s.contains(LoopbackGateway.GATEWAY_PORT_S)) {
+				gateway = new LoopbackGateway(
+						s.getInt(LoopbackGateway.GATEWAY_PORT_S),
+						world.getHosts().size());
+				scen.getExternalEvents().add(gateway);
+				scen.addMessageListener(gateway);
+				gateway.start();
+				print("Gateway listening at port " + gateway.getPort());
+			}
+			pacer.start(simTime);
+		}
+
 		startTime = System.currentTimeMillis();
 		lastUpdateRt = startTime;
 		
@@ -33,6 +55,9 @@ public class DTNSimTextUI extends DTNSimUI {
 				return;
 			}
 			simTime = SimClock.getTime();
+			if (pacer != null) {
+				pacer.pace(simTime);
+			}
 			this.update(false);
 		}
 		
@@ -41,8 +66,14 @@ public class DTNSimTextUI extends DTNSimUI {
 		simDone = true;
 		done();
 		this.update(true); // force final UI update
+		if (gateway != null) {
+			gateway.close();
+		}
 		
 		print("Simulation done in " + String.format("%.2f", duration) + "s");
+		if (pacer != null) {
+			print("Real-time: " + pacer);
+		}
 	
 	}
 	
@@ -60,7 +91,8 @@ public class DTNSimTextUI extends DTNSimUI {
 			// simulated seconds/second calc
 			double ssps = ((SimClock.getTime() - lastUpdate)*1000) / diff;
 			print(String.format("%.1f %d: %.2f 1/s", dur, 
-					SimClock.getIntTime(),ssps));
+					SimClock.getIntTime(),ssps) + 
+					(pacer != null ? " (" + pacer + ")" : ""));
 			
 			this.lastUpdateRt = System.currentTimeMillis();
 			this.lastUpdate = SimClock.getTime();